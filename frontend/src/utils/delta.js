@@ -0,0 +1,207 @@
+// 增量上传（rsync 算法）的客户端部分：对照服务器返回的分块签名，在本地新文件中逐字节滑动查找相同的块，
+// 生成服务器 DeltaUploadService 能解析的指令流。指令中的新数据直接引用 File 的切片，不会把整个文件读入内存。
+
+const OP_END = 0
+const OP_COPY = 1
+const OP_DATA = 2
+
+const STRONG_LENGTH = 16
+const READ_CHUNK = 8 * 1024 * 1024
+const MAX_DATA_PIECE = 4 * 1024 * 1024
+
+const decodeBase64 = (text) => {
+  const binary = atob(text || '')
+  const bytes = new Uint8Array(binary.length)
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i)
+  }
+  return bytes
+}
+
+const header = (op, ...ints) => {
+  const view = new DataView(new ArrayBuffer(1 + ints.length * 4))
+  view.setUint8(0, op)
+  ints.forEach((value, i) => view.setUint32(1 + i * 4, value))
+  return view.buffer
+}
+
+// 与服务器相同的弱校验和：a 为字节之和，b 为按位置加权之和，各取低16位
+const rollingChecksum = (bytes, offset, length) => {
+  let a = 0
+  let b = 0
+  for (let i = 0; i < length; i++) {
+    const x = bytes[offset + i]
+    a = (a + x) & 0xffff
+    b = (b + (length - i) * x) & 0xffff
+  }
+  return { a, b }
+}
+
+const strongHash = async (bytes, offset, length) => {
+  const digest = await crypto.subtle.digest('SHA-256', bytes.subarray(offset, offset + length))
+  return new Uint8Array(digest, 0, STRONG_LENGTH)
+}
+
+const strongEquals = (strong, block, hash) => {
+  const base = block * STRONG_LENGTH
+  for (let i = 0; i < STRONG_LENGTH; i++) {
+    if (strong[base + i] !== hash[i]) {
+      return false
+    }
+  }
+  return true
+}
+
+/**
+ * 计算增量，返回 { body: Blob, literalBytes, copiedBytes }
+ * signature 为 /api/upload/delta/signature 的响应，onProgress(已扫描字节数) 可选
+ */
+export const computeDelta = async (file, signature, onProgress) => {
+  const blockSize = signature.blockSize
+  const blockCount = signature.blockCount
+  const weak = decodeBase64(signature.weak)
+  const strong = decodeBase64(signature.strong)
+  const lastLength = blockCount > 0 ? signature.size - (blockCount - 1) * blockSize : 0
+
+  // 弱校验和 -> 块号列表；只有完整的块参与滑动查找，不足一块的最后一块只在文件末尾比较
+  const blocksByWeak = new Map()
+  // 按弱校验和高24位的位图预筛，绝大多数位置不必查 Map
+  const filter = new Uint32Array(1 << 19)
+  const weakView = new DataView(weak.buffer)
+  for (let i = 0; i < blockCount; i++) {
+    if (i === blockCount - 1 && lastLength < blockSize) {
+      break
+    }
+    const key = weakView.getUint32(i * 4)
+    const list = blocksByWeak.get(key)
+    if (list) {
+      list.push(i)
+    } else {
+      blocksByWeak.set(key, [i])
+    }
+    filter[key >>> 13] |= 1 << ((key >>> 8) & 31)
+  }
+
+  const parts = []
+  let literalBytes = 0
+  let copiedBytes = 0
+  let copyStart = -1
+  let copyCount = 0
+  let literalStart = 0
+
+  const flushCopy = () => {
+    if (copyCount > 0) {
+      parts.push(header(OP_COPY, copyStart, copyCount))
+      copiedBytes += Math.min(copyCount * blockSize, signature.size - copyStart * blockSize)
+      copyCount = 0
+    }
+  }
+  const emitLiteral = (end) => {
+    if (end <= literalStart) {
+      return
+    }
+    flushCopy()
+    for (let offset = literalStart; offset < end; offset += MAX_DATA_PIECE) {
+      const pieceEnd = Math.min(end, offset + MAX_DATA_PIECE)
+      parts.push(header(OP_DATA, pieceEnd - offset), file.slice(offset, pieceEnd))
+    }
+    literalBytes += end - literalStart
+    literalStart = end
+  }
+  const emitCopy = (block) => {
+    if (copyCount > 0 && copyStart + copyCount === block) {
+      copyCount++
+    } else {
+      flushCopy()
+      copyStart = block
+      copyCount = 1
+    }
+  }
+
+  // buffer 保存文件 [bufferStart, bufferStart + buffer.length) 的内容，不再需要的前部在补读时丢弃
+  let pos = 0
+  let buffer = new Uint8Array(0)
+  let bufferStart = 0
+  const ensure = async (end) => {
+    end = Math.min(end, file.size)
+    if (end <= bufferStart + buffer.length) {
+      return
+    }
+    const readFrom = bufferStart + buffer.length
+    const readTo = Math.min(file.size, Math.max(end, readFrom + READ_CHUNK))
+    const chunk = new Uint8Array(await file.slice(readFrom, readTo).arrayBuffer())
+    const keepFrom = Math.max(0, pos - bufferStart)
+    const merged = new Uint8Array(buffer.length - keepFrom + chunk.length)
+    merged.set(buffer.subarray(keepFrom))
+    merged.set(chunk, buffer.length - keepFrom)
+    buffer = merged
+    bufferStart += keepFrom
+    if (onProgress) {
+      onProgress(readFrom)
+    }
+  }
+
+  let a = 0
+  let b = 0
+  let rolling = false
+  if (blocksByWeak.size > 0) {
+    while (pos + blockSize <= file.size) {
+      await ensure(pos + blockSize + 1)
+      const offset = pos - bufferStart
+      if (!rolling) {
+        ({ a, b } = rollingChecksum(buffer, offset, blockSize))
+        rolling = true
+      }
+      const key = ((b << 16) | a) >>> 0
+      if (filter[key >>> 13] & (1 << ((key >>> 8) & 31))) {
+        const candidates = blocksByWeak.get(key)
+        if (candidates) {
+          const hash = await strongHash(buffer, offset, blockSize)
+          // 优先选择能接上前一个 COPY 的块
+          const next = copyCount > 0 ? copyStart + copyCount : -1
+          let matched = candidates.includes(next) && strongEquals(strong, next, hash) ? next : -1
+          if (matched < 0) {
+            matched = candidates.find(block => strongEquals(strong, block, hash)) ?? -1
+          }
+          if (matched >= 0) {
+            emitLiteral(pos)
+            emitCopy(matched)
+            pos += blockSize
+            literalStart = pos
+            rolling = false
+            continue
+          }
+        }
+      }
+      if (pos + blockSize >= file.size) {
+        break
+      }
+      const out = buffer[offset]
+      const incoming = buffer[offset + blockSize]
+      a = (a - out + incoming) & 0xffff
+      b = (b - blockSize * out + a) & 0xffff
+      pos++
+    }
+  }
+
+  // 不足一块的最后一块：新文件的末尾与之相同时直接复用
+  if (lastLength > 0 && lastLength < blockSize && file.size - literalStart >= lastLength) {
+    const tailStart = file.size - lastLength
+    const tail = new Uint8Array(await file.slice(tailStart).arrayBuffer())
+    const { a: tailA, b: tailB } = rollingChecksum(tail, 0, lastLength)
+    if (((tailB << 16) | tailA) >>> 0 === weakView.getUint32((blockCount - 1) * 4)
+        && strongEquals(strong, blockCount - 1, await strongHash(tail, 0, lastLength))) {
+      emitLiteral(tailStart)
+      emitCopy(blockCount - 1)
+      literalStart = file.size
+    }
+  }
+
+  emitLiteral(file.size)
+  flushCopy()
+  parts.push(header(OP_END))
+  if (onProgress) {
+    onProgress(file.size)
+  }
+  return { body: new Blob(parts), literalBytes, copiedBytes }
+}
@@ -0,0 +1,66 @@
+// 在浏览器中把选中的文件夹打包为 tar（ustar 格式，长路径或非 ASCII 路径附带 PAX 扩展头），
+// 文件内容直接引用 File 对象，不会读入内存，用于 /api/upload/archive 一次上传大量小文件。
+
+const BLOCK_SIZE = 512
+const encoder = new TextEncoder()
+
+const writeString = (header, offset, length, value) => {
+  const bytes = encoder.encode(value)
+  header.set(bytes.subarray(0, length), offset)
+}
+
+// length - 1 位八进制数字加结尾 NUL
+const writeOctal = (header, offset, length, value) => {
+  writeString(header, offset, length, value.toString(8).padStart(length - 1, '0'))
+}
+
+const ustarHeader = (name, type, size, mtime) => {
+  const header = new Uint8Array(BLOCK_SIZE)
+  writeString(header, 0, 100, name)
+  writeOctal(header, 100, 8, type === '5' ? 0o755 : 0o644)
+  writeOctal(header, 108, 8, 0)
+  writeOctal(header, 116, 8, 0)
+  writeOctal(header, 124, 12, size)
+  writeOctal(header, 136, 12, mtime)
+  header[156] = type.charCodeAt(0)
+  writeString(header, 257, 8, 'ustar\u000000')
+  // 校验和按校验和字段全为空格计算
+  header.fill(0x20, 148, 156)
+  const checksum = header.reduce((sum, b) => sum + b, 0)
+  writeOctal(header, 148, 7, checksum)
+  header[155] = 0x20
+  return header
+}
+
+// PAX 记录格式为 "长度 键=值\n"，长度包含长度字段本身
+const paxRecord = (key, value) => {
+  const payload = encoder.encode(` ${key}=${value}\n`).length
+  let length = payload + String(payload).length
+  if (String(length).length !== String(payload).length) {
+    length = payload + String(length).length
+  }
+  return `${length} ${key}=${value}\n`
+}
+
+const padding = (size) => new Uint8Array((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE)
+
+/**
+ * entries 为 [{ path, file }]，path 使用正斜杠；返回 tar 格式的 Blob
+ */
+export const buildTar = (entries) => {
+  const parts = []
+  for (const { path, file } of entries) {
+    const mtime = Math.floor((file.lastModified || Date.now()) / 1000)
+    const nameBytes = encoder.encode(path)
+    const ascii = nameBytes.length === path.length
+    if (!ascii || nameBytes.length > 100) {
+      const records = encoder.encode(paxRecord('path', path))
+      parts.push(ustarHeader('PaxHeaders/entry', 'x', records.length, 0), records, padding(records.length))
+    }
+    const fallback = ascii ? path.slice(0, 100) : path.replace(/[^\x20-\x7e]/g, '_').slice(0, 100)
+    parts.push(ustarHeader(fallback, '0', file.size, mtime), file, padding(file.size))
+  }
+  // 归档结尾：两个全0块
+  parts.push(new Uint8Array(BLOCK_SIZE * 2))
+  return new Blob(parts, { type: 'application/x-tar' })
+}
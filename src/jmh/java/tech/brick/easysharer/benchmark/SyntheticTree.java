@@ -0,0 +1,77 @@
+package tech.brick.easysharer.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * 基准测试用的合成目录树
+ */
+public final class SyntheticTree {
+
+    private static final String[] EXTENSIONS = {"txt", "jpg", "mp4", "pdf", "zip", "docx", "xlsx", "log", "bin"};
+
+    private SyntheticTree() {
+    }
+
+    /**
+     * 在指定目录下生成 fileCount 个文件，每个子目录最多 filesPerDir 个
+     */
+    public static void create(Path root, int fileCount, int fileSize, int filesPerDir) throws IOException {
+        Files.createDirectories(root);
+        Random random = new Random(42);
+        byte[] block = new byte[Math.min(fileSize, 64 * 1024)];
+        random.nextBytes(block);
+
+        Path dir = root;
+        for (int i = 0; i < fileCount; i++) {
+            if (filesPerDir > 0 && i % filesPerDir == 0 && i > 0) {
+                dir = root.resolve("dir-" + (i / filesPerDir));
+                Files.createDirectories(dir);
+            }
+            String name = "file-" + i + "." + EXTENSIONS[i % EXTENSIONS.length];
+            writeFile(dir.resolve(name), block, fileSize);
+        }
+    }
+
+    /**
+     * 写入指定大小的文件
+     */
+    public static void writeFile(Path file, byte[] block, long size) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int n = (int) Math.min(block.length, remaining);
+                out.write(block, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * 递归删除目录
+     */
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
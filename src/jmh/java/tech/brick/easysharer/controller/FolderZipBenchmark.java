@@ -0,0 +1,101 @@
+package tech.brick.easysharer.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.benchmark.DiscardingResponse;
+import tech.brick.easysharer.benchmark.SyntheticTree;
+import tech.brick.easysharer.service.DeltaUploadService;
+import tech.brick.easysharer.service.DirectorySizeService;
+import tech.brick.easysharer.service.FileOperationService;
+import tech.brick.easysharer.service.FileService;
+import tech.brick.easysharer.service.FolderArchiveCache;
+import tech.brick.easysharer.service.FolderSyncService;
+import tech.brick.easysharer.service.GzipCompressionService;
+import tech.brick.easysharer.service.HashService;
+import tech.brick.easysharer.service.HotFileCache;
+import tech.brick.easysharer.service.SharePathResolver;
+import tech.brick.easysharer.service.TextShareService;
+import tech.brick.easysharer.service.UploadService;
+import tech.brick.easysharer.service.ZipBrowseService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件夹打包基准测试，覆盖 addDirectoryToArchive / addFileToZip / addFileToTar（zip、tar、tar.gz 三种格式）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FolderZipBenchmark {
+
+    /**
+     * 目录树形态：文件数 x 单文件大小
+     */
+    public enum TreeShape {
+        SMALL_10(10, 4 * 1024),
+        SMALL_1K(1_000, 4 * 1024),
+        SMALL_100K(100_000, 1024),
+        LARGE_10(10, 32 * 1024 * 1024);
+
+        final int fileCount;
+        final int fileSize;
+
+        TreeShape(int fileCount, int fileSize) {
+            this.fileCount = fileCount;
+            this.fileSize = fileSize;
+        }
+    }
+
+    @Param({"SMALL_10", "SMALL_1K", "SMALL_100K", "LARGE_10"})
+    private TreeShape shape;
+
+    @Param({"zip", "tar", "tar.gz"})
+    private String format;
+
+    private Path root;
+    private FileController fileController;
+    private GzipCompressionService gzipCompressionService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("easy-sharer-bench-zip");
+        SyntheticTree.create(root.resolve("folder"), shape.fileCount, shape.fileSize, 1000);
+
+        SharePathResolver pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        FileService fileService = new FileService(new DirectorySizeService(), new HotFileCache(), pathResolver);
+        gzipCompressionService = new GzipCompressionService();
+        ReflectionTestUtils.setField(gzipCompressionService, "level", 6);
+        gzipCompressionService.init();
+        ZipBrowseService zipBrowseService = new ZipBrowseService(pathResolver);
+        HashService hashService = new HashService(pathResolver);
+        UploadService uploadService = new UploadService(new DirectorySizeService(), pathResolver, hashService);
+        fileController = new FileController(fileService, uploadService, new TextShareService(), new ObjectMapper(), new FolderArchiveCache(), gzipCompressionService, zipBrowseService,
+                new FileOperationService(pathResolver, new DirectorySizeService(), new HotFileCache(), zipBrowseService, hashService),
+                new DeltaUploadService(pathResolver, uploadService, new DirectorySizeService(), new HotFileCache(), zipBrowseService,
+                        hashService),
+                new FolderSyncService(hashService), hashService);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        gzipCompressionService.shutdown();
+        SyntheticTree.delete(root);
+    }
+
+    @Benchmark
+    public long downloadFolder() {
+        DiscardingResponse response = new DiscardingResponse();
+        fileController.downloadFolder("folder", format, new MockHttpServletRequest(), response);
+        return response.getBytesWritten();
+    }
+}
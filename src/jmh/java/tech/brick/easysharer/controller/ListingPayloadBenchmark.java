@@ -0,0 +1,105 @@
+package tech.brick.easysharer.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import tech.brick.easysharer.model.CompactFileListing;
+import tech.brick.easysharer.model.FileInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文件列表响应体大小与序列化耗时：完整格式 vs 紧凑格式，未压缩 vs gzip
+ * 辅助计数器 responseBytes 为单次响应的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingPayloadBenchmark {
+
+    private static final String[] EXTENSIONS = {"txt", "jpg", "mp4", "pdf", "zip", "docx", "xlsx", "log", "bin"};
+
+    @Param({"1000", "100000"})
+    private int entryCount;
+
+    @Param({"full", "compact"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private Object response;
+
+    /**
+     * 单次响应的字节数（非累加）
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long responseBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 与 Spring Boot 默认的 Jackson 配置一致
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        List<FileInfo> files = new ArrayList<>(entryCount);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < entryCount; i++) {
+            boolean directory = i % 20 == 0;
+            files.add(FileInfo.builder()
+                    .name(directory ? "folder-" + i : "file-" + i + "." + EXTENSIONS[i % EXTENSIONS.length])
+                    .relativePath("some/shared/path/file-" + i)
+                    .isDirectory(directory)
+                    .size(directory ? 0 : 1024L * i)
+                    .lastModified(now.minusMinutes(i))
+                    .build());
+        }
+
+        if ("compact".equals(format)) {
+            CompactFileListing listing = CompactFileListing.of(files);
+            FileController.CompactFilesResponse compact = new FileController.CompactFilesResponse();
+            compact.setColumns(listing.getColumns());
+            compact.setIcons(listing.getIcons());
+            compact.setFiles(listing.getFiles());
+            compact.setCurrentPath("some/shared/path");
+            compact.setSuccess(true);
+            response = compact;
+        } else {
+            FileController.FilesResponse full = new FileController.FilesResponse();
+            full.setFiles(files);
+            full.setCurrentPath("some/shared/path");
+            full.setSuccess(true);
+            response = full;
+        }
+    }
+
+    @Benchmark
+    public byte[] json(Payload payload) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        payload.responseBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] jsonGzip(Payload payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(gzip, response);
+        }
+        byte[] bytes = buffer.toByteArray();
+        payload.responseBytes = bytes.length;
+        return bytes;
+    }
+}
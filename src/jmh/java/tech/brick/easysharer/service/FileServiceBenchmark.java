@@ -0,0 +1,62 @@
+package tech.brick.easysharer.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.benchmark.SyntheticTree;
+import tech.brick.easysharer.model.FileInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录列表基准测试：listFiles 与单个 createFileInfo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileServiceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int fileCount;
+
+    private Path root;
+    private Path basePath;
+    private Path samplePath;
+    private FileService fileService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("easy-sharer-bench-list");
+        // 平铺在同一目录下，模拟单个大目录
+        SyntheticTree.create(root, fileCount, 1024, 0);
+
+        SharePathResolver pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        fileService = new FileService(new DirectorySizeService(), new HotFileCache(), pathResolver);
+        basePath = root.toAbsolutePath().normalize();
+        samplePath = basePath.resolve("file-0.txt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticTree.delete(root);
+    }
+
+    @Benchmark
+    public List<FileInfo> listFiles() {
+        return fileService.listFiles("");
+    }
+
+    @Benchmark
+    public void createFileInfo(Blackhole blackhole) throws IOException {
+        blackhole.consume(fileService.createFileInfo(samplePath, basePath));
+    }
+}
@@ -0,0 +1,94 @@
+package tech.brick.easysharer.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.benchmark.SyntheticTree;
+import tech.brick.easysharer.model.TextShare;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本分享持久化基准测试：不同存储规模下创建分享、保存索引、读取列表与全文检索的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextShareServiceBenchmark {
+
+    private static final String CONTENT = "这是一段用于基准测试的文本分享内容 benchmark content ".repeat(8);
+
+    @Param({"10", "1000", "10000"})
+    private int shareCount;
+
+    private Path root;
+    private TextShareService textShareService;
+    private String viewedId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("easy-sharer-bench-text");
+
+        textShareService = new TextShareService();
+        // 存储目录不能位于共享目录内
+        ReflectionTestUtils.setField(textShareService, "rootPath", root.resolve("share").toString());
+        ReflectionTestUtils.setField(textShareService, "storeDirPath", root.resolve("text").toString());
+        // 数量上限比预置数据多出基准测试期间新建的分享，保持存储规模不被淘汰
+        ReflectionTestUtils.setField(textShareService, "maxShares", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(textShareService, "maxTotalBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(textShareService, "bodyCacheBytes", 16L * 1024 * 1024);
+        ReflectionTestUtils.setField(textShareService, "maxContentLength", 10_000_000);
+        ReflectionTestUtils.setField(textShareService, "inlineMaxLength", 10_000);
+        ReflectionTestUtils.setField(textShareService, "previewLength", 200);
+        textShareService.init();
+
+        for (int i = 0; i < shareCount; i++) {
+            viewedId = textShareService.createTextShare(CONTENT, "192.168.1." + (i % 250), "user" + (i % 50), "笔记").getId();
+        }
+        textShareService.saveDataToFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticTree.delete(root);
+    }
+
+    /**
+     * 创建一条分享（追加写入分段文件）
+     */
+    @Benchmark
+    public TextShare createTextShare() {
+        return textShareService.createTextShare(CONTENT, "192.168.1.1", "bench", "笔记");
+    }
+
+    /**
+     * 查看一条分享后保存索引（定时保存的单次开销）
+     */
+    @Benchmark
+    public void saveDataToFile() {
+        textShareService.getTextShare(viewedId);
+        textShareService.saveDataToFile();
+    }
+
+    /**
+     * 列表第一页（只使用元数据和索引中的预览）
+     */
+    @Benchmark
+    public TextShareService.SharePage getAllTextShares() {
+        return textShareService.getAllTextShares(0, 50);
+    }
+
+    /**
+     * 全文检索（所有分享都命中查询词，为最坏情况）
+     */
+    @Benchmark
+    public List<TextShare> searchTextShares() {
+        return textShareService.searchTextShares("基准测试", 50);
+    }
+}
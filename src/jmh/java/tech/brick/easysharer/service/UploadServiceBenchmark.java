@@ -0,0 +1,84 @@
+package tech.brick.easysharer.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import tech.brick.easysharer.benchmark.SyntheticTree;
+import tech.brick.easysharer.model.FileUploadResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传基准测试：一次请求上传 filesPerRequest 个 fileSize 字节的文件
+ * writerThreads=1 相当于逐个串行写入，作为并发写入的对照
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadServiceBenchmark {
+
+    @Param({"1", "10"})
+    private int filesPerRequest;
+
+    @Param({"4096", "16777216"})
+    private int fileSize;
+
+    @Param({"1", "4"})
+    private int writerThreads;
+
+    private Path root;
+    private byte[] content;
+    private UploadService uploadService;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("easy-sharer-bench-upload");
+        content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+
+        SharePathResolver pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        uploadService = new UploadService(new DirectorySizeService(), pathResolver, new HashService(pathResolver));
+        ReflectionTestUtils.setField(uploadService, "uploadEnabled", true);
+        ReflectionTestUtils.setField(uploadService, "maxFilesPerRequest", filesPerRequest);
+        ReflectionTestUtils.setField(uploadService, "maxFileSizeMB", 1024);
+        ReflectionTestUtils.setField(uploadService, "writerThreads", writerThreads);
+        uploadService.init();
+    }
+
+    /**
+     * 每轮迭代清空上传目录，避免磁盘被写满
+     */
+    @Setup(Level.Iteration)
+    public void cleanUp() throws IOException {
+        SyntheticTree.delete(root.resolve("upload"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        uploadService.shutdown();
+        SyntheticTree.delete(root);
+    }
+
+    @Benchmark
+    public List<FileUploadResult> uploadFiles() throws IOException {
+        List<MultipartFile> files = new ArrayList<>(filesPerRequest);
+        for (int i = 0; i < filesPerRequest; i++) {
+            String name = "bench-" + (counter++) + ".bin";
+            files.add(new MockMultipartFile("files", name, "application/octet-stream", content));
+        }
+        return uploadService.uploadFiles(files, "upload");
+    }
+}
@@ -0,0 +1,63 @@
+package tech.brick.easysharer.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个接口的延迟与吞吐统计
+ */
+public class EndpointStats {
+
+    private final String endpoint;
+    private long[] latenciesMicros = new long[1024];
+    private int count;
+    private long errors;
+    private long bytes;
+
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public synchronized void record(long latencyMicros, long responseBytes, boolean success) {
+        if (count == latenciesMicros.length) {
+            latenciesMicros = Arrays.copyOf(latenciesMicros, count * 2);
+        }
+        latenciesMicros[count++] = latencyMicros;
+        bytes += responseBytes;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    /**
+     * 汇总为报告行，elapsedSeconds 为整个压测的持续时间
+     */
+    public synchronized Map<String, Object> summarize(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(latenciesMicros, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("endpoint", endpoint);
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("throughputPerSec", round(count / elapsedSeconds));
+        summary.put("mbPerSec", round(bytes / elapsedSeconds / (1024.0 * 1024.0)));
+        summary.put("p50Ms", round(percentile(sorted, 0.50) / 1000.0));
+        summary.put("p99Ms", round(percentile(sorted, 0.99) / 1000.0));
+        summary.put("maxMs", round((count == 0 ? 0 : sorted[count - 1]) / 1000.0));
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
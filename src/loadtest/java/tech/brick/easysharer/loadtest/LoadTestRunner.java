@@ -0,0 +1,334 @@
+package tech.brick.easysharer.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tech.brick.easysharer.EasySharerApplication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端HTTP压测：在进程内启动服务器，按负载模型回放局域网访问
+ * <p>
+ * 运行：mvn -Ploadtest verify -DskipTests -Dloadtest.profile=CLASSROOM -Dloadtest.timeScale=0.2
+ */
+public class LoadTestRunner {
+
+    private static final int LIST_DIRS = 20;
+    private static final int FILES_PER_DIR = 200;
+    private static final int LARGE_FILES = 3;
+    private static final long LARGE_FILE_SIZE = 64L * 1024 * 1024;
+    private static final int FOLDER_FILES = 300;
+    private static final int FOLDER_FILE_SIZE = 256 * 1024;
+    private static final int UPLOAD_FILE_SIZE = 2 * 1024 * 1024;
+
+    private final WorkloadProfile profile;
+    private final double timeScale;
+    private final long seed;
+    private final int durationSeconds;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private String baseUrl;
+    private byte[] uploadContent;
+    private volatile long deadline;
+
+    public LoadTestRunner(WorkloadProfile profile, double timeScale, long seed, int durationSeconds) {
+        this.profile = profile;
+        this.timeScale = timeScale;
+        this.seed = seed;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        WorkloadProfile profile = WorkloadProfile.valueOf(System.getProperty("loadtest.profile", "SMOKE"));
+        double timeScale = Double.parseDouble(System.getProperty("loadtest.timeScale", "1.0"));
+        long seed = Long.parseLong(System.getProperty("loadtest.seed", "42"));
+        int duration = Integer.parseInt(System.getProperty("loadtest.duration", "0"));
+        if (duration <= 0) {
+            duration = profile.durationSeconds;
+        }
+        Path report = Paths.get(System.getProperty("loadtest.report", "target/loadtest-report.json"));
+
+        Map<String, Object> result = new LoadTestRunner(profile, timeScale, seed, duration).run();
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        objectMapper.writeValue(report.toFile(), result);
+        System.out.println("压测报告已保存: " + report.toAbsolutePath());
+        System.exit(0);
+    }
+
+    /**
+     * 准备数据、启动服务器并执行压测，返回报告
+     */
+    public Map<String, Object> run() throws Exception {
+        Path root = Files.createTempDirectory("easy-sharer-loadtest");
+        ConfigurableApplicationContext context = null;
+        try {
+            System.out.println("生成测试数据: " + root);
+            createDataset(root);
+            uploadContent = new byte[UPLOAD_FILE_SIZE];
+            new Random(seed).nextBytes(uploadContent);
+
+            // 以命令行参数传入，覆盖 application.properties 中的配置
+            context = new SpringApplicationBuilder(EasySharerApplication.class)
+                    .run("--server.port=0",
+                            "--file.share.root-path=" + root,
+                            "--file.upload.enabled=true",
+                            "--logging.level.tech.brick.easysharer=WARN");
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            System.out.printf("开始压测: 模型=%s, 用户数=%d, 时长=%ds, 时间缩放=%.2f%n",
+                    profile, profile.totalUsers(), durationSeconds, timeScale);
+            long start = System.nanoTime();
+            runVirtualUsers();
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            return buildReport(elapsedSeconds);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            deleteRecursively(root);
+        }
+    }
+
+    private void runVirtualUsers() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(profile.totalUsers());
+        deadline = System.currentTimeMillis() + durationSeconds * 1000L;
+        int userIndex = 0;
+
+        for (int i = 0; i < profile.listers; i++) {
+            Random random = new Random(seed + userIndex++);
+            executor.submit(() -> loop(random, profile.listThinkMs, () -> listDirectory(random)));
+        }
+        for (int i = 0; i < profile.downloaders; i++) {
+            Random random = new Random(seed + userIndex++);
+            executor.submit(() -> loop(random, profile.downloadThinkMs, () -> downloadLargeFile(random)));
+        }
+        for (int i = 0; i < profile.zippers; i++) {
+            Random random = new Random(seed + userIndex++);
+            executor.submit(() -> loop(random, profile.zipThinkMs, this::downloadFolder));
+        }
+        for (int i = 0; i < profile.uploaders; i++) {
+            Random random = new Random(seed + userIndex++);
+            int uploader = i;
+            executor.submit(() -> loop(random, profile.uploadThinkMs, () -> upload(uploader)));
+        }
+        for (int i = 0; i < profile.pollers; i++) {
+            Random random = new Random(seed + userIndex++);
+            executor.submit(() -> loop(random, WorkloadProfile.POLL_INTERVAL_MS, this::pollTextShares));
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(durationSeconds + 600L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 虚拟用户循环：随机错峰启动，之后按固定间隔（±20%抖动）重复操作
+     */
+    private void loop(Random random, long thinkMs, Action action) {
+        try {
+            sleepScaled((long) (random.nextDouble() * thinkMs));
+            while (System.currentTimeMillis() < deadline) {
+                action.run();
+                sleepScaled((long) (thinkMs * (0.8 + random.nextDouble() * 0.4)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sleepScaled(long millis) throws InterruptedException {
+        long scaled = (long) (millis * timeScale);
+        long remaining = deadline - System.currentTimeMillis();
+        if (scaled > 0 && remaining > 0) {
+            Thread.sleep(Math.min(scaled, remaining));
+        }
+    }
+
+    private void listDirectory(Random random) {
+        String path = "list/dir-" + random.nextInt(LIST_DIRS);
+        send("GET /api/files", HttpRequest.newBuilder(uri("/api/files?path=" + encode(path))).GET().build());
+    }
+
+    private void downloadLargeFile(Random random) {
+        String path = "large/large-" + random.nextInt(LARGE_FILES) + ".bin";
+        send("GET /download", HttpRequest.newBuilder(uri("/download?path=" + encode(path))).GET().build());
+    }
+
+    private void downloadFolder() {
+        send("GET /download-folder", HttpRequest.newBuilder(uri("/download-folder?path=course")).GET().build());
+    }
+
+    private void pollTextShares() {
+        send("GET /api/text-shares", HttpRequest.newBuilder(uri("/api/text-shares")).GET().build());
+    }
+
+    private void upload(int uploader) {
+        String boundary = "----easy-sharer-loadtest-" + uploader;
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"path\"\r\n\r\n"
+                + "uploads/user-" + uploader + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"upload.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(
+                        head.getBytes(StandardCharsets.UTF_8),
+                        uploadContent,
+                        tail.getBytes(StandardCharsets.UTF_8))))
+                .build();
+        send("POST /api/upload", request);
+    }
+
+    /**
+     * 发送请求并完整读取响应体，延迟包含传输时间
+     */
+    private void send(String endpoint, HttpRequest request) {
+        long start = System.nanoTime();
+        long bytes = 0;
+        boolean success;
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = body.read(buffer)) != -1) {
+                    bytes += n;
+                }
+            }
+            success = response.statusCode() < 400;
+        } catch (IOException e) {
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long latencyMicros = (System.nanoTime() - start) / 1000;
+        stats.computeIfAbsent(endpoint, EndpointStats::new).record(latencyMicros, bytes, success);
+    }
+
+    private Map<String, Object> buildReport(double elapsedSeconds) {
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        stats.keySet().stream().sorted().forEach(key -> endpoints.add(stats.get(key).summarize(elapsedSeconds)));
+
+        System.out.printf("%-24s %9s %7s %10s %9s %10s %10s%n",
+                "接口", "请求数", "错误", "吞吐/s", "MB/s", "p50(ms)", "p99(ms)");
+        for (Map<String, Object> row : endpoints) {
+            System.out.printf("%-24s %9s %7s %10s %9s %10s %10s%n",
+                    row.get("endpoint"), row.get("requests"), row.get("errors"),
+                    row.get("throughputPerSec"), row.get("mbPerSec"), row.get("p50Ms"), row.get("p99Ms"));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("profile", profile.name());
+        report.put("seed", seed);
+        report.put("timeScale", timeScale);
+        report.put("users", profile.totalUsers());
+        report.put("elapsedSeconds", Math.round(elapsedSeconds * 100.0) / 100.0);
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    /**
+     * 生成测试数据：小文件目录、大文件和待打包的课程资料文件夹
+     */
+    private void createDataset(Path root) throws IOException {
+        Random random = new Random(seed);
+        byte[] block = new byte[64 * 1024];
+        random.nextBytes(block);
+
+        for (int d = 0; d < LIST_DIRS; d++) {
+            Path dir = Files.createDirectories(root.resolve("list/dir-" + d));
+            for (int f = 0; f < FILES_PER_DIR; f++) {
+                writeFile(dir.resolve("photo-" + f + ".jpg"), block, 4 * 1024);
+            }
+        }
+
+        Path large = Files.createDirectories(root.resolve("large"));
+        for (int i = 0; i < LARGE_FILES; i++) {
+            writeFile(large.resolve("large-" + i + ".bin"), block, LARGE_FILE_SIZE);
+        }
+
+        Path course = Files.createDirectories(root.resolve("course"));
+        for (int i = 0; i < FOLDER_FILES; i++) {
+            Path chapter = Files.createDirectories(course.resolve("chapter-" + (i / 30)));
+            writeFile(chapter.resolve("slide-" + i + ".pptx"), block, FOLDER_FILE_SIZE);
+        }
+    }
+
+    private static void writeFile(Path file, byte[] block, long size) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int n = (int) Math.min(block.length, remaining);
+                out.write(block, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private URI uri(String pathAndQuery) {
+        return URI.create(baseUrl + pathAndQuery);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,61 @@
+package tech.brick.easysharer.loadtest;
+
+/**
+ * 局域网负载模型：各类虚拟用户的数量与操作间隔
+ * 间隔为真实时间（毫秒），运行时可通过 timeScale 整体压缩
+ */
+public enum WorkloadProfile {
+
+    /**
+     * 冒烟测试：少量用户，快速验证环境
+     */
+    SMOKE(20, 4, 2_000, 1, 5_000, 1, 10_000, 1, 5_000, 4),
+
+    /**
+     * 课堂场景：大量手机浏览目录并轮询文本分享，少量大文件下载、文件夹打包和上传
+     */
+    CLASSROOM(120, 40, 3_000, 3, 10_000, 2, 20_000, 4, 8_000, 40),
+
+    /**
+     * 传输密集场景：下载、打包、上传并发明显增多
+     */
+    HEAVY_TRANSFER(120, 10, 3_000, 10, 2_000, 5, 5_000, 10, 2_000, 10);
+
+    /**
+     * 文本分享轮询间隔，与前端保持一致
+     */
+    public static final long POLL_INTERVAL_MS = 30_000;
+
+    final int durationSeconds;
+    final int listers;
+    final long listThinkMs;
+    final int downloaders;
+    final long downloadThinkMs;
+    final int zippers;
+    final long zipThinkMs;
+    final int uploaders;
+    final long uploadThinkMs;
+    final int pollers;
+
+    WorkloadProfile(int durationSeconds,
+                    int listers, long listThinkMs,
+                    int downloaders, long downloadThinkMs,
+                    int zippers, long zipThinkMs,
+                    int uploaders, long uploadThinkMs,
+                    int pollers) {
+        this.durationSeconds = durationSeconds;
+        this.listers = listers;
+        this.listThinkMs = listThinkMs;
+        this.downloaders = downloaders;
+        this.downloadThinkMs = downloadThinkMs;
+        this.zippers = zippers;
+        this.zipThinkMs = zipThinkMs;
+        this.uploaders = uploaders;
+        this.uploadThinkMs = uploadThinkMs;
+        this.pollers = pollers;
+    }
+
+    public int totalUsers() {
+        return listers + downloaders + zippers + uploaders + pollers;
+    }
+}
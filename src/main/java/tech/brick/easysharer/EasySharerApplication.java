@@ -2,8 +2,10 @@ package tech.brick.easysharer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EasySharerApplication {
 
     public static void main(String[] args) {
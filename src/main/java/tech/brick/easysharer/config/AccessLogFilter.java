@@ -0,0 +1,204 @@
+package tech.brick.easysharer.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * 访问日志（可选）
+ * 每个请求结束时输出一行 key=value 格式的日志：方法、URI、状态码、响应字节数、耗时和客户端地址，
+ * 可以代替各接口中逐步记录的请求日志。字节数为压缩前的响应体大小；异步请求在异步处理完成时记录，耗时包含异步处理的时间。
+ * 日志名称为 tech.brick.easysharer.access，可单独调整级别或输出位置。
+ */
+@Slf4j(topic = "tech.brick.easysharer.access")
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    @Value("${file.share.access-log.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !log.isInfoEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        CountingResponse countingResponse = new CountingResponse(response);
+        Throwable failure = null;
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            // 异步请求在这里只是开始处理，响应在其他线程或异步分派中写出，完成时再记录
+            if (failure == null && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AccessLogListener(request, countingResponse, start));
+            } else {
+                logAccess(request, countingResponse, start, failure);
+            }
+        }
+    }
+
+    private static void logAccess(HttpServletRequest request, CountingResponse response, long start, Throwable failure) {
+        long durationMillis = (System.nanoTime() - start) / 1_000_000;
+        int status = failure != null && !response.isCommitted() ? 500 : response.getStatus();
+        String query = request.getQueryString();
+        log.info("method={} uri=\"{}{}\" status={} bytes={} duration_ms={} client={}{}",
+                request.getMethod(),
+                request.getRequestURI(),
+                query != null ? "?" + query : "",
+                status,
+                response.getBytesWritten(),
+                durationMillis,
+                request.getRemoteAddr(),
+                failure != null ? " error=" + failure.getClass().getSimpleName() : "");
+    }
+
+    /**
+     * 异步请求完成（包括超时和出错后的完成）时输出访问日志
+     * 异步分派不再经过本过滤器（OncePerRequestFilter 默认跳过），但使用的仍是开始异步时包装过的响应，字节数照常统计
+     */
+    private static class AccessLogListener implements AsyncListener {
+        private final HttpServletRequest request;
+        private final CountingResponse response;
+        private final long start;
+        private Throwable failure;
+
+        AccessLogListener(HttpServletRequest request, CountingResponse response, long start) {
+            this.request = request;
+            this.response = response;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            logAccess(request, response, start, failure);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (failure == null) {
+                failure = new AsyncRequestTimeoutException();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (failure == null) {
+                failure = event.getThrowable();
+            }
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // 再次开始异步处理时监听器会被移除，需要重新注册
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /**
+     * 统计写出字节数的响应包装
+     * 通过 Writer 写出的字符按 UTF-8 编码长度计数，不额外缓冲，刷新和关闭行为与原响应一致
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private long bytesWritten;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytesWritten++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytesWritten += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                PrintWriter delegate = super.getWriter();
+                writer = new PrintWriter(new Writer() {
+                    @Override
+                    public void write(char[] cbuf, int off, int len) {
+                        delegate.write(cbuf, off, len);
+                        for (int i = off; i < off + len; i++) {
+                            char c = cbuf[i];
+                            bytesWritten += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+                        }
+                    }
+
+                    @Override
+                    public void flush() {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        delegate.close();
+                    }
+                });
+            }
+            return writer;
+        }
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.annotation.Scheduled;
+import tech.brick.easysharer.service.TextShareService;
 import tech.brick.easysharer.util.NetworkUtils;
 
 import java.io.IOException;
@@ -35,6 +37,15 @@ public class FileShareConfig implements CommandLineRunner {
         logStartupInfo();
     }
 
+    /**
+     * 定期刷新本机网络地址快照，网卡变化（如连接新网络）后无需重启
+     */
+    @Scheduled(initialDelayString = "${file.share.network-refresh-interval-ms:60000}",
+            fixedDelayString = "${file.share.network-refresh-interval-ms:60000}")
+    public void refreshNetworkAddresses() {
+        NetworkUtils.refresh();
+    }
+
     /**
      * 初始化共享目录
      */
@@ -172,7 +183,7 @@ public class FileShareConfig implements CommandLineRunner {
             log.info("  - 如无法访问，请检查Windows防火墙设置");
             log.info("  - 确保{}端口未被其他程序占用", actualPort);
             log.info("  - 某些路由器可能启用了设备隔离功能");
-            log.info("  - 文本分享数据存储在: {}/text/", Paths.get(rootPath).toAbsolutePath());
+            log.info("  - 文本分享数据存储在: {}", applicationContext.getBean(TextShareService.class).getTextShareDirectory());
         }
         
         log.info("=".repeat(60));
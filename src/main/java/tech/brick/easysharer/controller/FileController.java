@@ -1,26 +1,60 @@
 package tech.brick.easysharer.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.DisconnectedClientHelper;
 import org.springframework.web.multipart.MultipartFile;
+import tech.brick.easysharer.model.CompactFileListing;
+import tech.brick.easysharer.model.DeltaSignature;
+import tech.brick.easysharer.model.DirectoryStats;
 import tech.brick.easysharer.model.FileInfo;
+import tech.brick.easysharer.model.FileOperationProgress;
+import tech.brick.easysharer.model.FileUploadResult;
+import tech.brick.easysharer.model.SyncManifestEntry;
 import tech.brick.easysharer.model.TextShare;
+import tech.brick.easysharer.service.DeltaUploadService;
+import tech.brick.easysharer.service.FileOperationService;
 import tech.brick.easysharer.service.FileService;
+import tech.brick.easysharer.service.FileService.TreeEntry;
+import tech.brick.easysharer.service.FileService.TreeWalk;
+import tech.brick.easysharer.service.FolderArchiveCache;
+import tech.brick.easysharer.service.FolderArchiveCache.ArchiveWriter;
+import tech.brick.easysharer.service.FolderArchiveCache.CachedArchive;
+import tech.brick.easysharer.service.FolderSyncService;
+import tech.brick.easysharer.service.FolderSyncService.ServerFile;
+import tech.brick.easysharer.service.FolderSyncService.SyncPlan;
+import tech.brick.easysharer.service.GzipCompressionService;
+import tech.brick.easysharer.service.HashService;
+import tech.brick.easysharer.service.HashService.HashResult;
+import tech.brick.easysharer.service.SharePathResolver;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
 import tech.brick.easysharer.service.UploadService;
 import tech.brick.easysharer.service.TextShareService;
+import tech.brick.easysharer.service.TextShareService.SharePage;
+import tech.brick.easysharer.service.ZipBrowseService;
+import tech.brick.easysharer.service.ZipBrowseService.ArchivePath;
+import tech.brick.easysharer.util.LogSampler;
 import tech.brick.easysharer.util.NetworkUtils;
-import org.springframework.beans.factory.annotation.Value;
+import tech.brick.easysharer.util.TarOutputStream;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -28,8 +62,23 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -42,9 +91,54 @@ public class FileController {
     private final FileService fileService;
     private final UploadService uploadService;
     private final TextShareService textShareService;
+    private final ObjectMapper objectMapper;
+    private final FolderArchiveCache archiveCache;
+    private final GzipCompressionService gzipCompressionService;
+    private final ZipBrowseService zipBrowseService;
+    private final FileOperationService fileOperationService;
+    private final DeltaUploadService deltaUploadService;
+    private final FolderSyncService folderSyncService;
+    private final HashService hashService;
+
+    /**
+     * 文件夹下载支持的打包格式及对应的 Content-Type
+     */
+    private static final Map<String, String> ARCHIVE_CONTENT_TYPES = Map.of(
+            "zip", "application/zip",
+            "tar", "application/x-tar",
+            "tar.gz", "application/gzip");
+
+    /**
+     * 同步下载的压缩包中记录客户端应删除的文件的条目，每行一个路径，有需要删除的文件时作为第一个条目写出
+     */
+    private static final String SYNC_DELETED_ENTRY = ".easysharer-deleted.txt";
+
+    /**
+     * 下载响应中文件内容的 SHA-256（十六进制），只在已有缓存的结果时返回
+     */
+    private static final String CONTENT_SHA256_HEADER = "X-Content-SHA256";
+
+    /**
+     * 文本分享列表每页的最大条数，总数在该响应头中返回
+     */
+    private static final int MAX_TEXT_SHARE_PAGE_SIZE = 500;
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /**
+     * /api/hash 最长等待时间（毫秒），需小于容器的异步请求超时（Tomcat 默认30秒）
+     */
+    private static final long MAX_HASH_WAIT_MILLIS = 25000;
+
+    /**
+     * 打包文件夹时每隔多少个文件记录一次逐个文件的日志
+     */
+    @Value("${file.share.log.per-file-interval:1}")
+    private long perFileLogInterval;
 
-    @Value("${file.upload.max-file-size:500}")
-    private int maxFileSizeMB;
+    /**
+     * 流式列表每写出多少个条目刷新一次
+     */
+    private static final int STREAM_FLUSH_INTERVAL = 1000;
 
     /**
      * 首页 - 返回Vue应用
@@ -61,16 +155,18 @@ public class FileController {
     @ResponseBody
     public ResponseEntity<FilesResponse> getFiles(@RequestParam(value = "path", defaultValue = "") String path) {
         try {
-            log.info("API请求文件列表，原始路径参数: '{}'", path);
+            log.debug("API请求文件列表，原始路径参数: '{}'", path);
             
             // 使用统一的路径清理方法
             String cleanedPath = cleanPath(path);
-            log.info("清理后的路径: '{}'", cleanedPath);
+            log.debug("清理后的路径: '{}'", cleanedPath);
             
-            List<FileInfo> files = fileService.listFiles(cleanedPath);
+            ArchivePath archivePath = locateArchive(cleanedPath);
+            List<FileInfo> files = archivePath != null ? listArchive(archivePath) : fileService.listFiles(cleanedPath);
             
             FilesResponse response = new FilesResponse();
             response.setFiles(files);
+            response.setArchive(archivePath != null);
             response.setCurrentPath(cleanedPath);
             response.setRootPath(fileService.getRootPath());
             response.setUploadEnabled(uploadService.isUploadEnabled());
@@ -101,16 +197,210 @@ public class FileController {
         }
     }
 
+    /**
+     * API: 获取紧凑格式的文件列表（/api/files?format=compact）
+     * 只返回原始字段和共享的图标字典，适合大目录
+     */
+    @GetMapping(value = "/api/files", params = "format=compact")
+    @ResponseBody
+    public ResponseEntity<CompactFilesResponse> getFilesCompact(@RequestParam(value = "path", defaultValue = "") String path) {
+        try {
+            String cleanedPath = cleanPath(path);
+            ArchivePath archivePath = locateArchive(cleanedPath);
+            List<FileInfo> files = archivePath != null ? listArchive(archivePath) : fileService.listFiles(cleanedPath);
+            CompactFileListing listing = CompactFileListing.of(files);
+
+            CompactFilesResponse response = new CompactFilesResponse();
+            response.setColumns(listing.getColumns());
+            response.setIcons(listing.getIcons());
+            response.setFiles(listing.getFiles());
+            response.setArchive(archivePath != null);
+            response.setCurrentPath(cleanedPath);
+            response.setRootPath(fileService.getRootPath());
+            response.setUploadEnabled(uploadService.isUploadEnabled());
+            response.setSuccess(true);
+            response.setMessage("文件列表获取成功");
+
+            log.info("返回紧凑文件列表: 路径='{}', 文件数量={}", cleanedPath, files.size());
+            return ResponseEntity.ok(response);
+
+        } catch (SecurityException e) {
+            log.error("安全错误 - 尝试访问非法路径: {}", path, e);
+            CompactFilesResponse errorResponse = new CompactFilesResponse();
+            errorResponse.setSuccess(false);
+            errorResponse.setMessage("访问被拒绝：路径不安全");
+            return ResponseEntity.status(403).body(errorResponse);
+        } catch (IllegalArgumentException e) {
+            log.error("参数错误 - 路径无效: {}", path, e);
+            CompactFilesResponse errorResponse = new CompactFilesResponse();
+            errorResponse.setSuccess(false);
+            errorResponse.setMessage("路径参数无效: " + e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (Exception e) {
+            log.error("获取文件列表失败: 路径='{}', 错误={}", path, e.getMessage(), e);
+            CompactFilesResponse errorResponse = new CompactFilesResponse();
+            errorResponse.setSuccess(false);
+            errorResponse.setMessage("获取文件列表失败: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
+    /**
+     * API: 流式获取文件列表，边遍历目录边写出，适合包含数十万条目的目录
+     * format=json 输出与 /api/files 相同结构的对象，format=ndjson 每行一个条目；
+     * 默认不排序，sort=true 时需要先读取整个目录再排序
+     */
+    @GetMapping("/api/files/stream")
+    public void streamFiles(@RequestParam(value = "path", defaultValue = "") String path,
+                            @RequestParam(value = "format", defaultValue = "json") String format,
+                            @RequestParam(value = "sort", defaultValue = "false") boolean sort,
+                            HttpServletResponse response) {
+        try {
+            String cleanedPath = cleanPath(path);
+            boolean ndjson = "ndjson".equalsIgnoreCase(format);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+            if (!fileService.isDirectory(cleanedPath)) {
+                log.warn("路径不是文件夹: '{}'", cleanedPath);
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().write("指定路径不是文件夹");
+                return;
+            }
+
+            response.setContentType(ndjson ? "application/x-ndjson" : MediaType.APPLICATION_JSON_VALUE);
+
+            long count = 0;
+            try (Stream<FileInfo> files = sort ? fileService.listFiles(cleanedPath).stream() : fileService.streamFiles(cleanedPath);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                // 由本方法负责换行和刷新，关闭生成器时不关闭响应流
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                ObjectWriter entryWriter = objectMapper.writerFor(FileInfo.class)
+                        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+                if (!ndjson) {
+                    generator.writeStartObject();
+                    generator.writeStringField("currentPath", cleanedPath);
+                    generator.writeBooleanField("uploadEnabled", uploadService.isUploadEnabled());
+                    generator.writeArrayFieldStart("files");
+                }
+
+                Iterator<FileInfo> iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    entryWriter.writeValue(generator, iterator.next());
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                    // 首个条目立即发出，之后分批刷新，降低首字节时间
+                    if (++count == 1 || count % STREAM_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+
+                if (!ndjson) {
+                    generator.writeEndArray();
+                    generator.writeNumberField("count", count);
+                    generator.writeBooleanField("success", true);
+                    generator.writeEndObject();
+                }
+                generator.flush();
+            }
+
+            log.info("流式返回文件列表: 路径='{}', 文件数量={}, 格式={}", cleanedPath, count, ndjson ? "ndjson" : "json");
+
+        } catch (SecurityException e) {
+            log.error("安全错误 - 尝试访问非法路径: {}", path, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_FORBIDDEN, "访问被拒绝：路径不安全");
+        } catch (IllegalArgumentException e) {
+            log.error("参数错误 - 路径无效: {}", path, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_BAD_REQUEST, "路径参数无效: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("流式获取文件列表失败: 路径='{}'", path, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "获取文件列表失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 路径不是目录时判断它是否为ZIP文件或位于ZIP文件内，是则返回压缩包和包内路径
+     */
+    private ArchivePath locateArchive(String cleanedPath) {
+        if (cleanedPath.isEmpty() || fileService.isDirectory(cleanedPath)) {
+            return null;
+        }
+        return zipBrowseService.locate(fileService.resolvePath(cleanedPath));
+    }
+
+    /**
+     * 列出压缩包内的目录，包内目录不存在时返回空列表（与普通目录不存在时一致）
+     */
+    private List<FileInfo> listArchive(ArchivePath archivePath) throws IOException {
+        List<FileInfo> files = zipBrowseService.list(archivePath);
+        if (files == null) {
+            log.warn("压缩包内目录不存在: {}", archivePath);
+            return new ArrayList<>();
+        }
+        log.debug("列出压缩包内目录: {} ({} 项)", archivePath, files.size());
+        return files;
+    }
+
+    /**
+     * 响应尚未提交时写入错误信息
+     */
+    private void writeErrorIfPossible(HttpServletResponse response, int status, String message) {
+        try {
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(status);
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                response.getWriter().write(message);
+            }
+        } catch (IOException | IllegalStateException ioException) {
+            log.error("写入错误响应失败", ioException);
+        }
+    }
+
+    /**
+     * API: 获取文件夹的递归大小和文件数，用于下载文件夹前的预估
+     */
+    @GetMapping("/api/folder-size")
+    @ResponseBody
+    public ResponseEntity<FolderSizeResponse> getFolderSize(@RequestParam(value = "path", defaultValue = "") String path,
+                                                            @RequestParam(value = "timeout", defaultValue = "3000") long timeoutMillis) {
+        try {
+            String cleanedPath = cleanPath(path);
+            if (!fileService.isDirectory(cleanedPath)) {
+                return ResponseEntity.badRequest().body(new FolderSizeResponse(false, "指定路径不是文件夹", cleanedPath, null));
+            }
+
+            DirectoryStats stats = fileService.getDirectoryStats(cleanedPath, Math.min(Math.max(timeoutMillis, 0), 30000));
+            if (stats == null) {
+                return ResponseEntity.ok(new FolderSizeResponse(true, "正在统计文件夹大小，请稍后重试", cleanedPath, null));
+            }
+            return ResponseEntity.ok(new FolderSizeResponse(true, "统计完成", cleanedPath, stats));
+
+        } catch (SecurityException e) {
+            log.error("安全错误 - 尝试访问非法路径: {}", path, e);
+            return ResponseEntity.status(403).body(new FolderSizeResponse(false, "访问被拒绝：路径不安全", path, null));
+        } catch (IllegalArgumentException e) {
+            log.error("参数错误 - 路径无效: {}", path, e);
+            return ResponseEntity.badRequest().body(new FolderSizeResponse(false, "路径参数无效: " + e.getMessage(), path, null));
+        } catch (Exception e) {
+            log.error("获取文件夹大小失败: 路径='{}'", path, e);
+            return ResponseEntity.internalServerError().body(new FolderSizeResponse(false, "获取文件夹大小失败: " + e.getMessage(), path, null));
+        }
+    }
+
     /**
      * API: 获取服务器信息
+     * 地址列表来自缓存的快照，refresh=true 时先重新枚举网络接口
      */
     @GetMapping("/api/server-info")
     @ResponseBody
-    public ResponseEntity<ServerInfo> getServerInfo(HttpServletRequest request) {
+    public ResponseEntity<ServerInfo> getServerInfo(HttpServletRequest request,
+                                                    @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
         try {
             ServerInfo serverInfo = new ServerInfo();
             serverInfo.setPort(request.getServerPort());
-            serverInfo.setLocalIps(NetworkUtils.getAllLocalIpAddresses());
+            serverInfo.setLocalIps(refresh ? NetworkUtils.refresh() : NetworkUtils.getAllLocalIpAddresses());
             
             return ResponseEntity.ok(serverInfo);
         } catch (Exception e) {
@@ -125,20 +415,29 @@ public class FileController {
     @GetMapping("/download")
     public ResponseEntity<Resource> downloadFile(@RequestParam("path") String filePath) {
         try {
-            log.info("下载文件请求，原始路径参数: {}", filePath);
+            log.debug("下载文件请求，原始路径参数: {}", filePath);
             
             // 清理路径
             String cleanedPath = cleanPath(filePath);
-            log.info("清理后的文件路径: {}", cleanedPath);
+            log.debug("清理后的文件路径: {}", cleanedPath);
             
-            // 检查文件是否存在
-            if (!fileService.fileExists(cleanedPath)) {
-                log.warn("文件不存在: {}", cleanedPath);
-                return ResponseEntity.notFound().build();
+            Resource resource;
+            String sha256 = null;
+            if (fileService.fileExists(cleanedPath)) {
+                resource = fileService.getFileAsResource(cleanedPath);
+                // 只取缓存的结果，没有时在后台计算，不等待
+                sha256 = hashService.getSha256ForDownload(fileService.resolvePath(cleanedPath));
+            } else {
+                // 压缩包内的文件：只读取并解压该条目
+                ArchivePath archivePath = locateArchive(cleanedPath);
+                resource = archivePath != null ? zipBrowseService.getEntryResource(archivePath) : null;
+                if (resource == null) {
+                    log.warn("文件不存在: {}", cleanedPath);
+                    return ResponseEntity.notFound().build();
+                }
+                log.debug("下载压缩包内的文件: {}", archivePath);
             }
             
-            Resource resource = fileService.getFileAsResource(cleanedPath);
-            
             // 获取文件名
             String filename = resource.getFilename();
             if (filename == null) {
@@ -163,6 +462,9 @@ public class FileController {
             headers.add(HttpHeaders.CONTENT_DISPOSITION, 
                 "attachment; filename*=UTF-8''" + encodedFilename);
             headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            if (sha256 != null) {
+                headers.add(CONTENT_SHA256_HEADER, sha256);
+            }
             
             return ResponseEntity.ok()
                 .headers(headers)
@@ -181,54 +483,63 @@ public class FileController {
     }
 
     /**
-     * 清理文件路径 - 增强版
+     * API: 计算文件内容的散列（校验值），用于校验下载的文件是否完整
+     * 在后台线程池中计算，等待期间不占用请求线程；wait 毫秒内未完成时返回 complete=false 和已处理的字节数，
+     * 稍后再次请求即可（同一文件的计算不会重复开始）。文件未变化时直接返回缓存的结果。
+     * algo 可选 sha256（默认）、sha1、md5、sha256-tree（分块并行计算，大文件更快，计算方法见 {@link HashService}）
      */
-    private String cleanPath(String path) {
-        log.debug("清理路径开始: 原始路径='{}'", path);
-        
-        if (path == null || path.trim().isEmpty()) {
-            log.debug("路径为空，返回根路径");
-            return "";
-        }
-        
-        path = path.trim();
-        
-        // 统一使用正斜杠
-        path = path.replace("\\", "/");
-        
-        // 移除可能的双斜杠
-        while (path.contains("//")) {
-            path = path.replace("//", "/");
-        }
-        
-        // 移除开头的斜杠
-        while (path.startsWith("/")) {
-            path = path.substring(1);
-        }
-        
-        // 移除结尾的斜杠（除非是根路径）
-        while (path.endsWith("/") && path.length() > 1) {
-            path = path.substring(0, path.length() - 1);
-        }
-        
-        // 处理路径遍历攻击
-        if (path.contains("..")) {
-            log.warn("检测到可能的路径遍历攻击: 原始路径='{}', 清理中...", path);
-            path = path.replace("..", "");
-            if (path.contains("..")) {
-                // 再次检查，防止嵌套的路径遍历
-                throw new SecurityException("检测到路径遍历攻击尝试");
-            }
-        }
-        
-        // 检查路径是否包含非法字符
-        if (path.matches(".*[<>:\"|?*].*")) {
-            log.warn("路径包含非法字符: '{}'", path);
-            throw new IllegalArgumentException("路径包含非法字符");
+    @GetMapping("/api/hash")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<HashResponse>> getHash(@RequestParam("path") String path,
+                                                                   @RequestParam(value = "algo", defaultValue = HashService.SHA256) String algorithm,
+                                                                   @RequestParam(value = "wait", defaultValue = "10000") long waitMillis) {
+        String cleanedPath;
+        SharePath file;
+        CompletableFuture<HashResult> future;
+        try {
+            cleanedPath = cleanPath(path);
+            file = fileService.resolvePath(cleanedPath);
+            future = hashService.hash(file, algorithm);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("计算文件散列失败 - 参数错误: '{}', {}", path, e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(new HashResponse(false, e.getMessage(), path, null, -1)));
+        } catch (SecurityException e) {
+            log.warn("计算文件散列失败 - 安全错误: '{}', {}", path, e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new HashResponse(false, "访问被拒绝：路径不安全", path, null, -1)));
+        } catch (NoSuchFileException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new HashResponse(false, "文件不存在", path, null, -1)));
+        } catch (IOException e) {
+            log.error("计算文件散列失败: '{}'", path, e);
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                    .body(new HashResponse(false, "计算失败: " + e.getMessage(), path, null, -1)));
         }
-        
-        log.debug("路径清理完成: 最终路径='{}'", path);
-        return path;
+
+        long wait = Math.min(Math.max(waitMillis, 0), MAX_HASH_WAIT_MILLIS);
+        return future
+                .thenApply(result -> ResponseEntity.ok(new HashResponse(true, "计算完成", cleanedPath, result, result.getSize())))
+                .orTimeout(wait, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        return ResponseEntity.ok(new HashResponse(true, "正在计算，请稍后重试", cleanedPath, null,
+                                hashService.getBytesHashed(file, algorithm)));
+                    }
+                    return ResponseEntity.internalServerError()
+                            .body(new HashResponse(false, "计算失败: " + cause.getMessage(), cleanedPath, null, -1));
+                });
+    }
+
+    /**
+     * 清理文件路径：统一斜杠、去掉多余的斜杠和 . 路径段
+     * 包含 .. 路径段时抛出 SecurityException，包含非法字符时抛出 IllegalArgumentException
+     */
+    private String cleanPath(String path) {
+        String cleaned = SharePathResolver.clean(path);
+        log.debug("路径清理完成: 原始路径='{}', 最终路径='{}'", path, cleaned);
+        return cleaned;
     }
 
     /**
@@ -239,11 +550,11 @@ public class FileController {
     public ResponseEntity<String> getShareLink(@RequestParam String filePath, 
                                              HttpServletRequest request) {
         try {
-            log.info("生成分享链接请求，原始文件路径: '{}'", filePath);
+            log.debug("生成分享链接请求，原始文件路径: '{}'", filePath);
             
             // 清理文件路径
             String cleanedPath = cleanPath(filePath);
-            log.info("清理后的文件路径: '{}'", cleanedPath);
+            log.debug("清理后的文件路径: '{}'", cleanedPath);
             
             if (!fileService.fileExists(cleanedPath)) {
                 log.warn("文件不存在，无法生成分享链接: '{}'", cleanedPath);
@@ -275,60 +586,35 @@ public class FileController {
     @PostMapping("/api/upload")
     @ResponseBody
     public ResponseEntity<UploadResponse> uploadFiles(@RequestParam("files") List<MultipartFile> files,
-                                                     @RequestParam(value = "path", defaultValue = "") String path) {
+                                                     @RequestParam(value = "path", defaultValue = "") String path,
+                                                     @RequestParam(value = "uploadId", required = false) String uploadId) {
         try {
-            log.info("收到上传请求，文件数量: {}, 原始目标路径: '{}'", files.size(), path);
-            log.info("上传功能启用状态: {}", uploadService.isUploadEnabled());
-            
             // 清理上传路径
             String cleanedPath = cleanPath(path);
-            log.info("清理后的上传路径: '{}'", cleanedPath);
-            
-            // 输出每个文件的详细信息
-            for (int i = 0; i < files.size(); i++) {
-                MultipartFile file = files.get(i);
-                log.info("文件[{}]: 名称='{}', 大小={} bytes, 类型='{}'", 
-                        i, file.getOriginalFilename(), file.getSize(), file.getContentType());
-            }
-            
-            if (!uploadService.isUploadEnabled()) {
-                log.warn("上传功能未启用，返回错误");
-                return ResponseEntity.badRequest()
-                    .body(new UploadResponse(false, "文件上传功能未启用", null));
-            }
+            log.info("收到上传请求，文件数量: {}, 目标路径: '{}'", files.size(), cleanedPath);
 
-            // 验证文件
-            for (MultipartFile file : files) {
-                if (file.isEmpty()) {
-                    log.warn("发现空文件: {}", file.getOriginalFilename());
-                    return ResponseEntity.badRequest()
-                        .body(new UploadResponse(false, "不能上传空文件", null));
-                }
-                
-                String filename = file.getOriginalFilename();
-                if (filename == null || filename.trim().isEmpty()) {
-                    log.warn("发现无名文件");
-                    return ResponseEntity.badRequest()
-                        .body(new UploadResponse(false, "文件名不能为空", null));
-                }
-                
-                // 检查文件大小
-                long maxFileSizeBytes = (long) maxFileSizeMB * 1024 * 1024;
-                if (file.getSize() > maxFileSizeBytes) {
-                    log.warn("文件过大: {} - {} bytes, 限制: {} MB", filename, file.getSize(), maxFileSizeMB);
-                    return ResponseEntity.badRequest()
-                        .body(new UploadResponse(false, "文件 " + filename + " 过大，最大支持" + maxFileSizeMB + "MB", null));
-                }
+            // 文件校验与逐个文件的日志在 UploadService 中一次完成
+            List<FileUploadResult> results = uploadService.uploadFiles(files, cleanedPath, uploadId);
+            List<String> uploadedFiles = results.stream()
+                    .filter(FileUploadResult::isSuccess)
+                    .map(FileUploadResult::getStoredPath)
+                    .collect(Collectors.toList());
+
+            String target = cleanedPath.isEmpty() ? "根目录" : cleanedPath;
+            if (uploadedFiles.size() == results.size()) {
+                String message = String.format("成功上传 %d 个文件到路径: %s", uploadedFiles.size(), target);
+                log.info("上传成功: {}, 文件: {}", message, uploadedFiles);
+                return ResponseEntity.ok(new UploadResponse(true, message, uploadedFiles, results));
             }
 
-            log.info("开始调用uploadService.uploadFiles，使用清理后的路径: '{}'", cleanedPath);
-            List<String> uploadedFiles = uploadService.uploadFiles(files, cleanedPath);
-            
-            String message = String.format("成功上传 %d 个文件到路径: %s", uploadedFiles.size(), 
-                    cleanedPath.isEmpty() ? "根目录" : cleanedPath);
-            log.info("上传成功: {}, 文件: {}", message, uploadedFiles);
-            return ResponseEntity.ok(new UploadResponse(true, message, uploadedFiles));
-            
+            // 部分失败：成功写入的文件保留，逐个返回结果
+            String message = String.format("上传到路径 %s: 成功 %d 个，失败 %d 个", target,
+                    uploadedFiles.size(), results.size() - uploadedFiles.size());
+            log.warn("部分文件上传失败: {}", message);
+            HttpStatus status = uploadedFiles.isEmpty() ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.MULTI_STATUS;
+            return ResponseEntity.status(status)
+                .body(new UploadResponse(false, message, uploadedFiles, results));
+
         } catch (IllegalStateException e) {
             log.error("文件上传失败 - 状态错误: {}", e.getMessage(), e);
             return ResponseEntity.badRequest()
@@ -353,91 +639,352 @@ public class FileController {
     }
 
     /**
-     * 获取分享链接的基础URL（使用真实IP地址）
+     * 压缩包上传：请求体为 zip、tar 或 tar.gz，边接收边解压到 path 下，用于一次上传大量小文件
+     * 结果的第一项是整个压缩包的结果，其后是跳过或失败的条目；可以用 uploadId 查询已接收的字节数
      */
-    private String getShareBaseUrl(HttpServletRequest request) {
-        String scheme = request.getScheme();
-        String serverName = NetworkUtils.getLocalIpAddress(); // 使用真实IP地址
-        int serverPort = request.getServerPort();
-        String contextPath = request.getContextPath();
-        
-        StringBuilder url = new StringBuilder();
-        url.append(scheme).append("://").append(serverName);
-        
-        if ((scheme.equals("http") && serverPort != 80) || 
-            (scheme.equals("https") && serverPort != 443)) {
-            url.append(":").append(serverPort);
+    @PostMapping(value = "/api/upload/archive", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            "application/zip", "application/x-tar", "application/gzip"})
+    @ResponseBody
+    public ResponseEntity<UploadResponse> uploadArchive(@RequestParam(value = "path", defaultValue = "") String path,
+                                                        @RequestParam(value = "format", defaultValue = "zip") String format,
+                                                        @RequestParam(value = "name", required = false) String name,
+                                                        @RequestParam(value = "uploadId", required = false) String uploadId,
+                                                        HttpServletRequest request) {
+        try {
+            String cleanedPath = cleanPath(path);
+            format = format.trim().toLowerCase(Locale.ROOT);
+            String archiveName = name != null && !name.isBlank() ? name : "archive." + format;
+            log.info("收到压缩包上传请求: '{}', 格式: {}, 目标路径: '{}'", archiveName, format, cleanedPath);
+
+            List<FileUploadResult> results = uploadService.uploadArchive(request.getInputStream(), format, archiveName,
+                    request.getContentLengthLong(), cleanedPath, uploadId);
+            FileUploadResult archive = results.get(0);
+            if (archive.isSuccess()) {
+                return ResponseEntity.ok(new UploadResponse(true, archive.getMessage(), List.of(archive.getStoredPath()), results));
+            }
+            // 部分条目被跳过或失败，其余文件已写入
+            return ResponseEntity.status(HttpStatus.MULTI_STATUS)
+                .body(new UploadResponse(false, archive.getMessage(), List.of(archive.getStoredPath()), results));
+
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("压缩包上传失败 - 参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
+        } catch (SecurityException e) {
+            log.warn("压缩包上传失败 - 安全错误: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
+        } catch (IOException e) {
+            log.error("压缩包上传失败 - IO错误: {}", e.getMessage());
+            return ResponseEntity.internalServerError()
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
         }
-        
-        url.append(contextPath);
-        return url.toString();
     }
 
     /**
-     * 调试端点 - 检查配置状态
+     * 查询进行中的上传批次各文件的写入进度
      */
-    @GetMapping("/api/debug/config")
+    @GetMapping("/api/upload/progress")
     @ResponseBody
-    public ResponseEntity<java.util.Map<String, Object>> getConfigStatus() {
-        java.util.Map<String, Object> config = new java.util.HashMap<>();
-        config.put("uploadEnabled", uploadService.isUploadEnabled());
-        config.put("timestamp", java.time.LocalDateTime.now().toString());
-        config.put("serverRunning", true);
-        
-        return ResponseEntity.ok(config);
+    public ResponseEntity<UploadResponse> getUploadProgress(@RequestParam("uploadId") String uploadId) {
+        List<FileUploadResult> results = uploadService.getUploadProgress(uploadId);
+        if (results == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new UploadResponse(false, "上传批次不存在或已完成", null));
+        }
+        return ResponseEntity.ok(new UploadResponse(true, "上传进行中", null, results));
     }
 
     /**
-     * API: 创建文本分享
+     * 增量上传第一步：获取服务器上已有文件的分块签名
      */
-    @PostMapping("/api/text-share")
+    @GetMapping("/api/upload/delta/signature")
     @ResponseBody
-    public ResponseEntity<TextShareResponse> createTextShare(@RequestBody CreateTextShareRequest request, 
-                                                           HttpServletRequest httpRequest) {
+    public ResponseEntity<DeltaSignature> getDeltaSignature(@RequestParam("path") String path,
+                                                            @RequestParam(value = "blockSize", defaultValue = "0") int blockSize) {
         try {
-            String ipAddress = getClientIpAddress(httpRequest);
-            
-            log.info("创建文本分享请求: IP={}, 类型={}, 内容长度={}", 
-                    ipAddress, request.getType(), request.getContent() != null ? request.getContent().length() : 0);
-            
-            TextShare textShare = textShareService.createTextShare(
-                    request.getContent(), 
-                    ipAddress, 
-                    request.getNickname(), 
-                    request.getType()
-            );
-            
-            return ResponseEntity.ok(new TextShareResponse(true, "分享创建成功", textShare));
-            
-        } catch (IllegalArgumentException e) {
-            log.warn("创建文本分享失败 - 参数错误: {}", e.getMessage());
-            return ResponseEntity.badRequest()
-                    .body(new TextShareResponse(false, e.getMessage(), null));
-        } catch (Exception e) {
-            log.error("创建文本分享失败", e);
-            return ResponseEntity.internalServerError()
-                    .body(new TextShareResponse(false, "分享创建失败: " + e.getMessage(), null));
+            return ResponseEntity.ok(deltaUploadService.getSignature(cleanPath(path), blockSize));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("获取文件签名失败 - 参数错误: '{}', {}", path, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (SecurityException e) {
+            log.warn("获取文件签名失败 - 安全错误: '{}', {}", path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            log.error("获取文件签名失败: '{}'", path, e);
+            return ResponseEntity.internalServerError().build();
         }
     }
-    
+
     /**
-     * API: 获取所有文本分享
+     * 增量上传第二步：请求体为增量指令（见 {@link DeltaUploadService}），服务器重建新文件后替换原文件
+     * baseSize、baseModified、blockSize 取自签名，size 为新文件大小，sha256 可选
      */
-    @GetMapping("/api/text-shares")
+    @PostMapping(value = "/api/upload/delta", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
     @ResponseBody
-    public ResponseEntity<List<TextShare>> getAllTextShares() {
+    public ResponseEntity<UploadResponse> uploadDelta(@RequestParam("path") String path,
+                                                      @RequestParam("baseSize") long baseSize,
+                                                      @RequestParam("baseModified") long baseModified,
+                                                      @RequestParam("blockSize") int blockSize,
+                                                      @RequestParam("size") long size,
+                                                      @RequestParam(value = "sha256", required = false) String sha256,
+                                                      HttpServletRequest request) {
         try {
-            List<TextShare> shares = textShareService.getAllTextShares();
-            log.info("获取文本分享列表: 数量={}", shares.size());
-            return ResponseEntity.ok(shares);
-        } catch (Exception e) {
-            log.error("获取文本分享列表失败", e);
-            return ResponseEntity.internalServerError().build();
+            String cleanedPath = cleanPath(path);
+            log.info("收到增量上传请求: '{}', 新大小: {} bytes", cleanedPath, size);
+            FileUploadResult result = deltaUploadService.applyDelta(cleanedPath, baseSize, baseModified, blockSize,
+                    size, sha256, request.getInputStream());
+            return ResponseEntity.ok(new UploadResponse(true, "文件已更新: " + result.getMessage(),
+                    List.of(result.getStoredPath()), List.of(result)));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("增量上传失败 - 参数错误: '{}', {}", path, e.getMessage());
+            return ResponseEntity.badRequest()
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
+        } catch (SecurityException e) {
+            log.warn("增量上传失败 - 安全错误: '{}', {}", path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
+        } catch (ConcurrentModificationException e) {
+            log.warn("增量上传失败 - 文件已被修改: '{}'", path);
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new UploadResponse(false, "上传失败: " + e.getFile() + " 不存在", null));
+        } catch (IOException e) {
+            log.error("增量上传失败 - IO错误: '{}'", path, e);
+            return ResponseEntity.internalServerError()
+                .body(new UploadResponse(false, "上传失败: " + e.getMessage(), null));
         }
     }
-    
+
     /**
-     * API: 根据ID获取文本分享
+     * 新建文件夹
+     */
+    @PostMapping("/api/files/mkdir")
+    @ResponseBody
+    public ResponseEntity<FileOperationResponse> createDirectory(@RequestParam(value = "path", defaultValue = "") String path,
+                                                                 @RequestParam("name") String name) {
+        return runFileOperation("新建文件夹", path, () -> {
+            String created = fileOperationService.createDirectory(path, name);
+            return new FileOperationResponse(true, "文件夹已创建", created, null);
+        });
+    }
+
+    /**
+     * 重命名文件或文件夹
+     */
+    @PostMapping("/api/files/rename")
+    @ResponseBody
+    public ResponseEntity<FileOperationResponse> renameFile(@RequestParam("path") String path,
+                                                            @RequestParam("name") String name) {
+        return runFileOperation("重命名", path, () -> {
+            FileOperationProgress progress = fileOperationService.rename(path, name);
+            return new FileOperationResponse(true, "重命名成功", progress.getTarget(), progress);
+        });
+    }
+
+    /**
+     * 移动文件或文件夹到 target 目录下
+     * 同一文件系统内是原子的改名，不复制数据；跨文件系统时复制后删除，可通过 operationId 查询进度
+     */
+    @PostMapping("/api/files/move")
+    @ResponseBody
+    public ResponseEntity<FileOperationResponse> moveFile(@RequestParam("path") String path,
+                                                          @RequestParam(value = "target", defaultValue = "") String target,
+                                                          @RequestParam(value = "operationId", required = false) String operationId) {
+        return runFileOperation("移动", path, () -> {
+            FileOperationProgress progress = fileOperationService.move(path, target, operationId);
+            return new FileOperationResponse(true, "移动成功", progress.getTarget(), progress);
+        });
+    }
+
+    /**
+     * 复制文件或文件夹到 target 目录下，可通过 operationId 查询进度
+     */
+    @PostMapping("/api/files/copy")
+    @ResponseBody
+    public ResponseEntity<FileOperationResponse> copyFile(@RequestParam("path") String path,
+                                                          @RequestParam(value = "target", defaultValue = "") String target,
+                                                          @RequestParam(value = "operationId", required = false) String operationId) {
+        return runFileOperation("复制", path, () -> {
+            FileOperationProgress progress = fileOperationService.copy(path, target, operationId);
+            return new FileOperationResponse(true, "复制成功", progress.getTarget(), progress);
+        });
+    }
+
+    /**
+     * 删除文件或文件夹，可通过 operationId 查询进度
+     */
+    @PostMapping("/api/files/delete")
+    @ResponseBody
+    public ResponseEntity<FileOperationResponse> deleteFile(@RequestParam("path") String path,
+                                                            @RequestParam(value = "operationId", required = false) String operationId) {
+        return runFileOperation("删除", path, () -> {
+            FileOperationProgress progress = fileOperationService.delete(path, operationId);
+            return new FileOperationResponse(true, "删除成功", progress.getSource(), progress);
+        });
+    }
+
+    /**
+     * 查询进行中的移动、复制、删除操作的进度
+     */
+    @GetMapping("/api/files/operation-progress")
+    @ResponseBody
+    public ResponseEntity<FileOperationResponse> getFileOperationProgress(@RequestParam("operationId") String operationId) {
+        FileOperationProgress progress = fileOperationService.getProgress(operationId);
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new FileOperationResponse(false, "操作不存在或已完成", null, null));
+        }
+        return ResponseEntity.ok(new FileOperationResponse(true, "操作进行中", progress.getTarget(), progress));
+    }
+
+    @FunctionalInterface
+    private interface FileOperation {
+        FileOperationResponse run() throws IOException;
+    }
+
+    /**
+     * 执行文件操作并把异常转换为对应的状态码
+     */
+    private ResponseEntity<FileOperationResponse> runFileOperation(String action, String path, FileOperation operation) {
+        try {
+            return ResponseEntity.ok(operation.run());
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("{}失败 - 参数错误: '{}', {}", action, path, e.getMessage());
+            return ResponseEntity.badRequest()
+                .body(new FileOperationResponse(false, action + "失败: " + e.getMessage(), null, null));
+        } catch (SecurityException e) {
+            log.warn("{}失败 - 安全错误: '{}', {}", action, path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new FileOperationResponse(false, action + "失败: " + e.getMessage(), null, null));
+        } catch (NoSuchFileException e) {
+            log.warn("{}失败 - 不存在: {}", action, e.getFile());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new FileOperationResponse(false, action + "失败: " + e.getFile() + " 不存在", null, null));
+        } catch (FileAlreadyExistsException e) {
+            log.warn("{}失败 - 已存在: {}", action, e.getFile());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new FileOperationResponse(false, action + "失败: " + e.getFile() + " 已存在", null, null));
+        } catch (IOException e) {
+            log.error("{}失败 - IO错误: '{}'", action, path, e);
+            return ResponseEntity.internalServerError()
+                .body(new FileOperationResponse(false, action + "失败: " + e.getMessage(), null, null));
+        }
+    }
+
+    /**
+     * 获取分享链接的基础URL（使用真实IP地址）
+     */
+    private String getShareBaseUrl(HttpServletRequest request) {
+        String scheme = request.getScheme();
+        String serverName = NetworkUtils.getLocalIpAddress(); // 使用真实IP地址
+        int serverPort = request.getServerPort();
+        String contextPath = request.getContextPath();
+        
+        StringBuilder url = new StringBuilder();
+        url.append(scheme).append("://").append(serverName);
+        
+        if ((scheme.equals("http") && serverPort != 80) || 
+            (scheme.equals("https") && serverPort != 443)) {
+            url.append(":").append(serverPort);
+        }
+        
+        url.append(contextPath);
+        return url.toString();
+    }
+
+    /**
+     * 调试端点 - 检查配置状态
+     */
+    @GetMapping("/api/debug/config")
+    @ResponseBody
+    public ResponseEntity<java.util.Map<String, Object>> getConfigStatus() {
+        java.util.Map<String, Object> config = new java.util.HashMap<>();
+        config.put("uploadEnabled", uploadService.isUploadEnabled());
+        config.put("fileOperationsEnabled", fileOperationService.isEnabled());
+        config.put("timestamp", java.time.LocalDateTime.now().toString());
+        config.put("serverRunning", true);
+        
+        return ResponseEntity.ok(config);
+    }
+
+    /**
+     * API: 创建文本分享
+     */
+    @PostMapping("/api/text-share")
+    @ResponseBody
+    public ResponseEntity<TextShareResponse> createTextShare(@RequestBody CreateTextShareRequest request, 
+                                                           HttpServletRequest httpRequest) {
+        try {
+            String ipAddress = getClientIpAddress(httpRequest);
+            
+            log.info("创建文本分享请求: IP={}, 类型={}, 内容长度={}", 
+                    ipAddress, request.getType(), request.getContent() != null ? request.getContent().length() : 0);
+            
+            TextShare textShare = textShareService.createTextShare(
+                    request.getContent(), 
+                    ipAddress, 
+                    request.getNickname(), 
+                    request.getType()
+            );
+            
+            return ResponseEntity.ok(new TextShareResponse(true, "分享创建成功", textShare));
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("创建文本分享失败 - 参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new TextShareResponse(false, e.getMessage(), null));
+        } catch (Exception e) {
+            log.error("创建文本分享失败", e);
+            return ResponseEntity.internalServerError()
+                    .body(new TextShareResponse(false, "分享创建失败: " + e.getMessage(), null));
+        }
+    }
+    
+    /**
+     * API: 分页获取文本分享（按时间倒序），每条只返回简短预览，全文通过 /api/text-share/{id}/content 获取
+     * 符合条件的总数在响应头 X-Total-Count 中
+     */
+    @GetMapping("/api/text-shares")
+    @ResponseBody
+    public ResponseEntity<List<TextShare>> getAllTextShares(@RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        try {
+            SharePage page = textShareService.getAllTextShares(offset, Math.max(1, Math.min(limit, MAX_TEXT_SHARE_PAGE_SIZE)));
+            log.info("获取文本分享列表: 数量={}, 总数={}", page.getShares().size(), page.getTotal());
+            return ResponseEntity.ok()
+                    .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotal()))
+                    .body(page.getShares());
+        } catch (Exception e) {
+            log.error("获取文本分享列表失败", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * API: 全文检索文本分享（内容、昵称、类型），按相关度排序
+     */
+    @GetMapping("/api/text-shares/search")
+    @ResponseBody
+    public ResponseEntity<List<TextShare>> searchTextShares(@RequestParam("q") String query,
+                                                            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        try {
+            long start = System.currentTimeMillis();
+            List<TextShare> shares = textShareService.searchTextShares(query, Math.max(1, Math.min(limit, 500)));
+            log.info("检索文本分享: 关键词='{}', 结果数量={}, 耗时={}ms", query, shares.size(), System.currentTimeMillis() - start);
+            return ResponseEntity.ok(shares);
+        } catch (Exception e) {
+            log.error("检索文本分享失败: 关键词='{}'", query, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * API: 根据ID获取文本分享
      */
     @GetMapping("/api/text-share/{id}")
     @ResponseBody
@@ -456,16 +1003,45 @@ public class FileController {
     }
     
     /**
-     * API: 根据IP获取文本分享
+     * API: 获取文本分享的完整内容（text/plain），支持 Range 分段读取
+     */
+    @GetMapping("/api/text-share/{id}/content")
+    public ResponseEntity<Resource> getTextShareContent(@PathVariable String id) {
+        try {
+            Resource content = textShareService.getTextShareContent(id);
+            if (content == null) {
+                return ResponseEntity.notFound().build();
+            }
+            // 内容不可修改，使用强 ETag：Tomcat 不压缩带强 ETag 的响应，Range 请求返回的字节与 Content-Range 一致
+            long lastModified = content.lastModified();
+            return ResponseEntity.ok()
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .eTag("\"" + id + "-" + Long.toHexString(lastModified) + "\"")
+                    .lastModified(lastModified)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + content.getFilename() + "\"")
+                    .body(content);
+        } catch (Exception e) {
+            log.error("获取文本分享内容失败: ID={}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * API: 根据IP分页获取文本分享，总数在响应头 X-Total-Count 中
      */
     @GetMapping("/api/text-shares/my")
     @ResponseBody
-    public ResponseEntity<List<TextShare>> getMyTextShares(HttpServletRequest request) {
+    public ResponseEntity<List<TextShare>> getMyTextShares(HttpServletRequest request,
+                                                           @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                           @RequestParam(value = "limit", defaultValue = "50") int limit) {
         try {
             String ipAddress = getClientIpAddress(request);
-            List<TextShare> shares = textShareService.getTextSharesByIp(ipAddress);
-            log.info("获取我的文本分享: IP={}, 数量={}", ipAddress, shares.size());
-            return ResponseEntity.ok(shares);
+            SharePage page = textShareService.getTextSharesByIp(ipAddress, offset,
+                    Math.max(1, Math.min(limit, MAX_TEXT_SHARE_PAGE_SIZE)));
+            log.info("获取我的文本分享: IP={}, 数量={}, 总数={}", ipAddress, page.getShares().size(), page.getTotal());
+            return ResponseEntity.ok()
+                    .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotal()))
+                    .body(page.getShares());
         } catch (Exception e) {
             log.error("获取我的文本分享失败", e);
             return ResponseEntity.internalServerError().build();
@@ -512,6 +1088,76 @@ public class FileController {
         }
     }
     
+    /**
+     * API: 获取热点文件缓存统计信息
+     */
+    @GetMapping("/api/hot-cache/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getHotCacheStats() {
+        try {
+            return ResponseEntity.ok(fileService.getHotCacheStatistics());
+        } catch (Exception e) {
+            log.error("获取热点文件缓存统计失败", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * API: 获取文件夹压缩包缓存统计信息
+     */
+    @GetMapping("/api/archive-cache/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getArchiveCacheStats() {
+        try {
+            return ResponseEntity.ok(archiveCache.getStatistics());
+        } catch (Exception e) {
+            log.error("获取压缩包缓存统计失败", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * API: 获取文件夹同步的目录缓存统计信息
+     */
+    @GetMapping("/api/sync/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getSyncStats() {
+        try {
+            return ResponseEntity.ok(folderSyncService.getStatistics());
+        } catch (Exception e) {
+            log.error("获取文件夹同步统计失败", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * API: 获取文件散列缓存统计信息
+     */
+    @GetMapping("/api/hash/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getHashStats() {
+        try {
+            return ResponseEntity.ok(hashService.getStatistics());
+        } catch (Exception e) {
+            log.error("获取文件散列统计失败", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * API: 获取ZIP浏览索引缓存统计信息
+     */
+    @GetMapping("/api/zip-browse/stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getZipBrowseStats() {
+        try {
+            return ResponseEntity.ok(zipBrowseService.getStatistics());
+        } catch (Exception e) {
+            log.error("获取ZIP浏览缓存统计失败", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * 获取客户端真实IP地址
      */
@@ -539,6 +1185,10 @@ public class FileController {
         private boolean uploadEnabled;
         private boolean success;
         private String message;
+        /**
+         * 当前路径是ZIP文件或位于ZIP文件内，列出的是压缩包中的条目
+         */
+        private boolean archive;
 
         // Getters and setters
         public List<FileInfo> getFiles() { return files; }
@@ -553,6 +1203,79 @@ public class FileController {
         public void setSuccess(boolean success) { this.success = success; }
         public String getMessage() { return message; }
         public void setMessage(String message) { this.message = message; }
+        public boolean isArchive() { return archive; }
+        public void setArchive(boolean archive) { this.archive = archive; }
+    }
+
+    /**
+     * 紧凑格式文件列表响应对象
+     */
+    public static class CompactFilesResponse {
+        private List<String> columns;
+        private List<CompactFileListing.IconEntry> icons;
+        private List<Object[]> files;
+        private String currentPath;
+        private String rootPath;
+        private boolean uploadEnabled;
+        private boolean success;
+        private String message;
+        /**
+         * 当前路径是ZIP文件或位于ZIP文件内，列出的是压缩包中的条目
+         */
+        private boolean archive;
+
+        public List<String> getColumns() { return columns; }
+        public void setColumns(List<String> columns) { this.columns = columns; }
+        public List<CompactFileListing.IconEntry> getIcons() { return icons; }
+        public void setIcons(List<CompactFileListing.IconEntry> icons) { this.icons = icons; }
+        public List<Object[]> getFiles() { return files; }
+        public void setFiles(List<Object[]> files) { this.files = files; }
+        public String getCurrentPath() { return currentPath; }
+        public void setCurrentPath(String currentPath) { this.currentPath = currentPath; }
+        public String getRootPath() { return rootPath; }
+        public void setRootPath(String rootPath) { this.rootPath = rootPath; }
+        public boolean isUploadEnabled() { return uploadEnabled; }
+        public void setUploadEnabled(boolean uploadEnabled) { this.uploadEnabled = uploadEnabled; }
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+        public boolean isArchive() { return archive; }
+        public void setArchive(boolean archive) { this.archive = archive; }
+    }
+
+    /**
+     * 文件夹大小响应对象，统计尚未完成时 complete 为 false
+     */
+    public static class FolderSizeResponse {
+        private final boolean success;
+        private final String message;
+        private final String path;
+        private final boolean complete;
+        private final long totalSize;
+        private final String formattedSize;
+        private final long fileCount;
+        private final long dirCount;
+
+        public FolderSizeResponse(boolean success, String message, String path, DirectoryStats stats) {
+            this.success = success;
+            this.message = message;
+            this.path = path;
+            this.complete = stats != null;
+            this.totalSize = stats != null ? stats.getTotalSize() : 0;
+            this.formattedSize = stats != null ? FileInfo.formatSize(stats.getTotalSize()) : "-";
+            this.fileCount = stats != null ? stats.getFileCount() : 0;
+            this.dirCount = stats != null ? stats.getDirCount() : 0;
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public String getPath() { return path; }
+        public boolean isComplete() { return complete; }
+        public long getTotalSize() { return totalSize; }
+        public String getFormattedSize() { return formattedSize; }
+        public long getFileCount() { return fileCount; }
+        public long getDirCount() { return dirCount; }
     }
 
     /**
@@ -575,16 +1298,23 @@ public class FileController {
         private final boolean success;
         private final String message;
         private final List<String> uploadedFiles;
+        private final List<FileUploadResult> results;
         
         public UploadResponse(boolean success, String message, List<String> uploadedFiles) {
+            this(success, message, uploadedFiles, null);
+        }
+        
+        public UploadResponse(boolean success, String message, List<String> uploadedFiles, List<FileUploadResult> results) {
             this.success = success;
             this.message = message;
             this.uploadedFiles = uploadedFiles;
+            this.results = results;
         }
         
         public boolean isSuccess() { return success; }
         public String getMessage() { return message; }
         public List<String> getUploadedFiles() { return uploadedFiles; }
+        public List<FileUploadResult> getResults() { return results; }
     }
 
     /**
@@ -606,6 +1336,72 @@ public class FileController {
         public TextShare getTextShare() { return textShare; }
     }
 
+    /**
+     * 文件夹同步请求对象：客户端本地已有文件的清单
+     */
+    public static class SyncRequest {
+        private List<SyncManifestEntry> files = new ArrayList<>();
+
+        public List<SyncManifestEntry> getFiles() { return files; }
+        public void setFiles(List<SyncManifestEntry> files) { this.files = files; }
+    }
+
+    /**
+     * 文件夹同步计划响应对象
+     */
+    public static class SyncPlanResponse {
+        private final boolean success;
+        private final String message;
+        private final SyncPlan plan;
+
+        public SyncPlanResponse(boolean success, String message, SyncPlan plan) {
+            this.success = success;
+            this.message = message;
+            this.plan = plan;
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public SyncPlan getPlan() { return plan; }
+    }
+
+    /**
+     * 文件散列响应对象，计算尚未完成时 complete 为 false，bytesHashed 为已处理的字节数
+     */
+    public static class HashResponse {
+        private final boolean success;
+        private final String message;
+        private final String path;
+        private final boolean complete;
+        private final String algorithm;
+        private final String digest;
+        private final long size;
+        private final boolean cached;
+        private final long bytesHashed;
+
+        public HashResponse(boolean success, String message, String path, HashResult result, long bytesHashed) {
+            this.success = success;
+            this.message = message;
+            this.path = path;
+            this.complete = result != null;
+            this.algorithm = result != null ? result.getAlgorithm() : null;
+            this.digest = result != null ? result.getDigest() : null;
+            this.size = result != null ? result.getSize() : -1;
+            this.cached = result != null && result.isCached();
+            this.bytesHashed = bytesHashed;
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public String getPath() { return path; }
+        public boolean isComplete() { return complete; }
+        public String getAlgorithm() { return algorithm; }
+        public String getDigest() { return digest; }
+        public long getSize() { return size; }
+        public boolean isCached() { return cached; }
+        public long getBytesHashed() { return bytesHashed; }
+    }
+
     /**
      * 文本分享请求对象
      */
@@ -639,17 +1435,53 @@ public class FileController {
     }
 
     /**
-     * 文件夹下载 - 流式ZIP打包
+     * 文件操作响应对象
+     */
+    public static class FileOperationResponse {
+        private final boolean success;
+        private final String message;
+        /**
+         * 操作后的相对路径（删除时为被删除的路径）
+         */
+        private final String path;
+        private final FileOperationProgress progress;
+
+        public FileOperationResponse(boolean success, String message, String path, FileOperationProgress progress) {
+            this.success = success;
+            this.message = message;
+            this.path = path;
+            this.progress = progress;
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public String getPath() { return path; }
+        public FileOperationProgress getProgress() { return progress; }
+    }
+
+    /**
+     * 文件夹下载 - 流式打包
+     * format 为 zip（默认）、tar 或 tar.gz；tar.gz 在线程池中分块并行压缩
      */
     @GetMapping("/download-folder")
     public void downloadFolder(@RequestParam("path") String folderPath, 
+                              @RequestParam(value = "format", defaultValue = "zip") String format,
+                              HttpServletRequest request,
                               HttpServletResponse response) {
+        ArchiveWriter cacheWriter = null;
         try {
-            log.info("文件夹下载请求，原始路径: '{}'", folderPath);
+            log.debug("文件夹下载请求，原始路径: '{}', 格式: {}", folderPath, format);
+            
+            format = format.trim().toLowerCase(Locale.ROOT);
+            if (!ARCHIVE_CONTENT_TYPES.containsKey(format)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("不支持的打包格式: " + format);
+                return;
+            }
             
             // 清理路径
             String cleanedPath = cleanPath(folderPath);
-            log.info("清理后的文件夹路径: '{}'", cleanedPath);
+            log.debug("清理后的文件夹路径: '{}'", cleanedPath);
             
             // 检查是否为文件夹
             if (!fileService.isDirectory(cleanedPath)) {
@@ -659,33 +1491,62 @@ public class FileController {
                 return;
             }
             
-            // 获取文件夹名称作为ZIP文件名
+            // 获取文件夹名称作为压缩包文件名
             String folderName = getFolderNameFromPath(cleanedPath);
-            String zipFileName = folderName.isEmpty() ? "shared_files" : folderName;
+            String archiveFileName = (folderName.isEmpty() ? "shared_files" : folderName) + "." + format;
             
             // 设置响应头
-            response.setContentType("application/zip");
+            response.setContentType(ARCHIVE_CONTENT_TYPES.get(format));
+            // 已有统计结果时附带未压缩总大小，便于客户端预估；不等待统计，没有结果时在后台开始统计
+            DirectoryStats stats = fileService.getDirectoryStats(cleanedPath, 0);
+            if (stats != null) {
+                response.setHeader("X-Folder-Size", String.valueOf(stats.getTotalSize()));
+                response.setHeader("X-Folder-File-Count", String.valueOf(stats.getFileCount()));
+            }
             response.setHeader("Content-Disposition", 
                 "attachment; filename*=UTF-8''" + 
-                URLEncoder.encode(zipFileName + ".zip", StandardCharsets.UTF_8));
+                URLEncoder.encode(archiveFileName, StandardCharsets.UTF_8));
             
-            log.info("开始流式打包文件夹: '{}' -> '{}.zip'", cleanedPath, zipFileName);
+            // 文件夹内容未变化时直接发送之前打包好的压缩包
+            SharePath folder = fileService.resolvePath(cleanedPath);
+            String fingerprint = null;
+            // 大小未知（尚未统计）的文件夹可能非常大，本次只流式打包，不缓存，也不为计算指纹遍历整个目录树
+            if (stats != null && archiveCache.isCacheable(stats.getTotalSize())) {
+                fingerprint = archiveCache.fingerprint(folder);
+                CachedArchive cached = archiveCache.lookup(format, folder, fingerprint);
+                if (cached != null) {
+                    log.info("从缓存发送文件夹压缩包: '{}' ({} bytes)", cleanedPath, cached.getSize());
+                    try {
+                        sendCachedArchive(request, response, cached);
+                    } finally {
+                        archiveCache.release(cached);
+                    }
+                    return;
+                }
+                cacheWriter = archiveCache.beginWrite(format, folder, fingerprint);
+            }
             
-            // 使用流式ZIP打包
-            try (ZipOutputStream zipOut = new ZipOutputStream(
-                    new BufferedOutputStream(response.getOutputStream(), 8192))) {
-                
-                // 设置压缩级别（平衡速度和压缩率）
-                zipOut.setLevel(Deflater.DEFAULT_COMPRESSION);
-                
-                // 递归添加文件夹内容到ZIP
-                addDirectoryToZip(cleanedPath, "", zipOut);
-                
-                zipOut.finish();
-                zipOut.flush();
+            log.info("开始流式打包文件夹: '{}' -> '{}'", cleanedPath, archiveFileName);
+            long startTime = System.currentTimeMillis();
+            LogSampler fileLog = new LogSampler(perFileLogInterval);
+            
+            // 首次打包时同时写入缓存
+            OutputStream out = response.getOutputStream();
+            if (cacheWriter != null) {
+                out = cacheWriter.tee(out);
+            }
+            
+            try (ArchiveEntryWriter archive = openArchive(format, out, fileLog)) {
+                // 递归添加文件夹内容到压缩包
+                addDirectoryToArchive(folder, "", archive);
+                archive.finish();
+            }
+            if (cacheWriter != null) {
+                cacheWriter.commit();
             }
             
-            log.info("文件夹打包下载完成: '{}'", cleanedPath);
+            log.info("文件夹打包下载完成: '{}' ({} 个文件, 耗时 {} ms)",
+                    cleanedPath, fileLog.getCount(), System.currentTimeMillis() - startTime);
             
         } catch (SecurityException e) {
             log.error("安全错误 - 尝试下载非法路径: {}", folderPath, e);
@@ -704,6 +1565,11 @@ public class FileController {
                 log.error("写入错误响应失败", ioException);
             }
         } catch (IOException e) {
+            if (DisconnectedClientHelper.isClientDisconnectedException(e)) {
+                // 客户端取消下载，打包已随写出失败停止
+                log.info("客户端已断开，停止打包文件夹: '{}' ({})", folderPath, e.getMessage());
+                return;
+            }
             log.error("文件夹下载失败 - IO错误: {}", folderPath, e);
             try {
                 if (!response.isCommitted()) {
@@ -723,81 +1589,548 @@ public class FileController {
             } catch (IOException ioException) {
                 log.error("写入错误响应失败", ioException);
             }
+        } finally {
+            // 未完成的打包不进入缓存
+            if (cacheWriter != null) {
+                cacheWriter.discard();
+            }
+        }
+    }
+
+    /**
+     * 多个选中项打包下载 - 流式打包
+     * paths 可重复传入，重复的路径和已被其他选中文件夹包含的路径会被去掉；压缩包内的路径相对于所有选中项的公共上级目录。
+     * 选中项在后台线程中遍历（当前项之后的几项同时提前遍历），按选中顺序写出；每读完一个目录即可写出该目录下的文件，
+     * 不必等待整个遍历完成
+     */
+    @PostMapping("/download-selection")
+    public void downloadSelection(@RequestParam("paths") List<String> paths,
+                                  @RequestParam(value = "format", defaultValue = "zip") String format,
+                                  HttpServletResponse response) {
+        TreeWalk walk = null;
+        try {
+            format = format.trim().toLowerCase(Locale.ROOT);
+            if (!ARCHIVE_CONTENT_TYPES.containsKey(format)) {
+                writeErrorIfPossible(response, HttpServletResponse.SC_BAD_REQUEST, "不支持的打包格式: " + format);
+                return;
+            }
+            
+            List<String> selected = new ArrayList<>();
+            for (String path : deduplicateSelection(paths)) {
+                if (fileService.isDirectory(path) || fileService.fileExists(path)) {
+                    selected.add(path);
+                } else {
+                    log.warn("选中的路径不存在，已跳过: '{}'", path);
+                }
+            }
+            if (selected.isEmpty()) {
+                writeErrorIfPossible(response, HttpServletResponse.SC_NOT_FOUND, "选中的文件都不存在");
+                return;
+            }
+            
+            String baseDir = commonParent(selected);
+            List<SharePath> roots = new ArrayList<>(selected.size());
+            for (String path : selected) {
+                roots.add(fileService.resolvePath(path));
+            }
+            walk = fileService.walk(roots);
+            
+            // 只选中一项时以该项命名，否则以公共上级目录命名
+            String baseName = getFolderNameFromPath(selected.size() == 1 ? selected.get(0) : baseDir);
+            String archiveFileName = (baseName.isEmpty() ? "shared_files" : baseName)
+                    + (selected.size() == 1 ? "" : "_selected") + "." + format;
+            response.setContentType(ARCHIVE_CONTENT_TYPES.get(format));
+            response.setHeader("Content-Disposition", 
+                "attachment; filename*=UTF-8''" + 
+                URLEncoder.encode(archiveFileName, StandardCharsets.UTF_8));
+            
+            log.info("开始流式打包选中项: {} 项（请求 {} 项）-> '{}'", selected.size(), paths.size(), archiveFileName);
+            long startTime = System.currentTimeMillis();
+            LogSampler fileLog = new LogSampler(perFileLogInterval);
+            
+            int prefixLength = baseDir.isEmpty() ? 0 : baseDir.length() + 1;
+            try (ArchiveEntryWriter archive = openArchive(format, response.getOutputStream(), fileLog)) {
+                List<TreeEntry> batch;
+                while ((batch = walk.next()) != null) {
+                    for (TreeEntry entry : batch) {
+                        String entryPath = entry.getPath().getRelativePath().substring(prefixLength);
+                        if (!entry.isDirectory()) {
+                            archive.addFile(entryPath, entry.getPath(), entry.getSize());
+                        } else if (!entryPath.isEmpty()) {
+                            archive.addDirectory(entryPath, entry.getPath(), entry.isEmpty());
+                        }
+                    }
+                }
+                archive.finish();
+            }
+            
+            log.info("选中项打包下载完成: {} 项 ({} 个文件, 耗时 {} ms)",
+                    selected.size(), fileLog.getCount(), System.currentTimeMillis() - startTime);
+            
+        } catch (SecurityException e) {
+            log.error("安全错误 - 尝试下载非法路径: {}", paths, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_FORBIDDEN, "访问被拒绝：路径不安全");
+        } catch (IllegalArgumentException e) {
+            log.error("参数错误 - 选中的路径无效: {}", paths, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_BAD_REQUEST, "路径无效: " + e.getMessage());
+        } catch (IOException e) {
+            if (DisconnectedClientHelper.isClientDisconnectedException(e)) {
+                log.info("客户端已断开，停止打包选中项 ({})", e.getMessage());
+                return;
+            }
+            log.error("选中项下载失败 - IO错误: {}", paths, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "下载失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("选中项下载失败 - 未知错误: {}", paths, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "下载失败: " + e.getMessage());
+        } finally {
+            // 客户端断开或出错时不再需要剩余的遍历结果
+            if (walk != null) {
+                walk.close();
+            }
+        }
+    }
+
+    /**
+     * 文件夹同步 - 只比较不下载：返回需要下载的文件和客户端应删除的文件
+     */
+    @PostMapping(value = "/api/sync/plan", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<SyncPlanResponse> planSync(@RequestParam(value = "path", defaultValue = "") String path,
+                                                     @RequestBody SyncRequest manifest) {
+        try {
+            SyncPlan plan = folderSyncService.plan(fileService.resolvePath(cleanPath(path)), manifest.getFiles());
+            return ResponseEntity.ok(new SyncPlanResponse(true, null, plan));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("文件夹同步失败 - 参数错误: '{}', {}", path, e.getMessage());
+            return ResponseEntity.badRequest().body(new SyncPlanResponse(false, e.getMessage(), null));
+        } catch (SecurityException e) {
+            log.warn("文件夹同步失败 - 安全错误: '{}', {}", path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new SyncPlanResponse(false, "访问被拒绝：路径不安全", null));
+        }
+    }
+
+    /**
+     * 文件夹同步 - 流式打包新增或变化的文件
+     * 客户端以 JSON 提交本地清单，压缩包中只包含需要下载的文件，路径相对于同步的文件夹；
+     * 客户端应删除的文件列在第一个条目 {@value #SYNC_DELETED_ENTRY} 中，数量等信息在响应头中给出
+     */
+    @PostMapping(value = "/download-sync", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void downloadSync(@RequestParam(value = "path", defaultValue = "") String path,
+                             @RequestParam(value = "format", defaultValue = "zip") String format,
+                             @RequestBody SyncRequest manifest,
+                             HttpServletResponse response) {
+        try {
+            format = format.trim().toLowerCase(Locale.ROOT);
+            if (!ARCHIVE_CONTENT_TYPES.containsKey(format)) {
+                writeErrorIfPossible(response, HttpServletResponse.SC_BAD_REQUEST, "不支持的打包格式: " + format);
+                return;
+            }
+            
+            String cleanedPath = cleanPath(path);
+            long startTime = System.currentTimeMillis();
+            SyncPlan plan = folderSyncService.plan(fileService.resolvePath(cleanedPath), manifest.getFiles());
+            log.info("文件夹同步: '{}'，客户端 {} 个文件，需下载 {} 个 ({} bytes)，删除 {} 个，未变化 {} 个（比较耗时 {} ms）",
+                    cleanedPath, manifest.getFiles().size(), plan.getChanged().size(), plan.getChangedBytes(),
+                    plan.getDeleted().size(), plan.getUnchangedCount(), System.currentTimeMillis() - startTime);
+            
+            String folderName = getFolderNameFromPath(cleanedPath);
+            String archiveFileName = (folderName.isEmpty() ? "shared_files" : folderName) + "_sync." + format;
+            response.setContentType(ARCHIVE_CONTENT_TYPES.get(format));
+            response.setHeader("X-Sync-Changed-Count", String.valueOf(plan.getChanged().size()));
+            response.setHeader("X-Sync-Changed-Bytes", String.valueOf(plan.getChangedBytes()));
+            response.setHeader("X-Sync-Deleted-Count", String.valueOf(plan.getDeleted().size()));
+            response.setHeader("X-Sync-Unchanged-Count", String.valueOf(plan.getUnchangedCount()));
+            response.setHeader("Content-Disposition", 
+                "attachment; filename*=UTF-8''" + 
+                URLEncoder.encode(archiveFileName, StandardCharsets.UTF_8));
+            
+            LogSampler fileLog = new LogSampler(perFileLogInterval);
+            try (ArchiveEntryWriter archive = openArchive(format, response.getOutputStream(), fileLog)) {
+                if (!plan.getDeleted().isEmpty()) {
+                    String deleted = String.join("\n", plan.getDeleted()) + "\n";
+                    archive.addText(SYNC_DELETED_ENTRY, deleted.getBytes(StandardCharsets.UTF_8));
+                }
+                for (ServerFile file : plan.getChanged()) {
+                    archive.addFile(file.getPath(), file.getFile(), file.getSize());
+                }
+                archive.finish();
+            }
+            
+            log.info("文件夹同步下载完成: '{}' ({} 个文件, 耗时 {} ms)",
+                    cleanedPath, fileLog.getCount(), System.currentTimeMillis() - startTime);
+            
+        } catch (SecurityException e) {
+            log.error("安全错误 - 尝试同步非法路径: {}", path, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_FORBIDDEN, "访问被拒绝：路径不安全");
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            log.warn("文件夹同步失败 - 参数错误: '{}', {}", path, e.getMessage());
+            writeErrorIfPossible(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            if (DisconnectedClientHelper.isClientDisconnectedException(e)) {
+                log.info("客户端已断开，停止同步文件夹: '{}' ({})", path, e.getMessage());
+                return;
+            }
+            log.error("文件夹同步失败 - IO错误: {}", path, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "同步失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("文件夹同步失败 - 未知错误: {}", path, e);
+            writeErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "同步失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 清理选中的路径并去重：去掉重复的路径和已被其他选中文件夹包含的路径，保持原有顺序
+     */
+    private List<String> deduplicateSelection(List<String> paths) {
+        Set<String> cleaned = new LinkedHashSet<>();
+        for (String path : paths) {
+            cleaned.add(cleanPath(path));
+        }
+        if (cleaned.contains("")) {
+            // 选中了根目录
+            return List.of("");
+        }
+        
+        List<String> result = new ArrayList<>(cleaned.size());
+        for (String path : cleaned) {
+            boolean covered = false;
+            for (int slash = path.lastIndexOf('/'); slash > 0 && !covered; slash = path.lastIndexOf('/', slash - 1)) {
+                covered = cleaned.contains(path.substring(0, slash));
+            }
+            if (!covered) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 所有路径的公共上级目录，根目录为空字符串
+     */
+    private static String commonParent(List<String> paths) {
+        String common = null;
+        for (String path : paths) {
+            int slash = path.lastIndexOf('/');
+            String parent = slash < 0 ? "" : path.substring(0, slash);
+            if (common == null) {
+                common = parent;
+                continue;
+            }
+            while (!common.isEmpty() && !parent.equals(common) && !parent.startsWith(common + "/")) {
+                int commonSlash = common.lastIndexOf('/');
+                common = commonSlash < 0 ? "" : common.substring(0, commonSlash);
+            }
+        }
+        return common == null ? "" : common;
+    }
+
+    /**
+     * 打开指定格式的压缩包写出器，关闭时同时关闭 out
+     */
+    private ArchiveEntryWriter openArchive(String format, OutputStream out, LogSampler fileLog) {
+        if ("zip".equals(format)) {
+            ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(out, 8192));
+            // 设置压缩级别（平衡速度和压缩率）
+            zipOut.setLevel(Deflater.DEFAULT_COMPRESSION);
+            return new ZipEntryWriter(zipOut, fileLog);
         }
+        // tar.gz 由压缩流自行分块缓冲，tar 直接缓冲后输出
+        OutputStream tarTarget = "tar.gz".equals(format)
+                ? gzipCompressionService.wrap(out)
+                : new BufferedOutputStream(out, 64 * 1024);
+        return new TarEntryWriter(new TarOutputStream(tarTarget), fileLog);
     }
 
     /**
-     * 递归添加目录内容到ZIP流
+     * 递归添加目录内容到压缩包，entryDirPath 为空时不写出目录本身的条目
      */
-    private void addDirectoryToZip(String sourceDirPath, String zipDirPath, ZipOutputStream zipOut) 
+    private void addDirectoryToArchive(SharePath sourceDir, String entryDirPath, ArchiveEntryWriter archive)
             throws IOException {
         
-        List<FileInfo> files = fileService.listFiles(sourceDirPath);
-        log.debug("处理目录: '{}', 包含 {} 个项目", sourceDirPath, files.size());
+        List<FileInfo> files = fileService.listFiles(sourceDir);
+        log.debug("处理目录: '{}', 包含 {} 个项目", sourceDir, files.size());
         
-        // 如果是空文件夹，添加一个目录条目
-        if (files.isEmpty() && !zipDirPath.isEmpty()) {
-            ZipEntry dirEntry = new ZipEntry(zipDirPath + "/");
-            dirEntry.setTime(System.currentTimeMillis());
-            zipOut.putNextEntry(dirEntry);
-            zipOut.closeEntry();
-            log.debug("添加空目录: '{}'", zipDirPath);
+        if (!entryDirPath.isEmpty()) {
+            archive.addDirectory(entryDirPath, sourceDir, files.isEmpty());
         }
         
         for (FileInfo fileInfo : files) {
-            String sourceFilePath = sourceDirPath.isEmpty() ? 
-                fileInfo.getName() : sourceDirPath + "/" + fileInfo.getName();
-            String zipFilePath = zipDirPath.isEmpty() ? 
-                fileInfo.getName() : zipDirPath + "/" + fileInfo.getName();
+            SharePath sourceFile = sourceDir.child(fileInfo.getName());
+            String entryPath = entryDirPath.isEmpty() ? 
+                fileInfo.getName() : entryDirPath + "/" + fileInfo.getName();
             
             if (fileInfo.isDirectory()) {
                 // 递归处理子目录
-                addDirectoryToZip(sourceFilePath, zipFilePath, zipOut);
+                addDirectoryToArchive(sourceFile, entryPath, archive);
             } else {
-                // 添加文件到ZIP
-                addFileToZip(sourceFilePath, zipFilePath, zipOut);
+                archive.addFile(entryPath, sourceFile, fileInfo.getSize());
             }
         }
     }
 
     /**
      * 添加单个文件到ZIP流
+     * 读取源文件失败时跳过该文件继续打包；写出失败（通常是客户端已断开）时抛出异常，立即结束整个打包
      */
-    private void addFileToZip(String sourceFilePath, String zipFilePath, ZipOutputStream zipOut) 
+    private void addFileToZip(SharePath sourceFile, String zipFilePath, ZipOutputStream zipOut, LogSampler fileLog) 
             throws IOException {
         
-        try (InputStream fileInputStream = fileService.getFileInputStream(sourceFilePath);
-             BufferedInputStream bufferedInput = new BufferedInputStream(fileInputStream, 8192)) {
-            
+        InputStream fileInputStream;
+        long lastModified;
+        try {
+            fileInputStream = fileService.getFileInputStream(sourceFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("跳过无法读取的文件: '{}' ({})", sourceFile, e.getMessage());
+            return;
+        }
+        try {
+            lastModified = fileService.getLastModified(sourceFile);
+        } catch (IOException e) {
+            log.debug("无法获取文件修改时间: {}", sourceFile);
+            lastModified = System.currentTimeMillis();
+        }
+        
+        try (InputStream input = fileInputStream) {
             ZipEntry zipEntry = new ZipEntry(zipFilePath);
-            
-            // 设置文件修改时间
-            try {
-                long lastModified = fileService.getLastModified(sourceFilePath);
-                zipEntry.setTime(lastModified);
-            } catch (Exception e) {
-                log.debug("无法获取文件修改时间: {}", sourceFilePath);
-                zipEntry.setTime(System.currentTimeMillis());
-            }
-            
+            zipEntry.setTime(lastModified);
             zipOut.putNextEntry(zipEntry);
             
-            // 流式复制文件内容
+            // 流式复制文件内容，区分读取源文件的错误和写出响应的错误
             byte[] buffer = new byte[8192];
-            int bytesRead;
             long totalBytes = 0;
-            
-            while ((bytesRead = bufferedInput.read(buffer)) != -1) {
+            while (true) {
+                int bytesRead;
+                try {
+                    bytesRead = input.read(buffer);
+                } catch (IOException e) {
+                    log.warn("读取文件中断，ZIP中的内容不完整: '{}' ({})", sourceFile, e.getMessage());
+                    break;
+                }
+                if (bytesRead == -1) {
+                    break;
+                }
                 zipOut.write(buffer, 0, bytesRead);
                 totalBytes += bytesRead;
             }
             
             zipOut.closeEntry();
-            log.debug("添加文件到ZIP: '{}' ({} bytes)", zipFilePath, totalBytes);
+            if (fileLog.sample()) {
+                log.debug("添加文件到ZIP (第 {} 个): '{}' ({} bytes)", fileLog.getCount(), zipFilePath, totalBytes);
+            }
+        }
+    }
+
+    /**
+     * 添加单个文件到tar流
+     * tar 条目头中的大小取自目录列表；文件在打包期间变短时以0补齐，变长时截断，保证输出仍是合法的 tar。
+     * 与 ZIP 相同，读取源文件失败时跳过该文件，写出失败时抛出异常结束打包
+     */
+    private void addFileToTar(SharePath sourceFile, String tarFilePath, long size, TarOutputStream tarOut,
+                              LogSampler fileLog) throws IOException {
+        
+        InputStream fileInputStream;
+        try {
+            fileInputStream = fileService.getFileInputStream(sourceFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("跳过无法读取的文件: '{}' ({})", sourceFile, e.getMessage());
+            return;
+        }
+        
+        try (InputStream input = fileInputStream) {
+            tarOut.putFile(tarFilePath, size, lastModifiedOrNow(sourceFile));
             
-        } catch (Exception e) {
-            log.error("添加文件到ZIP失败: '{}' -> '{}'", sourceFilePath, zipFilePath, e);
-            // 继续处理其他文件，不因单个文件失败而中断整个打包过程
+            byte[] buffer = new byte[8192];
+            while (tarOut.getEntryRemaining() > 0) {
+                int bytesRead;
+                try {
+                    bytesRead = input.read(buffer);
+                } catch (IOException e) {
+                    log.warn("读取文件中断，tar中的内容以0补齐: '{}' ({})", sourceFile, e.getMessage());
+                    break;
+                }
+                if (bytesRead == -1) {
+                    log.warn("文件在打包期间变短，tar中的内容以0补齐: '{}'", sourceFile);
+                    break;
+                }
+                tarOut.write(buffer, 0, bytesRead);
+            }
+            
+            tarOut.closeEntry();
+            if (fileLog.sample()) {
+                log.debug("添加文件到tar (第 {} 个): '{}' ({} bytes)", fileLog.getCount(), tarFilePath, size);
+            }
+        }
+    }
+
+    private long lastModifiedOrNow(SharePath path) {
+        try {
+            return fileService.getLastModified(path);
+        } catch (IOException e) {
+            log.debug("无法获取文件修改时间: {}", path);
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 压缩包条目的写出方式，ZIP 和 tar 共用同一套目录遍历
+     */
+    private interface ArchiveEntryWriter extends Closeable {
+
+        /**
+         * 目录条目，empty 表示目录下没有任何条目
+         */
+        void addDirectory(String entryPath, SharePath dir, boolean empty) throws IOException;
+
+        void addFile(String entryPath, SharePath file, long size) throws IOException;
+
+        /**
+         * 内容由服务器生成的文件条目
+         */
+        void addText(String entryPath, byte[] content) throws IOException;
+
+        /**
+         * 写出压缩包结尾，不关闭底层流
+         */
+        void finish() throws IOException;
+    }
+
+    private final class ZipEntryWriter implements ArchiveEntryWriter {
+        private final ZipOutputStream zipOut;
+        private final LogSampler fileLog;
+
+        private ZipEntryWriter(ZipOutputStream zipOut, LogSampler fileLog) {
+            this.zipOut = zipOut;
+            this.fileLog = fileLog;
+        }
+
+        /**
+         * ZIP 中的目录由文件路径隐含，只为空文件夹添加目录条目
+         */
+        @Override
+        public void addDirectory(String entryPath, SharePath dir, boolean empty) throws IOException {
+            if (!empty) {
+                return;
+            }
+            ZipEntry dirEntry = new ZipEntry(entryPath + "/");
+            dirEntry.setTime(System.currentTimeMillis());
+            zipOut.putNextEntry(dirEntry);
+            zipOut.closeEntry();
+            log.debug("添加空目录: '{}'", entryPath);
+        }
+
+        @Override
+        public void addFile(String entryPath, SharePath file, long size) throws IOException {
+            addFileToZip(file, entryPath, zipOut, fileLog);
+        }
+
+        @Override
+        public void addText(String entryPath, byte[] content) throws IOException {
+            ZipEntry entry = new ZipEntry(entryPath);
+            entry.setTime(System.currentTimeMillis());
+            zipOut.putNextEntry(entry);
+            zipOut.write(content);
+            zipOut.closeEntry();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            zipOut.finish();
+            zipOut.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipOut.close();
+        }
+    }
+
+    /**
+     * tar 为每个目录写出条目以保留修改时间
+     */
+    private final class TarEntryWriter implements ArchiveEntryWriter {
+        private final TarOutputStream tarOut;
+        private final LogSampler fileLog;
+
+        private TarEntryWriter(TarOutputStream tarOut, LogSampler fileLog) {
+            this.tarOut = tarOut;
+            this.fileLog = fileLog;
+        }
+
+        @Override
+        public void addDirectory(String entryPath, SharePath dir, boolean empty) throws IOException {
+            tarOut.putDirectory(entryPath, lastModifiedOrNow(dir));
+        }
+
+        @Override
+        public void addFile(String entryPath, SharePath file, long size) throws IOException {
+            addFileToTar(file, entryPath, size, tarOut, fileLog);
+        }
+
+        @Override
+        public void addText(String entryPath, byte[] content) throws IOException {
+            tarOut.putFile(entryPath, content.length, System.currentTimeMillis());
+            tarOut.write(content, 0, content.length);
+            tarOut.closeEntry();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            tarOut.finish();
+        }
+
+        @Override
+        public void close() throws IOException {
+            tarOut.close();
+        }
+    }
+
+    /**
+     * 发送缓存的压缩包，支持单个 Range 请求
+     * 调用方在发送期间持有压缩包的引用，返回后再释放
+     */
+    private void sendCachedArchive(HttpServletRequest request, HttpServletResponse response, CachedArchive archive)
+            throws IOException {
+        long length = archive.getSize();
+        String etag = "\"" + archive.getFingerprint() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        
+        long start = 0;
+        long end = length;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                // 格式错误的 Range 按普通请求处理
+                ranges = List.of();
+            }
+            // 多个区间时返回完整内容
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length) + 1;
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= length || end <= start) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+        response.setContentLengthLong(end - start);
+        
+        // 经响应输出流普通复制，不是零拷贝：Tomcat 的 sendfile 在本方法返回后才按文件名打开文件，
+        // 而调用方返回时即释放引用，之后压缩包可能已被淘汰删除
+        try (InputStream in = Files.newInputStream(archive.getFile())) {
+            StreamUtils.copyRange(in, response.getOutputStream(), start, end - 1);
         }
     }
 
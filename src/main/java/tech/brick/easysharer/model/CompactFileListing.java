@@ -0,0 +1,86 @@
+package tech.brick.easysharer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 紧凑格式的文件列表
+ * 每个文件只输出原始字段组成的数组，图标信息放在共享字典中按下标引用，
+ * 格式化大小、时间等展示字段由客户端计算
+ */
+@Getter
+public class CompactFileListing {
+
+    /**
+     * 每行数组中各列的含义
+     */
+    public static final List<String> COLUMNS = List.of("name", "directory", "size", "lastModified", "icon", "fileCount");
+
+    private final List<String> columns = COLUMNS;
+
+    /**
+     * 图标字典
+     */
+    private final List<IconEntry> icons;
+
+    /**
+     * 文件行：[名称, 是否目录(0/1), 大小, 修改时间(毫秒时间戳), 图标下标, 目录文件数(未统计时为null)]
+     */
+    private final List<Object[]> files;
+
+    private CompactFileListing(List<IconEntry> icons, List<Object[]> files) {
+        this.icons = icons;
+        this.files = files;
+    }
+
+    /**
+     * 由完整的文件信息列表构建紧凑列表
+     */
+    public static CompactFileListing of(List<FileInfo> fileInfos) {
+        List<IconEntry> icons = new ArrayList<>();
+        int[] iconIndex = new int[FileIcon.values().length];
+        Arrays.fill(iconIndex, -1);
+        List<Object[]> rows = new ArrayList<>(fileInfos.size());
+        ZoneId zone = ZoneId.systemDefault();
+
+        for (FileInfo fileInfo : fileInfos) {
+            FileIcon icon = fileInfo.getIcon();
+            int index = iconIndex[icon.ordinal()];
+            if (index < 0) {
+                index = icons.size();
+                iconIndex[icon.ordinal()] = index;
+                icons.add(new IconEntry(icon.getIconType(), icon.getIconClass()));
+            }
+
+            long lastModified = fileInfo.getLastModified() != null
+                    ? fileInfo.getLastModified().atZone(zone).toInstant().toEpochMilli()
+                    : 0L;
+            rows.add(new Object[]{
+                    fileInfo.getName(),
+                    fileInfo.isDirectory() ? 1 : 0,
+                    fileInfo.getSize(),
+                    lastModified,
+                    index,
+                    fileInfo.getFileCount()
+            });
+        }
+
+        return new CompactFileListing(icons, rows);
+    }
+
+    /**
+     * 图标字典项
+     */
+    @Data
+    @AllArgsConstructor
+    public static class IconEntry {
+        private String iconType;
+        private String iconClass;
+    }
+}
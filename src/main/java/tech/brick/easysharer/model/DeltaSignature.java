@@ -0,0 +1,41 @@
+package tech.brick.easysharer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 文件的分块签名（增量上传用，不可变）
+ * 数组在 JSON 中以 Base64 字符串输出
+ */
+@Getter
+@AllArgsConstructor
+public class DeltaSignature {
+
+    /**
+     * 相对于共享根目录的路径
+     */
+    private final String path;
+
+    /**
+     * 计算签名时文件的大小和修改时间，上传增量时原样带回，用于确认文件没有被修改
+     */
+    private final long size;
+    private final long lastModified;
+
+    /**
+     * 块大小（字节），最后一块可能不足
+     */
+    private final int blockSize;
+
+    private final int blockCount;
+
+    /**
+     * 每块的滚动校验和，每块4字节（大端序）
+     */
+    private final byte[] weak;
+
+    /**
+     * 每块 SHA-256 的前16字节
+     */
+    private final byte[] strong;
+}
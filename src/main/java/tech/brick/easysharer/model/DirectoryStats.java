@@ -0,0 +1,51 @@
+package tech.brick.easysharer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 目录递归统计结果（不可变）
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class DirectoryStats {
+
+    /**
+     * 目录下所有文件的总大小（字节）
+     */
+    private final long totalSize;
+
+    /**
+     * 文件总数（递归）
+     */
+    private final long fileCount;
+
+    /**
+     * 子目录总数（递归）
+     */
+    private final long dirCount;
+
+    /**
+     * 统计时目录自身的修改时间，用于判断缓存是否过期
+     */
+    private final long dirModified;
+
+    /**
+     * 统计完成时间
+     */
+    private final long computedAt;
+
+    /**
+     * 在当前结果上叠加增量
+     */
+    public DirectoryStats plus(long sizeDelta, long fileDelta, long dirDelta, long newDirModified) {
+        return new DirectoryStats(
+                Math.max(0, totalSize + sizeDelta),
+                Math.max(0, fileCount + fileDelta),
+                Math.max(0, dirCount + dirDelta),
+                newDirModified,
+                System.currentTimeMillis());
+    }
+}
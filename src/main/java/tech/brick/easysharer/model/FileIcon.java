@@ -0,0 +1,68 @@
+package tech.brick.easysharer.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 文件图标类型，按扩展名静态查表
+ */
+public enum FileIcon {
+    FOLDER("folder", "file-icon bi bi-folder-fill folder-icon"),
+    TEXT("file-text", "file-icon bi bi-file-text-fill file-icon-text", "txt", "md", "log"),
+    IMAGE("file-image", "file-icon bi bi-file-image-fill file-icon-image", "jpg", "jpeg", "png", "gif", "bmp"),
+    VIDEO("file-video", "file-icon bi bi-file-play-fill file-icon-video", "mp4", "avi", "mkv", "mov"),
+    AUDIO("file-audio", "file-icon bi bi-file-music-fill file-icon-audio", "mp3", "wav", "flac"),
+    PDF("file-pdf", "file-icon bi bi-file-pdf-fill file-icon-pdf", "pdf"),
+    ARCHIVE("file-archive", "file-icon bi bi-file-zip-fill file-icon-archive", "zip", "rar", "7z"),
+    WORD("file-word", "file-icon bi bi-file-word-fill file-icon-word", "doc", "docx"),
+    EXCEL("file-excel", "file-icon bi bi-file-excel-fill file-icon-excel", "xls", "xlsx"),
+    POWERPOINT("file-powerpoint", "file-icon bi bi-file-ppt-fill file-icon-powerpoint", "ppt", "pptx"),
+    DEFAULT("file", "file-icon bi bi-file-fill file-icon-default");
+
+    /**
+     * 扩展名（小写）到图标的查找表
+     */
+    private static final Map<String, FileIcon> BY_EXTENSION = new HashMap<>();
+
+    static {
+        for (FileIcon icon : values()) {
+            for (String extension : icon.extensions) {
+                BY_EXTENSION.put(extension, icon);
+            }
+        }
+    }
+
+    private final String iconType;
+    private final String iconClass;
+    private final String[] extensions;
+
+    FileIcon(String iconType, String iconClass, String... extensions) {
+        this.iconType = iconType;
+        this.iconClass = iconClass;
+        this.extensions = extensions;
+    }
+
+    public String getIconType() {
+        return iconType;
+    }
+
+    public String getIconClass() {
+        return iconClass;
+    }
+
+    /**
+     * 根据扩展名获取图标，扩展名不区分大小写
+     */
+    public static FileIcon forExtension(String extension) {
+        if (extension == null || extension.isEmpty()) {
+            return DEFAULT;
+        }
+        FileIcon icon = BY_EXTENSION.get(extension);
+        if (icon == null) {
+            // 已是小写时 toLowerCase 不会产生新对象
+            icon = BY_EXTENSION.get(extension.toLowerCase(Locale.ROOT));
+        }
+        return icon != null ? icon : DEFAULT;
+    }
+}
@@ -1,151 +1,142 @@
 package tech.brick.easysharer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 @Data
-@Builder
 public class FileInfo {
+
+    /**
+     * 修改时间格式，线程安全，全局共享
+     */
+    private static final DateTimeFormatter LAST_MODIFIED_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private String name;
     private String relativePath;
     private boolean isDirectory;
     private long size;
     private LocalDateTime lastModified;
+
+    /**
+     * 目录下的文件总数（递归），仅目录且已完成统计时有值，此时size为目录总大小
+     */
+    private Long fileCount;
+
+    /**
+     * 扩展名与图标在名称或类型变化时预先计算，序列化时不再重复推导
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private String fileExtension;
+
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private FileIcon icon;
+
+    @Builder
+    public FileInfo(String name, String relativePath, boolean isDirectory, long size, LocalDateTime lastModified,
+                    Long fileCount) {
+        this.name = name;
+        this.relativePath = relativePath;
+        this.isDirectory = isDirectory;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileCount = fileCount;
+        updateIcon();
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        updateIcon();
+    }
+
+    public void setDirectory(boolean isDirectory) {
+        this.isDirectory = isDirectory;
+        updateIcon();
+    }
+
+    private void updateIcon() {
+        if (isDirectory || name == null) {
+            fileExtension = "";
+        } else {
+            int dot = name.lastIndexOf('.');
+            fileExtension = dot >= 0 ? name.substring(dot + 1) : "";
+        }
+        icon = isDirectory ? FileIcon.FOLDER : FileIcon.forExtension(fileExtension);
+    }
     
     /**
      * 获取格式化的文件大小
      */
     public String getFormattedSize() {
-        if (isDirectory) {
+        if (isDirectory && fileCount == null) {
             return "-";
         }
-        
+        return formatSize(size);
+    }
+
+    /**
+     * 将字节数格式化为 B/KB/MB/GB
+     */
+    public static String formatSize(long size) {
         if (size < 1024) {
             return size + " B";
         } else if (size < 1024 * 1024) {
-            return String.format("%.1f KB", size / 1024.0);
+            return formatOneDecimal(size / 1024.0, " KB");
         } else if (size < 1024 * 1024 * 1024) {
-            return String.format("%.1f MB", size / (1024.0 * 1024.0));
+            return formatOneDecimal(size / (1024.0 * 1024.0), " MB");
         } else {
-            return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+            return formatOneDecimal(size / (1024.0 * 1024.0 * 1024.0), " GB");
         }
     }
+
+    /**
+     * 保留一位小数（四舍五入），等价于 String.format("%.1f")，但不经过 Formatter
+     * value 为字节数除以 2 的幂，乘以10后的小数部分恰为0.5或与0.5相差很远，Math.round 与 Formatter 的 HALF_UP 结果相同（见 FileInfoTest）
+     */
+    private static String formatOneDecimal(double value, String unit) {
+        long tenths = Math.round(value * 10);
+        return (tenths / 10) + "." + (tenths % 10) + unit;
+    }
     
     /**
      * 获取格式化的修改时间
      */
     public String getFormattedLastModified() {
-        return lastModified.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return LAST_MODIFIED_FORMATTER.format(lastModified);
     }
     
     /**
      * 获取文件图标类型
      */
     public String getIconType() {
-        if (isDirectory) {
-            return "folder";
-        }
-        
-        String extension = getFileExtension().toLowerCase();
-        switch (extension) {
-            case "txt":
-            case "md":
-            case "log":
-                return "file-text";
-            case "jpg":
-            case "jpeg":
-            case "png":
-            case "gif":
-            case "bmp":
-                return "file-image";
-            case "mp4":
-            case "avi":
-            case "mkv":
-            case "mov":
-                return "file-video";
-            case "mp3":
-            case "wav":
-            case "flac":
-                return "file-audio";
-            case "pdf":
-                return "file-pdf";
-            case "zip":
-            case "rar":
-            case "7z":
-                return "file-archive";
-            case "doc":
-            case "docx":
-                return "file-word";
-            case "xls":
-            case "xlsx":
-                return "file-excel";
-            case "ppt":
-            case "pptx":
-                return "file-powerpoint";
-            default:
-                return "file";
-        }
+        return icon.getIconType();
     }
     
     /**
      * 获取完整的图标CSS类名
      */
     public String getIconClass() {
-        if (isDirectory) {
-            return "file-icon bi bi-folder-fill folder-icon";
-        }
-        
-        String extension = getFileExtension().toLowerCase();
-        switch (extension) {
-            case "txt":
-            case "md":
-            case "log":
-                return "file-icon bi bi-file-text-fill file-icon-text";
-            case "jpg":
-            case "jpeg":
-            case "png":
-            case "gif":
-            case "bmp":
-                return "file-icon bi bi-file-image-fill file-icon-image";
-            case "mp4":
-            case "avi":
-            case "mkv":
-            case "mov":
-                return "file-icon bi bi-file-play-fill file-icon-video";
-            case "mp3":
-            case "wav":
-            case "flac":
-                return "file-icon bi bi-file-music-fill file-icon-audio";
-            case "pdf":
-                return "file-icon bi bi-file-pdf-fill file-icon-pdf";
-            case "zip":
-            case "rar":
-            case "7z":
-                return "file-icon bi bi-file-zip-fill file-icon-archive";
-            case "doc":
-            case "docx":
-                return "file-icon bi bi-file-word-fill file-icon-word";
-            case "xls":
-            case "xlsx":
-                return "file-icon bi bi-file-excel-fill file-icon-excel";
-            case "ppt":
-            case "pptx":
-                return "file-icon bi bi-file-ppt-fill file-icon-powerpoint";
-            default:
-                return "file-icon bi bi-file-fill file-icon-default";
-        }
+        return icon.getIconClass();
     }
     
     /**
      * 获取文件扩展名
      */
     public String getFileExtension() {
-        if (isDirectory || !name.contains(".")) {
-            return "";
-        }
-        return name.substring(name.lastIndexOf(".") + 1);
+        return fileExtension;
     }
-} 
\ No newline at end of file
+}
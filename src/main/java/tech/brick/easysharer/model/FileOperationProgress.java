@@ -0,0 +1,64 @@
+package tech.brick.easysharer.model;
+
+import lombok.Data;
+
+/**
+ * 服务器端文件操作（移动、复制、删除）的进度
+ */
+@Data
+public class FileOperationProgress {
+
+    public enum Status {
+        RUNNING, SUCCESS, FAILED
+    }
+
+    /**
+     * 操作类型，如 MOVE、COPY、DELETE
+     */
+    private String operation;
+
+    /**
+     * 源路径（相对于共享根目录）
+     */
+    private String source;
+
+    /**
+     * 目标路径，删除时为空
+     */
+    private String target;
+
+    /**
+     * 需要处理的文件总数和总字节数，开始前遍历一次得到；原子移动不需要遍历，均为0
+     */
+    private long totalFiles;
+    private long totalBytes;
+
+    /**
+     * 已处理的文件数和字节数，处理过程中持续更新
+     */
+    private volatile long filesDone;
+    private volatile long bytesDone;
+
+    /**
+     * 正在处理的文件（相对于源路径）
+     */
+    private volatile String currentFile;
+
+    private volatile Status status = Status.RUNNING;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long elapsedMillis;
+
+    public FileOperationProgress(String operation, String source, String target) {
+        this.operation = operation;
+        this.source = source;
+        this.target = target;
+    }
+}
@@ -0,0 +1,55 @@
+package tech.brick.easysharer.model;
+
+import lombok.Data;
+
+/**
+ * 单个文件的上传结果与写入进度
+ */
+@Data
+public class FileUploadResult {
+
+    public enum Status {
+        PENDING, WRITING, SUCCESS, FAILED
+    }
+
+    /**
+     * 客户端提交的原始文件名
+     */
+    private String originalFilename;
+
+    /**
+     * 保存后的相对路径，写入成功后才有值
+     */
+    private String storedPath;
+
+    /**
+     * 文件大小（字节）
+     */
+    private long size;
+
+    /**
+     * 已写入的字节数，写入过程中持续更新
+     */
+    private volatile long bytesWritten;
+
+    private volatile Status status = Status.PENDING;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    /**
+     * 写入耗时（毫秒）
+     */
+    private long elapsedMillis;
+
+    public FileUploadResult(String originalFilename, long size) {
+        this.originalFilename = originalFilename;
+        this.size = size;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+}
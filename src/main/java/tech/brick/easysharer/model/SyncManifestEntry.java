@@ -0,0 +1,31 @@
+package tech.brick.easysharer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 同步文件夹时客户端清单中的一个文件
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncManifestEntry {
+
+    /**
+     * 相对于同步文件夹的路径，使用正斜杠
+     */
+    private String path;
+
+    private long size;
+
+    /**
+     * 修改时间（毫秒）
+     */
+    private long lastModified;
+
+    /**
+     * 文件内容的 SHA-256（十六进制，可选），大小相同但修改时间不同时用于判断内容是否变化
+     */
+    private String sha256;
+}
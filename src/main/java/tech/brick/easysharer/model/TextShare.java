@@ -62,6 +62,16 @@ public class TextShare {
      */
     private int viewCount;
     
+    /**
+     * 完整内容的字符数
+     */
+    private long contentLength;
+    
+    /**
+     * content 是否只是截断的预览，完整内容需通过 /api/text-share/{id}/content 获取
+     */
+    private boolean truncated;
+    
     public TextShare(String id, String ipAddress, String content, String nickname, String type) {
         this.id = id;
         this.ipAddress = ipAddress;
@@ -71,5 +81,6 @@ public class TextShare {
         this.shareTime = LocalDateTime.now();
         this.expired = false;
         this.viewCount = 0;
+        this.contentLength = content != null ? content.length() : 0;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,358 @@
+package tech.brick.easysharer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.model.DeltaSignature;
+import tech.brick.easysharer.model.FileUploadResult;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ConcurrentModificationException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 增量上传（rsync 算法），用于更新共享目录中已有的大文件
+ * 客户端先获取服务器上旧文件的分块签名：每块一个可以逐字节滑动计算的弱校验和，以及 SHA-256 的前16字节作为强校验，
+ * 然后在本地新文件中逐字节滑动查找与旧文件相同的块，只上传不同的部分。上传的内容是一串指令（整数均为大端序）：
+ * <pre>
+ *   0x01 COPY  int32 起始块号, int32 块数      复制旧文件中连续的块（最后一块可能不足 blockSize）
+ *   0x02 DATA  int32 长度, 随后是该长度的字节   新数据
+ *   0x00 END
+ * </pre>
+ * 服务器在同目录的暂存文件中重建新文件，COPY 的部分用 transferTo 从旧文件直接拷贝；长度（以及提供时的 SHA-256）
+ * 校验通过、且旧文件在此期间没有被修改时原子地替换旧文件。传输量与改动量成正比，而不是与文件大小成正比。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeltaUploadService {
+
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_DATA = 2;
+
+    private static final int STRONG_LENGTH = 16;
+    private static final int MIN_BLOCK_SIZE = 2 * 1024;
+    private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 签名的最大块数（签名约 20 字节/块），超大文件的块大小相应放大到 ceil(文件大小 / MAX_BLOCKS)
+     */
+    static final int MAX_BLOCKS = 128 * 1024;
+
+    /**
+     * 缓存最近计算的签名个数，客户端获取签名后通常会重试或多次比较
+     */
+    private static final int SIGNATURE_CACHE_SIZE = 8;
+
+    private final SharePathResolver pathResolver;
+    private final UploadService uploadService;
+    private final DirectorySizeService directorySizeService;
+    private final HotFileCache hotFileCache;
+    private final ZipBrowseService zipBrowseService;
+    private final HashService hashService;
+
+    /**
+     * 签名缓存，Key为文件的绝对路径，按访问顺序淘汰，访问时需持有该对象的锁
+     */
+    private final Map<Path, DeltaSignature> signatureCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, DeltaSignature> eldest) {
+            return size() > SIGNATURE_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * 获取文件的分块签名，blockSize 不大于0时按文件大小自动选择（约为文件大小的平方根）
+     * 块数超过 MAX_BLOCKS 时使用更大的块，实际块大小以返回的签名为准
+     */
+    public DeltaSignature getSignature(String relativePath, int blockSize) throws IOException {
+        if (!uploadService.isUploadEnabled()) {
+            throw new IllegalStateException("文件上传功能未启用");
+        }
+        SharePath file = requireFile(relativePath);
+        BasicFileAttributes attrs = Files.readAttributes(file.getPath(), BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        int effectiveBlockSize = Math.max(blockSize > 0 ? clampBlockSize(blockSize) : chooseBlockSize(size),
+                minBlockSizeFor(size));
+
+        synchronized (signatureCache) {
+            DeltaSignature cached = signatureCache.get(file.getPath());
+            if (cached != null && cached.getSize() == size && cached.getLastModified() == lastModified
+                    && cached.getBlockSize() == effectiveBlockSize) {
+                return cached;
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        DeltaSignature signature = computeSignature(file, size, lastModified, effectiveBlockSize);
+        log.info("计算文件签名: {} ({} bytes, {} 块 × {} bytes, 耗时 {} ms)", file, size,
+                signature.getBlockCount(), effectiveBlockSize, System.currentTimeMillis() - startTime);
+        synchronized (signatureCache) {
+            signatureCache.put(file.getPath(), signature);
+        }
+        return signature;
+    }
+
+    /**
+     * 按增量指令重建文件并替换旧文件
+     * baseSize、baseModified、blockSize 为客户端所用签名中的值，size 为新文件的大小，sha256 可选（十六进制）
+     */
+    public FileUploadResult applyDelta(String relativePath, long baseSize, long baseModified, int blockSize,
+                                       long size, String sha256, InputStream delta) throws IOException {
+        if (!uploadService.isUploadEnabled()) {
+            throw new IllegalStateException("文件上传功能未启用");
+        }
+        SharePath target = requireFile(relativePath);
+        Path file = target.getPath();
+        if (!isValidBlockSize(blockSize, baseSize)) {
+            throw new IllegalArgumentException("块大小无效: " + blockSize);
+        }
+        // 新文件最多比旧文件多出一次普通上传允许的大小
+        long maxLiteralBytes = uploadService.getMaxFileSizeBytes();
+        if (size < 0 || size > baseSize + maxLiteralBytes) {
+            throw new IllegalArgumentException("文件过大，最多比原文件大 " + maxLiteralBytes / 1024 / 1024 + "MB");
+        }
+        checkUnchanged(target, baseSize, baseModified);
+
+        FileUploadResult result = new FileUploadResult(file.getFileName().toString(), size);
+        result.setStatus(FileUploadResult.Status.WRITING);
+        Path stagingFile = UploadService.stagingFileIn(file.getParent());
+        long startTime = System.currentTimeMillis();
+        long literalBytes = 0;
+        long copiedBytes = 0;
+        try {
+            try (FileChannel base = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(stagingFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                if (base.size() != baseSize) {
+                    throw new ConcurrentModificationException("文件已被修改，请重新获取签名");
+                }
+                DataInputStream in = new DataInputStream(new BufferedInputStream(delta, COPY_BUFFER_SIZE));
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                long written = 0;
+                int op;
+                while ((op = in.read()) != OP_END) {
+                    if (op == OP_COPY) {
+                        long startBlock = Integer.toUnsignedLong(in.readInt());
+                        long blockCount = Integer.toUnsignedLong(in.readInt());
+                        long offset = startBlock * blockSize;
+                        if (blockCount == 0 || offset >= baseSize) {
+                            throw new IllegalArgumentException("增量数据无效: 块号超出范围");
+                        }
+                        long length = Math.min(blockCount * blockSize, baseSize - offset);
+                        checkLength(written + length, size);
+                        transfer(base, offset, length, out);
+                        written += length;
+                        copiedBytes += length;
+                    } else if (op == OP_DATA) {
+                        int length = in.readInt();
+                        if (length <= 0) {
+                            throw new IllegalArgumentException("增量数据无效: 数据长度 " + length);
+                        }
+                        checkLength(written + length, size);
+                        if (literalBytes + length > maxLiteralBytes) {
+                            throw new IllegalArgumentException("上传的数据超过 " + maxLiteralBytes / 1024 / 1024 + "MB");
+                        }
+                        copyData(in, length, buffer, out);
+                        written += length;
+                        literalBytes += length;
+                    } else if (op < 0) {
+                        throw new EOFException("增量数据不完整");
+                    } else {
+                        throw new IllegalArgumentException("增量数据无效: 未知指令 " + op);
+                    }
+                    result.setBytesWritten(written);
+                }
+                if (written != size) {
+                    throw new IllegalArgumentException("重建后的大小 " + written + " 与声明的 " + size + " 不一致");
+                }
+                out.force(true);
+            }
+
+            if (sha256 != null && !sha256.isEmpty() && !sha256.equalsIgnoreCase(sha256Hex(stagingFile))) {
+                throw new IllegalArgumentException("重建后的文件 SHA-256 校验失败");
+            }
+            checkUnchanged(target, baseSize, baseModified);
+            Files.move(stagingFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            directorySizeService.onFileRemoved(file, baseSize);
+            directorySizeService.onFileAdded(file, size);
+            hotFileCache.invalidate(file);
+            zipBrowseService.invalidateTree(file);
+            hashService.invalidateTree(file);
+            synchronized (signatureCache) {
+                signatureCache.remove(file);
+            }
+
+            result.setStoredPath(target.getRelativePath());
+            result.setStatus(FileUploadResult.Status.SUCCESS);
+            result.setMessage(String.format("上传 %d 字节，复用原文件 %d 字节", literalBytes, copiedBytes));
+            log.info("增量上传完成: {} ({} bytes, 上传 {} bytes, 复用 {} bytes, 耗时 {} ms)", target, size,
+                    literalBytes, copiedBytes, System.currentTimeMillis() - startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            result.setStatus(FileUploadResult.Status.FAILED);
+            result.setMessage(e.getMessage());
+            throw e;
+        } finally {
+            result.setElapsedMillis(System.currentTimeMillis() - startTime);
+            try {
+                Files.deleteIfExists(stagingFile);
+            } catch (IOException e) {
+                log.warn("删除暂存文件失败: {}", stagingFile, e);
+            }
+        }
+    }
+
+    private SharePath requireFile(String relativePath) throws NoSuchFileException {
+        SharePath file = pathResolver.resolve(relativePath);
+        if (!Files.isRegularFile(file.getPath())) {
+            throw new NoSuchFileException(file.getRelativePath(), null, "文件不存在");
+        }
+        return file;
+    }
+
+    private static void checkUnchanged(SharePath file, long size, long lastModified) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file.getPath(), BasicFileAttributes.class);
+        if (attrs.size() != size || attrs.lastModifiedTime().toMillis() != lastModified) {
+            throw new ConcurrentModificationException("文件已被修改，请重新获取签名");
+        }
+    }
+
+    private static void checkLength(long written, long size) {
+        if (written > size) {
+            throw new IllegalArgumentException("重建后的文件超过声明的大小 " + size);
+        }
+    }
+
+    private static void transfer(FileChannel base, long offset, long length, FileChannel out) throws IOException {
+        long end = offset + length;
+        while (offset < end) {
+            long n = base.transferTo(offset, end - offset, out);
+            if (n <= 0) {
+                throw new IOException("读取原文件时长度发生变化");
+            }
+            offset += n;
+        }
+    }
+
+    private static void copyData(DataInputStream in, int length, byte[] buffer, FileChannel out) throws IOException {
+        while (length > 0) {
+            int n = in.read(buffer, 0, Math.min(length, buffer.length));
+            if (n < 0) {
+                throw new EOFException("增量数据不完整");
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
+            }
+            length -= n;
+        }
+    }
+
+    private static DeltaSignature computeSignature(SharePath file, long size, long lastModified, int blockSize) throws IOException {
+        int blockCount = (int) ((size + blockSize - 1) / blockSize);
+        byte[] weak = new byte[blockCount * 4];
+        byte[] strong = new byte[blockCount * STRONG_LENGTH];
+        MessageDigest digest = newSha256();
+        byte[] block = new byte[blockSize];
+        try (InputStream in = Files.newInputStream(file.getPath())) {
+            for (int i = 0; i < blockCount; i++) {
+                int expected = (int) Math.min(blockSize, size - (long) i * blockSize);
+                int length = in.readNBytes(block, 0, expected);
+                if (length != expected) {
+                    throw new IOException("读取时文件长度发生变化: " + file);
+                }
+                int checksum = rollingChecksum(block, length);
+                weak[i * 4] = (byte) (checksum >>> 24);
+                weak[i * 4 + 1] = (byte) (checksum >>> 16);
+                weak[i * 4 + 2] = (byte) (checksum >>> 8);
+                weak[i * 4 + 3] = (byte) checksum;
+                digest.update(block, 0, length);
+                System.arraycopy(digest.digest(), 0, strong, i * STRONG_LENGTH, STRONG_LENGTH);
+            }
+        }
+        return new DeltaSignature(file.getRelativePath(), size, lastModified, blockSize, blockCount, weak, strong);
+    }
+
+    /**
+     * rsync 的弱校验和：a 为各字节之和，b 为按位置加权之和，各取低16位，b 在高位
+     * 窗口右移一个字节时 a' = a - out + in，b' = b - 块长 × out + a'，客户端据此逐字节滑动
+     */
+    static int rollingChecksum(byte[] data, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data[i] & 0xFF;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (a & 0xFFFF) | (b << 16);
+    }
+
+    /**
+     * 块大小取文件大小的平方根（按1KB取整），签名大小与改动粒度之间的折中
+     */
+    private static int chooseBlockSize(long size) {
+        long root = (long) Math.sqrt((double) size);
+        return clampBlockSize((int) Math.min(MAX_BLOCK_SIZE, (root + 1023) / 1024 * 1024));
+    }
+
+    private static int clampBlockSize(int blockSize) {
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, blockSize));
+    }
+
+    /**
+     * 块数不超过 MAX_BLOCKS 所需的最小块大小
+     */
+    static int minBlockSizeFor(long size) {
+        return (int) Math.min(Integer.MAX_VALUE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+    }
+
+    /**
+     * 客户端提交的块大小必须是 getSignature 可能返回的值
+     */
+    static boolean isValidBlockSize(int blockSize, long size) {
+        int minimum = minBlockSizeFor(size);
+        return blockSize >= Math.max(MIN_BLOCK_SIZE, minimum) && blockSize <= Math.max(MAX_BLOCK_SIZE, minimum);
+    }
+
+    private static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JVM 不支持 SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package tech.brick.easysharer.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.model.DirectoryStats;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 目录大小统计服务
+ * 在后台 ForkJoin 线程池中递归统计每个目录的总大小和文件数并缓存；
+ * 上传等内部修改以增量方式更新各级父目录，外部修改通过目录修改时间检测并在后台重新统计，
+ * 另有定时全量刷新兜底：按顶层子目录逐个重新统计，同一时间只统计一棵子树，不会占满线程池。
+ * 缓存的目录数不超过 max-cached-dirs，超出时丢弃最深层的目录，浏览到时再按需统计。
+ */
+@Slf4j
+@Service
+public class DirectorySizeService {
+
+    @Value("${file.share.root-path:./shared}")
+    private String rootPath;
+
+    @Value("${file.share.dir-size.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.share.dir-size.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * 缓存的目录数上限
+     */
+    @Value("${file.share.dir-size.max-cached-dirs:200000}")
+    private int maxCachedDirs;
+
+    /**
+     * 统计结果缓存，Key为目录的绝对路径
+     */
+    private final Map<Path, DirectoryStats> statsCache = new ConcurrentHashMap<>();
+
+    /**
+     * 正在统计中的目录，避免重复提交
+     */
+    private final Map<Path, ForkJoinTask<DirectoryStats>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存的最大目录深度（相对于共享目录），更深的目录统计后不写入缓存；缓存超出上限时降低
+     */
+    private volatile int cacheDepthLimit = Integer.MAX_VALUE;
+
+    private final AtomicBoolean rescanning = new AtomicBoolean();
+
+    private ForkJoinPool pool;
+    private Path basePath;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("目录大小统计功能已禁用");
+            return;
+        }
+        basePath = Paths.get(rootPath).toAbsolutePath().normalize();
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+        log.info("目录大小统计服务已启动，并行度: {}", threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 定时全量刷新；启动后不立即执行，目录在首次浏览时按需统计
+     * 上一轮尚未完成时跳过本轮
+     */
+    @Scheduled(initialDelayString = "${file.share.dir-size.refresh-interval-ms:600000}",
+            fixedDelayString = "${file.share.dir-size.refresh-interval-ms:600000}")
+    public void refreshAll() {
+        if (pool == null || !Files.isDirectory(basePath) || !rescanning.compareAndSet(false, true)) {
+            return;
+        }
+        // 清理已不存在的目录
+        statsCache.keySet().removeIf(dir -> !Files.isDirectory(dir));
+        pool.execute(new RescanTask());
+    }
+
+    /**
+     * 获取目录的缓存统计，不阻塞
+     * 没有缓存或目录修改时间变化时在后台重新统计；过期期间返回旧值，没有缓存时返回null
+     */
+    public DirectoryStats getStats(Path dir, long dirModified) {
+        if (pool == null) {
+            return null;
+        }
+        DirectoryStats stats = statsCache.get(dir);
+        if (stats == null || stats.getDirModified() != dirModified) {
+            // 祖先目录正在统计时，结果稍后会一并写入缓存
+            if (!isCoveredByInFlight(dir)) {
+                refreshAsync(dir);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 获取目录统计，缓存不可用时最多等待 timeoutMillis 毫秒，超时返回当前缓存（可能为null）
+     * timeoutMillis 不大于0时与 {@link #getStats} 相同，不等待
+     */
+    public DirectoryStats estimate(Path dir, long timeoutMillis) {
+        if (pool == null) {
+            return null;
+        }
+        DirectoryStats stats = statsCache.get(dir);
+        try {
+            long dirModified = Files.getLastModifiedTime(dir).toMillis();
+            if (stats != null && stats.getDirModified() == dirModified) {
+                return stats;
+            }
+            if (timeoutMillis <= 0) {
+                return getStats(dir, dirModified);
+            }
+            ForkJoinTask<DirectoryStats> task = refreshAsync(dir);
+            return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("目录统计未在{}ms内完成: {}", timeoutMillis, dir);
+            return statsCache.get(dir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return stats;
+        } catch (Exception e) {
+            log.warn("获取目录统计失败: {}", dir, e);
+            return stats;
+        }
+    }
+
+    /**
+     * 文件新增后更新各级父目录的统计
+     */
+    public void onFileAdded(Path file, long size) {
+        applyDelta(file.getParent(), size, 1, 0);
+    }
+
+    /**
+     * 文件删除后更新各级父目录的统计
+     */
+    public void onFileRemoved(Path file, long size) {
+        applyDelta(file.getParent(), -size, -1, 0);
+    }
+
+    /**
+     * 目录整体新增或删除后更新统计，stats为该目录的统计
+     */
+    public void onDirectoryAdded(Path dir, DirectoryStats stats) {
+        applyDelta(dir.getParent(), stats.getTotalSize(), stats.getFileCount(), stats.getDirCount() + 1);
+    }
+
+    public void onDirectoryRemoved(Path dir) {
+        if (pool == null) {
+            return;
+        }
+        DirectoryStats stats = statsCache.get(dir);
+        statsCache.keySet().removeIf(path -> path.startsWith(dir));
+        if (stats != null) {
+            applyDelta(dir.getParent(), -stats.getTotalSize(), -stats.getFileCount(), -(stats.getDirCount() + 1));
+        } else if (dir.getParent() != null) {
+            // 不知道被删目录的大小，只能重新统计父目录
+            refreshAsync(dir.getParent());
+        }
+    }
+
+    /**
+     * 目录整体移动（同一文件系统内的 rename）后更新统计
+     * 原路径下的缓存作废；移动前已有统计时按该统计叠加到新的各级父目录，否则重新统计新的父目录
+     */
+    public void onDirectoryMoved(Path source, Path target) {
+        DirectoryStats stats = statsCache.get(source);
+        onDirectoryRemoved(source);
+        if (stats != null) {
+            onDirectoryAdded(target, stats);
+        } else if (pool != null && target.getParent() != null) {
+            refreshAsync(target.getParent());
+        }
+    }
+
+    /**
+     * 从指定目录开始逐级向上叠加增量，直到根目录
+     * 直接父目录的修改时间随之更新，避免被误判为外部修改
+     */
+    private void applyDelta(Path dir, long sizeDelta, long fileDelta, long dirDelta) {
+        if (pool == null || dir == null) {
+            return;
+        }
+        long parentModified = lastModified(dir);
+        boolean first = true;
+        for (Path current = dir; current != null && current.startsWith(basePath); current = current.getParent()) {
+            long modified = first ? parentModified : -1;
+            statsCache.computeIfPresent(current, (key, stats) ->
+                    stats.plus(sizeDelta, fileDelta, dirDelta, modified >= 0 ? modified : stats.getDirModified()));
+            first = false;
+        }
+    }
+
+    private ForkJoinTask<DirectoryStats> refreshAsync(Path dir) {
+        return refreshAsync(dir, false);
+    }
+
+    /**
+     * reuseChildren 为 true 时，修改时间未变化的子目录直接使用缓存的统计
+     */
+    private ForkJoinTask<DirectoryStats> refreshAsync(Path dir, boolean reuseChildren) {
+        ForkJoinTask<DirectoryStats> existing = inFlight.get(dir);
+        if (existing != null) {
+            return existing;
+        }
+        SizeTask task = new SizeTask(dir, true, reuseChildren);
+        existing = inFlight.putIfAbsent(dir, task);
+        if (existing != null) {
+            return existing;
+        }
+        pool.execute(task);
+        return task;
+    }
+
+    private boolean isCoveredByInFlight(Path dir) {
+        for (Path current = dir; current != null; current = current.getParent()) {
+            if (inFlight.containsKey(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存超出上限时丢弃最深层的目录，并不再缓存这些深度的目录
+     */
+    private void trimCache() {
+        if (statsCache.size() <= maxCachedDirs) {
+            return;
+        }
+        TreeMap<Integer, Integer> countByDepth = new TreeMap<>();
+        for (Path dir : statsCache.keySet()) {
+            countByDepth.merge(depth(dir), 1, Integer::sum);
+        }
+        int limit = -1;
+        int kept = 0;
+        for (Map.Entry<Integer, Integer> entry : countByDepth.entrySet()) {
+            if (kept + entry.getValue() > maxCachedDirs) {
+                break;
+            }
+            kept += entry.getValue();
+            limit = entry.getKey();
+        }
+        int depthLimit = Math.max(limit, 0);
+        cacheDepthLimit = depthLimit;
+        int before = statsCache.size();
+        statsCache.keySet().removeIf(dir -> depth(dir) > depthLimit);
+        log.info("目录统计缓存超过上限 {}，丢弃深度大于 {} 的目录: {} -> {}", maxCachedDirs, depthLimit, before, statsCache.size());
+    }
+
+    private int depth(Path dir) {
+        return dir.getNameCount() - basePath.getNameCount();
+    }
+
+    private static long lastModified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 定时全量刷新：逐个重新统计顶层子目录，最后由子目录的统计汇总出共享目录本身
+     */
+    private class RescanTask extends RecursiveAction {
+
+        @Override
+        protected void compute() {
+            try {
+                List<Path> subdirs = new ArrayList<>();
+                try (DirectoryStream<Path> children = Files.newDirectoryStream(basePath)) {
+                    for (Path child : children) {
+                        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                            subdirs.add(child);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.debug("读取目录失败: {}", basePath);
+                }
+                if (statsCache.size() < maxCachedDirs / 2) {
+                    // 目录减少后恢复缓存所有深度，超出时再次降低
+                    cacheDepthLimit = Integer.MAX_VALUE;
+                }
+                for (Path subdir : subdirs) {
+                    refreshAsync(subdir).join();
+                }
+                refreshAsync(basePath, true).join();
+                log.debug("目录统计全量刷新完成: {} 个顶层目录, 缓存 {} 个目录", subdirs.size(), statsCache.size());
+            } catch (RuntimeException e) {
+                log.warn("目录统计全量刷新失败", e);
+            } finally {
+                rescanning.set(false);
+            }
+        }
+    }
+
+    /**
+     * 递归统计任务：每个子目录拆分为一个子任务
+     */
+    private class SizeTask extends RecursiveTask<DirectoryStats> {
+
+        private final Path dir;
+
+        /**
+         * 是否为提交到线程池的顶层任务，完成后需从 inFlight 中移除
+         */
+        private final boolean topLevel;
+
+        /**
+         * 修改时间未变化的子目录是否直接使用缓存，只对当前目录的直接子目录生效
+         */
+        private final boolean reuseChildren;
+
+        SizeTask(Path dir, boolean topLevel) {
+            this(dir, topLevel, false);
+        }
+
+        SizeTask(Path dir, boolean topLevel, boolean reuseChildren) {
+            this.dir = dir;
+            this.topLevel = topLevel;
+            this.reuseChildren = reuseChildren;
+        }
+
+        @Override
+        protected DirectoryStats compute() {
+            try {
+                return computeStats();
+            } finally {
+                if (topLevel) {
+                    inFlight.remove(dir, this);
+                    trimCache();
+                }
+            }
+        }
+
+        private DirectoryStats computeStats() {
+            long dirModified = lastModified(dir);
+            long totalSize = 0;
+            long fileCount = 0;
+            long dirCount = 0;
+            List<SizeTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    try {
+                        // 不跟随符号链接，避免循环
+                        BasicFileAttributes attrs = Files.readAttributes(
+                                child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isDirectory()) {
+                            DirectoryStats cached = reuseChildren ? statsCache.get(child) : null;
+                            if (cached != null && cached.getDirModified() == attrs.lastModifiedTime().toMillis()) {
+                                totalSize += cached.getTotalSize();
+                                fileCount += cached.getFileCount();
+                                dirCount += cached.getDirCount() + 1;
+                                continue;
+                            }
+                            SizeTask subtask = new SizeTask(child, false);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                            dirCount++;
+                        } else if (attrs.isRegularFile() && !UploadService.isStagingFile(child)) {
+                            // 上传中的暂存文件在提交时通过 onFileAdded 计入
+                            totalSize += attrs.size();
+                            fileCount++;
+                        }
+                    } catch (IOException e) {
+                        log.debug("读取文件属性失败: {}", child);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("读取目录失败: {}", dir);
+            }
+
+            for (SizeTask subtask : subtasks) {
+                DirectoryStats childStats = subtask.join();
+                totalSize += childStats.getTotalSize();
+                fileCount += childStats.getFileCount();
+                dirCount += childStats.getDirCount();
+            }
+
+            DirectoryStats stats = new DirectoryStats(totalSize, fileCount, dirCount, dirModified, System.currentTimeMillis());
+            if (topLevel || depth(dir) <= cacheDepthLimit) {
+                statsCache.put(dir, stats);
+            }
+            if (topLevel) {
+                log.debug("目录统计完成: {} ({} 个文件, {} bytes)", dir, fileCount, totalSize);
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package tech.brick.easysharer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.model.DirectoryStats;
+import tech.brick.easysharer.model.FileOperationProgress;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务器端文件操作：新建文件夹、重命名、移动、复制、删除
+ * 源和目标都经 {@link SharePathResolver} 解析，并按真实路径再确认一次位于共享根目录内（防止经符号链接写到外面）。
+ * 同一文件系统内的移动和重命名是一次原子的 rename，不复制任何数据；跨文件系统时退化为复制后删除源文件。
+ * 复制使用 {@link FileChannel#transferTo}，数据由内核在两个文件之间直接拷贝，不经过 Java 堆。
+ * 由 file.operations.enabled 控制（默认跟随上传开关），移动、复制、删除可以通过客户端提供的 operationId 查询进度。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileOperationService {
+
+    private final SharePathResolver pathResolver;
+    private final DirectorySizeService directorySizeService;
+    private final HotFileCache hotFileCache;
+    private final ZipBrowseService zipBrowseService;
+    private final HashService hashService;
+
+    /**
+     * 未单独配置时跟随上传开关
+     */
+    @Value("${file.operations.enabled:${file.upload.enabled:false}}")
+    private boolean enabled;
+
+    /**
+     * 每次 transferTo 最多复制的字节数，大文件分段复制以便更新进度
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * 进行中的操作，Key为客户端提供的operationId
+     */
+    private final Map<String, FileOperationProgress> operationProgress = new ConcurrentHashMap<>();
+
+    /**
+     * 检查文件操作是否启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取进行中的操作的进度，操作不存在或已完成时返回null
+     */
+    public FileOperationProgress getProgress(String operationId) {
+        return operationProgress.get(operationId);
+    }
+
+    /**
+     * 在 parentPath 下新建文件夹，返回新文件夹的相对路径
+     */
+    public String createDirectory(String parentPath, String name) throws IOException {
+        checkEnabled();
+        SharePath parent = pathResolver.resolve(parentPath);
+        requireDirectory(parent);
+        SharePath dir = parent.child(validateName(name));
+
+        try {
+            Files.createDirectory(dir.getPath());
+        } catch (FileAlreadyExistsException e) {
+            throw new FileAlreadyExistsException(dir.getRelativePath(), null, "目标已存在");
+        }
+        directorySizeService.onDirectoryAdded(dir.getPath(), new DirectoryStats(0, 0, 0, 0, System.currentTimeMillis()));
+        log.info("新建文件夹: {}", dir);
+        return dir.getRelativePath();
+    }
+
+    /**
+     * 在原目录内重命名文件或文件夹
+     */
+    public FileOperationProgress rename(String path, String newName) throws IOException {
+        checkEnabled();
+        SharePath source = requireExisting(path);
+        SharePath target = source.parent().child(validateName(newName));
+        // 只改变大小写时，在不区分大小写的文件系统上目标"已存在"且就是源文件本身
+        if (!isSameFile(source.getPath(), target.getPath())) {
+            requireAbsent(target);
+        }
+        return track("RENAME", source, target, null, progress -> move(source, target, progress));
+    }
+
+    /**
+     * 把文件或文件夹移动到 targetDirPath 目录下，名称不变
+     */
+    public FileOperationProgress move(String path, String targetDirPath, String operationId) throws IOException {
+        checkEnabled();
+        SharePath source = requireExisting(path);
+        SharePath target = destinationIn(targetDirPath, source);
+        return track("MOVE", source, target, operationId, progress -> move(source, target, progress));
+    }
+
+    /**
+     * 把文件或文件夹复制到 targetDirPath 目录下，名称不变
+     */
+    public FileOperationProgress copy(String path, String targetDirPath, String operationId) throws IOException {
+        checkEnabled();
+        SharePath source = requireExisting(path);
+        SharePath target = destinationIn(targetDirPath, source);
+        return track("COPY", source, target, operationId, progress -> {
+            DirectoryStats copied = copyTree(source.getPath(), target.getPath(), progress);
+            if (Files.isDirectory(target.getPath(), LinkOption.NOFOLLOW_LINKS)) {
+                directorySizeService.onDirectoryAdded(target.getPath(), copied);
+            } else if (copied.getFileCount() > 0) {
+                directorySizeService.onFileAdded(target.getPath(), copied.getTotalSize());
+            }
+        });
+    }
+
+    /**
+     * 删除文件或文件夹（递归）
+     */
+    public FileOperationProgress delete(String path, String operationId) throws IOException {
+        checkEnabled();
+        SharePath source = requireExisting(path);
+        return track("DELETE", source, null, operationId, progress -> {
+            Path file = source.getPath();
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attrs.isDirectory()) {
+                progress.setTotalFiles(1);
+                progress.setTotalBytes(attrs.size());
+                Files.delete(file);
+                progress.setFilesDone(1);
+                progress.setBytesDone(attrs.size());
+                if (attrs.isRegularFile()) {
+                    directorySizeService.onFileRemoved(file, attrs.size());
+                }
+                invalidateCaches(file);
+                return;
+            }
+            try {
+                countTree(file, progress);
+                deleteTree(file, progress);
+            } finally {
+                // 中途失败时目录可能只删除了一部分，统计缓存整体作废后重新统计
+                directorySizeService.onDirectoryRemoved(file);
+                invalidateCaches(file);
+            }
+        });
+    }
+
+    /**
+     * 移动到目标路径，目标不存在已由调用方检查
+     */
+    private void move(SharePath source, SharePath target, FileOperationProgress progress) throws IOException {
+        Path from = source.getPath();
+        Path to = target.getPath();
+        BasicFileAttributes attrs = Files.readAttributes(from, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        DirectoryStats stats = null;
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.info("目标位于其他文件系统，改为复制后删除: {} -> {}", source, target);
+            stats = copyTree(from, to, progress);
+            try {
+                deleteTree(from, null);
+            } catch (IOException deleteError) {
+                throw new IOException("已复制到 " + target + "，但删除源文件失败: " + deleteError.getMessage(), deleteError);
+            }
+        }
+
+        invalidateCaches(from);
+        // 符号链接不计入目录统计
+        if (attrs.isRegularFile()) {
+            directorySizeService.onFileRemoved(from, attrs.size());
+            directorySizeService.onFileAdded(to, attrs.size());
+        } else if (attrs.isDirectory() && stats != null) {
+            directorySizeService.onDirectoryRemoved(from);
+            directorySizeService.onDirectoryAdded(to, stats);
+        } else if (attrs.isDirectory()) {
+            directorySizeService.onDirectoryMoved(from, to);
+        }
+    }
+
+    /**
+     * 复制文件或目录树，返回复制的文件总大小、文件数和子目录数
+     * 先遍历一次得到总量用于进度，再逐个复制；失败时删除已复制的部分
+     */
+    private DirectoryStats copyTree(Path from, Path to, FileOperationProgress progress) throws IOException {
+        countTree(from, progress);
+        long[] dirCount = {0};
+        // 目标由本次复制创建后，失败时才删除，避免误删并发创建的同名文件
+        boolean[] created = {false};
+        Deque<FileTime> dirTimes = new ArrayDeque<>();
+        try {
+            Files.walkFileTree(from, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectory(to.resolve(from.relativize(dir).toString()));
+                    created[0] = true;
+                    dirTimes.push(attrs.lastModifiedTime());
+                    if (!dir.equals(from)) {
+                        dirCount[0]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (UploadService.isStagingFile(file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    Path dest = to.resolve(from.relativize(file).toString());
+                    progress.setCurrentFile(from.relativize(file).toString().replace("\\", "/"));
+                    if (file.equals(from) && Files.notExists(dest, LinkOption.NOFOLLOW_LINKS)) {
+                        created[0] = true;
+                    }
+                    if (attrs.isSymbolicLink()) {
+                        Files.copy(file, dest, LinkOption.NOFOLLOW_LINKS);
+                    } else if (attrs.isRegularFile()) {
+                        copyFile(file, dest, attrs, progress);
+                        progress.setFilesDone(progress.getFilesDone() + 1);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    // 目录的修改时间在写入子项后才能恢复
+                    Files.setLastModifiedTime(to.resolve(from.relativize(dir).toString()), dirTimes.pop());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            if (created[0]) {
+                deleteQuietly(to);
+            }
+            throw e;
+        }
+        return new DirectoryStats(progress.getBytesDone(), progress.getFilesDone(), dirCount[0], 0, System.currentTimeMillis());
+    }
+
+    /**
+     * 用 transferTo 复制单个文件并保留修改时间
+     * 复制期间源文件变短时只复制现有内容
+     */
+    private void copyFile(Path source, Path target, BasicFileAttributes attrs, FileOperationProgress progress) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long n = in.transferTo(position, Math.min(size - position, TRANSFER_CHUNK_SIZE), out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+                progress.setBytesDone(progress.getBytesDone() + n);
+            }
+        }
+        Files.setLastModifiedTime(target, attrs.lastModifiedTime());
+    }
+
+    /**
+     * 统计待处理的文件数和总大小，写入进度的总量
+     */
+    private void countTree(Path root, FileOperationProgress progress) throws IOException {
+        long[] totals = {0, 0};
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !UploadService.isStagingFile(file)) {
+                    totals[0]++;
+                    totals[1] += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        progress.setTotalFiles(totals[0]);
+        progress.setTotalBytes(totals[1]);
+    }
+
+    /**
+     * 递归删除，不跟随符号链接；progress 为null时不更新进度
+     */
+    private void deleteTree(Path root, FileOperationProgress progress) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (progress != null) {
+                    progress.setCurrentFile(root.relativize(file).toString().replace("\\", "/"));
+                }
+                Files.delete(file);
+                if (progress != null && attrs.isRegularFile() && !UploadService.isStagingFile(file)) {
+                    progress.setFilesDone(progress.getFilesDone() + 1);
+                    progress.setBytesDone(progress.getBytesDone() + attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void deleteQuietly(Path root) {
+        try {
+            if (Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+                deleteTree(root, null);
+            }
+        } catch (IOException e) {
+            log.warn("清理复制了一半的文件失败: {}", root, e);
+        }
+    }
+
+    /**
+     * 执行一个操作并记录进度，operationId 不为空时操作期间可以查询进度
+     */
+    private FileOperationProgress track(String operation, SharePath source, SharePath target, String operationId,
+                                        Operation body) throws IOException {
+        FileOperationProgress progress = new FileOperationProgress(operation, source.getRelativePath(),
+                target != null ? target.getRelativePath() : null);
+        boolean tracked = operationId != null && !operationId.isEmpty();
+        if (tracked) {
+            operationProgress.put(operationId, progress);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            body.run(progress);
+            progress.setStatus(FileOperationProgress.Status.SUCCESS);
+            return progress;
+        } catch (IOException | RuntimeException e) {
+            progress.setStatus(FileOperationProgress.Status.FAILED);
+            progress.setMessage(e.getMessage());
+            throw e;
+        } finally {
+            progress.setElapsedMillis(System.currentTimeMillis() - start);
+            progress.setCurrentFile(null);
+            if (tracked) {
+                operationProgress.remove(operationId);
+            }
+            log.info("文件操作 {}: '{}' -> '{}', 状态: {}, {} 个文件, {} bytes, 耗时 {} ms", operation, progress.getSource(),
+                    progress.getTarget(), progress.getStatus(), progress.getFilesDone(), progress.getBytesDone(),
+                    progress.getElapsedMillis());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(FileOperationProgress progress) throws IOException;
+    }
+
+    /**
+     * 移动或复制的目标：targetDirPath 目录下与源同名的路径
+     */
+    private SharePath destinationIn(String targetDirPath, SharePath source) throws IOException {
+        SharePath targetDir = pathResolver.resolve(targetDirPath);
+        requireDirectory(targetDir);
+        if (targetDir.getPath().startsWith(source.getPath())) {
+            throw new IllegalArgumentException("不能移动或复制到自身或其子文件夹中");
+        }
+        SharePath target = targetDir.child(source.getPath().getFileName().toString());
+        requireAbsent(target);
+        return target;
+    }
+
+    private void checkEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("文件操作功能未启用");
+        }
+    }
+
+    /**
+     * 解析已存在的源路径，不允许操作根目录
+     */
+    private SharePath requireExisting(String path) throws IOException {
+        SharePath source = pathResolver.resolve(path);
+        if (source.isRoot()) {
+            throw new SecurityException("不能操作共享根目录");
+        }
+        if (!Files.exists(source.getPath(), LinkOption.NOFOLLOW_LINKS)) {
+            throw new NoSuchFileException(source.getRelativePath(), null, "文件不存在");
+        }
+        requireInsideRoot(source.parent());
+        return source;
+    }
+
+    private void requireDirectory(SharePath dir) throws IOException {
+        if (!Files.isDirectory(dir.getPath())) {
+            if (!Files.exists(dir.getPath())) {
+                throw new NoSuchFileException(dir.getRelativePath(), null, "目录不存在");
+            }
+            throw new IllegalArgumentException("不是文件夹: " + dir.getRelativePath());
+        }
+        requireInsideRoot(dir);
+    }
+
+    private static void requireAbsent(SharePath target) throws FileAlreadyExistsException {
+        if (Files.exists(target.getPath(), LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(target.getRelativePath(), null, "目标已存在");
+        }
+    }
+
+    /**
+     * 相对路径已保证不含 ..，这里再按真实路径检查，防止目录本身是指向根目录外的符号链接
+     */
+    private void requireInsideRoot(SharePath dir) throws IOException {
+        Path realRoot = pathResolver.getRoot().toRealPath();
+        if (!dir.getPath().toRealPath().startsWith(realRoot)) {
+            log.warn("目录经符号链接指向共享目录外: {}", dir);
+            throw new SecurityException("不允许修改根路径外的文件: " + dir.getRelativePath());
+        }
+    }
+
+    /**
+     * 校验单个文件名：不能为空，不能包含路径分隔符和非法字符，不能是上传暂存文件名
+     */
+    private static String validateName(String name) {
+        String cleaned = SharePathResolver.clean(name);
+        if (cleaned.isEmpty()) {
+            throw new IllegalArgumentException("名称不能为空");
+        }
+        if (cleaned.indexOf('/') >= 0) {
+            throw new IllegalArgumentException("名称不能包含路径分隔符");
+        }
+        if (UploadService.isStagingFile(Paths.get(cleaned))) {
+            throw new IllegalArgumentException("名称无效: " + cleaned);
+        }
+        return cleaned;
+    }
+
+    private static boolean isSameFile(Path a, Path b) {
+        try {
+            return Files.exists(b, LinkOption.NOFOLLOW_LINKS) && Files.isSameFile(a, b);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 文件被移动或删除后，清除以原路径为键的缓存
+     * 复制会保留修改时间，若不清除，之后复制到原路径的同样大小的文件可能命中旧缓存
+     */
+    private void invalidateCaches(Path path) {
+        hotFileCache.invalidateTree(path);
+        zipBrowseService.invalidateTree(path);
+        hashService.invalidateTree(path);
+    }
+}
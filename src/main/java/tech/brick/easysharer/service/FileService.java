@@ -1,28 +1,69 @@
 package tech.brick.easysharer.service;
 
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import tech.brick.easysharer.model.DirectoryStats;
 import tech.brick.easysharer.model.FileInfo;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class FileService {
 
-    @Value("${file.share.root-path:./shared}")
-    private String rootPath;
+    private final DirectorySizeService directorySizeService;
+    private final HotFileCache hotFileCache;
+    private final SharePathResolver pathResolver;
+
+    /**
+     * 打包多个选中项时的遍历线程，与目录大小统计的线程池分开，后台全量统计不会拖慢下载
+     * 遍历在队列满时阻塞等待客户端，因此按需创建线程，空闲后回收
+     */
+    private final ExecutorService walkExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "tree-walk-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        walkExecutor.shutdownNow();
+    }
 
     /**
      * 获取指定路径下的文件列表
@@ -30,27 +71,32 @@ public class FileService {
     public List<FileInfo> listFiles(String relativePath) {
         List<FileInfo> fileInfos = new ArrayList<>();
         
+        SharePath target;
+        try {
+            target = pathResolver.resolve(relativePath);
+        } catch (SecurityException | IllegalArgumentException e) {
+            log.warn("尝试访问根路径外的目录: {}", relativePath);
+            return fileInfos;
+        }
+        return listFiles(target);
+    }
+
+    /**
+     * 获取已校验路径下的文件列表
+     */
+    public List<FileInfo> listFiles(SharePath target) {
+        List<FileInfo> fileInfos = new ArrayList<>();
+        Path basePath = pathResolver.getRoot();
+        Path targetPath = target.getPath();
+        
         try {
-            Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-            Path targetPath = basePath;
-            
-            if (relativePath != null && !relativePath.isEmpty() && !relativePath.equals("/")) {
-                targetPath = basePath.resolve(relativePath).normalize();
-                
-                // 安全检查：确保目标路径在根路径内
-                if (!targetPath.startsWith(basePath)) {
-                    log.warn("尝试访问根路径外的目录: {}", targetPath);
-                    return fileInfos;
-                }
-            }
-            
             if (!Files.exists(targetPath)) {
                 log.warn("目录不存在: {}", targetPath);
                 return fileInfos;
             }
             
             try (Stream<Path> paths = Files.list(targetPath)) {
-                paths.forEach(path -> {
+                paths.filter(path -> !UploadService.isStagingFile(path)).forEach(path -> {
                     try {
                         FileInfo fileInfo = createFileInfo(path, basePath);
                         fileInfos.add(fileInfo);
@@ -75,23 +121,40 @@ public class FileService {
         return fileInfos;
     }
     
+    /**
+     * 以流的方式遍历指定目录，不排序、不缓存整个列表
+     * 调用方必须关闭返回的Stream；读取失败的条目会被跳过
+     */
+    public Stream<FileInfo> streamFiles(String relativePath) throws IOException {
+        Path basePath = pathResolver.getRoot();
+        Path targetPath = pathResolver.resolve(relativePath).getPath();
+
+        if (!Files.isDirectory(targetPath)) {
+            throw new IOException("目录不存在: " + relativePath);
+        }
+
+        return Files.list(targetPath)
+                .filter(path -> !UploadService.isStagingFile(path))
+                .map(path -> {
+                    try {
+                        return createFileInfo(path, basePath);
+                    } catch (IOException e) {
+                        log.error("读取文件信息失败: {}", path, e);
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
     /**
      * 获取文件资源用于下载
      */
     public Resource getFileAsResource(String relativePath) throws MalformedURLException {
-        log.info("FileService.getFileAsResource - 相对路径: {}", relativePath);
+        log.debug("FileService.getFileAsResource - 相对路径: {}", relativePath);
         
-        Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-        log.info("FileService.getFileAsResource - 基础路径: {}", basePath);
-        
-        Path filePath = basePath.resolve(relativePath).normalize();
-        log.info("FileService.getFileAsResource - 完整文件路径: {}", filePath);
-        
-        // 安全检查
-        if (!filePath.startsWith(basePath)) {
-            log.error("安全检查失败 - 文件路径不在基础路径内: 文件={}, 基础={}", filePath, basePath);
-            throw new SecurityException("不允许访问根路径外的文件");
-        }
+        // 解析并做安全检查
+        Path filePath = pathResolver.resolve(relativePath).getPath();
+        log.debug("FileService.getFileAsResource - 完整文件路径: {}", filePath);
         
         // 检查文件是否存在
         if (!Files.exists(filePath)) {
@@ -105,9 +168,15 @@ public class FileService {
             throw new RuntimeException("路径不是文件: " + relativePath);
         }
         
+        // 热点小文件直接从内存输出
+        Resource cached = hotFileCache.get(filePath);
+        if (cached != null) {
+            return cached;
+        }
+        
         Resource resource = new UrlResource(filePath.toUri());
         if (resource.exists() && resource.isReadable()) {
-            log.info("文件资源创建成功: {}", filePath);
+            log.debug("文件资源创建成功: {}", filePath);
             return resource;
         } else {
             log.error("文件资源创建失败或不可读: {}", filePath);
@@ -120,39 +189,56 @@ public class FileService {
      */
     public boolean fileExists(String relativePath) {
         try {
-            Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-            Path filePath = basePath.resolve(relativePath).normalize();
-            
-            if (!filePath.startsWith(basePath)) {
-                return false;
-            }
-            
-            return Files.exists(filePath) && Files.isRegularFile(filePath);
+            Path filePath = pathResolver.resolve(relativePath).getPath();
+            return Files.isRegularFile(filePath);
         } catch (Exception e) {
             log.error("检查文件存在性失败: {}", relativePath, e);
             return false;
         }
     }
     
+    /**
+     * 在后台线程中遍历多个路径（用于打包下载多个选中项），调用方一边读取一边打包
+     * 每遍历完一个目录就把该目录及其下的文件作为一批交给调用方，批次经有界队列传递：
+     * 第一个目录读完即可开始输出，客户端较慢时遍历在队列满后暂停。
+     * 当前路径之后的几个路径同时在其他线程中提前遍历，批次仍按路径的顺序交给调用方。不存在的路径会被跳过
+     */
+    public TreeWalk walk(List<SharePath> roots) {
+        TreeWalk walk = new TreeWalk(roots);
+        walk.startAhead();
+        return walk;
+    }
+    
     /**
      * 获取根路径
      */
     public String getRootPath() {
-        return Paths.get(rootPath).toAbsolutePath().toString();
+        return pathResolver.getRoot().toString();
     }
     
     /**
      * 创建文件信息对象
      */
-    private FileInfo createFileInfo(Path path, Path basePath) throws IOException {
+    FileInfo createFileInfo(Path path, Path basePath) throws IOException {
         String relativePath = basePath.relativize(path).toString().replace("\\", "/");
         String name = path.getFileName().toString();
         boolean isDirectory = Files.isDirectory(path);
         long size = isDirectory ? 0 : Files.size(path);
+        FileTime modifiedTime = Files.getLastModifiedTime(path);
         LocalDateTime lastModified = LocalDateTime.ofInstant(
-            Files.getLastModifiedTime(path).toInstant(),
+            modifiedTime.toInstant(),
             ZoneId.systemDefault()
         );
+
+        // 目录使用后台统计的递归大小，尚未统计完成时保持为0
+        Long fileCount = null;
+        if (isDirectory) {
+            DirectoryStats stats = directorySizeService.getStats(path, modifiedTime.toMillis());
+            if (stats != null) {
+                size = stats.getTotalSize();
+                fileCount = stats.getFileCount();
+            }
+        }
         
         return FileInfo.builder()
             .name(name)
@@ -160,22 +246,40 @@ public class FileService {
             .isDirectory(isDirectory)
             .size(size)
             .lastModified(lastModified)
+            .fileCount(fileCount)
             .build();
     }
 
+    /**
+     * 获取目录的递归大小统计（用于文件夹下载前的预估）
+     * 缓存不可用时最多等待 timeoutMillis 毫秒，仍未完成则返回null
+     */
+    public DirectoryStats getDirectoryStats(String relativePath, long timeoutMillis) {
+        Path targetPath = pathResolver.resolve(relativePath).getPath();
+        return directorySizeService.estimate(targetPath, timeoutMillis);
+    }
+
+    /**
+     * 清理并校验相对路径
+     */
+    public SharePath resolvePath(String relativePath) {
+        return pathResolver.resolve(relativePath);
+    }
+
+    /**
+     * 热点文件缓存的统计信息
+     */
+    public Map<String, Object> getHotCacheStatistics() {
+        return hotFileCache.getStatistics();
+    }
+
     /**
      * 检查路径是否为目录
      */
     public boolean isDirectory(String relativePath) {
         try {
-            Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-            Path targetPath = basePath.resolve(relativePath).normalize();
-            
-            if (!targetPath.startsWith(basePath)) {
-                return false;
-            }
-            
-            return Files.exists(targetPath) && Files.isDirectory(targetPath);
+            Path targetPath = pathResolver.resolve(relativePath).getPath();
+            return Files.isDirectory(targetPath);
         } catch (Exception e) {
             log.error("检查目录失败: {}", relativePath, e);
             return false;
@@ -186,43 +290,258 @@ public class FileService {
      * 获取文件输入流（用于ZIP打包）
      */
     public InputStream getFileInputStream(String relativePath) throws IOException {
-        Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-        Path filePath = basePath.resolve(relativePath).normalize();
-        
-        // 安全检查
-        if (!filePath.startsWith(basePath)) {
-            throw new SecurityException("不允许访问根路径外的文件: " + relativePath);
-        }
-        
-        // 检查文件是否存在
-        if (!Files.exists(filePath)) {
-            throw new IOException("文件不存在: " + relativePath);
-        }
+        return getFileInputStream(pathResolver.resolve(relativePath));
+    }
+    
+    /**
+     * 获取已校验路径的文件输入流
+     */
+    public InputStream getFileInputStream(SharePath file) throws IOException {
+        Path filePath = file.getPath();
         
         // 检查是否为文件
-        if (!Files.isRegularFile(filePath)) {
-            throw new IOException("路径不是文件: " + relativePath);
+        if (Files.isDirectory(filePath)) {
+            throw new IOException("路径不是文件: " + file);
         }
         
-        return Files.newInputStream(filePath);
+        try {
+            return Files.newInputStream(filePath);
+        } catch (NoSuchFileException e) {
+            throw new IOException("文件不存在: " + file, e);
+        }
     }
     
     /**
      * 获取文件最后修改时间
      */
     public long getLastModified(String relativePath) throws IOException {
-        Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-        Path filePath = basePath.resolve(relativePath).normalize();
-        
-        // 安全检查
-        if (!filePath.startsWith(basePath)) {
-            throw new SecurityException("不允许访问根路径外的文件: " + relativePath);
+        return getLastModified(pathResolver.resolve(relativePath));
+    }
+    
+    /**
+     * 获取已校验路径的最后修改时间
+     */
+    public long getLastModified(SharePath file) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file.getPath()).toMillis();
+        } catch (NoSuchFileException e) {
+            throw new IOException("文件不存在: " + file, e);
         }
-        
-        if (!Files.exists(filePath)) {
-            throw new IOException("文件不存在: " + relativePath);
+    }
+
+    /**
+     * 进行中的遍历，先序：目录本身、目录下的文件，然后依次是各子目录；同一目录内按名称排序
+     * 只用 DirectoryStream 列目录，每个条目读取一次属性（类型和大小），不构造 FileInfo，也不统计目录大小
+     */
+    public final class TreeWalk implements Closeable {
+
+        /**
+         * 同时遍历的路径数：调用方正在读取的路径及其后的路径
+         */
+        private static final int WALK_AHEAD = 4;
+
+        /**
+         * 每个路径的队列中最多缓存的目录批次数
+         */
+        private static final int QUEUE_BATCHES = 16;
+
+        /**
+         * 遍历结束的标记，正常批次至少包含一个条目
+         */
+        private static final List<TreeEntry> END = List.of();
+
+        private final List<SharePath> roots;
+        private final List<RootWalk> started = new ArrayList<>();
+        private int current;
+        private volatile boolean closed;
+
+        private TreeWalk(List<SharePath> roots) {
+            this.roots = roots;
+        }
+
+        /**
+         * 下一批条目，全部遍历完时返回null
+         */
+        public List<TreeEntry> next() throws IOException {
+            while (current < roots.size()) {
+                startAhead();
+                RootWalk rootWalk = started.get(current);
+                List<TreeEntry> batch;
+                try {
+                    batch = rootWalk.queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("等待目录遍历时被中断");
+                }
+                if (batch != END) {
+                    return batch;
+                }
+                if (rootWalk.failure != null) {
+                    throw new IOException("遍历目录失败: " + rootWalk.failure.getMessage(), rootWalk.failure);
+                }
+                current++;
+            }
+            return null;
+        }
+
+        /**
+         * 停止遍历，调用方不再读取剩余的条目（客户端断开或出错）
+         */
+        @Override
+        public void close() {
+            closed = true;
+            for (RootWalk rootWalk : started) {
+                rootWalk.queue.clear();
+                rootWalk.task.cancel(false);
+            }
+        }
+
+        /**
+         * 开始遍历当前路径及其后最多 WALK_AHEAD - 1 个路径
+         */
+        private void startAhead() {
+            int end = Math.min(roots.size(), current + WALK_AHEAD);
+            while (started.size() < end && !closed) {
+                RootWalk rootWalk = new RootWalk(roots.get(started.size()));
+                rootWalk.task = walkExecutor.submit(rootWalk::run);
+                started.add(rootWalk);
+            }
+        }
+
+        /**
+         * 一个路径的遍历，批次放入该路径自己的队列
+         */
+        private final class RootWalk {
+            private final SharePath root;
+            private final BlockingQueue<List<TreeEntry>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+            private Future<?> task;
+            private volatile RuntimeException failure;
+
+            private RootWalk(SharePath root) {
+                this.root = root;
+            }
+
+            private void run() {
+                try {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(root.getPath(), BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        log.warn("路径不存在或无法读取，已跳过: {}", root);
+                        return;
+                    }
+                    if (!attrs.isDirectory()) {
+                        put(List.of(new TreeEntry(root, false, attrs.size(), false)));
+                        return;
+                    }
+                    Deque<SharePath> pending = new ArrayDeque<>();
+                    pending.push(root);
+                    while (!pending.isEmpty() && !closed) {
+                        walkDirectory(pending.pop(), pending);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("遍历目录失败: {}", root, e);
+                    failure = e;
+                } finally {
+                    put(END);
+                }
+            }
+
+            /**
+             * 列出一个目录：目录和文件作为一批放入队列，子目录按名称顺序压入 pending
+             */
+            private void walkDirectory(SharePath dir, Deque<SharePath> pending) {
+                List<String> names = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.getPath())) {
+                    for (Path child : stream) {
+                        if (!UploadService.isStagingFile(child)) {
+                            names.add(child.getFileName().toString());
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("读取目录失败，按空目录处理: {} ({})", dir, e.getMessage());
+                    names.clear();
+                }
+                names.sort(String::compareToIgnoreCase);
+
+                List<TreeEntry> batch = new ArrayList<>(names.size() + 1);
+                batch.add(new TreeEntry(dir, true, 0, names.isEmpty()));
+                List<SharePath> subdirs = new ArrayList<>();
+                for (String name : names) {
+                    SharePath child = dir.child(name);
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child.getPath(), BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        log.warn("读取文件信息失败，已跳过: {} ({})", child, e.getMessage());
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subdirs.add(child);
+                    } else {
+                        batch.add(new TreeEntry(child, false, attrs.size(), false));
+                    }
+                }
+                put(batch);
+                for (int i = subdirs.size() - 1; i >= 0; i--) {
+                    pending.push(subdirs.get(i));
+                }
+            }
+
+            /**
+             * 放入队列，队列满时等待；遍历已停止时直接丢弃
+             */
+            private void put(List<TreeEntry> batch) {
+                try {
+                    while (!closed) {
+                        if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 遍历得到的文件或目录
+     */
+    public static final class TreeEntry {
+        private final SharePath path;
+        private final boolean directory;
+        private final long size;
+        private final boolean empty;
+
+        private TreeEntry(SharePath path, boolean directory, long size, boolean empty) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.empty = empty;
+        }
+
+        public SharePath getPath() {
+            return path;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * 文件大小，目录为0
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 目录下没有任何条目
+         */
+        public boolean isEmpty() {
+            return empty;
         }
-        
-        return Files.getLastModifiedTime(filePath).toMillis();
     }
-} 
\ No newline at end of file
+}
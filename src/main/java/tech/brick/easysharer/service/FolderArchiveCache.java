@@ -0,0 +1,533 @@
+package tech.brick.easysharer.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件夹压缩包缓存
+ * 以文件夹内容的指纹（所有文件的相对路径、大小和修改时间）为键缓存打包结果：
+ * 第一次下载时一边向客户端输出一边写入缓存文件，之后内容未变化的下载直接发送缓存文件（支持 Range）。
+ * 缓存总大小有上限，超出时按最近最少使用的顺序删除；同一文件夹内容变化后旧的压缩包随即删除。
+ * 同一压缩包同时只有一个请求写入缓存，其他并发请求照常打包但不写缓存。
+ * 正在发送的压缩包被淘汰或失效时，等所有发送结束后才删除文件；删除失败（Windows 上文件被占用）的文件
+ * 仍计入总大小，之后再次尝试删除。
+ */
+@Slf4j
+@Service
+public class FolderArchiveCache {
+
+    private static final String ARCHIVE_SUFFIX = ".archive";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Value("${file.share.root-path:./shared}")
+    private String rootPath;
+
+    @Value("${file.share.archive-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存目录，为空时使用系统临时目录下的 easy-sharer-archives-{共享目录的散列}
+     */
+    @Value("${file.share.archive-cache.dir:}")
+    private String cacheDirPath;
+
+    /**
+     * 缓存文件总大小上限（字节）
+     */
+    @Value("${file.share.archive-cache.max-total-bytes:1073741824}")
+    private long maxTotalBytes;
+
+    /**
+     * 单个压缩包的大小上限（字节），更大的文件夹只打包不缓存
+     */
+    @Value("${file.share.archive-cache.max-archive-bytes:536870912}")
+    private long maxArchiveBytes;
+
+    private Path cacheDir;
+
+    /**
+     * 已缓存的压缩包，按访问顺序排列（最早的在前），访问时需持有 this 锁
+     */
+    private final LinkedHashMap<String, CachedArchive> archives = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 每个文件夹（格式 + 相对路径）当前缓存的压缩包键，用于内容变化后删除旧压缩包
+     */
+    private final Map<String, String> folderKeys = new HashMap<>();
+
+    /**
+     * 正在写入缓存的压缩包键
+     */
+    private final Set<String> building = new HashSet<>();
+
+    /**
+     * 已移出索引但尚未删除的压缩包：仍在发送中，或删除失败待重试
+     */
+    private final Set<CachedArchive> pendingDeletes = new HashSet<>();
+
+    /**
+     * 索引中的压缩包总大小
+     */
+    private long totalBytes;
+
+    /**
+     * pendingDeletes 中文件的总大小，与 totalBytes 一起计入缓存上限
+     */
+    private long pendingBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("文件夹压缩包缓存已禁用");
+            return;
+        }
+        if (cacheDirPath == null || cacheDirPath.isBlank()) {
+            // 按共享目录区分，多个实例互不干扰
+            String root = Paths.get(rootPath).toAbsolutePath().normalize().toString();
+            String rootHash = HexFormat.of().formatHex(sha256().digest(root.getBytes(StandardCharsets.UTF_8)), 0, 4);
+            cacheDir = Paths.get(System.getProperty("java.io.tmpdir"), "easy-sharer-archives-" + rootHash);
+        } else {
+            cacheDir = Paths.get(cacheDirPath);
+        }
+        try {
+            Files.createDirectories(cacheDir);
+            // 索引只在内存中，重启后无法得知旧文件对应的文件夹，直接清空
+            try (var files = Files.list(cacheDir)) {
+                files.filter(file -> file.getFileName().toString().endsWith(ARCHIVE_SUFFIX)
+                                || file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                        .forEach(this::deleteQuietly);
+            }
+            log.info("文件夹压缩包缓存目录: {} (上限 {} MB)", cacheDir.toAbsolutePath(), maxTotalBytes / 1024 / 1024);
+        } catch (IOException e) {
+            log.warn("无法创建文件夹压缩包缓存目录，缓存已禁用: {}", cacheDir, e);
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 预估大小超过单个压缩包上限的文件夹不缓存，也不必计算指纹
+     */
+    public boolean isCacheable(long estimatedSize) {
+        return enabled && estimatedSize <= maxArchiveBytes;
+    }
+
+    /**
+     * 计算文件夹内容的指纹：遍历所有文件和子目录，对排序后的（相对路径、类型、大小、修改时间）取 SHA-256
+     * 上传暂存文件不计入，与打包时的文件列表一致
+     */
+    public String fingerprint(SharePath dir) throws IOException {
+        Path root = dir.getPath();
+        List<String> entries = new ArrayList<>();
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+                if (!path.equals(root)) {
+                    entries.add(root.relativize(path) + "/\u0000");
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if (!UploadService.isStagingFile(path)) {
+                    entries.add(root.relativize(path) + "\u0000" + attrs.size() + "\u0000" + attrs.lastModifiedTime().toMillis());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                entries.add(root.relativize(path) + "\u0000?");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(entries);
+
+        MessageDigest digest = sha256();
+        for (String entry : entries) {
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 查找缓存的压缩包，未命中时返回null
+     * 命中时压缩包在调用 {@link #release(CachedArchive)} 之前不会被删除，调用方发送完成后必须释放
+     */
+    public CachedArchive lookup(String format, SharePath dir, String fingerprint) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(format, dir, fingerprint);
+        synchronized (this) {
+            CachedArchive archive = archives.get(key);
+            if (archive != null && Files.isRegularFile(archive.getFile())) {
+                hits.incrementAndGet();
+                archive.readers++;
+                return archive;
+            }
+            if (archive != null) {
+                // 缓存文件被外部删除
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 发送结束，释放 lookup 返回的压缩包；压缩包已被淘汰且没有其他发送时删除文件
+     */
+    public synchronized void release(CachedArchive archive) {
+        if (--archive.readers == 0 && archive.retired) {
+            deletePending(archive);
+        }
+    }
+
+    /**
+     * 开始写入缓存；已有请求在写入同一压缩包或无法创建缓存文件时返回null
+     */
+    public ArchiveWriter beginWrite(String format, SharePath dir, String fingerprint) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(format, dir, fingerprint);
+        synchronized (this) {
+            if (archives.containsKey(key) || !building.add(key)) {
+                return null;
+            }
+        }
+        Path tempFile = cacheDir.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            OutputStream out = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return new ArchiveWriter(format, dir, fingerprint, key, tempFile, out);
+        } catch (IOException e) {
+            log.warn("无法创建压缩包缓存文件: {}", tempFile, e);
+            synchronized (this) {
+                building.remove(key);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("cachedArchives", archives.size());
+        stats.put("cachedBytes", totalBytes);
+        stats.put("pendingDeletes", pendingDeletes.size());
+        stats.put("pendingBytes", pendingBytes);
+        stats.put("maxTotalBytes", maxTotalBytes);
+        stats.put("building", building.size());
+        return stats;
+    }
+
+    private synchronized void commit(ArchiveWriter writer, long size) throws IOException {
+        building.remove(writer.key);
+        if (size > maxTotalBytes) {
+            deleteQuietly(writer.tempFile);
+            return;
+        }
+        for (CachedArchive pending : new ArrayList<>(pendingDeletes)) {
+            if (pending.readers == 0) {
+                deletePending(pending);
+            }
+        }
+        // 文件名沿用临时文件的随机名，不会与仍在发送、等待删除的旧文件重名
+        String tempName = writer.tempFile.getFileName().toString();
+        Path file = cacheDir.resolve(tempName.substring(0, tempName.length() - TEMP_SUFFIX.length()) + ARCHIVE_SUFFIX);
+        Files.move(writer.tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+
+        // 同一文件夹的旧压缩包已失效
+        String folderKey = writer.format + ":" + writer.dir.getRelativePath();
+        String previous = folderKeys.put(folderKey, writer.key);
+        if (previous != null && !previous.equals(writer.key)) {
+            remove(previous);
+        }
+
+        archives.put(writer.key, new CachedArchive(file, size, writer.fingerprint));
+        totalBytes += size;
+        Iterator<Map.Entry<String, CachedArchive>> iterator = archives.entrySet().iterator();
+        while (totalBytes + pendingBytes > maxTotalBytes && iterator.hasNext()) {
+            Map.Entry<String, CachedArchive> eldest = iterator.next();
+            if (eldest.getKey().equals(writer.key)) {
+                continue;
+            }
+            iterator.remove();
+            folderKeys.values().remove(eldest.getKey());
+            retire(eldest.getValue());
+            evictions.incrementAndGet();
+        }
+        log.info("文件夹压缩包已缓存: '{}' ({} bytes, 缓存共 {} 个 / {} bytes)",
+                writer.dir, size, archives.size(), totalBytes);
+    }
+
+    private synchronized void discard(ArchiveWriter writer) {
+        building.remove(writer.key);
+        deleteQuietly(writer.tempFile);
+    }
+
+    private void remove(String key) {
+        CachedArchive removed = archives.remove(key);
+        if (removed != null) {
+            folderKeys.values().remove(key);
+            retire(removed);
+        }
+    }
+
+    /**
+     * 已移出索引的压缩包：没有正在进行的发送时立即删除，否则由最后一个 release 删除
+     */
+    private void retire(CachedArchive archive) {
+        totalBytes -= archive.getSize();
+        archive.retired = true;
+        pendingDeletes.add(archive);
+        pendingBytes += archive.getSize();
+        if (archive.readers == 0) {
+            deletePending(archive);
+        }
+    }
+
+    /**
+     * 删除等待删除的文件，失败时保留在 pendingDeletes 中，下次写入缓存时重试
+     */
+    private void deletePending(CachedArchive archive) {
+        try {
+            Files.deleteIfExists(archive.getFile());
+        } catch (IOException e) {
+            log.debug("压缩包缓存文件暂时无法删除，稍后重试: {} ({})", archive.getFile(), e.getMessage());
+            return;
+        }
+        if (pendingDeletes.remove(archive)) {
+            pendingBytes -= archive.getSize();
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除压缩包缓存文件失败: {}", file, e);
+        }
+    }
+
+    private static String key(String format, SharePath dir, String fingerprint) {
+        MessageDigest digest = sha256();
+        digest.update((format + "\u0000" + dir.getRelativePath() + "\u0000" + fingerprint).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 已缓存的压缩包
+     */
+    public static final class CachedArchive {
+        private final Path file;
+        private final long size;
+        private final String fingerprint;
+
+        /**
+         * 正在发送该压缩包的请求数，以及是否已移出索引，访问时需持有缓存的锁
+         */
+        private int readers;
+        private boolean retired;
+
+        private CachedArchive(Path file, long size, String fingerprint) {
+            this.file = file;
+            this.size = size;
+            this.fingerprint = fingerprint;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 用作 ETag 的文件夹内容指纹
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+
+    /**
+     * 写入缓存的过程
+     * {@link #tee(OutputStream)} 返回的流先写客户端再写缓存文件：写缓存失败或超过大小上限时只放弃缓存，
+     * 不影响向客户端的输出；写客户端失败的异常照常抛出。
+     * 打包完成后调用 {@link #commit()}，其他情况调用 {@link #discard()}。
+     */
+    public final class ArchiveWriter {
+        private final String format;
+        private final SharePath dir;
+        private final String fingerprint;
+        private final String key;
+        private final Path tempFile;
+        private OutputStream out;
+        private long written;
+        private boolean finished;
+
+        private ArchiveWriter(String format, SharePath dir, String fingerprint, String key, Path tempFile, OutputStream out) {
+            this.format = format;
+            this.dir = dir;
+            this.fingerprint = fingerprint;
+            this.key = key;
+            this.tempFile = tempFile;
+            this.out = out;
+        }
+
+        public OutputStream tee(OutputStream client) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    client.write(b);
+                    copy(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    client.write(b, off, len);
+                    copy(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    client.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    client.close();
+                }
+            };
+        }
+
+        private void copy(byte[] b, int off, int len) {
+            if (out == null) {
+                return;
+            }
+            if (written + len > maxArchiveBytes) {
+                log.debug("压缩包超过缓存大小上限，不再缓存: '{}'", dir);
+                abandon();
+                return;
+            }
+            try {
+                out.write(b, off, len);
+                written += len;
+            } catch (IOException e) {
+                log.warn("写入压缩包缓存失败，不再缓存: '{}'", dir, e);
+                abandon();
+            }
+        }
+
+        private void abandon() {
+            closeQuietly();
+            out = null;
+        }
+
+        /**
+         * 打包完成：文件夹在打包期间未变化时保存到缓存
+         */
+        public void commit() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (out == null) {
+                FolderArchiveCache.this.discard(this);
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                if (!fingerprint.equals(fingerprint(dir))) {
+                    log.debug("文件夹在打包期间发生变化，不缓存: '{}'", dir);
+                    FolderArchiveCache.this.discard(this);
+                    return;
+                }
+                FolderArchiveCache.this.commit(this, written);
+            } catch (IOException e) {
+                log.warn("保存压缩包缓存失败: '{}'", dir, e);
+                FolderArchiveCache.this.discard(this);
+            }
+        }
+
+        /**
+         * 打包未完成（客户端断开或出错），删除缓存文件
+         */
+        public void discard() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            closeQuietly();
+            out = null;
+            FolderArchiveCache.this.discard(this);
+        }
+
+        private void closeQuietly() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    log.debug("关闭压缩包缓存文件失败: {}", tempFile, e);
+                }
+            }
+        }
+    }
+}
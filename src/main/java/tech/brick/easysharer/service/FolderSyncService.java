@@ -0,0 +1,417 @@
+package tech.brick.easysharer.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.model.SyncManifestEntry;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件夹同步（镜像）
+ * 客户端提交本地已有文件的清单（相对路径、大小、修改时间，可选 SHA-256），服务器与文件夹的当前内容比较，
+ * 得出需要下载的新增或变化的文件，以及服务器上已不存在、客户端应删除的文件。
+ * 服务器端的目录遍历按目录缓存：目录的修改时间未变化且距上次读取不超过 recheck-interval 时直接使用缓存，
+ * 不再列目录、读取文件属性，重复同步未变化的文件夹时每个目录只需读取一次修改时间。
+ * 文件原地覆盖不会改变目录的修改时间，因此缓存超过 recheck-interval 后仍会重新读取文件属性。
+ * 遍历在独立的线程池中进行；需要比较内容的文件交给 {@link HashService} 计算（使用其线程池和持久缓存），
+ * 每次请求新计算的字节数不超过 max-hash-bytes，超出的文件直接视为已变化。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FolderSyncService {
+
+    private final HashService hashService;
+
+    @Value("${file.share.sync.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 目录缓存最长使用多久（毫秒）后重新读取其中文件的属性
+     */
+    @Value("${file.share.sync.recheck-interval-ms:300000}")
+    private long recheckIntervalMillis;
+
+    /**
+     * 修改时间相差不超过该值（毫秒）且大小相同的文件视为未变化；ZIP 中的修改时间精度为2秒，tar 为1秒
+     */
+    @Value("${file.share.sync.mtime-tolerance-ms:2000}")
+    private long mtimeToleranceMillis;
+
+    /**
+     * 遍历目录的线程数，0 表示使用 CPU 核数
+     */
+    @Value("${file.share.sync.threads:0}")
+    private int threads;
+
+    /**
+     * 每次请求最多新计算散列的字节数（已缓存的散列不计入），超出的文件视为已变化
+     */
+    @Value("${file.share.sync.max-hash-bytes:1073741824}")
+    private long maxHashBytes;
+
+    private ForkJoinPool pool;
+
+    /**
+     * 目录缓存，Key为目录的绝对路径
+     */
+    private final Map<Path, DirectoryListing> listings = new ConcurrentHashMap<>();
+
+    private final LongAdder cachedDirectories = new LongAdder();
+    private final LongAdder scannedDirectories = new LongAdder();
+    private final LongAdder hashedFiles = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("sync-scan-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 比较文件夹的当前内容与客户端清单
+     * 清单中无法解析的路径被忽略；变化的文件按目录遍历的顺序排列，删除列表按路径排序
+     */
+    public SyncPlan plan(SharePath folder, List<SyncManifestEntry> manifest) {
+        if (!enabled) {
+            throw new IllegalStateException("文件夹同步功能未启用");
+        }
+        if (!Files.isDirectory(folder.getPath())) {
+            throw new IllegalArgumentException("指定路径不是文件夹");
+        }
+
+        Map<String, SyncManifestEntry> clientFiles = new HashMap<>();
+        for (SyncManifestEntry entry : manifest) {
+            String path;
+            try {
+                path = SharePathResolver.clean(entry.getPath());
+            } catch (RuntimeException e) {
+                log.debug("忽略清单中无效的路径: '{}'", entry.getPath());
+                continue;
+            }
+            if (!path.isEmpty()) {
+                clientFiles.put(path, entry);
+            }
+        }
+
+        ScanTask scan = new ScanTask(folder, "");
+        List<ServerFile> serverFiles = pool != null ? pool.invoke(scan) : ForkJoinPool.commonPool().invoke(scan);
+
+        // 先为所有需要比较内容的文件开始计算，再按遍历顺序收集结果
+        List<CompletableFuture<Boolean>> unchanged = new ArrayList<>(serverFiles.size());
+        long hashBudget = maxHashBytes;
+        for (ServerFile file : serverFiles) {
+            SyncManifestEntry clientFile = clientFiles.remove(file.getPath());
+            Boolean same = clientFile != null ? compareAttributes(file, clientFile) : Boolean.FALSE;
+            if (same != null) {
+                unchanged.add(CompletableFuture.completedFuture(same));
+                continue;
+            }
+            String clientHash = clientFile.getSha256().trim();
+            String cached = hashService.getCachedDigest(file.getFile(), HashService.SHA256, file.getSize(), file.getLastModified());
+            if (cached != null) {
+                unchanged.add(CompletableFuture.completedFuture(clientHash.equalsIgnoreCase(cached)));
+            } else if (hashService.isEnabled() && file.getSize() <= hashBudget) {
+                hashBudget -= file.getSize();
+                unchanged.add(sameHash(file, clientHash));
+            } else {
+                log.debug("超出本次同步的散列计算量，视为已变化: {}", file.getFile());
+                unchanged.add(CompletableFuture.completedFuture(false));
+            }
+        }
+
+        List<ServerFile> changed = new ArrayList<>();
+        long changedBytes = 0;
+        for (int i = 0; i < serverFiles.size(); i++) {
+            if (!unchanged.get(i).join()) {
+                ServerFile file = serverFiles.get(i);
+                changed.add(file);
+                changedBytes += file.getSize();
+            }
+        }
+        List<String> deleted = new ArrayList<>(clientFiles.keySet());
+        deleted.sort(null);
+        return new SyncPlan(changed, deleted, serverFiles.size() - changed.size(), changedBytes);
+    }
+
+    /**
+     * 按大小和修改时间比较：大小不同时返回false，大小相同且修改时间在容差内时返回true；
+     * 修改时间不同且客户端提供了 SHA-256 时返回null，需要比较内容
+     */
+    private Boolean compareAttributes(ServerFile file, SyncManifestEntry clientFile) {
+        if (file.getSize() != clientFile.getSize()) {
+            return false;
+        }
+        if (Math.abs(file.getLastModified() - clientFile.getLastModified()) <= mtimeToleranceMillis) {
+            return true;
+        }
+        String clientHash = clientFile.getSha256();
+        return clientHash == null || clientHash.isBlank() ? Boolean.FALSE : null;
+    }
+
+    /**
+     * 由 HashService 计算文件的 SHA-256 并与客户端的散列比较，计算失败时视为已变化
+     */
+    private CompletableFuture<Boolean> sameHash(ServerFile file, String clientHash) {
+        hashedFiles.increment();
+        try {
+            return hashService.hash(file.getFile(), HashService.SHA256)
+                    .thenApply(result -> clientHash.equalsIgnoreCase(result.getDigest()))
+                    .exceptionally(e -> {
+                        log.debug("计算文件散列失败: {} ({})", file.getFile(), e.getMessage());
+                        return false;
+                    });
+        } catch (IOException | RuntimeException e) {
+            log.debug("计算文件散列失败: {} ({})", file.getFile(), e.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * 读取目录下的文件和子目录，缓存有效时直接返回缓存
+     * 不进入指向目录的符号链接，避免循环；上传中的暂存文件不计入
+     */
+    private DirectoryListing listDirectory(Path dir) {
+        long dirModified;
+        try {
+            dirModified = Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            listings.remove(dir);
+            return DirectoryListing.EMPTY;
+        }
+        long now = System.currentTimeMillis();
+        DirectoryListing cached = listings.get(dir);
+        if (cached != null && cached.dirModified == dirModified && now - cached.checkedAt < recheckIntervalMillis) {
+            cachedDirectories.increment();
+            return cached;
+        }
+
+        Map<String, FileState> files = new HashMap<>();
+        List<String> subdirs = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isSymbolicLink()) {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                        if (attrs.isDirectory()) {
+                            log.debug("同步时跳过指向目录的符号链接: {}", child);
+                            continue;
+                        }
+                    }
+                    if (attrs.isDirectory()) {
+                        subdirs.add(name);
+                    } else if (attrs.isRegularFile() && !UploadService.isStagingFile(child)) {
+                        long size = attrs.size();
+                        long lastModified = attrs.lastModifiedTime().toMillis();
+                        files.put(name, new FileState(size, lastModified));
+                    }
+                } catch (IOException e) {
+                    log.debug("读取文件属性失败: {}", child);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("读取目录失败: {}", dir);
+        }
+        scannedDirectories.increment();
+
+        if (cached != null) {
+            // 已删除或改名的子目录不再需要缓存
+            for (String subdir : cached.subdirs) {
+                if (!subdirs.contains(subdir)) {
+                    Path removed = dir.resolve(subdir);
+                    listings.keySet().removeIf(path -> path.startsWith(removed));
+                }
+            }
+        }
+        DirectoryListing listing = new DirectoryListing(dirModified, now, files, subdirs);
+        listings.put(dir, listing);
+        return listing;
+    }
+
+    /**
+     * 缓存命中情况等统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("cachedDirectoryListings", listings.size());
+        stats.put("directoriesFromCache", cachedDirectories.sum());
+        stats.put("directoriesScanned", scannedDirectories.sum());
+        stats.put("filesHashed", hashedFiles.sum());
+        return stats;
+    }
+
+    /**
+     * 遍历任务：结果为目录下所有文件（递归），路径相对于同步的文件夹；子目录拆分为子任务并行遍历
+     */
+    private class ScanTask extends RecursiveTask<List<ServerFile>> {
+
+        private final SharePath dir;
+        private final String prefix;
+
+        ScanTask(SharePath dir, String prefix) {
+            this.dir = dir;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected List<ServerFile> compute() {
+            DirectoryListing listing = listDirectory(dir.getPath());
+            List<ScanTask> subtasks = new ArrayList<>(listing.subdirs.size());
+            for (String subdir : listing.subdirs) {
+                ScanTask subtask = new ScanTask(dir.child(subdir), prefix + subdir + "/");
+                subtask.fork();
+                subtasks.add(subtask);
+            }
+            List<ServerFile> result = new ArrayList<>(listing.files.size());
+            for (Map.Entry<String, FileState> entry : listing.files.entrySet()) {
+                result.add(new ServerFile(prefix + entry.getKey(), dir.child(entry.getKey()), entry.getValue()));
+            }
+            for (ScanTask subtask : subtasks) {
+                result.addAll(subtask.join());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 缓存的目录内容
+     */
+    private static final class DirectoryListing {
+        private static final DirectoryListing EMPTY = new DirectoryListing(0, 0, Map.of(), List.of());
+
+        private final long dirModified;
+        private final long checkedAt;
+        private final Map<String, FileState> files;
+        private final List<String> subdirs;
+
+        private DirectoryListing(long dirModified, long checkedAt, Map<String, FileState> files, List<String> subdirs) {
+            this.dirModified = dirModified;
+            this.checkedAt = checkedAt;
+            this.files = files;
+            this.subdirs = subdirs;
+        }
+    }
+
+    private static final class FileState {
+        private final long size;
+        private final long lastModified;
+
+        private FileState(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 服务器上的一个文件
+     */
+    public static final class ServerFile {
+        private final String path;
+        private final SharePath file;
+        private final FileState state;
+
+        private ServerFile(String path, SharePath file, FileState state) {
+            this.path = path;
+            this.file = file;
+            this.state = state;
+        }
+
+        /**
+         * 相对于同步文件夹的路径
+         */
+        public String getPath() {
+            return path;
+        }
+
+        @JsonIgnore
+        public SharePath getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return state.size;
+        }
+
+        public long getLastModified() {
+            return state.lastModified;
+        }
+    }
+
+    /**
+     * 同步计划：需要下载的文件、客户端应删除的文件
+     */
+    public static final class SyncPlan {
+        private final List<ServerFile> changed;
+        private final List<String> deleted;
+        private final int unchangedCount;
+        private final long changedBytes;
+
+        private SyncPlan(List<ServerFile> changed, List<String> deleted, int unchangedCount, long changedBytes) {
+            this.changed = changed;
+            this.deleted = deleted;
+            this.unchangedCount = unchangedCount;
+            this.changedBytes = changedBytes;
+        }
+
+        public List<ServerFile> getChanged() {
+            return changed;
+        }
+
+        public List<String> getDeleted() {
+            return deleted;
+        }
+
+        public int getUnchangedCount() {
+            return unchangedCount;
+        }
+
+        /**
+         * 需要下载的文件的总大小
+         */
+        public long getChangedBytes() {
+            return changedBytes;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package tech.brick.easysharer.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.util.ParallelGzipOutputStream;
+
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程 gzip 压缩
+ * 所有 tar.gz 下载共用一个压缩线程池，每个下载同时在压缩中的块数有上限（线程数的2倍），
+ * 一个大下载不会占满队列，多个下载时各自的块在线程池中交替执行。
+ */
+@Slf4j
+@Service
+public class GzipCompressionService {
+
+    private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * 压缩线程数，0 表示使用 CPU 核数
+     */
+    @Value("${file.share.gzip.threads:0}")
+    private int threads;
+
+    /**
+     * 每个 gzip 成员的未压缩大小（字节）
+     */
+    @Value("${file.share.gzip.block-size:1048576}")
+    private int blockSize;
+
+    /**
+     * 压缩级别 1-9
+     */
+    @Value("${file.share.gzip.level:6}")
+    private int level;
+
+    private ExecutorService pool;
+    private int poolSize;
+
+    @PostConstruct
+    public void init() {
+        poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        if (blockSize <= 0) {
+            blockSize = DEFAULT_BLOCK_SIZE;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "gzip-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("gzip 压缩线程池已启动，线程数: {}, 块大小: {} KB", poolSize, blockSize / 1024);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 包装输出流：写入的数据分块并行压缩，按顺序以多个 gzip 成员写出
+     * 关闭返回的流时写出剩余数据并关闭 out
+     */
+    public ParallelGzipOutputStream wrap(OutputStream out) {
+        return new ParallelGzipOutputStream(out, pool, blockSize, level, poolSize * 2);
+    }
+}
@@ -0,0 +1,613 @@
+package tech.brick.easysharer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文件内容散列（校验值），用于校验下载的大文件是否完整
+ * 计算在独立的线程池中进行，不占用请求线程；同一文件同一算法同时只计算一次，并发的请求共用结果。
+ * 结果按（相对路径、大小、修改时间）缓存并定期写入磁盘，重启后仍然有效，文件未变化时再次请求直接返回。
+ * 移动、删除、替换文件时由调用方通过 {@link #invalidateTree(Path)} 清除对应的缓存：移动会保留修改时间，
+ * 之后移到原路径的同样大小的文件仅凭大小和修改时间无法区分。
+ * 支持的算法：
+ * sha256、sha1、md5 为标准散列，与 sha256sum 等工具的结果一致，只能顺序计算；
+ * sha256-tree 把文件按 4 MB 分块，各块的 SHA-256 并行计算，结果为所有块的散列依次拼接后的 SHA-256，
+ * 本地可用 {@code split -b 4M --filter='sha256sum | head -c 64 | xxd -r -p' 文件 | sha256sum} 验证。
+ * 使用内存映射读取文件；Windows 上被映射的文件在解除映射前无法删除或改名，因此 Windows 上改用 FileChannel 读取。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HashService {
+
+    public static final String SHA256 = "sha256";
+    public static final String SHA256_TREE = "sha256-tree";
+
+    /**
+     * 算法名称 -> MessageDigest 算法名
+     */
+    private static final Map<String, String> ALGORITHMS = Map.of(
+            SHA256, "SHA-256",
+            "sha1", "SHA-1",
+            "md5", "MD5",
+            SHA256_TREE, "SHA-256");
+
+    /**
+     * sha256-tree 的块大小，改变后结果随之改变，因此不可配置
+     */
+    public static final int TREE_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * sha256-tree 的每个子任务至少处理的块数，更小的范围不再拆分
+     */
+    private static final int TREE_CHUNKS_PER_TASK = 4;
+
+    /**
+     * 每次内存映射的大小
+     */
+    private static final int MAP_WINDOW = 64 * 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 下载时在后台计算散列的任务数上限，超过时不再为下载启动新的计算
+     */
+    private static final int MAX_BACKGROUND_JOBS = 64;
+
+    private static final boolean USE_MMAP = !System.getProperty("os.name", "")
+            .toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_SIZE));
+
+    private final SharePathResolver pathResolver;
+
+    @Value("${file.share.hash.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 计算线程数，0 表示使用 CPU 核数
+     */
+    @Value("${file.share.hash.threads:0}")
+    private int threads;
+
+    /**
+     * 缓存文件，为空时使用用户目录下的 .easy-sharer/hash-cache-{共享目录的散列}.json
+     */
+    @Value("${file.share.hash.cache-file:}")
+    private String cacheFilePath;
+
+    /**
+     * 缓存的文件数上限，超出时删除最久未使用的记录
+     */
+    @Value("${file.share.hash.max-cache-entries:100000}")
+    private int maxCacheEntries;
+
+    /**
+     * 下载没有缓存散列的文件时是否在后台计算；关闭时只有通过 /api/hash 请求过的文件才会在下载时带上散列
+     */
+    @Value("${file.share.hash.compute-on-download:false}")
+    private boolean computeOnDownload;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 已计算的散列，Key为相对路径
+     */
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 正在进行的计算，Key为相对路径和算法
+     */
+    private final Map<String, Job> running = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+    private ForkJoinPool pool;
+    private Path cacheFile;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder computed = new LongAdder();
+    private final LongAdder bytesHashed = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("文件散列计算已禁用");
+            return;
+        }
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("hash-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+
+        if (cacheFilePath == null || cacheFilePath.isBlank()) {
+            // 按共享目录区分，多个实例互不干扰
+            String root = pathResolver.getRoot().toString();
+            String rootHash = HexFormat.of().formatHex(newDigest("SHA-256").digest(root.getBytes(StandardCharsets.UTF_8)), 0, 4);
+            cacheFile = Paths.get(System.getProperty("user.home"), ".easy-sharer", "hash-cache-" + rootHash + ".json");
+        } else {
+            cacheFile = Paths.get(cacheFilePath).toAbsolutePath();
+        }
+        if (Files.exists(cacheFile)) {
+            try {
+                CacheFile stored = objectMapper.readValue(cacheFile.toFile(), CacheFile.class);
+                if (stored.getEntries() != null) {
+                    cache.putAll(stored.getEntries());
+                }
+            } catch (IOException e) {
+                log.warn("读取散列缓存失败，将重新计算: {} ({})", cacheFile, e.getMessage());
+            }
+        }
+        log.info("文件散列线程池已启动，线程数: {}, 缓存文件: {} ({} 个文件), 内存映射: {}",
+                parallelism, cacheFile, cache.size(), USE_MMAP);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算文件内容的散列，文件未变化时直接返回缓存的结果
+     * 路径不是文件时抛出 IllegalArgumentException，文件不存在时抛出 NoSuchFileException
+     */
+    public CompletableFuture<HashResult> hash(SharePath file, String algorithm) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("文件散列计算未启用");
+        }
+        String algo = algorithm == null ? SHA256 : algorithm.trim().toLowerCase(Locale.ROOT);
+        if (!ALGORITHMS.containsKey(algo)) {
+            throw new IllegalArgumentException("不支持的散列算法: " + algorithm + "，可选: sha256, sha256-tree, sha1, md5");
+        }
+        BasicFileAttributes attrs = Files.readAttributes(file.getPath(), BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) {
+            throw new IllegalArgumentException("指定路径不是文件");
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        String digest = cachedDigest(file.getRelativePath(), algo, size, lastModified);
+        if (digest != null) {
+            return CompletableFuture.completedFuture(new HashResult(algo, digest, size, lastModified, true));
+        }
+        return start(file, algo, size, lastModified).future
+                .thenApply(result -> new HashResult(algo, result, size, lastModified, false));
+    }
+
+    /**
+     * 正在计算时已处理的字节数，没有进行中的计算时返回-1
+     */
+    public long getBytesHashed(SharePath file, String algorithm) {
+        String algo = algorithm == null ? SHA256 : algorithm.trim().toLowerCase(Locale.ROOT);
+        Job job = running.get(jobKey(file.getRelativePath(), algo));
+        return job != null ? job.progress.sum() : -1;
+    }
+
+    /**
+     * 下载时使用：返回缓存中文件当前内容的 SHA-256，没有缓存时返回null
+     * 开启 compute-on-download 时同时在后台开始计算，供之后的下载使用；只读取文件属性，不会等待计算
+     */
+    public String getSha256ForDownload(SharePath file) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.getPath(), BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            long size = attrs.size();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            String digest = cachedDigest(file.getRelativePath(), SHA256, size, lastModified);
+            if (digest == null && computeOnDownload && running.size() < MAX_BACKGROUND_JOBS) {
+                start(file, SHA256, size, lastModified);
+            }
+            return digest;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 缓存中文件内容的散列，没有缓存或文件已变化时返回null；不读取文件，也不开始计算
+     * size、lastModified 为调用方已读取的文件属性
+     */
+    public String getCachedDigest(SharePath file, String algorithm, long size, long lastModified) {
+        if (!enabled) {
+            return null;
+        }
+        return cachedDigest(file.getRelativePath(), algorithm, size, lastModified);
+    }
+
+    /**
+     * 清除路径本身及其下所有文件的缓存，进行中的计算完成后不再写入缓存
+     * 在文件被移动、删除或替换后调用，path 为共享目录中的绝对路径
+     */
+    public void invalidateTree(Path path) {
+        Path root = pathResolver.getRoot();
+        if (!path.startsWith(root)) {
+            return;
+        }
+        String relativePath = root.relativize(path).toString().replace("\\", "/");
+        String prefix = relativePath + "/";
+        boolean removed = cache.keySet().removeIf(key -> relativePath.isEmpty() || key.equals(relativePath) || key.startsWith(prefix));
+        running.forEach((key, job) -> {
+            String jobPath = key.substring(key.indexOf(':') + 1);
+            if (relativePath.isEmpty() || jobPath.equals(relativePath) || jobPath.startsWith(prefix)) {
+                job.invalidated = true;
+                running.remove(key, job);
+            }
+        });
+        if (removed) {
+            dirty = true;
+        }
+    }
+
+    private String cachedDigest(String relativePath, String algo, long size, long lastModified) {
+        CacheEntry entry = cache.get(relativePath);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.getSize() != size || entry.getLastModified() != lastModified) {
+            // 文件已被修改
+            if (cache.remove(relativePath, entry)) {
+                dirty = true;
+            }
+            return null;
+        }
+        String digest = entry.getDigests().get(algo);
+        if (digest != null) {
+            entry.setLastUsed(System.currentTimeMillis());
+            cacheHits.increment();
+        }
+        return digest;
+    }
+
+    /**
+     * 开始计算，已有相同的计算在进行时返回该计算
+     */
+    private Job start(SharePath file, String algo, long size, long lastModified) {
+        String key = jobKey(file.getRelativePath(), algo);
+        Job job = running.computeIfAbsent(key, k -> new Job());
+        if (job.started.compareAndSet(false, true)) {
+            pool.execute(() -> {
+                long startTime = System.currentTimeMillis();
+                try {
+                    String digest = compute(file.getPath(), algo, size, lastModified, job.progress);
+                    if (!job.invalidated) {
+                        store(file.getRelativePath(), algo, size, lastModified, digest);
+                    }
+                    computed.increment();
+                    log.info("文件散列计算完成: '{}' ({}, {} bytes, 耗时 {} ms)",
+                            file.getRelativePath(), algo, size, System.currentTimeMillis() - startTime);
+                    running.remove(key, job);
+                    job.future.complete(digest);
+                } catch (Throwable e) {
+                    log.warn("文件散列计算失败: '{}' ({}): {}", file.getRelativePath(), algo, e.getMessage());
+                    running.remove(key, job);
+                    job.future.completeExceptionally(e);
+                }
+            });
+        }
+        return job;
+    }
+
+    private static String jobKey(String relativePath, String algo) {
+        return algo + ":" + relativePath;
+    }
+
+    /**
+     * 在计算线程中执行；完成后文件的大小或修改时间变化时结果作废
+     */
+    private String compute(Path path, String algo, long size, long lastModified, LongAdder progress) throws IOException {
+        byte[] digest;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (SHA256_TREE.equals(algo)) {
+                int chunks = (int) ((size + TREE_CHUNK_SIZE - 1) / TREE_CHUNK_SIZE);
+                byte[] leaves = new byte[chunks * 32];
+                try {
+                    new TreeTask(channel, size, 0, chunks, leaves, progress).invoke();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                digest = newDigest("SHA-256").digest(leaves);
+            } else {
+                MessageDigest messageDigest = newDigest(ALGORITHMS.get(algo));
+                digestRange(channel, 0, size, messageDigest, progress);
+                digest = messageDigest.digest();
+            }
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attrs.size() != size || attrs.lastModifiedTime().toMillis() != lastModified) {
+            throw new IOException("文件在计算过程中被修改，请重试");
+        }
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * 读取文件的 [position, position + length) 并更新散列
+     */
+    private void digestRange(FileChannel channel, long position, long length, MessageDigest digest,
+                             LongAdder progress) throws IOException {
+        long end = position + length;
+        if (USE_MMAP) {
+            for (long pos = position; pos < end; pos += MAP_WINDOW) {
+                long count = Math.min(MAP_WINDOW, end - pos);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, pos, count);
+                try {
+                    digest.update(mapped);
+                } catch (InternalError e) {
+                    // 映射的文件被截断时访问会触发 SIGBUS
+                    throw new IOException("读取文件失败，文件可能在计算过程中被截断", e);
+                }
+                progress.add(count);
+                bytesHashed.add(count);
+            }
+            return;
+        }
+        ByteBuffer buffer = READ_BUFFER.get();
+        long pos = position;
+        while (pos < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - pos));
+            int n = channel.read(buffer, pos);
+            if (n < 0) {
+                throw new IOException("文件在计算过程中被截断");
+            }
+            digest.update(buffer.array(), 0, n);
+            pos += n;
+            progress.add(n);
+            bytesHashed.add(n);
+        }
+    }
+
+    private void store(String relativePath, String algo, long size, long lastModified, String digest) {
+        cache.compute(relativePath, (key, entry) -> {
+            Map<String, String> digests = new HashMap<>();
+            if (entry != null && entry.getSize() == size && entry.getLastModified() == lastModified) {
+                digests.putAll(entry.getDigests());
+            }
+            digests.put(algo, digest);
+            return new CacheEntry(size, lastModified, System.currentTimeMillis(), digests);
+        });
+        dirty = true;
+    }
+
+    /**
+     * 有变化时写入缓存文件（先写临时文件再原子替换），超出数量上限时先删除最久未使用的记录
+     */
+    @Scheduled(fixedDelayString = "${file.share.hash.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        if (!dirty || cacheFile == null) {
+            return;
+        }
+        dirty = false;
+        if (cache.size() > maxCacheEntries) {
+            List<Map.Entry<String, CacheEntry>> entries = new ArrayList<>(cache.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().getLastUsed()));
+            for (int i = 0; i < entries.size() - maxCacheEntries; i++) {
+                cache.remove(entries.get(i).getKey(), entries.get(i).getValue());
+            }
+        }
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            objectMapper.writeValue(tempFile.toFile(), new CacheFile(new HashMap<>(cache)));
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("散列缓存已保存: {} ({} 个文件)", cacheFile, cache.size());
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("保存散列缓存失败: {} ({})", cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存命中情况等统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("cacheFile", cacheFile != null ? cacheFile.toString() : null);
+        stats.put("cachedFiles", cache.size());
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("computed", computed.sum());
+        stats.put("bytesHashed", bytesHashed.sum());
+        stats.put("running", running.size());
+        stats.put("memoryMapped", USE_MMAP);
+        return stats;
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JVM 不支持 " + algorithm, e);
+        }
+    }
+
+    /**
+     * sha256-tree 的分块任务：计算 [fromChunk, toChunk) 各块的 SHA-256，写入 leaves 的对应位置
+     * 范围较大时对半拆分为子任务并行执行
+     */
+    private class TreeTask extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final long size;
+        private final int fromChunk;
+        private final int toChunk;
+        private final byte[] leaves;
+        private final LongAdder progress;
+
+        TreeTask(FileChannel channel, long size, int fromChunk, int toChunk, byte[] leaves, LongAdder progress) {
+            this.channel = channel;
+            this.size = size;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.leaves = leaves;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > TREE_CHUNKS_PER_TASK) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new TreeTask(channel, size, fromChunk, middle, leaves, progress),
+                        new TreeTask(channel, size, middle, toChunk, leaves, progress));
+                return;
+            }
+            MessageDigest digest = newDigest("SHA-256");
+            try {
+                for (int chunk = fromChunk; chunk < toChunk; chunk++) {
+                    long position = (long) chunk * TREE_CHUNK_SIZE;
+                    digestRange(channel, position, Math.min(TREE_CHUNK_SIZE, size - position), digest, progress);
+                    digest.digest(leaves, chunk * 32, 32);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 进行中的计算
+     */
+    private static final class Job {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final LongAdder progress = new LongAdder();
+        /**
+         * 计算期间文件被移动、删除或替换，结果仍返回给等待的请求，但不写入缓存
+         */
+        private volatile boolean invalidated;
+    }
+
+    /**
+     * 计算结果
+     */
+    public static final class HashResult {
+        private final String algorithm;
+        private final String digest;
+        private final long size;
+        private final long lastModified;
+        private final boolean cached;
+
+        private HashResult(String algorithm, String digest, long size, long lastModified, boolean cached) {
+            this.algorithm = algorithm;
+            this.digest = digest;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.cached = cached;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * 十六进制小写
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 是否来自缓存
+         */
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    /**
+     * 缓存的一个文件
+     */
+    @Data
+    @NoArgsConstructor
+    static class CacheEntry {
+        private long size;
+        private long lastModified;
+        private long lastUsed;
+        /**
+         * 算法 -> 十六进制散列，发布后不再修改
+         */
+        private Map<String, String> digests;
+
+        CacheEntry(long size, long lastModified, long lastUsed, Map<String, String> digests) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.lastUsed = lastUsed;
+            this.digests = digests;
+        }
+    }
+
+    /**
+     * 缓存文件的内容
+     */
+    @Data
+    @NoArgsConstructor
+    static class CacheFile {
+        private Map<String, CacheEntry> entries;
+
+        CacheFile(Map<String, CacheEntry> entries) {
+            this.entries = entries;
+        }
+    }
+}
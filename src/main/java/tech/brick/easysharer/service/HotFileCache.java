@@ -0,0 +1,331 @@
+package tech.brick.easysharer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点文件缓存（可选）
+ * 把被频繁下载的小文件整个读入堆外 ByteBuffer，之后的下载直接从内存输出，不再读磁盘。
+ * 按访问频率（LFU）选择缓存的文件：访问次数达到阈值才缓存，空间不足时淘汰访问次数更少的文件；
+ * 访问次数定期减半，使过去的热点逐渐让位。每次访问都会比对文件的修改时间和大小，变化后立即失效。
+ * 使用堆外内存而不是 mmap，是因为 Windows 上被映射的文件在解除映射前无法删除或改名。
+ */
+@Slf4j
+@Service
+public class HotFileCache {
+
+    @Value("${file.share.hot-cache.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 可缓存的单个文件大小上限（字节）
+     */
+    @Value("${file.share.hot-cache.max-file-size:16777216}")
+    private long maxFileSize;
+
+    /**
+     * 缓存占用内存的上限（字节）
+     */
+    @Value("${file.share.hot-cache.max-total-bytes:268435456}")
+    private long maxTotalBytes;
+
+    /**
+     * 文件被访问多少次后才放入缓存
+     */
+    @Value("${file.share.hot-cache.min-hits:3}")
+    private int minHits;
+
+    /**
+     * 已缓存的文件，Key为绝对路径
+     */
+    private final Map<Path, CachedFile> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 访问计数（包括未缓存的文件）
+     */
+    private final Map<Path, AtomicLong> frequencies = new ConcurrentHashMap<>();
+
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取缓存中的文件，未命中时按访问频率决定是否载入缓存
+     * 缓存未启用、文件过大或访问次数不足时返回null，由调用方直接读取文件
+     */
+    public Resource get(Path file) {
+        if (!enabled) {
+            return null;
+        }
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            invalidate(file);
+            return null;
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        CachedFile cached = cache.get(file);
+        if (cached != null) {
+            if (cached.lastModified == lastModified && cached.buffer.capacity() == size) {
+                frequencies.computeIfAbsent(file, key -> new AtomicLong()).incrementAndGet();
+                hits.increment();
+                return new BufferResource(file, cached);
+            }
+            // 文件已被修改
+            invalidate(file);
+        }
+
+        misses.increment();
+        if (size > maxFileSize || size > maxTotalBytes || size > Integer.MAX_VALUE || !attrs.isRegularFile()) {
+            return null;
+        }
+        long frequency = frequencies.computeIfAbsent(file, key -> new AtomicLong()).incrementAndGet();
+        if (frequency < minHits) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (cache.containsKey(file) || !makeRoom(size, frequency)) {
+                return null;
+            }
+            try {
+                CachedFile loaded = load(file, size, lastModified);
+                cache.put(file, loaded);
+                cachedBytes.addAndGet(size);
+                log.debug("热点文件已载入缓存: {} ({} bytes, 访问 {} 次)", file, size, frequency);
+                return new BufferResource(file, loaded);
+            } catch (IOException e) {
+                log.warn("载入热点文件失败: {}", file, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 使缓存中的文件失效
+     */
+    public void invalidate(Path file) {
+        CachedFile removed = cache.remove(file);
+        if (removed != null) {
+            cachedBytes.addAndGet(-removed.buffer.capacity());
+        }
+    }
+
+    /**
+     * 使该路径本身及其下所有文件的缓存和访问计数失效，用于移动、删除文件或目录后
+     */
+    public void invalidateTree(Path path) {
+        for (Path file : cache.keySet()) {
+            if (file.startsWith(path)) {
+                invalidate(file);
+            }
+        }
+        frequencies.keySet().removeIf(file -> file.startsWith(path));
+    }
+
+    /**
+     * 淘汰访问次数少于 frequency 的文件，直到能放下 size 字节；无法腾出空间时返回false
+     */
+    private boolean makeRoom(long size, long frequency) {
+        if (cachedBytes.get() + size <= maxTotalBytes) {
+            return true;
+        }
+
+        List<Map.Entry<Path, CachedFile>> candidates = new ArrayList<>(cache.entrySet());
+        candidates.sort(Comparator.comparingLong(entry -> frequencyOf(entry.getKey())));
+
+        long freed = 0;
+        List<Path> victims = new ArrayList<>();
+        for (Map.Entry<Path, CachedFile> entry : candidates) {
+            if (cachedBytes.get() - freed + size <= maxTotalBytes) {
+                break;
+            }
+            if (frequencyOf(entry.getKey()) >= frequency) {
+                break;
+            }
+            victims.add(entry.getKey());
+            freed += entry.getValue().buffer.capacity();
+        }
+        if (cachedBytes.get() - freed + size > maxTotalBytes) {
+            return false;
+        }
+
+        for (Path victim : victims) {
+            invalidate(victim);
+            evictions.increment();
+        }
+        return true;
+    }
+
+    private long frequencyOf(Path file) {
+        AtomicLong frequency = frequencies.get(file);
+        return frequency != null ? frequency.get() : 0;
+    }
+
+    private CachedFile load(Path file, long size, long lastModified) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("读取文件时长度发生变化: " + file);
+                }
+            }
+        }
+        buffer.flip();
+        return new CachedFile(buffer.asReadOnlyBuffer(), lastModified);
+    }
+
+    /**
+     * 定期将访问次数减半，并清除已降为0且未缓存的计数
+     */
+    @Scheduled(fixedDelayString = "${file.share.hot-cache.decay-interval-ms:600000}")
+    public void decayFrequencies() {
+        if (!enabled) {
+            return;
+        }
+        frequencies.entrySet().removeIf(entry -> {
+            long halved = entry.getValue().updateAndGet(value -> value / 2);
+            return halved == 0 && !cache.containsKey(entry.getKey());
+        });
+    }
+
+    /**
+     * 命中率等统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("cachedFiles", cache.size());
+        stats.put("cachedBytes", cachedBytes.get());
+        stats.put("maxTotalBytes", maxTotalBytes);
+        stats.put("trackedFiles", frequencies.size());
+        return stats;
+    }
+
+    private static final class CachedFile {
+        private final ByteBuffer buffer;
+        private final long lastModified;
+
+        private CachedFile(ByteBuffer buffer, long lastModified) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 以缓存的 ByteBuffer 为内容的资源，每次读取使用独立的视图，可并发读取；支持 Range 的 skip
+     */
+    private static final class BufferResource extends AbstractResource {
+        private final Path file;
+        private final CachedFile cached;
+
+        private BufferResource(Path file, CachedFile cached) {
+            this.file = file;
+            this.cached = cached;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new BufferInputStream(cached.buffer.duplicate());
+        }
+
+        @Override
+        public long contentLength() {
+            return cached.buffer.capacity();
+        }
+
+        @Override
+        public long lastModified() {
+            return cached.lastModified;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public String getFilename() {
+            return file.getFileName().toString();
+        }
+
+        @Override
+        public String getDescription() {
+            return "热点文件缓存 [" + file + "]";
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package tech.brick.easysharer.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 共享目录路径解析
+ * 根目录在启动时解析一次；客户端传入的相对路径经一次扫描完成清理和校验，
+ * 得到的 {@link SharePath} 保证位于根目录内，供控制器和各个服务共用。
+ */
+@Slf4j
+@Service
+public class SharePathResolver {
+
+    @Value("${file.share.root-path:./shared}")
+    private String rootPath;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(rootPath).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 共享根目录（绝对路径，已规范化）
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 清理并解析相对路径
+     * 包含 .. 路径段时抛出 SecurityException，包含非法字符时抛出 IllegalArgumentException
+     */
+    public SharePath resolve(String relativePath) {
+        String cleaned = clean(relativePath);
+        Path path = cleaned.isEmpty() ? root : root.resolve(cleaned);
+
+        // 清理后的路径不含 .. 和盘符，这里只是兜底
+        if (!path.startsWith(root)) {
+            log.warn("路径不在共享目录内: {}", relativePath);
+            throw new SecurityException("不允许访问根路径外的文件: " + relativePath);
+        }
+        return new SharePath(cleaned, path);
+    }
+
+    /**
+     * 清理相对路径：去掉首尾空白，统一使用正斜杠，合并重复的斜杠，去掉首尾斜杠和 . 路径段
+     * 一次扫描完成；输入本身已是规范形式时直接返回原字符串，不分配新对象
+     */
+    public static String clean(String path) {
+        if (path == null) {
+            return "";
+        }
+
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // 输出与输入的 [outStart, written) 区间相同时不需要 StringBuilder
+        StringBuilder out = null;
+        int outStart = -1;
+        int written = -1;
+
+        int i = start;
+        while (i <= end) {
+            int segmentStart = i;
+            while (i < end) {
+                char c = path.charAt(i);
+                if (c == '/' || c == '\\') {
+                    break;
+                }
+                if (c < ' ' || c == '<' || c == '>' || c == ':' || c == '"' || c == '|' || c == '?' || c == '*') {
+                    throw new IllegalArgumentException("路径包含非法字符");
+                }
+                i++;
+            }
+            int length = i - segmentStart;
+
+            if (length == 2 && path.charAt(segmentStart) == '.' && path.charAt(segmentStart + 1) == '.') {
+                throw new SecurityException("检测到路径遍历攻击尝试");
+            }
+            boolean skip = length == 0 || (length == 1 && path.charAt(segmentStart) == '.');
+            if (!skip) {
+                if (out != null) {
+                    out.append('/').append(path, segmentStart, i);
+                } else if (outStart < 0) {
+                    outStart = segmentStart;
+                    written = i;
+                } else if (segmentStart - 1 == written && path.charAt(written) == '/') {
+                    written = i;
+                } else {
+                    out = new StringBuilder(end - start);
+                    out.append(path, outStart, written).append('/').append(path, segmentStart, i);
+                }
+            }
+            i++;
+        }
+
+        if (out != null) {
+            return out.toString();
+        }
+        if (outStart < 0) {
+            return "";
+        }
+        return outStart == 0 && written == path.length() ? path : path.substring(outStart, written);
+    }
+
+    /**
+     * 已校验的共享目录内路径
+     */
+    public static final class SharePath {
+        private final String relativePath;
+        private final Path path;
+
+        private SharePath(String relativePath, Path path) {
+            this.relativePath = relativePath;
+            this.path = path;
+        }
+
+        /**
+         * 相对于共享根目录的路径，使用正斜杠，根目录为空字符串
+         */
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        /**
+         * 绝对路径
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        public boolean isRoot() {
+            return relativePath.isEmpty();
+        }
+
+        /**
+         * 子路径，name 必须是单个文件名（来自目录遍历）
+         */
+        public SharePath child(String name) {
+            return new SharePath(relativePath.isEmpty() ? name : relativePath + "/" + name, path.resolve(name));
+        }
+
+        /**
+         * 父目录，根目录返回null
+         */
+        public SharePath parent() {
+            if (relativePath.isEmpty()) {
+                return null;
+            }
+            int slash = relativePath.lastIndexOf('/');
+            return new SharePath(slash < 0 ? "" : relativePath.substring(0, slash), path.getParent());
+        }
+
+        @Override
+        public String toString() {
+            return relativePath;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package tech.brick.easysharer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 文本分享全文检索索引
+ * 对内容、昵称和类型建立倒排索引：中日韩文字按相邻两字（bigram）切分，单个字也单独成词，
+ * 字母和数字按连续的单词切分并转为小写。查询词全部命中的分享按 BM25 打分排序，
+ * 昵称和类型命中的权重高于正文。
+ * 索引随分享的创建、删除和过期增量更新，持久化到 search-index.json；
+ * 启动时与存储中的分享比对，只补充缺失的、移除多余的条目。
+ */
+@Slf4j
+public class TextShareSearchIndex {
+
+    static final String INDEX_FILE_NAME = "search-index.json";
+
+    private static final int CONTENT_WEIGHT = 1;
+    private static final int TYPE_WEIGHT = 2;
+    private static final int NICKNAME_WEIGHT = 3;
+
+    /**
+     * BM25 参数
+     */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Path indexFile;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 每个分享的词频（已按字段加权）
+     */
+    private final Map<String, Document> documents = new HashMap<>();
+
+    /**
+     * 倒排表：词 -> 包含该词的分享ID
+     */
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    private long totalLength;
+    private volatile boolean dirty;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TextShareSearchIndex(Path dir, ObjectMapper objectMapper) {
+        this.indexFile = dir.resolve(INDEX_FILE_NAME);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 加载持久化的索引，文件不存在或损坏时从空索引开始
+     */
+    public void load() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Snapshot snapshot = objectMapper.readValue(indexFile.toFile(), Snapshot.class);
+            snapshot.getDocuments().forEach(this::put);
+        } catch (IOException e) {
+            log.warn("文本检索索引读取失败，将重新建立: {}", indexFile, e);
+            documents.clear();
+            postings.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引中已有的分享ID
+     */
+    public Set<String> documentIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(documents.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 添加或更新一条分享
+     */
+    public void add(String id, String content, String nickname, String type) {
+        Map<String, Integer> terms = new HashMap<>();
+        int length = 0;
+        length += countTerms(content, CONTENT_WEIGHT, terms);
+        length += countTerms(nickname, NICKNAME_WEIGHT, terms);
+        length += countTerms(type, TYPE_WEIGHT, terms);
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            put(id, new Document(length, terms));
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除一条分享
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            if (removeInternal(id)) {
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索：返回全部查询词都命中的分享，按得分从高到低排序
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query, true));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // 从最少命中的词开始求交集
+            List<Set<String>> lists = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Set<String> ids = postings.get(term);
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+            Set<String> candidates = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+                candidates.retainAll(lists.get(i));
+            }
+
+            int docCount = documents.size();
+            double avgLength = docCount > 0 ? (double) totalLength / docCount : 1;
+            String[] terms = queryTerms.toArray(new String[0]);
+            double[] idf = new double[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                int df = postings.get(terms[t]).size();
+                idf[t] = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+            }
+
+            // 只保留得分最高的 limit 条（小顶堆）
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::getScore));
+            for (String id : candidates) {
+                Document doc = documents.get(id);
+                double norm = K1 * (1 - B + B * doc.getLength() / avgLength);
+                double score = 0;
+                for (int t = 0; t < terms.length; t++) {
+                    int tf = doc.getTerms().get(terms[t]);
+                    score += idf[t] * tf * (K1 + 1) / (tf + norm);
+                }
+                if (top.size() < limit) {
+                    top.add(new Hit(id, score));
+                } else if (score > top.peek().getScore()) {
+                    top.poll();
+                    top.add(new Hit(id, score));
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(Comparator.comparingDouble(Hit::getScore).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有变化时写入索引文件（先写临时文件再原子替换）
+     */
+    public void flush() throws IOException {
+        Snapshot snapshot;
+        lock.readLock().lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            snapshot = new Snapshot(new HashMap<>(documents));
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Path tempFile = indexFile.resolveSibling(INDEX_FILE_NAME + ".tmp");
+        try {
+            objectMapper.writeValue(tempFile.toFile(), snapshot);
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(String id, Document doc) {
+        documents.put(id, doc);
+        totalLength += doc.getLength();
+        for (String term : doc.getTerms().keySet()) {
+            postings.computeIfAbsent(term, key -> new HashSet<>()).add(id);
+        }
+    }
+
+    private boolean removeInternal(String id) {
+        Document doc = documents.remove(id);
+        if (doc == null) {
+            return false;
+        }
+        totalLength -= doc.getLength();
+        for (String term : doc.getTerms().keySet()) {
+            Set<String> ids = postings.get(term);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int countTerms(String text, int weight, Map<String, Integer> terms) {
+        List<String> tokens = tokenize(text, false);
+        for (String token : tokens) {
+            terms.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    /**
+     * 分词：中日韩文字输出单字和相邻两字，其他文字按字母数字组成的单词输出（小写）
+     * 查询时连续两个以上的中日韩文字只输出相邻两字，单字已被其包含，不必再单独匹配
+     */
+    static List<String> tokenize(String text, boolean query) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (isCjk(codePoint)) {
+                flushWord(word, tokens);
+                cjkRun.add(new String(Character.toChars(codePoint)));
+            } else {
+                flushCjkRun(cjkRun, query, tokens);
+                if (Character.isLetterOrDigit(codePoint)) {
+                    word.appendCodePoint(Character.toLowerCase(codePoint));
+                } else {
+                    flushWord(word, tokens);
+                }
+            }
+        }
+        flushWord(word, tokens);
+        flushCjkRun(cjkRun, query, tokens);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjkRun(List<String> run, boolean query, List<String> tokens) {
+        if (run.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < run.size(); i++) {
+            if (!query || run.size() == 1) {
+                tokens.add(run.get(i));
+            }
+            if (i > 0) {
+                tokens.add(run.get(i - 1) + run.get(i));
+            }
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 检索结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Hit {
+        private final String id;
+        private final double score;
+    }
+
+    /**
+     * 单个分享的索引数据：加权后的词频与总长度
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Document {
+        private int length;
+        private Map<String, Integer> terms;
+    }
+
+    /**
+     * search-index.json 的结构
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Snapshot {
+        private Map<String, Document> documents = new HashMap<>();
+    }
+}
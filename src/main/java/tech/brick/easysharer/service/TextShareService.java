@@ -2,24 +2,36 @@ package tech.brick.easysharer.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import tech.brick.easysharer.model.TextShare;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
  * 文本分享服务
+ * 数据由 {@link TextShareStore} 分段保存，内存中只保留元数据，正文按需读取；
+ * {@link TextShareSearchIndex} 提供全文检索
  */
 @Slf4j
 @Service
@@ -29,10 +41,57 @@ public class TextShareService {
     private String rootPath;
     
     /**
-     * 内存中存储文本分享数据
-     * Key: 分享ID, Value: TextShare对象
+     * 文本分享存储目录，为空时使用用户目录下的 .easy-sharer/text-shares-{共享目录的散列}
+     * 存储目录不能位于共享目录内，否则已删除的分享可以通过文件下载读到
      */
-    private final Map<String, TextShare> textShares = new ConcurrentHashMap<>();
+    @Value("${file.text-share.dir:}")
+    private String storeDirPath;
+    
+    /**
+     * 最大存储数量
+     */
+    @Value("${file.text-share.max-count:50000}")
+    private int maxShares;
+    
+    /**
+     * 所有分享正文的最大总字节数（UTF-8）
+     */
+    @Value("${file.text-share.max-total-bytes:268435456}")
+    private long maxTotalBytes;
+    
+    /**
+     * 正文 LRU 缓存的大小上限（字节）
+     */
+    @Value("${file.text-share.body-cache-bytes:16777216}")
+    private long bodyCacheBytes;
+    
+    /**
+     * 单条分享的最大字符数
+     */
+    @Value("${file.text-share.max-content-length:10000000}")
+    private int maxContentLength;
+    
+    /**
+     * 超过该字符数的内容单独压缩保存，详情中只返回开头这部分
+     */
+    @Value("${file.text-share.inline-max-length:10000}")
+    private int inlineMaxLength;
+    
+    /**
+     * 列表中每条分享返回的最大字符数，预览保存在索引中，列表不读取正文
+     */
+    @Value("${file.text-share.preview-length:200}")
+    private int previewLength;
+    
+    /**
+     * 分段存储
+     */
+    private TextShareStore store;
+    
+    /**
+     * 全文检索索引
+     */
+    private TextShareSearchIndex searchIndex;
     
     /**
      * JSON序列化工具
@@ -45,9 +104,15 @@ public class TextShareService {
     private Path textShareDir;
     
     /**
-     * 数据文件名
+     * 旧版本的单文件数据（位于共享目录下的 text 目录），启动时迁移到分段存储
+     */
+    private static final String LEGACY_DATA_FILE_NAME = "text_shares.json";
+    private static final String LEGACY_DIR_NAME = "text";
+    
+    /**
+     * 超长内容只对开头这部分建立检索索引
      */
-    private static final String DATA_FILE_NAME = "text_shares.json";
+    private static final int SEARCH_INDEX_MAX_LENGTH = 100_000;
     
     /**
      * 默认过期时间（小时）
@@ -55,9 +120,9 @@ public class TextShareService {
     private static final int DEFAULT_EXPIRE_HOURS = 24;
     
     /**
-     * 最大存储数量
+     * 创建分享时淘汰旧分享与追加新分享在同一个临界区内完成，并发创建不会超出数量和总大小上限
      */
-    private static final int MAX_SHARES = 1000;
+    private final Object createLock = new Object();
     
     public TextShareService() {
         this.objectMapper = new ObjectMapper();
@@ -70,8 +135,19 @@ public class TextShareService {
     @PostConstruct
     public void init() {
         try {
-            // 创建text目录
-            textShareDir = Paths.get(rootPath, "text").toAbsolutePath();
+            // 创建存储目录
+            Path root = Paths.get(rootPath).toAbsolutePath().normalize();
+            if (storeDirPath == null || storeDirPath.isBlank()) {
+                // 按共享目录区分，多个实例互不干扰
+                String rootHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                        .digest(root.toString().getBytes(StandardCharsets.UTF_8)), 0, 4);
+                textShareDir = Paths.get(System.getProperty("user.home"), ".easy-sharer", "text-shares-" + rootHash);
+            } else {
+                textShareDir = Paths.get(storeDirPath).toAbsolutePath().normalize();
+            }
+            if (textShareDir.startsWith(root)) {
+                throw new IllegalStateException("文本分享存储目录不能位于共享目录内: " + textShareDir);
+            }
             if (!Files.exists(textShareDir)) {
                 Files.createDirectories(textShareDir);
                 log.info("创建文本分享存储目录: {}", textShareDir);
@@ -79,13 +155,23 @@ public class TextShareService {
                 log.info("文本分享存储目录已存在: {}", textShareDir);
             }
             
-            // 从文件加载数据
-            loadDataFromFile();
+            // 加载索引
+            store = new TextShareStore(textShareDir, objectMapper, bodyCacheBytes, previewLength);
+            store.open();
+            
+            // 迁移旧版本数据文件
+            migrateLegacyDataFile(root.resolve(LEGACY_DIR_NAME).resolve(LEGACY_DATA_FILE_NAME));
+            
+            // 加载检索索引并与存储同步
+            searchIndex = new TextShareSearchIndex(textShareDir, objectMapper);
+            searchIndex.load();
+            reconcileSearchIndex();
             
             // 清理过期数据
             cleanupExpiredShares();
+            saveDataToFile();
             
-            log.info("文本分享服务初始化完成，当前分享数量: {}", textShares.size());
+            log.info("文本分享服务初始化完成，当前分享数量: {}, 正文总大小: {} bytes", store.size(), store.totalBytes());
             
         } catch (Exception e) {
             log.error("文本分享服务初始化失败", e);
@@ -93,77 +179,106 @@ public class TextShareService {
     }
     
     /**
-     * 从文件加载数据
+     * 将旧版本的 text_shares.json 导入分段存储，完成后移到存储目录中（.migrated），不再留在共享目录内
      */
-    private void loadDataFromFile() {
-        Path dataFile = textShareDir.resolve(DATA_FILE_NAME);
-        
+    private void migrateLegacyDataFile(Path dataFile) {
         if (!Files.exists(dataFile)) {
-            log.info("文本分享数据文件不存在，将创建新文件: {}", dataFile);
             return;
         }
         
         try {
             String jsonContent = Files.readString(dataFile);
-            if (jsonContent.trim().isEmpty()) {
-                log.info("文本分享数据文件为空");
-                return;
-            }
-            
-            // 解析JSON数组
-            TextShare[] sharesArray = objectMapper.readValue(jsonContent, TextShare[].class);
-            
-            // 加载到内存中，同时验证数据有效性
             int loadedCount = 0;
             int expiredCount = 0;
             
-            for (TextShare share : sharesArray) {
-                if (share != null && share.getId() != null) {
-                    // 检查是否过期
-                    if (share.getExpireTime() != null && LocalDateTime.now().isAfter(share.getExpireTime())) {
-                        expiredCount++;
-                        continue;
+            if (!jsonContent.trim().isEmpty()) {
+                TextShare[] sharesArray = objectMapper.readValue(jsonContent, TextShare[].class);
+                // 按时间正序写入，保持分段内的追加顺序
+                Arrays.sort(sharesArray, Comparator.comparing(TextShare::getShareTime,
+                        Comparator.nullsFirst(Comparator.naturalOrder())));
+                
+                for (TextShare share : sharesArray) {
+                    if (share != null && share.getId() != null && store.getMetadata(share.getId()) == null) {
+                        // 检查是否过期
+                        if (share.getExpireTime() != null && LocalDateTime.now().isAfter(share.getExpireTime())) {
+                            expiredCount++;
+                            continue;
+                        }
+                        if (share.getShareTime() == null) {
+                            share.setShareTime(LocalDateTime.now());
+                        }
+                        store.append(share, null);
+                        loadedCount++;
                     }
-                    
-                    textShares.put(share.getId(), share);
-                    loadedCount++;
                 }
             }
+            store.flush();
+            Files.move(dataFile, textShareDir.resolve(LEGACY_DATA_FILE_NAME + ".migrated"),
+                    StandardCopyOption.REPLACE_EXISTING);
             
-            log.info("从文件加载文本分享数据: 总数={}, 有效={}, 过期={}, 文件路径={}", 
-                    sharesArray.length, loadedCount, expiredCount, dataFile);
+            log.info("已迁移旧版文本分享数据: 有效={}, 过期={}, 文件路径={}", loadedCount, expiredCount, dataFile);
                     
         } catch (Exception e) {
-            log.error("加载文本分享数据失败: {}", dataFile, e);
+            log.error("迁移旧版文本分享数据失败: {}", dataFile, e);
         }
     }
     
     /**
-     * 保存数据到文件
+     * 补充检索索引中缺失的分享，移除已不存在的分享
      */
-    private void saveDataToFile() {
-        Path dataFile = textShareDir.resolve(DATA_FILE_NAME);
-        
+    private void reconcileSearchIndex() {
+        Set<String> indexed = searchIndex.documentIds();
+        int added = 0;
+        int removed = 0;
+        for (TextShare share : store.allMetadata()) {
+            if (!indexed.remove(share.getId())) {
+                try {
+                    searchIndex.add(share.getId(), readIndexableContent(share.getId()), share.getNickname(), share.getType());
+                    added++;
+                } catch (IOException e) {
+                    log.error("读取文本分享内容失败: ID={}", share.getId(), e);
+                }
+            }
+        }
+        for (String id : indexed) {
+            searchIndex.remove(id);
+            removed++;
+        }
+        if (added > 0 || removed > 0) {
+            log.info("文本检索索引已同步: 新增={}, 移除={}", added, removed);
+        }
+    }
+    
+    /**
+     * 保存索引到文件
+     */
+    void saveDataToFile() {
         try {
-            // 获取所有有效的分享
-            List<TextShare> validShares = textShares.values().stream()
-                    .filter(share -> !share.isExpired())
-                    .sorted((a, b) -> b.getShareTime().compareTo(a.getShareTime()))
-                    .collect(Collectors.toList());
-            
-            // 序列化为JSON
-            String jsonContent = objectMapper.writeValueAsString(validShares);
-            
-            // 写入文件
-            Files.writeString(dataFile, jsonContent);
-            
-            log.debug("文本分享数据已保存到文件: {} (数量: {})", dataFile, validShares.size());
-            
+            store.flush();
+            if (searchIndex != null) {
+                searchIndex.flush();
+            }
+            log.debug("文本分享索引已保存: {} (数量: {})", store.getIndexFile(), store.size());
         } catch (Exception e) {
-            log.error("保存文本分享数据失败: {}", dataFile, e);
+            log.error("保存文本分享索引失败: {}", store.getIndexFile(), e);
         }
     }
     
+    /**
+     * 定期保存查看次数等元数据的变化，避免每次访问都重写索引
+     */
+    @Scheduled(fixedDelayString = "${file.text-share.flush-interval-ms:2000}")
+    public void flushPeriodically() {
+        if (store != null) {
+            saveDataToFile();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushPeriodically();
+    }
+    
     /**
      * 创建文本分享
      */
@@ -175,35 +290,53 @@ public class TextShareService {
             }
             
             // 检查内容长度
-            if (content.length() > 10000) {
-                throw new IllegalArgumentException("分享内容过长，最大支持10000字符");
+            if (content.length() > maxContentLength) {
+                throw new IllegalArgumentException("分享内容过长，最大支持" + maxContentLength + "字符");
             }
             
-            // 生成唯一ID
-            String id = generateId();
-            
-            // 创建分享对象
-            TextShare textShare = new TextShare(id, ipAddress, content.trim(), nickname, type);
+            // 创建分享对象，ID 在写入前确认唯一
+            String fullContent = content.trim();
+            TextShare textShare = new TextShare(null, ipAddress, fullContent, nickname, type);
             
             // 设置过期时间
             textShare.setExpireTime(LocalDateTime.now().plusHours(DEFAULT_EXPIRE_HOURS));
             
-            // 检查存储空间
-            cleanupExpiredShares();
-            if (textShares.size() >= MAX_SHARES) {
-                // 删除最旧的分享
-                removeOldestShare();
+            // 超长内容单独压缩保存，分段中只保存开头部分
+            byte[] blobBody = null;
+            if (fullContent.length() > inlineMaxLength) {
+                blobBody = fullContent.getBytes(StandardCharsets.UTF_8);
+                textShare.setContent(TextShareStore.truncate(fullContent, inlineMaxLength));
+                textShare.setTruncated(true);
             }
+            long contentBytes = blobBody != null ? blobBody.length : fullContent.getBytes(StandardCharsets.UTF_8).length;
             
-            // 存储分享
-            textShares.put(id, textShare);
-            
-            // 保存到文件
-            saveDataToFile();
+            synchronized (createLock) {
+                // 检查存储空间：按数量和总字节数删除最旧的分享
+                cleanupExpiredShares();
+                while (store.size() > 0
+                        && (store.size() >= maxShares || store.totalBytes() + contentBytes > maxTotalBytes)) {
+                    removeOldestShare();
+                }
+                
+                // 生成唯一ID：与已有分享重复时重新生成
+                String id = generateId();
+                while (store.getMetadata(id) != null) {
+                    id = generateId();
+                }
+                textShare.setId(id);
+                
+                // 追加到分段文件并加入检索索引
+                store.append(textShare, blobBody);
+                searchIndex.add(id, indexable(fullContent), nickname, type);
+            }
             
-            log.info("创建文本分享成功: ID={}, IP={}, 类型={}", id, ipAddress, type);
+            log.info("创建文本分享成功: ID={}, IP={}, 类型={}, 长度={}", textShare.getId(), ipAddress, type,
+                    fullContent.length());
             return textShare;
             
+        } catch (IOException e) {
+            log.error("创建文本分享失败: IP={}, 错误={}", ipAddress, e.getMessage());
+            throw new UncheckedIOException("保存文本分享失败", e);
         } catch (Exception e) {
             log.error("创建文本分享失败: IP={}, 错误={}", ipAddress, e.getMessage());
             throw e;
@@ -211,56 +344,70 @@ public class TextShareService {
     }
     
     /**
-     * 获取所有有效的文本分享（按时间倒序）
+     * 分页获取有效的文本分享（按时间倒序），content 为简短预览
      */
-    public List<TextShare> getAllTextShares() {
+    public SharePage getAllTextShares(int offset, int limit) {
         cleanupExpiredShares();
         
-        return textShares.values().stream()
+        return page(store.allMetadata().stream()
                 .filter(share -> !share.isExpired())
-                .sorted((a, b) -> b.getShareTime().compareTo(a.getShareTime()))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), offset, limit);
     }
     
     /**
      * 根据ID获取文本分享
      */
     public TextShare getTextShare(String id) {
-        TextShare share = textShares.get(id);
+        TextShare share = store.getMetadata(id);
         if (share != null && !share.isExpired()) {
-            // 增加查看次数
+            // 增加查看次数，索引定期保存
             share.setViewCount(share.getViewCount() + 1);
-            
-            // 保存更新到文件
-            saveDataToFile();
+            store.markDirty();
             
             log.info("获取文本分享: ID={}, 查看次数={}", id, share.getViewCount());
-            return share;
+            return withContent(share);
         }
         return null;
     }
     
     /**
-     * 根据IP地址获取文本分享
+     * 根据IP地址分页获取文本分享（按时间倒序），content 为简短预览
      */
-    public List<TextShare> getTextSharesByIp(String ipAddress) {
+    public SharePage getTextSharesByIp(String ipAddress, int offset, int limit) {
         cleanupExpiredShares();
         
-        return textShares.values().stream()
+        return page(store.allMetadata().stream()
                 .filter(share -> !share.isExpired() && ipAddress.equals(share.getIpAddress()))
-                .sorted((a, b) -> b.getShareTime().compareTo(a.getShareTime()))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), offset, limit);
+    }
+    
+    /**
+     * 按时间倒序排序后取一页，只为这一页生成摘要（元数据 + 索引中的预览），不读取正文
+     */
+    private SharePage page(List<TextShare> matched, int offset, int limit) {
+        // 同一时刻的分享按 ID 排序，保证翻页时顺序稳定
+        matched.sort(Comparator.comparing(TextShare::getShareTime).thenComparing(TextShare::getId).reversed());
+        int from = Math.min(Math.max(offset, 0), matched.size());
+        int to = Math.min(from + Math.max(limit, 0), matched.size());
+        List<TextShare> shares = new ArrayList<>(to - from);
+        for (TextShare share : matched.subList(from, to)) {
+            TextShare summary = store.getSummary(share.getId());
+            if (summary != null) {
+                shares.add(summary);
+            }
+        }
+        return new SharePage(shares, matched.size());
     }
     
     /**
      * 删除文本分享（只有创建者可以删除）
      */
     public boolean deleteTextShare(String id, String ipAddress) {
-        TextShare share = textShares.get(id);
+        TextShare share = store.getMetadata(id);
         if (share != null && ipAddress.equals(share.getIpAddress())) {
-            textShares.remove(id);
+            removeShare(id);
             
-            // 保存到文件
+            // 删除立即写入索引，避免异常退出后从分段文件中恢复
             saveDataToFile();
             
             log.info("删除文本分享: ID={}, IP={}", id, ipAddress);
@@ -271,30 +418,22 @@ public class TextShareService {
     
     /**
      * 清理过期的分享
+     * 过期的分享在重启加载时也会被跳过，因此这里只标记索引待保存
      */
     public void cleanupExpiredShares() {
         LocalDateTime now = LocalDateTime.now();
-        List<String> expiredIds = new ArrayList<>();
+        int expiredCount = 0;
         
-        for (Map.Entry<String, TextShare> entry : textShares.entrySet()) {
-            TextShare share = entry.getValue();
+        for (TextShare share : store.allMetadata()) {
             if (share.getExpireTime() != null && now.isAfter(share.getExpireTime())) {
                 share.setExpired(true);
-                expiredIds.add(entry.getKey());
+                removeShare(share.getId());
+                expiredCount++;
             }
         }
         
-        // 删除过期的分享
-        boolean hasExpired = false;
-        for (String id : expiredIds) {
-            textShares.remove(id);
-            hasExpired = true;
-        }
-        
-        // 如果有过期的分享，保存到文件
-        if (hasExpired) {
-            saveDataToFile();
-            log.info("清理过期分享: 数量={}", expiredIds.size());
+        if (expiredCount > 0) {
+            log.info("清理过期分享: 数量={}", expiredCount);
         }
     }
     
@@ -302,17 +441,124 @@ public class TextShareService {
      * 删除最旧的分享
      */
     private void removeOldestShare() {
-        Optional<Map.Entry<String, TextShare>> oldest = textShares.entrySet().stream()
-                .min((a, b) -> a.getValue().getShareTime().compareTo(b.getValue().getShareTime()));
-                
-        if (oldest.isPresent()) {
-            String oldestId = oldest.get().getKey();
-            textShares.remove(oldestId);
-            saveDataToFile();
+        String oldestId = store.oldestId();
+        if (oldestId != null) {
+            removeShare(oldestId);
             log.info("删除最旧分享: ID={}", oldestId);
         }
     }
     
+    /**
+     * 从存储和检索索引中移除分享
+     */
+    private void removeShare(String id) {
+        store.remove(id);
+        searchIndex.remove(id);
+    }
+    
+    /**
+     * 全文检索，结果按相关度排序
+     */
+    public List<TextShare> searchTextShares(String query, int limit) {
+        cleanupExpiredShares();
+        
+        List<TextShare> results = new ArrayList<>();
+        for (TextShareSearchIndex.Hit hit : searchIndex.search(query, limit)) {
+            TextShare share = store.getMetadata(hit.getId());
+            if (share != null && !share.isExpired()) {
+                TextShare summary = store.getSummary(hit.getId());
+                if (summary != null) {
+                    results.add(summary);
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 获取分享的完整内容（UTF-8 文本），用于流式下载，支持 Range
+     * 分享不存在或已过期时返回null
+     */
+    public Resource getTextShareContent(String id) {
+        TextShare share = store.getMetadata(id);
+        if (share == null || share.isExpired()) {
+            return null;
+        }
+        long contentBytes = store.contentBytes(id);
+        return new AbstractResource() {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return store.openContent(id);
+            }
+            
+            @Override
+            public long contentLength() {
+                return contentBytes;
+            }
+            
+            /**
+             * 内容创建后不会修改，以分享时间作为修改时间
+             */
+            @Override
+            public long lastModified() {
+                return share.getShareTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            
+            @Override
+            public String getFilename() {
+                return "text-share-" + id + ".txt";
+            }
+            
+            @Override
+            public String getDescription() {
+                return "文本分享内容 [" + id + "]";
+            }
+        };
+    }
+    
+    /**
+     * 复制元数据并填充正文，返回给调用方的对象不会驻留在内存索引中
+     * 超长内容只填充预览
+     */
+    private TextShare withContent(TextShare metadata) {
+        try {
+            String content = store.readContent(metadata.getId());
+            if (content == null) {
+                return null;
+            }
+            TextShare share = new TextShare(metadata.getId(), metadata.getIpAddress(), content, metadata.getShareTime(),
+                    metadata.getNickname(), metadata.getType(), metadata.isExpired(), metadata.getExpireTime(),
+                    metadata.getViewCount(), metadata.getContentLength(), metadata.isTruncated());
+            if (share.getContentLength() == 0) {
+                share.setContentLength(content.length());
+            }
+            return share;
+        } catch (IOException e) {
+            log.error("读取文本分享内容失败: ID={}", metadata.getId(), e);
+            return null;
+        }
+    }
+    
+    private String indexable(String content) {
+        return content.length() > SEARCH_INDEX_MAX_LENGTH ? content.substring(0, SEARCH_INDEX_MAX_LENGTH) : content;
+    }
+    
+    /**
+     * 读取用于建立检索索引的内容（超长内容只读取开头部分）
+     */
+    private String readIndexableContent(String id) throws IOException {
+        try (Reader reader = new InputStreamReader(store.openContent(id), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            StringBuilder content = new StringBuilder();
+            int n;
+            while (content.length() < SEARCH_INDEX_MAX_LENGTH
+                    && (n = reader.read(buffer, 0, Math.min(buffer.length, SEARCH_INDEX_MAX_LENGTH - content.length()))) != -1) {
+                content.append(buffer, 0, n);
+            }
+            return content.toString();
+        }
+    }
+    
     /**
      * 生成唯一ID
      */
@@ -326,14 +572,18 @@ public class TextShareService {
     public Map<String, Object> getStatistics() {
         cleanupExpiredShares();
         
+        Collection<TextShare> shares = store.allMetadata();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalShares", textShares.size());
-        stats.put("totalViews", textShares.values().stream().mapToInt(TextShare::getViewCount).sum());
-        stats.put("uniqueIps", textShares.values().stream().map(TextShare::getIpAddress).distinct().count());
-        stats.put("dataFilePath", textShareDir.resolve(DATA_FILE_NAME).toString());
+        stats.put("totalShares", shares.size());
+        stats.put("totalViews", shares.stream().mapToInt(TextShare::getViewCount).sum());
+        stats.put("uniqueIps", shares.stream().map(TextShare::getIpAddress).distinct().count());
+        stats.put("totalBytes", store.totalBytes());
+        stats.put("segmentCount", store.segmentCount());
+        stats.put("indexedShares", searchIndex.size());
+        stats.put("dataFilePath", store.getIndexFile().toString());
         
         // 按类型统计
-        Map<String, Long> typeStats = textShares.values().stream()
+        Map<String, Long> typeStats = shares.stream()
                 .collect(Collectors.groupingBy(share -> share.getType() != null ? share.getType() : "未分类", 
                         Collectors.counting()));
         stats.put("typeStats", typeStats);
@@ -347,4 +597,25 @@ public class TextShareService {
     public String getTextShareDirectory() {
         return textShareDir != null ? textShareDir.toString() : "未初始化";
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 一页分享及符合条件的总数
+     */
+    public static final class SharePage {
+        private final List<TextShare> shares;
+        private final int total;
+        
+        private SharePage(List<TextShare> shares, int total) {
+            this.shares = shares;
+            this.total = total;
+        }
+        
+        public List<TextShare> getShares() {
+            return shares;
+        }
+        
+        public int getTotal() {
+            return total;
+        }
+    }
+}
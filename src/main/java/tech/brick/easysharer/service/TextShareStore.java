@@ -0,0 +1,657 @@
+package tech.brick.easysharer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import tech.brick.easysharer.model.TextShare;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文本分享分段存储
+ * 内容按分享日期追加写入 segments/yyyyMMdd-{创建时间戳}.seg（每行一条完整的 TextShare JSON），
+ * 分段名从不重用：分段删除后同一天的新分享写入新的分段文件，过期的索引条目不会指向重新创建的同名文件。
+ * 内存中只保留元数据（content 为 null）、列表用的简短预览和内容所在的分段位置，
+ * 正文按需读取并放入按字节数限制的 LRU 缓存；列表只使用元数据和预览，不读取分段文件。
+ * 元数据索引保存在 index.json，由调用方定期 flush；索引落后于分段文件时（异常退出），
+ * 启动时从分段文件的已索引长度之后补读新增记录。删除或过期的分享在分段中被空格覆盖，
+ * 分段中的分享全部过期或删除后整个分段文件被删除。
+ * 超长的内容单独压缩保存为 blobs/{id}.gz，分段中只保存预览（truncated=true）。
+ */
+@Slf4j
+public class TextShareStore {
+
+    static final String INDEX_FILE_NAME = "index.json";
+    static final String SEGMENT_DIR_NAME = "segments";
+    static final String BLOB_DIR_NAME = "blobs";
+    private static final String BLOB_SUFFIX = ".gz";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final DateTimeFormatter SEGMENT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final Path dir;
+    private final Path segmentDir;
+    private final Path blobDir;
+    private final ObjectMapper objectMapper;
+    private final long bodyCacheBytes;
+    private final int previewLength;
+
+    /**
+     * 元数据与内容位置，Key: 分享ID
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 每个分段中仍然有效的分享ID，按分段名（即日期）排序
+     */
+    private final TreeMap<String, Set<String>> liveBySegment = new TreeMap<>();
+
+    /**
+     * 每个分段文件已写入的长度
+     */
+    private final Map<String, Long> segmentLengths = new HashMap<>();
+
+    /**
+     * 正文 LRU 缓存（访问顺序）
+     */
+    private final LinkedHashMap<String, String> bodyCache = new LinkedHashMap<>(64, 0.75f, true);
+    private long bodyCacheSize;
+
+    /**
+     * 每个日期当前追加写入的分段
+     */
+    private final Map<String, String> currentSegments = new HashMap<>();
+
+    /**
+     * 最近创建的分段的时间戳，新分段的时间戳严格递增
+     */
+    private long lastSegmentStamp;
+
+    private long totalBytes;
+    private volatile boolean dirty;
+
+    /**
+     * @param previewLength 列表预览的最大字符数
+     */
+    public TextShareStore(Path dir, ObjectMapper objectMapper, long bodyCacheBytes, int previewLength) {
+        this.dir = dir;
+        this.segmentDir = dir.resolve(SEGMENT_DIR_NAME);
+        this.blobDir = dir.resolve(BLOB_DIR_NAME);
+        this.objectMapper = objectMapper;
+        this.bodyCacheBytes = bodyCacheBytes;
+        this.previewLength = previewLength;
+    }
+
+    /**
+     * 加载索引，并补读索引之后追加到分段文件中的记录
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(segmentDir);
+        Files.createDirectories(blobDir);
+
+        Path indexFile = dir.resolve(INDEX_FILE_NAME);
+        if (Files.exists(indexFile)) {
+            try {
+                Index index = objectMapper.readValue(indexFile.toFile(), Index.class);
+                segmentLengths.putAll(index.getSegments());
+                for (Entry entry : index.getShares()) {
+                    if (Files.exists(segmentDir.resolve(entry.getSegment())) && hasBody(entry.getShare())) {
+                        track(entry);
+                    }
+                }
+            } catch (IOException e) {
+                // 索引损坏时从分段文件完整重建
+                log.warn("文本分享索引读取失败，将从分段文件重建: {}", indexFile, e);
+                entries.clear();
+                liveBySegment.clear();
+                segmentLengths.clear();
+                totalBytes = 0;
+            }
+        }
+
+        int recovered = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(segmentDir, "*-*" + SEGMENT_SUFFIX)) {
+            for (Path segment : segments) {
+                lastSegmentStamp = Math.max(lastSegmentStamp, segmentStamp(segment.getFileName().toString()));
+                recovered += recoverSegmentTail(segment);
+            }
+        }
+        if (recovered > 0) {
+            log.info("从分段文件补读文本分享: {} 条", recovered);
+            dirty = true;
+        }
+
+        // 清理已没有有效分享的分段
+        for (String segment : new ArrayList<>(segmentLengths.keySet())) {
+            if (!liveBySegment.containsKey(segment)) {
+                dropSegment(segment);
+            }
+        }
+
+        // 清理没有对应分享的内容文件（分享已删除，或写入分段前异常退出）
+        try (DirectoryStream<Path> blobs = Files.newDirectoryStream(blobDir)) {
+            for (Path blob : blobs) {
+                String name = blob.getFileName().toString();
+                String id = name.endsWith(BLOB_SUFFIX) ? name.substring(0, name.length() - BLOB_SUFFIX.length()) : null;
+                if (id == null || !entries.containsKey(id)) {
+                    Files.deleteIfExists(blob);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取分段文件中已索引长度之后的记录
+     */
+    private int recoverSegmentTail(Path segment) throws IOException {
+        String name = segment.getFileName().toString();
+        long indexed = segmentLengths.getOrDefault(name, 0L);
+        long size = Files.size(segment);
+        if (size <= indexed) {
+            segmentLengths.put(name, size);
+            return 0;
+        }
+
+        int recovered = 0;
+        long offset = indexed;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(indexed)))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                int length = line.size();
+                if (isBlank(line.toByteArray())) {
+                    // 已删除的分享，记录被空格覆盖
+                    offset += length + 1;
+                    line.reset();
+                    continue;
+                }
+                try {
+                    TextShare share = objectMapper.readValue(line.toByteArray(), TextShare.class);
+                    if (share.getId() != null && !entries.containsKey(share.getId()) && !isExpired(share)
+                            && hasBody(share)) {
+                        track(toEntry(share, name, offset, length, blobSize(share)));
+                        recovered++;
+                    }
+                } catch (IOException e) {
+                    log.warn("跳过无法解析的文本分享记录: {} @ {}", segment, offset);
+                }
+                offset += length + 1;
+                line.reset();
+            }
+        }
+        // 末尾不完整的记录（写入中断）被丢弃，后续追加从完整记录之后开始
+        if (offset < size) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+            }
+        }
+        segmentLengths.put(name, offset);
+        return recovered;
+    }
+
+    /**
+     * 追加一条分享，返回保存在内存中的元数据
+     * blobBody 不为空时完整内容压缩保存为单独的文件，share 的 content 应为预览
+     */
+    public synchronized TextShare append(TextShare share, byte[] blobBody) throws IOException {
+        if (entries.containsKey(share.getId())) {
+            throw new IllegalStateException("文本分享ID已存在: " + share.getId());
+        }
+        if (blobBody != null) {
+            // 先写 blob 再写分段记录，保证分段中的记录都有对应的完整内容
+            writeBlob(share.getId(), blobBody);
+        }
+        String date = SEGMENT_DATE_FORMAT.format(share.getShareTime() != null ? share.getShareTime() : LocalDateTime.now());
+        String segment = currentSegments.get(date);
+        if (segment == null || !segmentLengths.containsKey(segment)) {
+            // 当天还没有分段，或分段已因其中的分享全部删除而被删除
+            segment = createSegment(date);
+            currentSegments.put(date, segment);
+        }
+        byte[] record = objectMapper.writeValueAsBytes(share);
+        Path segmentFile = segmentDir.resolve(segment);
+        long offset = segmentLengths.get(segment);
+
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n');
+            buffer.flip();
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        segmentLengths.put(segment, offset + record.length + 1);
+
+        Entry entry = toEntry(share, segment, offset, record.length, blobBody != null ? blobBody.length : -1);
+        track(entry);
+        cacheBody(share.getId(), share.getContent());
+        dirty = true;
+        return entry.getShare();
+    }
+
+    /**
+     * 删除分享：分段中已没有有效分享时删除分段文件，否则用空格覆盖这条记录，
+     * 删除的内容不能再从分段文件中读到，重建索引时也不会恢复
+     */
+    public synchronized boolean remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        totalBytes -= entry.getContentBytes();
+        if (entry.getShare().isTruncated()) {
+            try {
+                Files.deleteIfExists(blobFile(id));
+            } catch (IOException e) {
+                log.warn("删除文本分享内容文件失败: {}", id, e);
+            }
+        }
+        Set<String> live = liveBySegment.get(entry.getSegment());
+        if (live != null) {
+            live.remove(id);
+            if (live.isEmpty()) {
+                liveBySegment.remove(entry.getSegment());
+                dropSegment(entry.getSegment());
+            } else {
+                eraseRecord(entry);
+            }
+        }
+        evictBody(id);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * 最早的一条分享的ID（位于最早的分段中）
+     */
+    public synchronized String oldestId() {
+        if (liveBySegment.isEmpty()) {
+            return null;
+        }
+        String oldest = null;
+        LocalDateTime oldestTime = null;
+        for (String id : liveBySegment.firstEntry().getValue()) {
+            LocalDateTime time = entries.get(id).getShare().getShareTime();
+            if (oldestTime == null || time.isBefore(oldestTime)) {
+                oldest = id;
+                oldestTime = time;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * 列表用的摘要：元数据的副本，content 为索引中保存的简短预览，不读取分段文件
+     * 预览比完整内容短时 truncated 为 true
+     */
+    public TextShare getSummary(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        TextShare metadata = entry.getShare();
+        String preview = entry.getPreview();
+        return new TextShare(metadata.getId(), metadata.getIpAddress(), preview, metadata.getShareTime(),
+                metadata.getNickname(), metadata.getType(), metadata.isExpired(), metadata.getExpireTime(),
+                metadata.getViewCount(), metadata.getContentLength(),
+                metadata.isTruncated() || preview.length() < metadata.getContentLength());
+    }
+
+    /**
+     * 获取元数据（content 为 null）
+     */
+    public TextShare getMetadata(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.getShare() : null;
+    }
+
+    public Collection<TextShare> allMetadata() {
+        List<TextShare> shares = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            shares.add(entry.getShare());
+        }
+        return shares;
+    }
+
+    /**
+     * 读取正文，优先从 LRU 缓存读取
+     */
+    public String readContent(String id) throws IOException {
+        synchronized (bodyCache) {
+            String cached = bodyCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        String content = readRecord(entry);
+        cacheBody(id, content);
+        return content;
+    }
+
+    /**
+     * 从分段文件读取并解析一条记录，返回其中的 content
+     * 分段被删除后读取失败（NoSuchFileException），分段名不会重用，因此不会读到其他分享的数据
+     */
+    private String readRecord(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.getLength());
+        try (FileChannel channel = FileChannel.open(segmentDir.resolve(entry.getSegment()), StandardOpenOption.READ)) {
+            long position = entry.getOffset();
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("分段文件被截断: " + entry.getSegment());
+                }
+                position += n;
+            }
+        }
+        return objectMapper.readValue(buffer.array(), TextShare.class).getContent();
+    }
+
+    /**
+     * 打开完整内容（UTF-8），超长内容从压缩文件中解压读取
+     */
+    public InputStream openContent(String id) throws IOException {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            throw new NoSuchFileException(id);
+        }
+        if (entry.getShare().isTruncated()) {
+            return new GZIPInputStream(Files.newInputStream(blobFile(id)), 64 * 1024);
+        }
+        String content = readContent(id);
+        return new ByteArrayInputStream(content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+    }
+
+    /**
+     * 完整内容的字节数（UTF-8），分享不存在时返回 -1
+     */
+    public long contentBytes(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.getContentBytes() : -1;
+    }
+
+    /**
+     * 元数据被修改（如查看次数），等待下次 flush 写入索引
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * 索引有变化时写入 index.json（先写临时文件再原子替换）
+     */
+    public synchronized void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Index index = new Index();
+        index.setSegments(new HashMap<>(segmentLengths));
+        index.setShares(new ArrayList<>(entries.values()));
+
+        Path indexFile = dir.resolve(INDEX_FILE_NAME);
+        Path tempFile = dir.resolve(INDEX_FILE_NAME + ".tmp");
+        try {
+            objectMapper.writeValue(tempFile.toFile(), index);
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int segmentCount() {
+        return liveBySegment.size();
+    }
+
+    public Path getIndexFile() {
+        return dir.resolve(INDEX_FILE_NAME);
+    }
+
+    private void track(Entry entry) {
+        entries.put(entry.getShare().getId(), entry);
+        liveBySegment.computeIfAbsent(entry.getSegment(), key -> new LinkedHashSet<>()).add(entry.getShare().getId());
+        totalBytes += entry.getContentBytes();
+    }
+
+    /**
+     * @param blobBytes 完整内容单独保存时的字节数，否则为 -1
+     */
+    private Entry toEntry(TextShare share, String segment, long offset, int length, long blobBytes) {
+        String content = share.getContent();
+        long contentLength = share.getContentLength() > 0 ? share.getContentLength()
+                : (content != null ? content.length() : 0);
+        TextShare metadata = new TextShare(share.getId(), share.getIpAddress(), null, share.getShareTime(),
+                share.getNickname(), share.getType(), share.isExpired(), share.getExpireTime(), share.getViewCount(),
+                contentLength, share.isTruncated());
+        Entry entry = new Entry();
+        entry.setShare(metadata);
+        entry.setPreview(truncate(content != null ? content : "", previewLength));
+        entry.setSegment(segment);
+        entry.setOffset(offset);
+        entry.setLength(length);
+        if (blobBytes >= 0) {
+            entry.setContentBytes(blobBytes);
+        } else {
+            entry.setContentBytes(content != null ? content.getBytes(StandardCharsets.UTF_8).length : 0);
+        }
+        return entry;
+    }
+
+    private Path blobFile(String id) {
+        return blobDir.resolve(id + BLOB_SUFFIX);
+    }
+
+    private void writeBlob(String id, byte[] body) throws IOException {
+        Path blobFile = blobFile(id);
+        Path tempFile = blobDir.resolve(id + BLOB_SUFFIX + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile), 64 * 1024)) {
+            out.write(body);
+        }
+        Files.move(tempFile, blobFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 截断的分享需要有对应的内容文件
+     */
+    private boolean hasBody(TextShare share) {
+        return !share.isTruncated() || Files.exists(blobFile(share.getId()));
+    }
+
+    /**
+     * 读取内容文件的解压后大小，非截断的分享返回 -1
+     */
+    private long blobSize(TextShare share) throws IOException {
+        if (!share.isTruncated()) {
+            return -1;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(blobFile(share.getId())))) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * 用空格覆盖分段中的一条记录（保留结尾的换行），记录的位置和分段长度不变
+     */
+    private void eraseRecord(Entry entry) {
+        ByteBuffer spaces = ByteBuffer.allocate(entry.getLength());
+        while (spaces.hasRemaining()) {
+            spaces.put((byte) ' ');
+        }
+        spaces.flip();
+        try (FileChannel channel = FileChannel.open(segmentDir.resolve(entry.getSegment()), StandardOpenOption.WRITE)) {
+            long position = entry.getOffset();
+            while (spaces.hasRemaining()) {
+                position += channel.write(spaces, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.warn("覆盖已删除的文本分享记录失败: {} @ {}", entry.getSegment(), entry.getOffset(), e);
+        }
+    }
+
+    private static boolean isBlank(byte[] record) {
+        for (byte b : record) {
+            if (b != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void dropSegment(String segment) {
+        segmentLengths.remove(segment);
+        try {
+            Files.deleteIfExists(segmentDir.resolve(segment));
+            log.debug("删除已无有效分享的分段: {}", segment);
+        } catch (IOException e) {
+            log.warn("删除分段文件失败: {}", segment, e);
+        }
+    }
+
+    private void cacheBody(String id, String content) {
+        if (content == null || bodyCacheBytes <= 0) {
+            return;
+        }
+        long size = (long) content.length() * 2;
+        if (size > bodyCacheBytes) {
+            return;
+        }
+        synchronized (bodyCache) {
+            String previous = bodyCache.put(id, content);
+            if (previous != null) {
+                bodyCacheSize -= (long) previous.length() * 2;
+            }
+            bodyCacheSize += size;
+            var iterator = bodyCache.entrySet().iterator();
+            while (bodyCacheSize > bodyCacheBytes && iterator.hasNext()) {
+                bodyCacheSize -= (long) iterator.next().getValue().length() * 2;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evictBody(String id) {
+        synchronized (bodyCache) {
+            String previous = bodyCache.remove(id);
+            if (previous != null) {
+                bodyCacheSize -= (long) previous.length() * 2;
+            }
+        }
+    }
+
+    private static boolean isExpired(TextShare share) {
+        return share.getExpireTime() != null && LocalDateTime.now().isAfter(share.getExpireTime());
+    }
+
+    /**
+     * 创建新的分段文件，名称为日期加创建时间戳（毫秒，严格递增）
+     * 使用 CREATE_NEW 创建，名称已存在时时间戳加一重试，不会覆盖或重用任何分段文件
+     */
+    private String createSegment(String date) throws IOException {
+        long stamp = Math.max(System.currentTimeMillis(), lastSegmentStamp + 1);
+        while (true) {
+            String name = date + "-" + stamp + SEGMENT_SUFFIX;
+            try {
+                Files.newByteChannel(segmentDir.resolve(name), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                lastSegmentStamp = stamp;
+                segmentLengths.put(name, 0L);
+                return name;
+            } catch (FileAlreadyExistsException e) {
+                stamp++;
+            }
+        }
+    }
+
+    /**
+     * 分段名（yyyyMMdd-{时间戳}.seg）中的时间戳
+     */
+    private static long segmentStamp(String name) {
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * 截取开头 length 个字符，不截断代理对
+     */
+    static String truncate(String content, int length) {
+        int end = Math.min(length, content.length());
+        if (end > 0 && end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    /**
+     * 索引条目：元数据 + 内容在分段文件中的位置
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Entry {
+        private TextShare share;
+        /**
+         * 列表用的简短预览
+         */
+        private String preview;
+        private String segment;
+        private long offset;
+        private int length;
+        private long contentBytes;
+    }
+
+    /**
+     * index.json 的结构
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Index {
+        private Map<String, Long> segments = new HashMap<>();
+        private List<Entry> shares = new ArrayList<>();
+    }
+}
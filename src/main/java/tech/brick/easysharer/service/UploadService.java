@@ -1,24 +1,68 @@
 package tech.brick.easysharer.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import tech.brick.easysharer.model.FileUploadResult;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+import tech.brick.easysharer.util.TarInputStream;
+import tech.brick.easysharer.util.TarInputStream.TarFormatException;
+import tech.brick.easysharer.util.ZipNameCharset;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class UploadService {
 
-    @Value("${file.share.root-path:./shared}")
-    private String rootPath;
+    private final DirectorySizeService directorySizeService;
+    private final SharePathResolver pathResolver;
+    private final HashService hashService;
 
     @Value("${file.upload.enabled:false}")
     private boolean uploadEnabled;
@@ -29,23 +73,130 @@ public class UploadService {
     @Value("${file.upload.max-file-size:500}")
     private int maxFileSizeMB;
 
+    @Value("${file.upload.writer-threads:4}")
+    private int writerThreads;
+
+    @Value("${file.upload.archive.max-entries:100000}")
+    private int maxArchiveEntries;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> ARCHIVE_FORMATS = Set.of("zip", "tar", "tar.gz");
+
+    /**
+     * 解压时不超过该大小的文件读入内存后并行写入，更大的文件在请求线程中直接写入
+     */
+    private static final int ARCHIVE_INLINE_THRESHOLD = 1024 * 1024;
+
+    /**
+     * 解压时读入内存、等待写入的内容总量上限
+     */
+    private static final int ARCHIVE_BUFFER_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * 压缩包上传的结果中最多列出的失败条目数
+     */
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    /**
+     * 暂存文件命名：.easysharer-upload-{uuid}.part，与最终文件位于同一目录以保证改名是原子的
+     */
+    private static final String STAGING_PREFIX = ".easysharer-upload-";
+    private static final String STAGING_SUFFIX = ".part";
+    private static final Pattern STAGING_FILE_PATTERN = Pattern.compile(
+            Pattern.quote(STAGING_PREFIX) + "[0-9a-f\\-]{36}" + Pattern.quote(STAGING_SUFFIX));
+
+    /**
+     * 同名文件最多尝试的序号数
+     */
+    private static final int MAX_NAME_ATTEMPTS = 1000;
+
+    /**
+     * 共享目录所在的文件系统是否支持硬链接，启动时探测一次
+     */
+    private volatile boolean hardLinksSupported = true;
+
+    /**
+     * 文件写入线程池，有界队列，队列满时由请求线程自己写入
+     */
+    private ExecutorService writerPool;
+
+    /**
+     * 进行中的上传批次，Key为客户端提供的uploadId
+     */
+    private final Map<String, List<FileUploadResult>> uploadProgress = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, writerThreads);
+        AtomicInteger threadIndex = new AtomicInteger();
+        writerPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "upload-writer-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("上传写入线程池已启动，线程数: {}", threads);
+        probeHardLinks();
+        writerPool.execute(this::sweepStagingFiles);
+    }
+
+    /**
+     * 在共享根目录中创建一个硬链接，判断文件系统是否支持硬链接
+     * 只在启动时决定；运行中创建链接失败（权限、磁盘已满、目录被删除等）只让该次上传失败
+     */
+    private void probeHardLinks() {
+        Path root = pathResolver.getRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Path probe = stagingFileIn(root);
+        Path link = stagingFileIn(root);
+        try {
+            Files.createFile(probe);
+            try {
+                Files.createLink(link, probe);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                hardLinksSupported = false;
+                log.info("共享目录所在的文件系统不支持硬链接，上传的文件改用改名提交: {}", e.getMessage());
+            }
+        } catch (IOException e) {
+            log.warn("探测硬链接支持失败: {} ({})", root, e.getMessage());
+        } finally {
+            deleteQuietly(link);
+            deleteQuietly(probe);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writerPool != null) {
+            writerPool.shutdown();
+        }
+    }
+
     /**
      * 检查上传功能是否启用
      */
     public boolean isUploadEnabled() {
-        log.info("isUploadEnabled() 被调用，返回值: {}", uploadEnabled);
         return uploadEnabled;
     }
 
     /**
      * 上传文件到指定路径
      */
-    public List<String> uploadFiles(List<MultipartFile> files, String relativePath) throws IOException {
-        log.info("UploadService.uploadFiles 开始执行");
-        log.info("上传功能启用状态: {}", uploadEnabled);
-        log.info("根路径配置: {}", rootPath);
-        log.info("最大文件数限制: {}", maxFilesPerRequest);
-        
+    public List<FileUploadResult> uploadFiles(List<MultipartFile> files, String relativePath) throws IOException {
+        return uploadFiles(files, relativePath, null);
+    }
+
+    /**
+     * 上传文件到指定路径
+     * 同一批次的文件在写入线程池中并发保存，单个文件写入失败不影响其他文件，
+     * 每个文件的结果和进度通过返回值（以及 uploadId 对应的进度查询）报告
+     */
+    public List<FileUploadResult> uploadFiles(List<MultipartFile> files, String relativePath, String uploadId) throws IOException {
         if (!uploadEnabled) {
             throw new IllegalStateException("文件上传功能未启用");
         }
@@ -54,13 +205,88 @@ public class UploadService {
             throw new IllegalArgumentException("一次最多只能上传 " + maxFilesPerRequest + " 个文件");
         }
 
-        // 清理和规范化相对路径
-        relativePath = cleanPath(relativePath);
-        log.info("上传文件到路径: '{}', 文件数量: {}", relativePath, files.size());
+        // 清理、规范化相对路径并做安全检查
+        SharePath target = pathResolver.resolve(relativePath);
+        log.info("上传文件到路径: '{}', 文件数量: {}", target, files.size());
+
+        Path basePath = pathResolver.getRoot();
+        Path targetDir = prepareTargetDir(target);
+
+        // 先整体校验，任何文件不合法时整批拒绝，不写入任何内容
+        long maxFileSizeBytes = (long) maxFileSizeMB * 1024 * 1024;
+        List<FileUploadResult> results = new ArrayList<>(files.size());
+        List<String> fileNames = new ArrayList<>(files.size());
+
+        for (MultipartFile file : files) {
+            String originalFilename = file.getOriginalFilename();
+            log.debug("上传文件: 名称='{}', 大小={} bytes, 类型='{}'", originalFilename, file.getSize(), file.getContentType());
+
+            if (file.isEmpty()) {
+                throw new IllegalArgumentException("不能上传空文件");
+            }
+
+            if (originalFilename == null || originalFilename.trim().isEmpty()) {
+                throw new IllegalArgumentException("文件名不能为空");
+            }
+
+            // 检查文件大小
+            if (file.getSize() > maxFileSizeBytes) {
+                log.warn("文件过大: {} - {} bytes, 限制: {} MB", originalFilename, file.getSize(), maxFileSizeMB);
+                throw new IllegalArgumentException("文件 " + originalFilename + " 过大，最大支持" + maxFileSizeMB + "MB");
+            }
+
+            // 清理文件名，移除路径分隔符等危险字符
+            String cleanFileName = sanitizeFileName(originalFilename);
+            if (cleanFileName.isEmpty()) {
+                throw new IllegalArgumentException("文件名 " + originalFilename + " 无效");
+            }
+
+            // 最终文件名在写入完成后提交时才确定
+            fileNames.add(cleanFileName);
+            results.add(new FileUploadResult(originalFilename, file.getSize()));
+        }
+
+        if (uploadId != null && !uploadId.isEmpty()) {
+            uploadProgress.put(uploadId, results);
+        }
+
+        try {
+            // 并发写入，调用线程等待整批完成
+            List<Future<?>> futures = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
+                String fileName = fileNames.get(i);
+                FileUploadResult result = results.get(i);
+                Path dir = targetDir;
+                futures.add(writerPool.submit(() -> writeFile(file, dir, fileName, basePath, result)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // writeFile 自行记录失败结果，这里只兜底
+                    log.error("上传任务异常", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("上传被中断", e);
+        } finally {
+            if (uploadId != null) {
+                uploadProgress.remove(uploadId);
+            }
+        }
+
+        long succeeded = results.stream().filter(FileUploadResult::isSuccess).count();
+        log.info("上传完成: 目录='{}', 成功 {} 个, 失败 {} 个", relativePath, succeeded, results.size() - succeeded);
+        return results;
+    }
 
-        List<String> uploadedFiles = new ArrayList<>();
-        Path basePath = Paths.get(rootPath).toAbsolutePath().normalize();
-        log.info("基础路径: {}", basePath);
+    /**
+     * 检查根目录和目标目录，不存在时创建，不可写时抛出 SecurityException
+     */
+    private Path prepareTargetDir(SharePath target) throws IOException {
+        Path basePath = pathResolver.getRoot();
         
         // 检查根路径是否存在和可写
         if (!Files.exists(basePath)) {
@@ -78,21 +304,7 @@ public class UploadService {
             throw new SecurityException("根目录不可写: " + basePath);
         }
         
-        Path targetDir = basePath;
-
-        // 如果指定了相对路径，则上传到该子目录
-        if (relativePath != null && !relativePath.isEmpty()) {
-            targetDir = basePath.resolve(relativePath).normalize();
-            log.info("目标目录: {}", targetDir);
-            
-            // 安全检查：确保目标路径在根路径内
-            if (!targetDir.startsWith(basePath)) {
-                log.error("安全检查失败: 目标路径 {} 不在根路径 {} 内", targetDir, basePath);
-                throw new SecurityException("不允许上传到根路径外的目录");
-            }
-        }
-
-        log.info("最终目标上传目录: {}", targetDir);
+        Path targetDir = target.getPath();
 
         // 确保目标目录存在
         if (!Files.exists(targetDir)) {
@@ -110,82 +322,307 @@ public class UploadService {
             log.error("目标目录不可写: {}", targetDir);
             throw new SecurityException("目标目录不可写: " + targetDir);
         }
+        return targetDir;
+    }
 
-        // 上传每个文件
-        for (MultipartFile file : files) {
-            if (file.isEmpty()) {
-                log.error("发现空文件");
-                throw new IllegalArgumentException("不能上传空文件");
+    /**
+     * 上传压缩包（zip、tar 或 tar.gz）并边接收边解压到指定路径，用于一次上传大量小文件
+     * 请求线程顺序读取压缩包：小文件读入内存后交给写入线程池并行写入（缓冲总量有上限），大文件在请求线程中直接写入。
+     * 每级路径都按普通上传的规则清理文件名，包含 .. 的条目、链接等特殊条目被跳过；文件同样先写入暂存文件再提交，
+     * 已存在的同名文件不会被覆盖而是添加序号。为了吞吐量，逐个文件不再强制落盘。
+     * 返回的第一项是整个压缩包的结果（进度中的已写入字节数为已读取的压缩包字节数），其后是失败的条目（最多 {@value #MAX_REPORTED_FAILURES} 个）
+     */
+    public List<FileUploadResult> uploadArchive(InputStream body, String format, String archiveName, long contentLength,
+                                                String relativePath, String uploadId) throws IOException {
+        if (!uploadEnabled) {
+            throw new IllegalStateException("文件上传功能未启用");
+        }
+        if (!ARCHIVE_FORMATS.contains(format)) {
+            throw new IllegalArgumentException("不支持的压缩包格式: " + format);
+        }
+        SharePath target = pathResolver.resolve(relativePath);
+        Path targetDir = prepareTargetDir(target);
+        log.info("上传压缩包到路径: '{}', 格式: {}, 大小: {} bytes", target, format, contentLength);
+
+        FileUploadResult archive = new FileUploadResult(archiveName, contentLength);
+        archive.setStatus(FileUploadResult.Status.WRITING);
+        if (uploadId != null && !uploadId.isEmpty()) {
+            uploadProgress.put(uploadId, List.of(archive));
+        }
+
+        ArchiveExtraction extraction = new ArchiveExtraction(targetDir);
+        long start = System.currentTimeMillis();
+        try (InputStream counted = new ProgressInputStream(body, archive);
+             ArchiveReader reader = openArchiveReader(format, counted)) {
+            ArchiveEntry entry;
+            while ((entry = reader.next()) != null) {
+                if (++extraction.entryCount > maxArchiveEntries) {
+                    throw new IllegalArgumentException("压缩包中的条目超过 " + maxArchiveEntries + " 个");
+                }
+                extraction.extract(entry, reader.content());
+            }
+            extraction.awaitWrites();
+            archive.setStatus(FileUploadResult.Status.SUCCESS);
+        } catch (IOException | RuntimeException e) {
+            extraction.awaitWrites();
+            archive.setStatus(FileUploadResult.Status.FAILED);
+            archive.setMessage(String.format("解压中断: %s（已写入 %d 个文件）", e.getMessage(), extraction.filesWritten.get()));
+            log.warn("压缩包解压中断: '{}', 已写入 {} 个文件: {}", target, extraction.filesWritten.get(), e.getMessage());
+            if (e instanceof TarFormatException || e instanceof ZipException) {
+                // 压缩包内容无效是客户端的错误
+                throw new IllegalArgumentException(archive.getMessage(), e);
             }
+            if (e instanceof IOException) {
+                throw new IOException(archive.getMessage(), e);
+            }
+            throw e;
+        } finally {
+            archive.setElapsedMillis(System.currentTimeMillis() - start);
+            if (uploadId != null) {
+                uploadProgress.remove(uploadId);
+            }
+        }
 
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null || originalFilename.trim().isEmpty()) {
-                log.error("文件名为空");
-                throw new IllegalArgumentException("文件名不能为空");
+        List<FileUploadResult> failures = extraction.failures;
+        archive.setStoredPath(target.getRelativePath());
+        archive.setMessage(String.format("解压 %d 个文件（%d bytes）%s", extraction.filesWritten.get(),
+                extraction.bytesWritten.get(), failures.isEmpty() ? "" : "，跳过或失败 " + extraction.failureCount.get() + " 个"));
+        if (!failures.isEmpty()) {
+            archive.setStatus(FileUploadResult.Status.FAILED);
+        }
+        log.info("压缩包解压完成: 目录='{}', 写入 {} 个文件 ({} bytes), 失败 {} 个, 耗时 {} ms", target,
+                extraction.filesWritten.get(), extraction.bytesWritten.get(), extraction.failureCount.get(),
+                archive.getElapsedMillis());
+
+        List<FileUploadResult> results = new ArrayList<>(failures.size() + 1);
+        results.add(archive);
+        results.addAll(failures);
+        return results;
+    }
+
+    private static ArchiveReader openArchiveReader(String format, InputStream in) throws IOException {
+        if ("zip".equals(format)) {
+            // 未标记 UTF-8 的文件名按 UTF-8 解码失败时改用 GBK（Windows 中文系统创建的ZIP）
+            ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, COPY_BUFFER_SIZE), ZipNameCharset.INSTANCE);
+            return new ArchiveReader() {
+                @Override
+                public ArchiveEntry next() throws IOException {
+                    ZipEntry entry = zip.getNextEntry();
+                    return entry == null ? null
+                            : new ArchiveEntry(entry.getName(), entry.isDirectory(), true, entry.getSize(), entry.getTime());
+                }
+
+                @Override
+                public InputStream content() {
+                    return zip;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    zip.close();
+                }
+            };
+        }
+        InputStream buffered = new BufferedInputStream(in, COPY_BUFFER_SIZE);
+        TarInputStream tar = new TarInputStream("tar.gz".equals(format)
+                ? new GZIPInputStream(buffered, COPY_BUFFER_SIZE) : buffered);
+        return new ArchiveReader() {
+            @Override
+            public ArchiveEntry next() throws IOException {
+                TarInputStream.Entry entry = tar.getNextEntry();
+                return entry == null ? null : new ArchiveEntry(entry.getName(), entry.isDirectory(),
+                        entry.isRegularFile(), entry.getSize(), entry.getLastModified());
             }
 
-            // 检查文件大小
-            long maxFileSizeBytes = (long) maxFileSizeMB * 1024 * 1024;
-            if (file.getSize() > maxFileSizeBytes) {
-                log.error("文件过大: {} - {} bytes, 限制: {} MB", originalFilename, file.getSize(), maxFileSizeMB);
-                throw new IllegalArgumentException("文件 " + originalFilename + " 过大，最大支持" + maxFileSizeMB + "MB");
+            @Override
+            public InputStream content() {
+                return tar;
             }
 
-            // 清理文件名，移除路径分隔符等危险字符
-            String cleanFileName = sanitizeFileName(originalFilename);
-            if (cleanFileName.isEmpty()) {
-                log.error("文件名清理后为空: {}", originalFilename);
-                throw new IllegalArgumentException("文件名 " + originalFilename + " 无效");
+            @Override
+            public void close() throws IOException {
+                tar.close();
+            }
+        };
+    }
+
+    /**
+     * 单个文件的大小上限（字节）
+     */
+    public long getMaxFileSizeBytes() {
+        return (long) maxFileSizeMB * 1024 * 1024;
+    }
+
+    /**
+     * 获取进行中的上传批次的进度，批次不存在或已完成时返回null
+     */
+    public List<FileUploadResult> getUploadProgress(String uploadId) {
+        return uploadProgress.get(uploadId);
+    }
+
+    /**
+     * 在写入线程中保存单个文件
+     * 内容先写入同目录下的隐藏暂存文件并落盘，再原子地改名为最终文件名，
+     * 因此列表和下载中不会出现写了一半的文件；失败时删除暂存文件
+     */
+    private void writeFile(MultipartFile file, Path targetDir, String fileName, Path basePath, FileUploadResult result) {
+        long start = System.currentTimeMillis();
+        result.setStatus(FileUploadResult.Status.WRITING);
+        Path stagingFile = stagingFileIn(targetDir);
+        try {
+            long written;
+            try (InputStream in = file.getInputStream();
+                 FileChannel channel = FileChannel.open(stagingFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                written = 0;
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    written += n;
+                    result.setBytesWritten(written);
+                }
+                // 改名之前确保内容已写入磁盘，避免崩溃后留下内容不完整的正式文件
+                channel.force(true);
             }
-            
-            Path targetFile = targetDir.resolve(cleanFileName);
-            log.info("准备保存文件: {} -> {}", originalFilename, targetFile);
 
-            // 如果文件已存在，添加序号
-            targetFile = getUniqueFileName(targetFile);
-            log.info("最终文件路径: {}", targetFile);
+            Path targetFile = commitStagingFile(stagingFile, targetDir.resolve(fileName));
+            // 目录项（新文件名）也写入磁盘，崩溃后已报告成功的文件不会消失
+            syncDirectory(targetDir);
+            directorySizeService.onFileAdded(targetFile, written);
+            hashService.invalidateTree(targetFile);
 
+            result.setStoredPath(basePath.relativize(targetFile).toString().replace("\\", "/"));
+            result.setStatus(FileUploadResult.Status.SUCCESS);
+            log.debug("文件上传成功: {} -> {}", result.getOriginalFilename(), targetFile);
+        } catch (IOException e) {
+            log.error("文件上传失败: {} -> {}", result.getOriginalFilename(), targetDir.resolve(fileName), e);
+            result.setStatus(FileUploadResult.Status.FAILED);
+            result.setMessage("保存文件失败: " + e.getMessage());
             try {
-                // 保存文件
-                Files.copy(file.getInputStream(), targetFile, StandardCopyOption.REPLACE_EXISTING);
-                
-                // 记录成功上传的文件
-                String relativeFilePath = basePath.relativize(targetFile).toString().replace("\\", "/");
-                uploadedFiles.add(relativeFilePath);
-                
-                log.info("文件上传成功: {} -> {}", originalFilename, targetFile);
-            } catch (IOException e) {
-                log.error("文件上传失败: {} -> {}", originalFilename, targetFile, e);
-                throw new IOException("保存文件失败: " + originalFilename + " - " + e.getMessage(), e);
+                Files.deleteIfExists(stagingFile);
+            } catch (IOException deleteError) {
+                log.warn("删除暂存文件失败: {}", stagingFile, deleteError);
             }
+        } finally {
+            result.setElapsedMillis(System.currentTimeMillis() - start);
         }
+    }
 
-        log.info("上传完成，成功上传 {} 个文件: {}", uploadedFiles.size(), uploadedFiles);
-        return uploadedFiles;
+    /**
+     * 将暂存文件提交为最终文件，文件名已存在时依次尝试添加序号
+     * 通过创建硬链接占用文件名：link 在目标已存在时失败而不是覆盖，
+     * 检查与占用是同一个原子操作，并发上传同名文件不会互相覆盖。
+     * 文件系统不支持硬链接时（如 FAT/exFAT），先以 CREATE_NEW 创建空的占位文件占用文件名，再改名覆盖占位文件；
+     * 占用同样是原子的，改名期间该文件名下短暂可见一个空文件
+     */
+    private Path commitStagingFile(Path stagingFile, Path originalPath) throws IOException {
+        for (int counter = 0; counter < MAX_NAME_ATTEMPTS; counter++) {
+            Path candidate = counter == 0 ? originalPath : numberedFileName(originalPath, counter);
+            try {
+                if (hardLinksSupported) {
+                    try {
+                        Files.createLink(candidate, stagingFile);
+                        deleteStagingFile(stagingFile);
+                        return candidate;
+                    } catch (UnsupportedOperationException e) {
+                        // 上传目录位于不支持硬链接的其他文件系统上
+                        log.info("文件系统不支持硬链接，改用改名提交上传: {}", e.getMessage());
+                        hardLinksSupported = false;
+                    }
+                }
+                Files.createFile(candidate);
+                try {
+                    Files.move(stagingFile, candidate, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException | RuntimeException e) {
+                    deleteQuietly(candidate);
+                    throw e;
+                }
+                return candidate;
+            } catch (FileAlreadyExistsException e) {
+                // 文件名已被占用，尝试下一个序号
+            }
+        }
+        throw new FileAlreadyExistsException(originalPath.toString(), null, "同名文件过多，无法分配文件名");
     }
 
     /**
-     * 清理路径
+     * 将目录的修改（新建、改名的目录项）写入磁盘
+     * Windows 无法以读方式打开目录，此时跳过：NTFS 的元数据由日志保证
      */
-    private String cleanPath(String path) {
-        if (path == null) {
-            return "";
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("同步目录到磁盘失败: {} ({})", dir, e.getMessage());
         }
-        
-        path = path.trim();
-        
-        // 移除开头和结尾的斜杠
-        while (path.startsWith("/") || path.startsWith("\\")) {
-            path = path.substring(1);
+    }
+
+    /**
+     * 文件已提交后删除暂存文件的链接，失败只记录日志，遗留的暂存文件在下次启动时清理
+     */
+    private void deleteStagingFile(Path stagingFile) {
+        try {
+            Files.delete(stagingFile);
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败: {}", stagingFile, e);
+        }
+    }
+
+    /**
+     * 启动时清理上次异常退出遗留的暂存文件
+     * 只删除本次启动之前修改过的、符合暂存文件命名规则的文件，在后台线程中执行
+     */
+    private void sweepStagingFiles() {
+        Path basePath = pathResolver.getRoot();
+        if (!Files.isDirectory(basePath)) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        int[] removed = {0};
+        try {
+            Files.walkFileTree(basePath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && isStagingFile(file)
+                            && attrs.lastModifiedTime().toMillis() < startedAt) {
+                        try {
+                            Files.delete(file);
+                            removed[0]++;
+                        } catch (IOException e) {
+                            log.warn("删除遗留的暂存文件失败: {}", file, e);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理暂存文件失败: {}", basePath, e);
         }
-        while (path.endsWith("/") || path.endsWith("\\")) {
-            path = path.substring(0, path.length() - 1);
+        if (removed[0] > 0) {
+            log.info("已清理 {} 个遗留的上传暂存文件，耗时 {} ms", removed[0], System.currentTimeMillis() - startedAt);
         }
-        
-        // 替换反斜杠为正斜杠
-        path = path.replace("\\", "/");
-        
-        return path;
+    }
+
+    /**
+     * 在目录中分配一个新的暂存文件路径（不创建文件），启动时遗留的暂存文件会被自动清理
+     */
+    static Path stagingFileIn(Path dir) {
+        return dir.resolve(STAGING_PREFIX + UUID.randomUUID() + STAGING_SUFFIX);
+    }
+
+    /**
+     * 是否为上传暂存文件
+     * 上传的文件名会去掉开头的点号，因此不会与暂存文件重名
+     */
+    public static boolean isStagingFile(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null && STAGING_FILE_PATTERN.matcher(fileName.toString()).matches();
     }
 
     /**
@@ -209,13 +646,288 @@ public class UploadService {
     }
 
     /**
-     * 获取唯一的文件名（如果文件已存在，添加序号）
+     * 顺序读取压缩包条目，zip 和 tar 共用同一套解压逻辑
+     */
+    private interface ArchiveReader extends Closeable {
+
+        /**
+         * 下一个条目，没有更多条目时返回null
+         */
+        ArchiveEntry next() throws IOException;
+
+        /**
+         * 当前条目的内容，读到条目末尾时返回 -1
+         */
+        InputStream content();
+    }
+
+    /**
+     * 压缩包条目，size 未知时为 -1（zip 的数据描述符）
+     */
+    private record ArchiveEntry(String name, boolean directory, boolean regularFile, long size, long lastModified) {
+    }
+
+    /**
+     * 一次压缩包解压的状态：请求线程负责读取和目录创建，写入线程池负责写文件
+     */
+    private final class ArchiveExtraction {
+        private final Path targetDir;
+        private final long maxFileSizeBytes = getMaxFileSizeBytes();
+        private final Semaphore bufferedBytes = new Semaphore(ARCHIVE_BUFFER_BYTES);
+        private final Set<Path> createdDirs = new HashSet<>();
+        private final List<Future<?>> writes = new ArrayList<>();
+        private final List<FileUploadResult> failures = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicLong filesWritten = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private int entryCount;
+
+        private ArchiveExtraction(Path targetDir) {
+            this.targetDir = targetDir;
+            createdDirs.add(targetDir);
+        }
+
+        /**
+         * 处理一个条目：路径无效或不是普通文件时记为失败并跳过，内容在读取下一个条目时自动跳过
+         */
+        private void extract(ArchiveEntry entry, InputStream content) throws IOException {
+            Path path;
+            try {
+                path = resolveEntry(entry.name());
+            } catch (SecurityException | IllegalArgumentException e) {
+                fail(entry.name(), entry.size(), e.getMessage());
+                return;
+            }
+            if (path == null) {
+                return;
+            }
+            if (entry.directory()) {
+                ensureDirectory(path, entry.name());
+                return;
+            }
+            if (!entry.regularFile()) {
+                fail(entry.name(), entry.size(), "不支持的条目类型（链接或设备文件）");
+                return;
+            }
+            if (entry.size() > maxFileSizeBytes) {
+                fail(entry.name(), entry.size(), "文件过大，最大支持" + maxFileSizeMB + "MB");
+                return;
+            }
+            if (!ensureDirectory(path.getParent(), entry.name())) {
+                return;
+            }
+
+            FileUploadResult result = new FileUploadResult(entry.name(), Math.max(entry.size(), 0));
+            if (entry.size() > ARCHIVE_INLINE_THRESHOLD) {
+                writeEntry(content, null, path, entry.lastModified(), result);
+                return;
+            }
+            // 小文件（以及大小未知的条目）先读入内存，读完仍未结束说明是大文件，改为在请求线程中写入
+            int permits = entry.size() >= 0 ? (int) entry.size() : ARCHIVE_INLINE_THRESHOLD;
+            acquire(permits);
+            byte[] data;
+            try {
+                data = content.readNBytes(entry.size() >= 0 ? permits : ARCHIVE_INLINE_THRESHOLD + 1);
+            } catch (IOException e) {
+                bufferedBytes.release(permits);
+                throw e;
+            }
+            if (data.length > ARCHIVE_INLINE_THRESHOLD) {
+                bufferedBytes.release(permits);
+                writeEntry(content, data, path, entry.lastModified(), result);
+                return;
+            }
+            if (entry.size() >= 0 && data.length != entry.size()) {
+                bufferedBytes.release(permits);
+                throw new EOFException("压缩包内容不完整: " + entry.name());
+            }
+            bufferedBytes.release(permits - data.length);
+            writes.add(writerPool.submit(() -> {
+                try {
+                    writeEntry(null, data, path, entry.lastModified(), result);
+                    return null;
+                } finally {
+                    bufferedBytes.release(data.length);
+                }
+            }));
+        }
+
+        /**
+         * 写入单个条目：先写 prefix（已读入内存的部分）再写 rest 的剩余内容；写入线程中单个文件失败只记录结果，
+         * 请求线程中直接写入时的 IO 错误（压缩包损坏、连接断开或磁盘错误）抛出异常，结束整个解压
+         */
+        private void writeEntry(InputStream rest, byte[] prefix, Path path, long lastModified, FileUploadResult result)
+                throws IOException {
+            Path dir = path.getParent();
+            Path stagingFile = stagingFileIn(dir);
+            try {
+                long written = 0;
+                try (FileChannel channel = FileChannel.open(stagingFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    OutputStream out = Channels.newOutputStream(channel);
+                    if (prefix != null) {
+                        out.write(prefix);
+                        written = prefix.length;
+                    }
+                    if (rest != null) {
+                        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                        int n;
+                        while ((n = rest.read(buffer)) != -1) {
+                            written += n;
+                            if (written > maxFileSizeBytes) {
+                                throw new IllegalArgumentException("文件过大，最大支持" + maxFileSizeMB + "MB");
+                            }
+                            out.write(buffer, 0, n);
+                        }
+                    }
+                }
+                if (lastModified > 0) {
+                    Files.setLastModifiedTime(stagingFile, FileTime.fromMillis(lastModified));
+                }
+                Path targetFile = commitStagingFile(stagingFile, path);
+                directorySizeService.onFileAdded(targetFile, written);
+                // 解压的文件保留原修改时间，可能与之前在该路径上的文件大小、时间都相同
+                hashService.invalidateTree(targetFile);
+                filesWritten.incrementAndGet();
+                bytesWritten.addAndGet(written);
+                log.debug("解压文件: {} -> {} ({} bytes)", result.getOriginalFilename(), targetFile, written);
+            } catch (IllegalArgumentException e) {
+                // 只在请求线程中直接写入时出现：跳过该条目剩余的内容，继续下一个条目
+                deleteQuietly(stagingFile);
+                fail(result, e.getMessage());
+                rest.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                deleteQuietly(stagingFile);
+                if (rest != null) {
+                    // 读取压缩包失败（损坏或连接断开）时无法继续
+                    throw e;
+                }
+                log.warn("解压文件失败: {} -> {}: {}", result.getOriginalFilename(), path, e.getMessage());
+                fail(result, "保存文件失败: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 按普通上传的规则清理每一级路径，结果必须位于目标目录内；路径为空时返回null
+         */
+        private Path resolveEntry(String name) {
+            Path path = targetDir;
+            boolean empty = true;
+            for (String part : name.split("[/\\\\]")) {
+                if (part.isEmpty() || ".".equals(part)) {
+                    continue;
+                }
+                if ("..".equals(part)) {
+                    throw new SecurityException("路径不安全");
+                }
+                path = path.resolve(sanitizeFileName(part));
+                empty = false;
+            }
+            if (empty) {
+                return null;
+            }
+            if (!path.normalize().startsWith(targetDir)) {
+                throw new SecurityException("路径不安全");
+            }
+            return path;
+        }
+
+        private boolean ensureDirectory(Path dir, String entryName) {
+            if (createdDirs.contains(dir)) {
+                return true;
+            }
+            try {
+                Files.createDirectories(dir);
+                createdDirs.add(dir);
+                return true;
+            } catch (IOException e) {
+                fail(entryName, 0, "无法创建目录: " + e.getMessage());
+                return false;
+            }
+        }
+
+        private void acquire(int permits) throws IOException {
+            try {
+                bufferedBytes.acquire(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("上传被中断", e);
+            }
+        }
+
+        private void fail(String name, long size, String message) {
+            fail(new FileUploadResult(name, Math.max(size, 0)), message);
+        }
+
+        private void fail(FileUploadResult result, String message) {
+            result.setStatus(FileUploadResult.Status.FAILED);
+            result.setMessage(message);
+            if (failureCount.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+                failures.add(result);
+            }
+        }
+
+        /**
+         * 等待已提交的写入全部完成
+         */
+        private void awaitWrites() {
+            for (Future<?> write : writes) {
+                try {
+                    write.get();
+                } catch (ExecutionException e) {
+                    log.error("解压写入任务异常", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            writes.clear();
+        }
+    }
+
+    /**
+     * 统计已读取的字节数，作为压缩包上传的进度
      */
-    private Path getUniqueFileName(Path originalPath) {
-        if (!Files.exists(originalPath)) {
-            return originalPath;
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final FileUploadResult result;
+        private long count;
+
+        private ProgressInputStream(InputStream in, FileUploadResult result) {
+            super(in);
+            this.result = result;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                result.setBytesWritten(++count);
+            }
+            return b;
         }
 
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+                result.setBytesWritten(count);
+            }
+            return n;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败: {}", file, e);
+        }
+    }
+
+    /**
+     * 生成带序号的文件名，例如 report.pdf -> report_(1).pdf
+     */
+    private Path numberedFileName(Path originalPath, int counter) {
         String fileName = originalPath.getFileName().toString();
         String nameWithoutExt;
         String extension;
@@ -229,16 +941,6 @@ public class UploadService {
             extension = "";
         }
 
-        Path parentDir = originalPath.getParent();
-        int counter = 1;
-
-        Path uniquePath;
-        do {
-            String uniqueFileName = nameWithoutExt + "_(" + counter + ")" + extension;
-            uniquePath = parentDir.resolve(uniqueFileName);
-            counter++;
-        } while (Files.exists(uniquePath) && counter < 1000); // 防止无限循环
-
-        return uniquePath;
+        return originalPath.resolveSibling(nameWithoutExt + "_(" + counter + ")" + extension);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,660 @@
+package tech.brick.easysharer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import tech.brick.easysharer.model.FileInfo;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 浏览共享目录中的ZIP文件
+ * 只读取ZIP末尾的中央目录建立条目索引，按（路径、大小、修改时间）缓存；下载单个条目时根据索引中的
+ * 本地文件头偏移直接定位到条目数据，边读边解压，只读取该条目的字节，不需要打开或扫描整个压缩包。
+ * 支持 ZIP64；未标记 UTF-8 的文件名先按 UTF-8 解码，失败时按 GBK 解码（Windows 中文系统创建的ZIP）。
+ * 不长期持有文件句柄，ZIP文件在 Windows 上仍可被删除或替换。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ZipBrowseService {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_RECORD_SIZE = 22;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private final SharePathResolver pathResolver;
+
+    @Value("${file.share.zip-browse.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存的条目总数上限，超出时删除最久未使用的压缩包索引
+     */
+    @Value("${file.share.zip-browse.max-cached-entries:200000}")
+    private long maxCachedEntries;
+
+    /**
+     * 已解析的索引，Key为ZIP文件的绝对路径，按访问顺序排列，访问时需持有 this 锁
+     */
+    private final LinkedHashMap<Path, ZipIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 判断路径是否为ZIP文件本身或位于ZIP文件内，返回压缩包和包内路径；普通文件和目录返回null
+     */
+    public ArchivePath locate(SharePath path) {
+        if (!enabled || path.isRoot()) {
+            return null;
+        }
+        String relativePath = path.getRelativePath();
+        int segmentEnd = -1;
+        while (segmentEnd < relativePath.length()) {
+            segmentEnd = relativePath.indexOf('/', segmentEnd + 1);
+            if (segmentEnd < 0) {
+                segmentEnd = relativePath.length();
+            }
+            String prefix = relativePath.substring(0, segmentEnd);
+            if (!prefix.toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                continue;
+            }
+            SharePath archive = pathResolver.resolve(prefix);
+            if (Files.isRegularFile(archive.getPath())) {
+                String entryPath = segmentEnd < relativePath.length() ? relativePath.substring(segmentEnd + 1) : "";
+                return new ArchivePath(archive, entryPath);
+            }
+            if (!Files.isDirectory(archive.getPath())) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 列出压缩包内目录的内容，目录在前、文件在后，同类型按名称排序；目录不存在时返回null
+     */
+    public List<FileInfo> list(ArchivePath archivePath) throws IOException {
+        ZipIndex index = getIndex(archivePath.getArchive().getPath());
+        List<ZipEntryInfo> children = index.children.get(archivePath.getEntryPath());
+        if (children == null) {
+            return null;
+        }
+
+        String parentPath = archivePath.getArchive().getRelativePath()
+                + (archivePath.getEntryPath().isEmpty() ? "" : "/" + archivePath.getEntryPath());
+        ZoneId zone = ZoneId.systemDefault();
+        List<FileInfo> files = new ArrayList<>(children.size());
+        for (ZipEntryInfo entry : children) {
+            files.add(FileInfo.builder()
+                    .name(entry.name)
+                    .relativePath(parentPath + "/" + entry.name)
+                    .isDirectory(entry.directory)
+                    .size(entry.size)
+                    .lastModified(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.lastModified), zone))
+                    .build());
+        }
+        files.sort((a, b) -> {
+            if (a.isDirectory() != b.isDirectory()) {
+                return a.isDirectory() ? -1 : 1;
+            }
+            return a.getName().compareToIgnoreCase(b.getName());
+        });
+        return files;
+    }
+
+    /**
+     * 压缩包内单个文件的资源，读取时边读边解压；条目不存在或是目录时返回null
+     * 不支持的压缩方式或加密条目抛出 IOException
+     */
+    public Resource getEntryResource(ArchivePath archivePath) throws IOException {
+        Path zipFile = archivePath.getArchive().getPath();
+        ZipIndex index = getIndex(zipFile);
+        ZipEntryInfo entry = index.entries.get(archivePath.getEntryPath());
+        if (entry == null || entry.directory) {
+            return null;
+        }
+        if ((entry.flags & 1) != 0) {
+            throw new IOException("不支持加密的ZIP条目: " + archivePath);
+        }
+        if (entry.method != METHOD_STORED && entry.method != METHOD_DEFLATED) {
+            throw new IOException("不支持的ZIP压缩方式 " + entry.method + ": " + archivePath);
+        }
+        return new ZipEntryResource(zipFile, index, entry);
+    }
+
+    /**
+     * 统计信息
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("cachedArchives", indexes.size());
+        stats.put("cachedEntries", cachedEntries);
+        stats.put("maxCachedEntries", maxCachedEntries);
+        return stats;
+    }
+
+    /**
+     * 删除该路径本身及其下所有压缩包的索引，用于移动、删除文件或目录后
+     */
+    public synchronized void invalidateTree(Path path) {
+        Iterator<Map.Entry<Path, ZipIndex>> iterator = indexes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, ZipIndex> entry = iterator.next();
+            if (entry.getKey().startsWith(path)) {
+                iterator.remove();
+                cachedEntries -= entry.getValue().entries.size();
+            }
+        }
+    }
+
+    /**
+     * 获取压缩包的索引，ZIP文件的大小或修改时间变化后重新解析
+     */
+    private ZipIndex getIndex(Path zipFile) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(zipFile, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        synchronized (this) {
+            ZipIndex index = indexes.get(zipFile);
+            if (index != null && index.size == size && index.lastModified == lastModified) {
+                hits.incrementAndGet();
+                return index;
+            }
+        }
+
+        misses.incrementAndGet();
+        long startTime = System.currentTimeMillis();
+        ZipIndex index = readIndex(zipFile, size, lastModified);
+        log.debug("已解析ZIP中央目录: {} ({} 个条目, 耗时 {} ms)",
+                zipFile, index.entries.size(), System.currentTimeMillis() - startTime);
+
+        synchronized (this) {
+            ZipIndex previous = indexes.put(zipFile, index);
+            if (previous != null) {
+                cachedEntries -= previous.entries.size();
+            }
+            cachedEntries += index.entries.size();
+            Iterator<Map.Entry<Path, ZipIndex>> iterator = indexes.entrySet().iterator();
+            while (cachedEntries > maxCachedEntries && iterator.hasNext()) {
+                Map.Entry<Path, ZipIndex> eldest = iterator.next();
+                if (eldest.getValue() == index) {
+                    continue;
+                }
+                iterator.remove();
+                cachedEntries -= eldest.getValue().entries.size();
+            }
+        }
+        return index;
+    }
+
+    private ZipIndex readIndex(Path zipFile, long size, long lastModified) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ)) {
+            // 中央目录结束记录位于末尾，之后最多有 65535 字节的注释
+            int tailLength = (int) Math.min(size, END_RECORD_SIZE + 0xFFFF);
+            ByteBuffer tail = read(channel, size - tailLength, tailLength);
+            int endPosition = -1;
+            for (int i = tailLength - END_RECORD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_SIGNATURE) {
+                    endPosition = i;
+                    break;
+                }
+            }
+            if (endPosition < 0) {
+                throw new IOException("不是有效的ZIP文件: " + zipFile.getFileName());
+            }
+
+            long entryCount = tail.getShort(endPosition + 10) & 0xFFFF;
+            long directorySize = tail.getInt(endPosition + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(endPosition + 16) & 0xFFFFFFFFL;
+
+            // ZIP64：结束记录之前是 ZIP64 结束记录定位器
+            long locatorPosition = size - tailLength + endPosition - 20;
+            if (locatorPosition >= 0) {
+                ByteBuffer locator = read(channel, locatorPosition, 20);
+                if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                    ByteBuffer zip64End = read(channel, locator.getLong(8), 56);
+                    if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                        throw new IOException("ZIP64 结束记录无效: " + zipFile.getFileName());
+                    }
+                    entryCount = zip64End.getLong(32);
+                    directorySize = zip64End.getLong(40);
+                    directoryOffset = zip64End.getLong(48);
+                }
+            }
+            if (directoryOffset < 0 || directorySize < 0 || directoryOffset + directorySize > size
+                    || directorySize > Integer.MAX_VALUE) {
+                throw new IOException("ZIP中央目录位置无效: " + zipFile.getFileName());
+            }
+
+            ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+            return parseCentralDirectory(directory, entryCount, size, lastModified, zipFile);
+        }
+    }
+
+    private ZipIndex parseCentralDirectory(ByteBuffer directory, long entryCount, long size, long lastModified,
+                                           Path zipFile) throws IOException {
+        ZipIndex index = new ZipIndex(size, lastModified);
+        index.children.put("", new ArrayList<>());
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_SIZE > directory.limit()
+                    || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("ZIP中央目录已损坏: " + zipFile.getFileName());
+            }
+            int flags = directory.getShort(position + 8) & 0xFFFF;
+            int method = directory.getShort(position + 10) & 0xFFFF;
+            int dosTime = directory.getShort(position + 12) & 0xFFFF;
+            int dosDate = directory.getShort(position + 14) & 0xFFFF;
+            long compressedSize = directory.getInt(position + 20) & 0xFFFFFFFFL;
+            long uncompressedSize = directory.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+            int nameStart = position + CENTRAL_HEADER_SIZE;
+            int extraStart = nameStart + nameLength;
+            int next = extraStart + extraLength + commentLength;
+            if (next > directory.limit()) {
+                throw new IOException("ZIP中央目录已损坏: " + zipFile.getFileName());
+            }
+
+            long modified = dosToMillis(dosDate, dosTime);
+            // 扩展字段：ZIP64 大小和偏移（0x0001）、Unix 修改时间（0x5455）
+            for (int extra = extraStart; extra + 4 <= extraStart + extraLength; ) {
+                int id = directory.getShort(extra) & 0xFFFF;
+                int length = directory.getShort(extra + 2) & 0xFFFF;
+                int data = extra + 4;
+                if (data + length > extraStart + extraLength) {
+                    break;
+                }
+                if (id == 0x0001) {
+                    int field = data;
+                    if (uncompressedSize == 0xFFFFFFFFL && field + 8 <= data + length) {
+                        uncompressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL && field + 8 <= data + length) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL && field + 8 <= data + length) {
+                        localHeaderOffset = directory.getLong(field);
+                    }
+                } else if (id == 0x5455 && length >= 5 && (directory.get(data) & 1) != 0) {
+                    modified = (directory.getInt(data + 1) & 0xFFFFFFFFL) * 1000;
+                }
+                extra = data + length;
+            }
+
+            String name = decodeName(directory, nameStart, nameLength, (flags & 0x800) != 0);
+            position = next;
+
+            // 统一为不带首尾斜杠的正斜杠路径；包含 . 或 .. 路径段的条目无法通过清理后的路径访问，直接忽略
+            name = name.replace('\\', '/');
+            boolean directoryEntry = name.endsWith("/");
+            name = trimSlashes(name);
+            if (name.isEmpty() || hasDotSegment(name)) {
+                continue;
+            }
+            index.add(new ZipEntryInfo(name, directoryEntry, flags, method, compressedSize, uncompressedSize,
+                    localHeaderOffset, modified));
+        }
+        return index;
+    }
+
+    private static String decodeName(ByteBuffer buffer, int start, int length, boolean utf8) {
+        byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        if (utf8) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        try {
+            CharBuffer decoded = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes));
+            return decoded.toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes, GBK);
+        }
+    }
+
+    private static String trimSlashes(String name) {
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        return name.substring(start, end);
+    }
+
+    private static boolean hasDotSegment(String name) {
+        for (String segment : name.split("/")) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * DOS 日期时间（本地时间，2秒精度）转为毫秒时间戳
+     */
+    private static long dosToMillis(int dosDate, int dosTime) {
+        try {
+            LocalDateTime time = LocalDateTime.of(((dosDate >> 9) & 0x7F) + 1980, (dosDate >> 5) & 0x0F, dosDate & 0x1F,
+                    (dosTime >> 11) & 0x1F, (dosTime >> 5) & 0x3F, (dosTime & 0x1F) * 2);
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return 0;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("ZIP文件意外结束");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * ZIP文件和包内路径（包内路径为空表示压缩包根目录）
+     */
+    public static final class ArchivePath {
+        private final SharePath archive;
+        private final String entryPath;
+
+        private ArchivePath(SharePath archive, String entryPath) {
+            this.archive = archive;
+            this.entryPath = entryPath;
+        }
+
+        public SharePath getArchive() {
+            return archive;
+        }
+
+        public String getEntryPath() {
+            return entryPath;
+        }
+
+        @Override
+        public String toString() {
+            return archive + "!/" + entryPath;
+        }
+    }
+
+    /**
+     * 一个ZIP文件的条目索引：按完整路径查找条目，按目录查找子条目（包括没有显式条目的中间目录）
+     */
+    private static final class ZipIndex {
+        private final long size;
+        private final long lastModified;
+        private final Map<String, ZipEntryInfo> entries = new HashMap<>();
+        private final Map<String, List<ZipEntryInfo>> children = new HashMap<>();
+
+        private ZipIndex(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private void add(ZipEntryInfo entry) {
+            ZipEntryInfo existing = entries.get(entry.path);
+            if (existing != null) {
+                // 显式目录条目补充隐含目录的修改时间；同名文件以后出现的为准
+                if (existing.directory && entry.directory) {
+                    existing.lastModified = entry.lastModified;
+                    return;
+                }
+                children.get(parentOf(entry.path)).remove(existing);
+            }
+            entries.put(entry.path, entry);
+            if (entry.directory) {
+                children.putIfAbsent(entry.path, new ArrayList<>());
+            }
+            addToParent(entry);
+        }
+
+        private void addToParent(ZipEntryInfo entry) {
+            String parent = parentOf(entry.path);
+            List<ZipEntryInfo> siblings = children.get(parent);
+            if (siblings == null) {
+                ZipEntryInfo implicit = new ZipEntryInfo(parent, true, 0, METHOD_STORED, 0, 0, 0, entry.lastModified);
+                entries.put(parent, implicit);
+                siblings = new ArrayList<>();
+                children.put(parent, siblings);
+                addToParent(implicit);
+            }
+            siblings.add(entry);
+        }
+
+        private static String parentOf(String path) {
+            int slash = path.lastIndexOf('/');
+            return slash < 0 ? "" : path.substring(0, slash);
+        }
+    }
+
+    private static final class ZipEntryInfo {
+        private final String path;
+        private final String name;
+        private final boolean directory;
+        private final int flags;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        private long lastModified;
+
+        private ZipEntryInfo(String path, boolean directory, int flags, int method, long compressedSize, long size,
+                             long localHeaderOffset, long lastModified) {
+            this.path = path;
+            this.name = path.substring(path.lastIndexOf('/') + 1);
+            this.directory = directory;
+            this.flags = flags;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = directory ? 0 : size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * 压缩包内的单个文件，每次读取时打开ZIP文件并定位到条目数据；支持 Range 的 skip
+     */
+    private static final class ZipEntryResource extends AbstractResource {
+        private final Path zipFile;
+        private final ZipIndex index;
+        private final ZipEntryInfo entry;
+
+        private ZipEntryResource(Path zipFile, ZipIndex index, ZipEntryInfo entry) {
+            this.zipFile = zipFile;
+            this.index = index;
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ);
+            try {
+                // 索引建立后ZIP文件被替换时拒绝读取，避免按旧偏移读出错误的数据
+                if (channel.size() != index.size) {
+                    throw new IOException("ZIP文件已被修改: " + zipFile.getFileName());
+                }
+                ByteBuffer header = read(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+                if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                    throw new IOException("ZIP条目的本地文件头无效: " + entry.path);
+                }
+                long dataStart = entry.localHeaderOffset + LOCAL_HEADER_SIZE
+                        + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+                if (dataStart + entry.compressedSize > index.size) {
+                    throw new IOException("ZIP条目超出文件范围: " + entry.path);
+                }
+
+                InputStream raw = new ChannelRangeInputStream(channel, dataStart, entry.compressedSize,
+                        entry.method == METHOD_DEFLATED);
+                if (entry.method == METHOD_STORED) {
+                    return raw;
+                }
+                Inflater inflater = new Inflater(true);
+                return new InflaterInputStream(raw, inflater, 64 * 1024) {
+                    private boolean closed;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            inflater.end();
+                            super.close();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public long contentLength() {
+            return entry.size;
+        }
+
+        @Override
+        public long lastModified() {
+            return entry.lastModified;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public String getFilename() {
+            return entry.name;
+        }
+
+        @Override
+        public String getDescription() {
+            return "ZIP条目 [" + zipFile + "!/" + entry.path + "]";
+        }
+    }
+
+    /**
+     * 读取文件中 [start, start + length) 区间的输入流，关闭时关闭通道
+     * 用于 deflate 数据时在末尾多返回一个0字节，与 ZipFile 相同，满足 nowrap 模式的 Inflater 对额外输入的要求
+     */
+    private static final class ChannelRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private boolean dummyByte;
+
+        private ChannelRangeInputStream(FileChannel channel, long start, long length, boolean dummyByte) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+            this.dummyByte = dummyByte;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                if (dummyByte) {
+                    dummyByte = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n < 0) {
+                throw new IOException("ZIP文件意外结束");
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package tech.brick.easysharer.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 逐条日志的采样计数器
+ * 打包大文件夹等批量处理时只记录第1条以及此后每 interval 条，使日志量不随文件数线性增长；
+ * 同时记录处理的总条数，供结束时输出汇总日志。interval 小于等于1时每条都记录。
+ */
+public class LogSampler {
+
+    private final long interval;
+    private final AtomicLong count = new AtomicLong();
+
+    public LogSampler(long interval) {
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * 计数一条，返回这一条是否需要记录日志
+     */
+    public boolean sample() {
+        return count.getAndIncrement() % interval == 0;
+    }
+
+    /**
+     * 已计数的总条数
+     */
+    public long getCount() {
+        return count.get();
+    }
+}
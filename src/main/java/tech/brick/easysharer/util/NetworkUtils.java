@@ -2,14 +2,25 @@ package tech.brick.easysharer.util;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * 本机网络地址工具
+ * 枚举网络接口在部分系统上很慢（Windows 上有 Hyper-V、Docker 等虚拟网卡时可达数百毫秒），
+ * 因此地址列表以快照形式缓存，查询时直接返回快照；快照由定时任务或调用 {@link #refresh()} 更新。
+ */
 @Slf4j
 public class NetworkUtils {
     
+    /**
+     * 当前的地址快照，首次查询时建立
+     */
+    private static volatile List<String> cachedIps;
+    
     /**
      * 获取本机局域网IP地址（优先级最高的）
      */
@@ -19,10 +30,20 @@ public class NetworkUtils {
     }
     
     /**
-     * 获取所有本机局域网IP地址，按优先级排序
-     * 优先级：192.168.x.x > 10.x.x.x > 172.16-31.x.x
+     * 获取所有本机局域网IP地址，按优先级排序（返回缓存的快照）
+     * 优先级：192.168.x.x > 10.x.x.x > 172.16-31.x.x > IPv6唯一本地地址 > 169.254.x.x > IPv6全局地址 > IPv6链路本地地址
+     * IPv6地址带方括号（链路本地地址带 %25 编码的网卡标识），可直接用作URL中的主机名
      */
     public static List<String> getAllLocalIpAddresses() {
+        List<String> ips = cachedIps;
+        return ips != null ? ips : refresh();
+    }
+    
+    /**
+     * 重新枚举网络接口并更新快照，地址有变化时记录日志
+     */
+    public static synchronized List<String> refresh() {
+        long start = System.currentTimeMillis();
         List<IpInfo> ipInfos = new ArrayList<>();
         
         try {
@@ -38,18 +59,24 @@ public class NetworkUtils {
                 
                 // 遍历网络接口的所有IP地址
                 for (InetAddress inetAddress : Collections.list(networkInterface.getInetAddresses())) {
-                    // 只处理IPv4地址，且不是回环地址
-                    if (!inetAddress.isLoopbackAddress() && inetAddress.getHostAddress().indexOf(':') == -1) {
-                        String ip = inetAddress.getHostAddress();
-                        
+                    if (inetAddress.isLoopbackAddress() || inetAddress.isAnyLocalAddress() || inetAddress.isMulticastAddress()) {
+                        continue;
+                    }
+                    
+                    String ip;
+                    int priority;
+                    if (inetAddress instanceof Inet6Address) {
+                        ip = toUrlHost((Inet6Address) inetAddress, networkInterface);
+                        priority = getIpv6Priority((Inet6Address) inetAddress, isVirtual);
+                    } else {
+                        ip = inetAddress.getHostAddress();
                         // 只选择局域网IP地址
-                        if (isPrivateIp(ip)) {
-                            int priority = getIpPriority(ip, isVirtual);
-                            ipInfos.add(new IpInfo(ip, interfaceName, priority, isVirtual));
-                            log.debug("发现局域网IP: {} (接口: {}, 优先级: {}, 虚拟: {})", 
-                                    ip, interfaceName, priority, isVirtual);
+                        if (!isPrivateIp(ip) && !inetAddress.isLinkLocalAddress()) {
+                            continue;
                         }
+                        priority = getIpPriority(ip, isVirtual);
                     }
+                    ipInfos.add(new IpInfo(ip, interfaceName, priority, isVirtual));
                 }
             }
             
@@ -57,11 +84,93 @@ public class NetworkUtils {
             log.warn("获取网络接口失败", e);
         }
         
-        // 按优先级排序并返回IP列表
-        return ipInfos.stream()
+        // 按优先级排序
+        List<String> ips = ipInfos.stream()
                 .sorted(Comparator.comparingInt(IpInfo::getPriority))
                 .map(IpInfo::getIp)
-                .collect(Collectors.toList());
+                .distinct()
+                .collect(Collectors.toUnmodifiableList());
+        
+        if (!ips.equals(cachedIps)) {
+            for (IpInfo info : ipInfos) {
+                log.debug("发现局域网IP: {} (接口: {}, 优先级: {}, 虚拟: {})", 
+                        info.getIp(), info.getInterfaceName(), info.getPriority(), info.isVirtual());
+            }
+            log.info("本机网络地址已更新: {} (枚举耗时 {} ms)", ips, System.currentTimeMillis() - start);
+        }
+        cachedIps = ips;
+        return ips;
+    }
+    
+    /**
+     * IPv6地址转为URL主机名形式：[地址]，链路本地地址附带网卡标识
+     */
+    private static String toUrlHost(Inet6Address address, NetworkInterface networkInterface) {
+        String host = compressIpv6(address.getAddress());
+        if (address.isLinkLocalAddress()) {
+            host = host + "%25" + networkInterface.getName();
+        }
+        return "[" + host + "]";
+    }
+    
+    /**
+     * IPv6地址的简写形式（RFC 5952）：省略前导零，最长的一段连续零组写作 ::
+     */
+    private static String compressIpv6(byte[] bytes) {
+        int[] groups = new int[8];
+        for (int i = 0; i < 8; i++) {
+            groups[i] = ((bytes[i * 2] & 0xFF) << 8) | (bytes[i * 2 + 1] & 0xFF);
+        }
+        
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; ) {
+            int j = i;
+            while (j < 8 && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = Math.max(j, i + 1);
+        }
+        
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                sb.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(groups[i]));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * 获取IPv6地址的优先级，均低于IPv4局域网地址
+     */
+    private static int getIpv6Priority(Inet6Address address, boolean isVirtual) {
+        int basePriority;
+        
+        if ((address.getAddress()[0] & 0xFE) == 0xFC) {
+            basePriority = 4; // 唯一本地地址 fc00::/7
+        } else if (address.isLinkLocalAddress()) {
+            basePriority = 7; // 链路本地地址 fe80::/10，需要网卡标识
+        } else {
+            basePriority = 6; // 全局地址
+        }
+        
+        // 虚拟接口降低优先级
+        if (isVirtual) {
+            basePriority += 10;
+        }
+        
+        return basePriority;
     }
     
     /**
@@ -101,6 +210,8 @@ public class NetworkUtils {
             basePriority = 2; // 中等优先级：企业网络
         } else if (ip.startsWith("172.")) {
             basePriority = 3; // 较低优先级：企业网络
+        } else if (ip.startsWith("169.254.")) {
+            basePriority = 5; // 链路本地地址：网线直连、未分配到地址的网络
         } else {
             basePriority = 9; // 最低优先级
         }
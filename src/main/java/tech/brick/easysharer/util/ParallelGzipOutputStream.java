@@ -0,0 +1,192 @@
+package tech.brick.easysharer.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 多线程 gzip 压缩输出流（与 pigz --independent 相同的思路）
+ * 输入按固定大小分块，每块在线程池中独立压缩成一个完整的 gzip 成员（头 + deflate 数据 + CRC32/长度尾），
+ * 按原顺序依次写出。多个 gzip 成员拼接而成的文件是合法的 gzip（RFC 1952），gunzip、tar、
+ * 浏览器和 {@link java.util.zip.GZIPInputStream} 都能直接解压，且可以边下载边解压。
+ * 块之间不共享字典，压缩率比单线程 gzip 略低（1MB 的块通常相差不到 1%）。
+ * 同时在压缩中的块数有上限，写出跟不上时调用方会被阻塞，内存占用有界。
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * gzip 成员头：魔数、deflate、无标志、无修改时间、无额外标志、操作系统未知
+     */
+    private static final byte[] MEMBER_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final ExecutorService pool;
+    private final int blockSize;
+    private final int level;
+    private final int maxPending;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private boolean submitted;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out, ExecutorService pool, int blockSize, int level, int maxPending) {
+        this.out = out;
+        this.pool = pool;
+        this.blockSize = blockSize;
+        this.level = level;
+        this.maxPending = Math.max(1, maxPending);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("流已关闭");
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * 只写出已经压缩完成的块；未满的块留到凑满或关闭时再压缩，避免产生过多的小成员
+     */
+    @Override
+    public void flush() throws IOException {
+        writeCompleted(false);
+        out.flush();
+    }
+
+    /**
+     * 压缩剩余数据并写出所有块，不关闭底层流
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        // 没有任何输入时也写出一个空成员，保证输出是合法的 gzip
+        if (blockLength > 0 || !submitted) {
+            submitBlock();
+        }
+        writeCompleted(true);
+        closed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            cancelPending();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        pending.add(pool.submit(() -> compress(data, length, level)));
+        submitted = true;
+        block = new byte[blockSize];
+        blockLength = 0;
+
+        // 按顺序写出已完成的块；压缩中的块过多时等待最早的一块
+        writeCompleted(false);
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+    }
+
+    private void writeCompleted(boolean all) throws IOException {
+        while (!pending.isEmpty() && (all || pending.peek().isDone())) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        Future<byte[]> next = pending.peek();
+        byte[] member;
+        try {
+            member = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelPending();
+            throw new InterruptedIOException("等待压缩结果时被中断");
+        } catch (ExecutionException e) {
+            cancelPending();
+            throw new IOException("压缩数据块失败", e.getCause());
+        }
+        pending.poll();
+        try {
+            out.write(member);
+        } catch (IOException e) {
+            // 写出失败（通常是客户端已断开），剩余的块不再需要压缩
+            cancelPending();
+            throw e;
+        }
+    }
+
+    private void cancelPending() {
+        Future<byte[]> future;
+        while ((future = pending.poll()) != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 把一块数据压缩成一个完整的 gzip 成员
+     */
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            // 不可压缩的数据 deflate 后略大于原始长度，预留余量以免扩容
+            byte[] member = new byte[MEMBER_HEADER.length + length + length / 1000 + 64 + 8];
+            System.arraycopy(MEMBER_HEADER, 0, member, 0, MEMBER_HEADER.length);
+            int position = MEMBER_HEADER.length;
+            while (!deflater.finished()) {
+                if (position == member.length - 8) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                position += deflater.deflate(member, position, member.length - 8 - position);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            writeIntLE(member, position, (int) crc.getValue());
+            writeIntLE(member, position + 4, length);
+            return Arrays.copyOf(member, position + 8);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeIntLE(byte[] b, int offset, int value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >>> 8);
+        b[offset + 2] = (byte) (value >>> 16);
+        b[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,379 @@
+package tech.brick.easysharer.util;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式读取 tar（ustar / PAX / GNU 格式），与 {@link TarOutputStream} 对应
+ * 依次调用 {@link #getNextEntry()}，每个条目的内容通过本流的 read 方法读取，读到条目末尾时返回 -1；
+ * 未读完的内容在取下一个条目时跳过。支持 PAX 扩展头中的 path、size、mtime，GNU 长文件名（'L'）
+ * 和 GNU 的 base-256 大小字段。普通文件和目录以外的条目（链接、设备文件等）也会返回，由调用方决定是否跳过。
+ * 内容不是有效的 tar 时抛出 {@link TarFormatException}，与读取中断等 IO 错误区分。
+ */
+public class TarInputStream extends FilterInputStream {
+
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * PAX 扩展头和 GNU 长文件名的大小上限，防止恶意归档耗尽内存
+     */
+    private static final int MAX_HEADER_DATA = 1024 * 1024;
+
+    private static final String PAX_FORMAT_ERROR = "PAX 扩展头格式错误";
+
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long entryRemaining;
+    private long entryPadding;
+    private boolean finished;
+
+    public TarInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * 读取下一个条目的头，归档结束时返回null
+     */
+    public Entry getNextEntry() throws IOException {
+        if (finished) {
+            return null;
+        }
+        skipFully(entryRemaining + entryPadding);
+        entryRemaining = 0;
+        entryPadding = 0;
+
+        String paxPath = null;
+        long paxSize = -1;
+        long paxMtime = Long.MIN_VALUE;
+        String longName = null;
+        while (true) {
+            if (!readHeader()) {
+                finished = true;
+                return null;
+            }
+            char type = (char) header[156];
+            long size = parseNumber(124, 12);
+            if (type == 'x' || type == 'g' || type == 'L') {
+                byte[] data = readHeaderData(size);
+                if (type == 'L') {
+                    longName = nullTerminated(data);
+                } else if (type == 'x') {
+                    for (String[] record : parsePax(data)) {
+                        switch (record[0]) {
+                            case "path" -> paxPath = record[1];
+                            case "size" -> paxSize = parsePaxSize(record[1]);
+                            case "mtime" -> paxMtime = parsePaxTime(record[1]);
+                            default -> { }
+                        }
+                    }
+                }
+                // 全局扩展头 'g' 中没有需要的字段
+                continue;
+            }
+
+            String name = paxPath != null ? paxPath : longName != null ? longName : ustarName();
+            if (paxSize >= 0) {
+                size = paxSize;
+            }
+            long lastModified = paxMtime != Long.MIN_VALUE ? paxMtime : parseNumber(136, 12) * 1000;
+            boolean regular = type == '0' || type == '\0' || type == '7';
+            // 早期格式的目录是名称以斜杠结尾的普通条目
+            boolean directory = type == '5' || (regular && name.endsWith("/"));
+            entryRemaining = size;
+            entryPadding = padding(size);
+            return new Entry(name, directory, regular && !directory, size, lastModified);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (entryRemaining <= 0) {
+            return -1;
+        }
+        int n = in.read(b, off, (int) Math.min(len, entryRemaining));
+        if (n < 0) {
+            throw new EOFException("tar 条目内容不完整");
+        }
+        entryRemaining -= n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.min(n, entryRemaining);
+        skipFully(skipped);
+        entryRemaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), entryRemaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * 读取一个头部块，遇到全0块（归档结尾）或流结束时返回false
+     */
+    private boolean readHeader() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("tar 头部不完整");
+        }
+        boolean zero = true;
+        for (byte b : header) {
+            if (b != 0) {
+                zero = false;
+                break;
+            }
+        }
+        if (zero) {
+            return false;
+        }
+        long expected = parseNumber(148, 8);
+        long unsigned = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            unsigned += (i >= 148 && i < 156) ? ' ' : header[i] & 0xFF;
+        }
+        if (expected != unsigned) {
+            throw new TarFormatException("tar 头部校验和错误，不是有效的 tar 文件");
+        }
+        return true;
+    }
+
+    private byte[] readHeaderData(long size) throws IOException {
+        if (size < 0 || size > MAX_HEADER_DATA) {
+            throw new TarFormatException("tar 扩展头过大: " + size);
+        }
+        byte[] data = in.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("tar 扩展头不完整");
+        }
+        skipFully(padding(size));
+        return data;
+    }
+
+    /**
+     * ustar 名称：prefix（ustar 格式时）+ "/" + name
+     */
+    private String ustarName() {
+        String name = field(0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r';
+        if (ustar) {
+            String prefix = field(345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private String field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 八进制数字字段（允许前后空格和 NUL），最高位为1时为 GNU 的 base-256 编码
+     */
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            // 负数（次高位为1）和超出 long 范围的值都不是有效的大小或时间
+            if ((header[offset] & 0x40) != 0) {
+                throw new TarFormatException("tar 头部数字字段无效，不是有效的 tar 文件");
+            }
+            long value = header[offset] & 0x3F;
+            for (int i = 1; i < length; i++) {
+                if (value >>> 55 != 0) {
+                    throw new TarFormatException("tar 头部数字字段无效，不是有效的 tar 文件");
+                }
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        boolean digits = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || (b == ' ' && digits)) {
+                break;
+            }
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new TarFormatException("tar 头部数字字段无效，不是有效的 tar 文件");
+            }
+            value = (value << 3) | (b - '0');
+            digits = true;
+        }
+        return value;
+    }
+
+    /**
+     * PAX 记录格式为 "长度 键=值\n"，长度包含长度字段本身
+     */
+    private static List<String[]> parsePax(byte[] data) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            if (space == pos || space == data.length) {
+                throw new TarFormatException(PAX_FORMAT_ERROR);
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new TarFormatException(PAX_FORMAT_ERROR, e);
+            }
+            // 至少要容纳长度字段、空格和结尾的换行
+            if (length < (space - pos) + 2 || length > data.length - pos || data[pos + length - 1] != '\n') {
+                throw new TarFormatException(PAX_FORMAT_ERROR);
+            }
+            String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                records.add(new String[]{record.substring(0, equals), record.substring(equals + 1)});
+            }
+            pos += length;
+        }
+        return records;
+    }
+
+    /**
+     * PAX size：非负十进制整数
+     */
+    private static long parsePaxSize(String value) throws IOException {
+        try {
+            long size = Long.parseLong(value);
+            if (size >= 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            throw new TarFormatException(PAX_FORMAT_ERROR, e);
+        }
+        throw new TarFormatException(PAX_FORMAT_ERROR);
+    }
+
+    /**
+     * PAX mtime：可带小数的秒数，返回毫秒
+     */
+    private static long parsePaxTime(String value) throws IOException {
+        try {
+            double seconds = Double.parseDouble(value);
+            if (Double.isFinite(seconds) && Math.abs(seconds) < Long.MAX_VALUE / 1000.0) {
+                return (long) (seconds * 1000);
+            }
+        } catch (NumberFormatException e) {
+            throw new TarFormatException(PAX_FORMAT_ERROR, e);
+        }
+        throw new TarFormatException(PAX_FORMAT_ERROR);
+    }
+
+    private static String nullTerminated(byte[] data) {
+        int end = 0;
+        while (end < data.length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, 0, end, StandardCharsets.UTF_8);
+    }
+
+    private static long padding(long size) {
+        long tail = size % BLOCK_SIZE;
+        return tail == 0 ? 0 : BLOCK_SIZE - tail;
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long n = in.skip(count);
+            if (n <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException("tar 文件不完整");
+                }
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+
+    /**
+     * tar 条目
+     */
+    public static final class Entry {
+        private final String name;
+        private final boolean directory;
+        private final boolean regularFile;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(String name, boolean directory, boolean regularFile, long size, long lastModified) {
+            this.name = name;
+            this.directory = directory;
+            this.regularFile = regularFile;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * 普通文件（链接、设备文件等为false）
+         */
+        public boolean isRegularFile() {
+            return regularFile;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * 归档内容不是有效的 tar
+     */
+    public static class TarFormatException extends IOException {
+
+        public TarFormatException(String message) {
+            super(message);
+        }
+
+        public TarFormatException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
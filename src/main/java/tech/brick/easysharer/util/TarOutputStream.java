@@ -0,0 +1,232 @@
+package tech.brick.easysharer.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 流式写出 POSIX tar（ustar 格式，需要时附带 PAX 扩展头）
+ * 路径过长或含非 ASCII 字符、文件超过 8GB、修改时间超出 ustar 范围时，在条目前写一个 PAX 扩展头（typeflag 'x'），
+ * 其中以 UTF-8 保存完整的路径、大小和修改时间；ustar 头中保留截断后的 ASCII 名称，供不支持 PAX 的工具使用。
+ * 条目大小必须在写入内容前给出：内容不足时 {@link #closeEntry()} 以0补齐，超出的部分被丢弃，
+ * 保证文件在打包期间被修改时输出的仍是合法的 tar。
+ */
+public class TarOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * 与 GNU tar 默认的记录大小一致（20 个块），归档末尾补齐到整记录
+     */
+    private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+
+    private static final long MAX_OCTAL_11 = 077777777777L;
+
+    private static final byte[] ZEROS = new byte[8192];
+
+    private final OutputStream out;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long bytesWritten;
+    private long entryRemaining;
+    private long entrySize;
+    private boolean inEntry;
+    private boolean finished;
+
+    public TarOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 写出目录条目，name 使用正斜杠，不以斜杠结尾
+     */
+    public void putDirectory(String name, long lastModified) throws IOException {
+        closeEntry();
+        writeHeader(name + "/", '5', 0755, 0, lastModified);
+    }
+
+    /**
+     * 开始一个普通文件条目，随后写入 size 字节的内容并调用 {@link #closeEntry()}
+     */
+    public void putFile(String name, long size, long lastModified) throws IOException {
+        closeEntry();
+        writeHeader(name, '0', 0644, size, lastModified);
+        inEntry = true;
+        entrySize = size;
+        entryRemaining = size;
+    }
+
+    /**
+     * 当前条目还需写入的字节数
+     */
+    public long getEntryRemaining() {
+        return entryRemaining;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!inEntry) {
+            throw new IOException("没有正在写入的条目");
+        }
+        int n = (int) Math.min(len, entryRemaining);
+        if (n > 0) {
+            writeRaw(b, off, n);
+            entryRemaining -= n;
+        }
+    }
+
+    /**
+     * 结束当前条目：内容不足声明的大小时补0，再补齐到整块
+     */
+    public void closeEntry() throws IOException {
+        if (!inEntry) {
+            return;
+        }
+        inEntry = false;
+        writeZeros(entryRemaining + padding(entrySize));
+        entryRemaining = 0;
+    }
+
+    /**
+     * 写出归档结尾（两个全0块，再补齐到整记录），不关闭底层流
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        closeEntry();
+        writeZeros(2L * BLOCK_SIZE);
+        long tail = bytesWritten % RECORD_SIZE;
+        if (tail != 0) {
+            writeZeros(RECORD_SIZE - tail);
+        }
+        finished = true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeHeader(String name, char type, int mode, long size, long lastModified) throws IOException {
+        long mtime = Math.floorDiv(lastModified, 1000);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean asciiName = nameBytes.length == name.length();
+
+        StringBuilder pax = new StringBuilder();
+        if (!asciiName || nameBytes.length > 100) {
+            appendPaxRecord(pax, "path", name);
+        }
+        if (size > MAX_OCTAL_11) {
+            appendPaxRecord(pax, "size", String.valueOf(size));
+        }
+        if (mtime < 0 || mtime > MAX_OCTAL_11) {
+            appendPaxRecord(pax, "mtime", String.valueOf(mtime));
+        }
+        if (pax.length() > 0) {
+            byte[] records = pax.toString().getBytes(StandardCharsets.UTF_8);
+            writeUstarHeader(fallbackName("PaxHeaders/" + name), 'x', 0644, records.length, 0);
+            writeRaw(records, 0, records.length);
+            writeZeros(padding(records.length));
+        }
+
+        writeUstarHeader(asciiName && nameBytes.length <= 100 ? name : fallbackName(name), type, mode,
+                Math.min(size, MAX_OCTAL_11), Math.max(0, Math.min(mtime, MAX_OCTAL_11)));
+    }
+
+    private void writeUstarHeader(String name, char type, int mode, long size, long mtime) throws IOException {
+        Arrays.fill(header, (byte) 0);
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+        writeOctal(mode, 100, 8);
+        writeOctal(0, 108, 8);
+        writeOctal(0, 116, 8);
+        writeOctal(size, 124, 12);
+        writeOctal(mtime, 136, 12);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        // 校验和按校验和字段全为空格计算
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        writeOctal(checksum, 148, 7);
+        header[155] = ' ';
+
+        writeRaw(header, 0, BLOCK_SIZE);
+    }
+
+    /**
+     * 以 length - 1 位八进制数字加结尾 NUL 写入字段
+     */
+    private void writeOctal(long value, int offset, int length) {
+        int digits = length - 1;
+        for (int i = digits - 1; i >= 0; i--) {
+            header[offset + i] = (byte) ('0' + (value & 7));
+            value >>>= 3;
+        }
+        header[offset + digits] = 0;
+    }
+
+    /**
+     * PAX 记录格式为 "长度 键=值\n"，长度包含长度字段本身
+     */
+    private static void appendPaxRecord(StringBuilder pax, String key, String value) {
+        int payload = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int length = payload + String.valueOf(payload).length();
+        if (String.valueOf(length).length() != String.valueOf(payload).length()) {
+            length = payload + String.valueOf(length).length();
+        }
+        pax.append(length).append(' ').append(key).append('=').append(value).append('\n');
+    }
+
+    /**
+     * ustar 头中使用的名称：非 ASCII 字符替换为下划线，截断到100字节（目录保留结尾斜杠）
+     */
+    private static String fallbackName(String name) {
+        StringBuilder ascii = new StringBuilder(Math.min(name.length(), 100));
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            ascii.append(c < 0x80 ? c : '_');
+        }
+        if (ascii.length() <= 100) {
+            return ascii.toString();
+        }
+        boolean directory = name.endsWith("/");
+        return directory ? ascii.substring(0, 99) + "/" : ascii.substring(0, 100);
+    }
+
+    private static long padding(long size) {
+        long tail = size % BLOCK_SIZE;
+        return tail == 0 ? 0 : BLOCK_SIZE - tail;
+    }
+
+    private void writeZeros(long count) throws IOException {
+        while (count > 0) {
+            int n = (int) Math.min(count, ZEROS.length);
+            writeRaw(ZEROS, 0, n);
+            count -= n;
+        }
+    }
+
+    private void writeRaw(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytesWritten += len;
+    }
+}
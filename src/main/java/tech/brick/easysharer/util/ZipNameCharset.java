@@ -0,0 +1,73 @@
+package tech.brick.easysharer.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 读取 ZIP 文件名用的字符集：未标记 UTF-8（标志位 11）的文件名先按 UTF-8 解码，失败时按 GBK 解码，
+ * 与 ZipBrowseService 的规则一致。传给 {@link java.util.zip.ZipInputStream} 使用，
+ * 标记了 UTF-8 的文件名由 ZipInputStream 自己按 UTF-8 解码，不经过本字符集。
+ * 只支持解码；ZipInputStream 每次把一个完整的文件名交给解码器，解码器据此整体判断，不能用于分段的输入。
+ */
+public final class ZipNameCharset extends Charset {
+
+    public static final ZipNameCharset INSTANCE = new ZipNameCharset();
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private ZipNameCharset() {
+        super("x-easysharer-zip-name", null);
+    }
+
+    @Override
+    public boolean contains(Charset cs) {
+        return false;
+    }
+
+    @Override
+    public boolean canEncode() {
+        return false;
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+        throw new UnsupportedOperationException("ZIP 文件名字符集只支持解码");
+    }
+
+    @Override
+    public CharsetDecoder newDecoder() {
+        // UTF-8 和 GBK 每个字节最多解码出一个字符
+        return new CharsetDecoder(this, 1.0f, 1.0f) {
+            @Override
+            protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+                String name = decodeName(in.duplicate());
+                if (out.remaining() < name.length()) {
+                    // 输入不消耗，由调用方扩大输出缓冲区后重试
+                    return CoderResult.OVERFLOW;
+                }
+                out.put(name);
+                in.position(in.limit());
+                return CoderResult.UNDERFLOW;
+            }
+        };
+    }
+
+    private static String decodeName(ByteBuffer bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(bytes.duplicate())
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return GBK.decode(bytes).toString();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package tech.brick.easysharer.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.apache.catalina.connector.ClientAbortException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.service.DeltaUploadService;
+import tech.brick.easysharer.service.DirectorySizeService;
+import tech.brick.easysharer.service.FileOperationService;
+import tech.brick.easysharer.service.FileService;
+import tech.brick.easysharer.service.FolderArchiveCache;
+import tech.brick.easysharer.service.FolderSyncService;
+import tech.brick.easysharer.service.GzipCompressionService;
+import tech.brick.easysharer.service.HashService;
+import tech.brick.easysharer.service.HotFileCache;
+import tech.brick.easysharer.service.SharePathResolver;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+import tech.brick.easysharer.service.TextShareService;
+import tech.brick.easysharer.service.UploadService;
+import tech.brick.easysharer.service.ZipBrowseService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文件夹ZIP下载：客户端中途断开时应立即停止读取和压缩剩余文件
+ */
+class FolderDownloadAbortTest {
+
+    private static final int FILE_COUNT = 200;
+    private static final int FILE_SIZE = 64 * 1024;
+
+    @TempDir
+    Path root;
+
+    private final AtomicInteger filesOpened = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final List<String> unreadable = new ArrayList<>();
+
+    private FileController fileController;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 随机内容几乎不可压缩，写出的字节数约等于读取的字节数
+        Random random = new Random(42);
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            Path dir = root.resolve("folder").resolve("sub-" + (i % 10));
+            Files.createDirectories(dir);
+            random.nextBytes(content);
+            Files.write(dir.resolve("file-" + i + ".bin"), content);
+        }
+
+        SharePathResolver pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+
+        // 统计实际打开的文件数和读取的字节数
+        FileService fileService = new FileService(new DirectorySizeService(), new HotFileCache(), pathResolver) {
+            @Override
+            public InputStream getFileInputStream(SharePath file) throws IOException {
+                if (unreadable.contains(file.getRelativePath())) {
+                    throw new IOException("模拟读取失败");
+                }
+                filesOpened.incrementAndGet();
+                return new FilterInputStream(super.getFileInputStream(file)) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = super.read(b, off, len);
+                        if (n > 0) {
+                            bytesRead.addAndGet(n);
+                        }
+                        return n;
+                    }
+                };
+            }
+        };
+        ZipBrowseService zipBrowseService = new ZipBrowseService(pathResolver);
+        HashService hashService = new HashService(pathResolver);
+        UploadService uploadService = new UploadService(new DirectorySizeService(), pathResolver, hashService);
+        fileController = new FileController(fileService, uploadService,
+                new TextShareService(), new ObjectMapper(), new FolderArchiveCache(), new GzipCompressionService(), zipBrowseService,
+                new FileOperationService(pathResolver, new DirectorySizeService(), new HotFileCache(), zipBrowseService, hashService),
+                new DeltaUploadService(pathResolver, uploadService, new DirectorySizeService(), new HotFileCache(), zipBrowseService,
+                        hashService),
+                new FolderSyncService(hashService), hashService);
+    }
+
+    @Test
+    void stopsReadingWhenClientDisconnects() {
+        long abortAfter = 256 * 1024;
+        AbortingResponse response = new AbortingResponse(abortAfter);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> fileController.downloadFolder("folder", "zip", new MockHttpServletRequest(), response));
+
+        assertTrue(response.aborted, "客户端断开应被触发");
+        // 断开后不再打开后续文件：只会多读写缓冲区中的少量数据
+        assertTrue(filesOpened.get() <= abortAfter / FILE_SIZE + 3,
+                "断开后仍在打开文件: " + filesOpened.get() + " / " + FILE_COUNT);
+        assertTrue(bytesRead.get() <= abortAfter + 3L * FILE_SIZE,
+                "断开后仍在读取文件: " + bytesRead.get() + " bytes");
+        // 连接已断开，不应再尝试写入错误信息
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void skipsUnreadableFilesAndKeepsPacking() throws IOException {
+        unreadable.add("folder/sub-3/file-3.bin");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileController.downloadFolder("folder", "zip", new MockHttpServletRequest(), response);
+
+        int entries = 0;
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                assertTrue(!entry.getName().equals("sub-3/file-3.bin"), "无法读取的文件不应出现在ZIP中");
+                assertEquals(FILE_SIZE, zipIn.readAllBytes().length);
+                entries++;
+            }
+        }
+        assertEquals(FILE_COUNT - 1, entries);
+        assertEquals(FILE_COUNT, filesOpened.get() + 1);
+    }
+
+    /**
+     * 写出 abortAfter 字节后像 Tomcat 一样抛出 ClientAbortException 的响应
+     */
+    private static class AbortingResponse extends HttpServletResponseWrapper {
+        private final long abortAfter;
+        private final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        private long written;
+        private boolean aborted;
+
+        AbortingResponse(long abortAfter) {
+            super(new MockHttpServletResponse());
+            this.abortAfter = abortAfter;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (written + len > abortAfter) {
+                        aborted = true;
+                        throw new ClientAbortException("java.io.IOException: Broken pipe");
+                    }
+                    sink.write(b, off, len);
+                    written += len;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+        }
+    }
+}
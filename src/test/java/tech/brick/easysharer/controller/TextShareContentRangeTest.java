@@ -0,0 +1,79 @@
+package tech.brick.easysharer.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tech.brick.easysharer.model.TextShare;
+import tech.brick.easysharer.service.TextShareService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文本分享内容的 Range 请求：客户端接受 gzip 时响应也不能压缩，否则 Content-Range 与实际的字节对不上
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TextShareContentRangeTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        // 共享目录已存在时启动不创建示例文件
+        Files.createDirectories(tempDir.resolve("share"));
+        registry.add("file.share.root-path", () -> tempDir.resolve("share").toString());
+        registry.add("file.text-share.dir", () -> tempDir.resolve("text").toString());
+        registry.add("file.share.hash.cache-file", () -> tempDir.resolve("hash-cache.json").toString());
+        registry.add("file.share.archive-cache.dir", () -> tempDir.resolve("archives").toString());
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TextShareService textShareService;
+
+    @Test
+    void rangedReadIsNotCompressed() throws IOException, InterruptedException {
+        String text = "可压缩的重复内容 0123456789\n".repeat(2000) + "结束";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        TextShare share = textShareService.createTextShare(text, "127.0.0.1", "tester", "笔记");
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI uri = URI.create("http://localhost:" + port + "/api/text-share/" + share.getId() + "/content");
+        HttpResponse<byte[]> ranged = client.send(HttpRequest.newBuilder(uri)
+                .header("Range", "bytes=1000-8999")
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(206, ranged.statusCode());
+        assertTrue(ranged.headers().firstValue("Content-Encoding").isEmpty(),
+                "Range 响应不应被压缩: " + ranged.headers().firstValue("Content-Encoding").orElse(""));
+        assertEquals("bytes 1000-8999/" + bytes.length, ranged.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(bytes, 1000, 9000), ranged.body());
+
+        // 带相同 ETag 的条件请求不再返回内容
+        String etag = ranged.headers().firstValue("ETag").orElseThrow();
+        assertTrue(etag.startsWith("\""), etag);
+        HttpResponse<byte[]> notModified = client.send(HttpRequest.newBuilder(uri)
+                .header("If-None-Match", etag)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, notModified.statusCode());
+    }
+}
@@ -0,0 +1,64 @@
+package tech.brick.easysharer.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * formatSize 不经过 Formatter，结果必须与原来的 String.format("%.1f") 完全一致，包括进位到下一个整数的边界
+ * （小数点固定为 '.'，与原来在默认中文或英文区域设置下的输出相同）
+ */
+class FileInfoTest {
+
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+    private static final long GB = 1024 * MB;
+
+    @Test
+    void pinsBoundaryValues() {
+        assertEquals("1023 B", FileInfo.formatSize(1023));
+        assertEquals("1.0 KB", FileInfo.formatSize(1024));
+        assertEquals("1.1 KB", FileInfo.formatSize(1076));
+        // 1023.95 KB 前后
+        assertEquals("1023.9 KB", FileInfo.formatSize(1048524));
+        assertEquals("1024.0 KB", FileInfo.formatSize(1048525));
+        assertEquals("1.0 MB", FileInfo.formatSize(MB));
+        // 9.95 MB 前后
+        assertEquals("9.9 MB", FileInfo.formatSize(10433331));
+        assertEquals("10.0 MB", FileInfo.formatSize(10433332));
+        assertEquals("1024.0 MB", FileInfo.formatSize(GB - 1));
+        assertEquals("1.0 GB", FileInfo.formatSize(GB));
+        assertEquals("10.0 GB", FileInfo.formatSize(10 * GB - 1));
+        assertEquals("8589934592.0 GB", FileInfo.formatSize(Long.MAX_VALUE));
+    }
+
+    @Test
+    void matchesStringFormatAroundRoundingBoundaries() {
+        // 每个 x.x5 边界两侧的字节数
+        for (long unit : new long[]{KB, MB, GB}) {
+            for (long halfTenths = 1; halfTenths < 20480; halfTenths += 2) {
+                long boundary = halfTenths * unit / 20;
+                for (long size = boundary - 2; size <= boundary + 2; size++) {
+                    assertEquals(baseline(size), FileInfo.formatSize(size), String.valueOf(size));
+                }
+            }
+        }
+    }
+
+    /**
+     * 改为手写格式化之前的实现
+     */
+    private static String baseline(long size) {
+        if (size < KB) {
+            return size + " B";
+        } else if (size < MB) {
+            return String.format(Locale.ROOT, "%.1f KB", size / 1024.0);
+        } else if (size < GB) {
+            return String.format(Locale.ROOT, "%.1f MB", size / (1024.0 * 1024.0));
+        } else {
+            return String.format(Locale.ROOT, "%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+        }
+    }
+}
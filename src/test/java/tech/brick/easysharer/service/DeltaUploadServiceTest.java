@@ -0,0 +1,175 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.model.DeltaSignature;
+import tech.brick.easysharer.model.FileUploadResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量上传：服务器的弱校验和与指令格式必须与客户端 frontend/src/utils/delta.js 一致
+ * 下面的期望值由 delta.js 中的 rollingChecksum 和 header 对相同输入计算得到
+ */
+class DeltaUploadServiceTest {
+
+    private static final int BLOCK_SIZE = 2048;
+
+    @TempDir
+    Path root;
+
+    private DeltaUploadService deltaUploadService;
+
+    @BeforeEach
+    void setUp() {
+        SharePathResolver pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        HashService hashService = new HashService(pathResolver);
+        UploadService uploadService = new UploadService(new DirectorySizeService(), pathResolver, hashService);
+        ReflectionTestUtils.setField(uploadService, "uploadEnabled", true);
+        ReflectionTestUtils.setField(uploadService, "maxFileSizeMB", 1);
+        deltaUploadService = new DeltaUploadService(pathResolver, uploadService, new DirectorySizeService(),
+                new HotFileCache(), new ZipBrowseService(pathResolver), hashService);
+    }
+
+    @Test
+    void rollingChecksumMatchesClient() {
+        byte[] data = patternBytes(4096);
+
+        assertEquals(4160814080L, Integer.toUnsignedLong(DeltaUploadService.rollingChecksum(data, BLOCK_SIZE)));
+        assertEquals(260309938L, Integer.toUnsignedLong(
+                DeltaUploadService.rollingChecksum(Arrays.copyOfRange(data, 100, 107), 7)));
+        assertEquals(2013330432L, Integer.toUnsignedLong(
+                DeltaUploadService.rollingChecksum(Arrays.copyOfRange(data, 1000, 1000 + BLOCK_SIZE), BLOCK_SIZE)));
+    }
+
+    @Test
+    void clientRollingUpdateMatchesFullChecksum() {
+        byte[] data = new byte[3 * BLOCK_SIZE];
+        new Random(7).nextBytes(data);
+
+        // 与 delta.js 的 computeDelta 相同的逐字节滑动
+        int checksum = DeltaUploadService.rollingChecksum(data, BLOCK_SIZE);
+        int a = checksum & 0xFFFF;
+        int b = checksum >>> 16;
+        for (int pos = 0; pos + BLOCK_SIZE < data.length; pos++) {
+            int out = data[pos] & 0xFF;
+            int incoming = data[pos + BLOCK_SIZE] & 0xFF;
+            a = (a - out + incoming) & 0xFFFF;
+            b = (b - BLOCK_SIZE * out + a) & 0xFFFF;
+            int expected = DeltaUploadService.rollingChecksum(Arrays.copyOfRange(data, pos + 1, pos + 1 + BLOCK_SIZE), BLOCK_SIZE);
+            assertEquals(expected, (b << 16) | a, "位置 " + (pos + 1));
+        }
+    }
+
+    @Test
+    void instructionHeadersMatchClient() throws IOException {
+        assertEquals("010000000301020304", HexFormat.of().formatHex(header(1, 3, 0x01020304)));
+        assertEquals("0200000005", HexFormat.of().formatHex(header(2, 5)));
+        assertEquals("00", HexFormat.of().formatHex(header(0)));
+    }
+
+    @Test
+    void rebuildsFileFromCopyAndDataInstructions() throws Exception {
+        byte[] base = new byte[4 * BLOCK_SIZE + 1808];
+        new Random(42).nextBytes(base);
+        Files.write(root.resolve("data.bin"), base);
+        DeltaSignature signature = deltaUploadService.getSignature("data.bin", BLOCK_SIZE);
+        assertEquals(BLOCK_SIZE, signature.getBlockSize());
+        assertEquals(5, signature.getBlockCount());
+
+        // 块1、2，新数据，块0，不足一块的最后一块
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(base, BLOCK_SIZE, 2 * BLOCK_SIZE);
+        expected.write("hello".getBytes());
+        expected.write(base, 0, BLOCK_SIZE);
+        expected.write(base, 4 * BLOCK_SIZE, 1808);
+        byte[] target = expected.toByteArray();
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        delta.write(header(1, 1, 2));
+        delta.write(header(2, 5));
+        delta.write("hello".getBytes());
+        delta.write(header(1, 0, 1));
+        delta.write(header(1, 4, 1));
+        delta.write(header(0));
+
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(target));
+        FileUploadResult result = deltaUploadService.applyDelta("data.bin", signature.getSize(), signature.getLastModified(),
+                signature.getBlockSize(), target.length, sha256, new ByteArrayInputStream(delta.toByteArray()));
+
+        assertEquals(FileUploadResult.Status.SUCCESS, result.getStatus());
+        assertArrayEquals(target, Files.readAllBytes(root.resolve("data.bin")));
+    }
+
+    @Test
+    void rejectsCopyBeyondBaseFile() throws IOException {
+        Files.write(root.resolve("small.bin"), new byte[BLOCK_SIZE]);
+        DeltaSignature signature = deltaUploadService.getSignature("small.bin", BLOCK_SIZE);
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        delta.write(header(1, 1, 1));
+        delta.write(header(0));
+
+        assertThrows(IllegalArgumentException.class, () -> deltaUploadService.applyDelta("small.bin", signature.getSize(),
+                signature.getLastModified(), BLOCK_SIZE, BLOCK_SIZE, null, new ByteArrayInputStream(delta.toByteArray())));
+        try (Stream<Path> files = Files.list(root)) {
+            assertEquals(1, files.count(), "失败后不应留下暂存文件");
+        }
+    }
+
+    @Test
+    void capsBlockCountForLargeFiles() {
+        // 256GB 需要 2MB 的块，超过了通常的块大小上限，只接受这一个值
+        long size = 256L * 1024 * 1024 * 1024;
+        int minimum = DeltaUploadService.minBlockSizeFor(size);
+
+        assertEquals(2 * 1024 * 1024, minimum);
+        assertTrue((size + minimum - 1) / minimum <= DeltaUploadService.MAX_BLOCKS);
+        assertTrue(DeltaUploadService.isValidBlockSize(minimum, size));
+        assertFalse(DeltaUploadService.isValidBlockSize(minimum - 1, size));
+        assertFalse(DeltaUploadService.isValidBlockSize(minimum + 1, size));
+        // 普通大小的文件仍按原来的范围校验
+        assertTrue(DeltaUploadService.isValidBlockSize(BLOCK_SIZE, 1024 * 1024));
+        assertFalse(DeltaUploadService.isValidBlockSize(1024, 1024 * 1024));
+    }
+
+    private static byte[] patternBytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 167 + 13);
+        }
+        return data;
+    }
+
+    /**
+     * 与 delta.js 的 header 相同：1 字节指令，随后是大端序的 32 位整数
+     */
+    private static byte[] header(int op, int... ints) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(op);
+        for (int value : ints) {
+            out.writeInt(value);
+        }
+        return buffer.toByteArray();
+    }
+}
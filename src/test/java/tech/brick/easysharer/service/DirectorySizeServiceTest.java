@@ -0,0 +1,93 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.model.DirectoryStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 缓存的目录数受上限约束，超出时先丢弃最深层的目录；全量刷新逐个统计顶层目录后汇总
+ */
+class DirectorySizeServiceTest {
+
+    @TempDir
+    Path root;
+
+    private DirectorySizeService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 两个顶层目录，各含 3 个子目录，每个子目录含 2 个孙目录和一个 10 字节的文件
+        for (String top : new String[]{"a", "b"}) {
+            for (int i = 0; i < 3; i++) {
+                Path sub = root.resolve(top).resolve("s" + i);
+                Files.createDirectories(sub.resolve("x"));
+                Files.createDirectories(sub.resolve("y"));
+                Files.write(sub.resolve("f.bin"), new byte[10]);
+            }
+        }
+        service = new DirectorySizeService();
+        ReflectionTestUtils.setField(service, "rootPath", root.toString());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "maxCachedDirs", 10);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void dropsDeepestDirectoriesWhenCacheIsFull() {
+        DirectoryStats stats = service.estimate(root.toAbsolutePath().normalize(), 10000);
+        assertNotNull(stats);
+        assertEquals(60, stats.getTotalSize());
+        assertEquals(6, stats.getFileCount());
+        assertEquals(20, stats.getDirCount());
+
+        // 共 21 个目录，只保留深度不超过 2 的 9 个
+        Map<Path, DirectoryStats> cache = statsCache();
+        assertEquals(9, cache.size());
+        assertTrue(cache.containsKey(root.toAbsolutePath().normalize().resolve("a/s0")));
+    }
+
+    @Test
+    void rescansTopLevelDirectoriesOneByOne() throws Exception {
+        Path base = root.toAbsolutePath().normalize();
+        Files.write(base.resolve("top.bin"), new byte[5]);
+        service.refreshAll();
+        // 共享目录本身在最后一步汇总
+        DirectoryStats stats = waitForStats(base);
+        assertEquals(65, stats.getTotalSize());
+        assertEquals(7, stats.getFileCount());
+        assertEquals(30, statsCache().get(base.resolve("b")).getTotalSize());
+    }
+
+    private DirectoryStats waitForStats(Path dir) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        DirectoryStats stats;
+        while ((stats = statsCache().get(dir)) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(stats, dir.toString());
+        return stats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Path, DirectoryStats> statsCache() {
+        return (Map<Path, DirectoryStats>) ReflectionTestUtils.getField(service, "statsCache");
+    }
+}
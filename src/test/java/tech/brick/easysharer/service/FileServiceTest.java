@@ -0,0 +1,99 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.service.FileService.TreeEntry;
+import tech.brick.easysharer.service.FileService.TreeWalk;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * 多个选中项的遍历：各路径同时遍历，但条目仍按选中顺序、目录先序返回
+ */
+class FileServiceTest {
+
+    @TempDir
+    Path root;
+
+    private SharePathResolver pathResolver;
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() {
+        pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        fileService = new FileService(new DirectorySizeService(), new HotFileCache(), pathResolver);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileService.shutdown();
+    }
+
+    @Test
+    void walksRootsInSelectionOrder() throws IOException {
+        List<String> expected = new ArrayList<>();
+        List<SharePath> roots = new ArrayList<>();
+        // 比同时遍历的路径数多，且每个目录的批次数超过单个队列的容量
+        for (int r = 0; r < 7; r++) {
+            String dir = "root-" + (char) ('g' - r);
+            Files.createDirectories(root.resolve(dir));
+            expected.add(dir + "/");
+            for (int d = 0; d < 20; d++) {
+                String sub = dir + "/sub-" + (char) ('a' + d);
+                Files.createDirectories(root.resolve(sub));
+                Files.write(root.resolve(sub).resolve("file.txt"), new byte[]{1});
+                expected.add(sub + "/");
+                expected.add(sub + "/file.txt");
+            }
+            roots.add(pathResolver.resolve(dir));
+            if (r == 2) {
+                Files.write(root.resolve("single.txt"), new byte[3]);
+                roots.add(pathResolver.resolve("single.txt"));
+                expected.add("single.txt");
+                roots.add(pathResolver.resolve("missing"));
+            }
+        }
+
+        List<String> walked = new ArrayList<>();
+        try (TreeWalk walk = fileService.walk(roots)) {
+            List<TreeEntry> batch;
+            while ((batch = walk.next()) != null) {
+                for (TreeEntry entry : batch) {
+                    walked.add(entry.getPath().getRelativePath() + (entry.isDirectory() ? "/" : ""));
+                }
+            }
+        }
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void closeStopsWalkersWaitingOnFullQueues() throws IOException {
+        List<SharePath> roots = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            for (int d = 0; d < 50; d++) {
+                Files.createDirectories(root.resolve("r" + r).resolve("d" + d));
+            }
+            roots.add(pathResolver.resolve("r" + r));
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            TreeWalk walk = fileService.walk(roots);
+            walk.next();
+            walk.close();
+        });
+    }
+}
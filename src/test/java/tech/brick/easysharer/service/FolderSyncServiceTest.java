@@ -0,0 +1,106 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.model.SyncManifestEntry;
+import tech.brick.easysharer.service.FolderSyncService.ServerFile;
+import tech.brick.easysharer.service.FolderSyncService.SyncPlan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 修改时间不同的文件通过 HashService 比较内容，每次请求新计算的字节数受 max-hash-bytes 限制
+ */
+class FolderSyncServiceTest {
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path cacheDir;
+
+    private SharePathResolver pathResolver;
+    private HashService hashService;
+    private FolderSyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        hashService = new HashService(pathResolver);
+        ReflectionTestUtils.setField(hashService, "enabled", true);
+        ReflectionTestUtils.setField(hashService, "threads", 2);
+        ReflectionTestUtils.setField(hashService, "maxCacheEntries", 1000);
+        ReflectionTestUtils.setField(hashService, "cacheFilePath", cacheDir.resolve("hash-cache.json").toString());
+        hashService.init();
+        syncService = new FolderSyncService(hashService);
+        ReflectionTestUtils.setField(syncService, "enabled", true);
+        ReflectionTestUtils.setField(syncService, "recheckIntervalMillis", 300000L);
+        ReflectionTestUtils.setField(syncService, "mtimeToleranceMillis", 2000L);
+        ReflectionTestUtils.setField(syncService, "threads", 2);
+        ReflectionTestUtils.setField(syncService, "maxHashBytes", 1500L);
+        syncService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        syncService.shutdown();
+        hashService.shutdown();
+    }
+
+    @Test
+    void comparesContentWithinHashBudget() throws IOException {
+        Files.createDirectories(root.resolve("f/sub"));
+        byte[] a = content(1000, 'a');
+        byte[] b = content(1000, 'b');
+        Files.write(root.resolve("f/a.bin"), a);
+        Files.write(root.resolve("f/sub/b.bin"), b);
+        Files.write(root.resolve("f/c.bin"), content(10, 'c'));
+
+        // 修改时间都不同：a、b 内容相同，c 内容不同；a、b 合计超过散列上限
+        long otherTime = 1_000_000L;
+        List<SyncManifestEntry> manifest = List.of(
+                new SyncManifestEntry("a.bin", a.length, otherTime, sha256(a)),
+                new SyncManifestEntry("sub/b.bin", b.length, otherTime, sha256(b)),
+                new SyncManifestEntry("c.bin", 10, otherTime, sha256(new byte[10])),
+                new SyncManifestEntry("gone.bin", 1, otherTime, null));
+
+        SyncPlan plan = syncService.plan(pathResolver.resolve("f"), manifest);
+        assertEquals(1, plan.getUnchangedCount());
+        assertEquals(List.of("gone.bin"), plan.getDeleted());
+        assertEquals(2, plan.getChanged().size());
+        assertEquals(1010, plan.getChanged().stream().mapToLong(ServerFile::getSize).sum());
+
+        // 已计算的散列进入 HashService 的缓存，之后的请求不再计入上限
+        SyncPlan second = syncService.plan(pathResolver.resolve("f"), manifest);
+        assertEquals(2, second.getUnchangedCount());
+        assertEquals(List.of("c.bin"), second.getChanged().stream().map(ServerFile::getPath).toList());
+    }
+
+    private static byte[] content(int length, char fill) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) fill);
+        return data;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.service.SharePathResolver.SharePath;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路径清理：所有接口的路径参数都经过 clean/resolve，这里覆盖路径遍历和非法字符的各种写法
+ */
+class SharePathResolverTest {
+
+    @TempDir
+    Path root;
+
+    private SharePathResolver pathResolver;
+
+    @BeforeEach
+    void setUp() {
+        pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+    }
+
+    @Test
+    void returnsCanonicalInputUnchanged() {
+        String path = "docs/a/b.txt";
+        assertSame(path, SharePathResolver.clean(path));
+        assertEquals("", SharePathResolver.clean(null));
+        assertEquals("", SharePathResolver.clean(""));
+        assertEquals("", SharePathResolver.clean("   "));
+    }
+
+    @Test
+    void normalizesSlashesAndDotSegments() {
+        assertEquals("a/b", SharePathResolver.clean("/a/b"));
+        assertEquals("a/b", SharePathResolver.clean("a/b/"));
+        assertEquals("a/b", SharePathResolver.clean("//a///b//"));
+        assertEquals("a/b/c", SharePathResolver.clean("a\\b\\\\c"));
+        assertEquals("a/b", SharePathResolver.clean("\\a/\\b\\"));
+        assertEquals("a/b", SharePathResolver.clean("./a/./b/."));
+        assertEquals("", SharePathResolver.clean("/./"));
+        assertEquals("a b/c", SharePathResolver.clean("  a b/c \t"));
+        // 只有 . 和 .. 本身是特殊路径段
+        assertEquals("..a/b../...", SharePathResolver.clean("..a/b../..."));
+    }
+
+    @Test
+    void rejectsParentSegmentsInEveryPosition() {
+        for (String path : new String[]{"..", "../a", "a/..", "a/../b", "/..", "../", "a/b/..",
+                "..\\a", "a\\..\\b", "a\\..", "./..", "a//..//b", " ../a"}) {
+            assertThrows(SecurityException.class, () -> SharePathResolver.clean(path), path);
+            assertThrows(SecurityException.class, () -> pathResolver.resolve(path), path);
+        }
+    }
+
+    @Test
+    void rejectsDriveLettersAndIllegalCharacters() {
+        for (String path : new String[]{"C:", "C:/Windows", "c:\\a", "a/C:", "a:b", "a<b", "a>b", "a\"b",
+                "a|b", "a?b", "a*b", "a\u0000b", "a/\nb", "a\u001fb"}) {
+            assertThrows(IllegalArgumentException.class, () -> SharePathResolver.clean(path), path);
+        }
+    }
+
+    @Test
+    void resolvesInsideRoot() {
+        SharePath path = pathResolver.resolve("\\docs//a.txt");
+        assertEquals("docs/a.txt", path.getRelativePath());
+        assertEquals(pathResolver.getRoot().resolve("docs").resolve("a.txt"), path.getPath());
+        assertTrue(path.getPath().startsWith(pathResolver.getRoot()));
+
+        SharePath rootPath = pathResolver.resolve("/");
+        assertTrue(rootPath.isRoot());
+        assertEquals(pathResolver.getRoot(), rootPath.getPath());
+    }
+
+    @Test
+    void stagingFileNamesAreOrdinaryPathSegments() {
+        String name = ".easysharer-upload-" + UUID.randomUUID() + ".part";
+        SharePath path = pathResolver.resolve("docs/" + name);
+
+        assertEquals("docs/" + name, path.getRelativePath());
+        assertTrue(UploadService.isStagingFile(path.getPath()));
+        assertFalse(UploadService.isStagingFile(pathResolver.resolve("docs/.easysharer-upload-x.part").getPath()));
+        assertFalse(UploadService.isStagingFile(pathResolver.resolve("docs/" + name + ".txt").getPath()));
+    }
+}
@@ -0,0 +1,92 @@
+package tech.brick.easysharer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.brick.easysharer.model.TextShare;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 删除的分享不能再从分段文件中读到，索引丢失后从分段重建时也不能恢复
+ */
+class TextShareStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private ObjectMapper objectMapper;
+    private TextShareStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        store = new TextShareStore(dir, objectMapper, 1024 * 1024, 200);
+        store.open();
+    }
+
+    @Test
+    void removeErasesRecordFromSegment() throws IOException {
+        store.append(share("keep0001", "保留的内容"), null);
+        store.append(share("gone0001", "secret-deleted-content"), null);
+        store.flush();
+
+        assertTrue(store.remove("gone0001"));
+        store.flush();
+        assertFalse(segmentsContain("secret-deleted-content"));
+        assertTrue(segmentsContain("保留的内容"));
+
+        // 索引丢失，从分段文件完整重建
+        Files.delete(dir.resolve(TextShareStore.INDEX_FILE_NAME));
+        TextShareStore reopened = new TextShareStore(dir, objectMapper, 1024 * 1024, 200);
+        reopened.open();
+        assertEquals(1, reopened.size());
+        assertNull(reopened.getMetadata("gone0001"));
+        assertEquals("保留的内容", reopened.readContent("keep0001"));
+
+        // 覆盖后的记录之后仍可继续追加
+        reopened.append(share("next0001", "追加"), null);
+        assertEquals("追加", reopened.readContent("next0001"));
+    }
+
+    @Test
+    void rejectsDuplicateIds() throws IOException {
+        store.append(share("same0001", "first"), null);
+
+        assertThrows(IllegalStateException.class, () -> store.append(share("same0001", "second"), null));
+        assertEquals("first", store.readContent("same0001"));
+        assertNotNull(store.oldestId());
+    }
+
+    private static TextShare share(String id, String content) {
+        TextShare share = new TextShare(id, "127.0.0.1", content, "tester", "笔记");
+        share.setExpireTime(LocalDateTime.now().plusHours(1));
+        return share;
+    }
+
+    private boolean segmentsContain(String text) throws IOException {
+        try (Stream<Path> segments = Files.list(dir.resolve(TextShareStore.SEGMENT_DIR_NAME))) {
+            for (Path segment : segments.toList()) {
+                if (Files.readString(segment, StandardCharsets.UTF_8).contains(text)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import tech.brick.easysharer.model.FileUploadResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 同名文件并发上传时各自得到不同的文件名，包括文件系统不支持硬链接、改用改名提交的情况；
+ * 上传的 ZIP 中未标记 UTF-8 的 GBK 文件名能正确解压
+ */
+class UploadServiceTest {
+
+    @TempDir
+    Path root;
+
+    private UploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        SharePathResolver pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        uploadService = new UploadService(new DirectorySizeService(), pathResolver, new HashService(pathResolver));
+        ReflectionTestUtils.setField(uploadService, "uploadEnabled", true);
+        ReflectionTestUtils.setField(uploadService, "maxFilesPerRequest", 10);
+        ReflectionTestUtils.setField(uploadService, "maxFileSizeMB", 1);
+        ReflectionTestUtils.setField(uploadService, "writerThreads", 4);
+        ReflectionTestUtils.setField(uploadService, "maxArchiveEntries", 100);
+        uploadService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploadService.shutdown();
+    }
+
+    @Test
+    void keepsConcurrentSameNameUploadsWithHardLinks() throws IOException {
+        assertDistinctFiles();
+    }
+
+    @Test
+    void keepsConcurrentSameNameUploadsWithoutHardLinks() throws IOException {
+        ReflectionTestUtils.setField(uploadService, "hardLinksSupported", false);
+        assertDistinctFiles();
+    }
+
+    @Test
+    void extractsZipWithGbkNames() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(buffer, Charset.forName("GBK"))) {
+            zip.putNextEntry(new ZipEntry("中文目录/说明.txt"));
+            zip.write("你好".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        // 写入中文文件名需要 JVM 的文件名编码支持中文
+        assumeTrue(Charset.forName(System.getProperty("sun.jnu.encoding")).newEncoder().canEncode("中文"),
+                "文件名编码不支持中文");
+
+        byte[] archive = buffer.toByteArray();
+        List<FileUploadResult> results = uploadService.uploadArchive(new ByteArrayInputStream(archive), "zip",
+                "gbk.zip", archive.length, "", null);
+        assertEquals(FileUploadResult.Status.SUCCESS, results.get(0).getStatus(), results.get(0).getMessage());
+        assertEquals("你好", Files.readString(root.resolve("中文目录/说明.txt"), StandardCharsets.UTF_8));
+    }
+
+    private void assertDistinctFiles() throws IOException {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            files.add(new MockMultipartFile("files", "same.txt", "text/plain",
+                    ("content-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        List<FileUploadResult> results = uploadService.uploadFiles(files, "docs");
+
+        Set<String> contents = new HashSet<>();
+        for (FileUploadResult result : results) {
+            assertEquals(FileUploadResult.Status.SUCCESS, result.getStatus(), result.getMessage());
+            contents.add(Files.readString(root.resolve(result.getStoredPath()), StandardCharsets.UTF_8));
+        }
+        assertEquals(8, contents.size(), "每个上传的文件都应保留");
+        try (Stream<Path> stored = Files.list(root.resolve("docs"))) {
+            List<Path> names = stored.toList();
+            assertEquals(8, names.size(), names.toString());
+            assertFalse(names.stream().anyMatch(UploadService::isStagingFile));
+        }
+    }
+}
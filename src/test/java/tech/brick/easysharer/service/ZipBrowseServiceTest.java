@@ -0,0 +1,194 @@
+package tech.brick.easysharer.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import tech.brick.easysharer.model.FileInfo;
+import tech.brick.easysharer.service.ZipBrowseService.ArchivePath;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * ZIP 浏览：自行解析中央目录，覆盖 ZIP64、非 UTF-8 的中文文件名和两种压缩方式
+ */
+class ZipBrowseServiceTest {
+
+    @TempDir
+    Path root;
+
+    private SharePathResolver pathResolver;
+    private ZipBrowseService zipBrowseService;
+
+    @BeforeEach
+    void setUp() {
+        pathResolver = new SharePathResolver();
+        ReflectionTestUtils.setField(pathResolver, "rootPath", root.toString());
+        pathResolver.init();
+        zipBrowseService = new ZipBrowseService(pathResolver);
+        ReflectionTestUtils.setField(zipBrowseService, "enabled", true);
+        ReflectionTestUtils.setField(zipBrowseService, "maxCachedEntries", 200000L);
+    }
+
+    @Test
+    void locatesArchiveAndEntryPath() throws IOException {
+        Files.createDirectories(root.resolve("docs"));
+        writeZip(root.resolve("docs/a.zip"), StandardCharsets.UTF_8, zip -> addDeflated(zip, "x/y.txt", new byte[1]));
+
+        ArchivePath archivePath = zipBrowseService.locate(pathResolver.resolve("docs/a.zip/x/y.txt"));
+        assertEquals("docs/a.zip", archivePath.getArchive().getRelativePath());
+        assertEquals("x/y.txt", archivePath.getEntryPath());
+        assertEquals("", zipBrowseService.locate(pathResolver.resolve("docs/a.zip")).getEntryPath());
+        assertNull(zipBrowseService.locate(pathResolver.resolve("docs")));
+        assertNull(zipBrowseService.locate(pathResolver.resolve("docs/b.zip/x")));
+    }
+
+    @Test
+    void readsStoredAndDeflatedEntries() throws IOException {
+        byte[] stored = randomBytes(5000, 1);
+        byte[] deflated = "压缩内容 ".repeat(2000).getBytes(StandardCharsets.UTF_8);
+        writeZip(root.resolve("a.zip"), StandardCharsets.UTF_8, zip -> {
+            addStored(zip, "dir/stored.bin", stored);
+            addDeflated(zip, "dir/deflated.txt", deflated);
+        });
+
+        List<FileInfo> top = zipBrowseService.list(zipBrowseService.locate(pathResolver.resolve("a.zip")));
+        assertEquals(1, top.size());
+        assertEquals("dir", top.get(0).getName());
+        assertTrue(top.get(0).isDirectory());
+        assertEquals("a.zip/dir", top.get(0).getRelativePath());
+
+        List<FileInfo> files = zipBrowseService.list(zipBrowseService.locate(pathResolver.resolve("a.zip/dir")));
+        assertEquals(List.of("deflated.txt", "stored.bin"), files.stream().map(FileInfo::getName).toList());
+        assertEquals(deflated.length, files.get(0).getSize());
+        assertEquals(stored.length, files.get(1).getSize());
+
+        assertArrayEquals(stored, readEntry("a.zip/dir/stored.bin"));
+        assertArrayEquals(deflated, readEntry("a.zip/dir/deflated.txt"));
+        assertNull(zipBrowseService.getEntryResource(zipBrowseService.locate(pathResolver.resolve("a.zip/dir"))));
+        assertNull(zipBrowseService.list(zipBrowseService.locate(pathResolver.resolve("a.zip/missing"))));
+    }
+
+    @Test
+    void decodesGbkNamesWithoutUtf8Flag() throws IOException {
+        byte[] content = "你好".getBytes(StandardCharsets.UTF_8);
+        writeZip(root.resolve("gbk.zip"), Charset.forName("GBK"), zip -> {
+            addDeflated(zip, "中文目录/说明.txt", content);
+            addDeflated(zip, "plain.txt", new byte[0]);
+        });
+
+        List<FileInfo> top = zipBrowseService.list(zipBrowseService.locate(pathResolver.resolve("gbk.zip")));
+        assertEquals(List.of("中文目录", "plain.txt"), top.stream().map(FileInfo::getName).toList());
+        // 读取条目要把中文路径转成文件系统路径，需要 JVM 的文件名编码支持中文
+        assumeTrue(Charset.forName(System.getProperty("sun.jnu.encoding")).newEncoder().canEncode("中文"),
+                "文件名编码不支持中文");
+        assertArrayEquals(content, readEntry("gbk.zip/中文目录/说明.txt"));
+    }
+
+    @Test
+    void readsZip64CentralDirectory() throws IOException {
+        // 超过 65535 个条目时 ZipOutputStream 写出 ZIP64 结束记录
+        int count = 70000;
+        writeZip(root.resolve("many.zip"), StandardCharsets.UTF_8, zip -> {
+            for (int i = 0; i < count; i++) {
+                addStored(zip, "d" + (i % 10) + "/f" + i, new byte[]{(byte) i});
+            }
+        });
+        byte[] bytes = Files.readAllBytes(root.resolve("many.zip"));
+        assertTrue(containsSignature(bytes, 0x06064b50), "应包含 ZIP64 结束记录");
+
+        List<FileInfo> top = zipBrowseService.list(zipBrowseService.locate(pathResolver.resolve("many.zip")));
+        assertEquals(10, top.size());
+        List<FileInfo> files = zipBrowseService.list(zipBrowseService.locate(pathResolver.resolve("many.zip/d3")));
+        assertEquals(count / 10, files.size());
+        assertArrayEquals(new byte[]{(byte) 69993}, readEntry("many.zip/d3/f69993"));
+    }
+
+    @Test
+    void reparsesArchiveAfterChangeAndInvalidation() throws IOException {
+        Path zipFile = root.resolve("a.zip");
+        writeZip(zipFile, StandardCharsets.UTF_8, zip -> addDeflated(zip, "old.txt", new byte[1]));
+        ArchivePath archivePath = zipBrowseService.locate(pathResolver.resolve("a.zip"));
+        assertEquals("old.txt", zipBrowseService.list(archivePath).get(0).getName());
+
+        writeZip(zipFile, StandardCharsets.UTF_8, zip -> addDeflated(zip, "new.txt", new byte[2]));
+        zipBrowseService.invalidateTree(root);
+        assertEquals("new.txt", zipBrowseService.list(archivePath).get(0).getName());
+        assertFalse(zipBrowseService.getStatistics().isEmpty());
+    }
+
+    private byte[] readEntry(String path) throws IOException {
+        Resource resource = zipBrowseService.getEntryResource(zipBrowseService.locate(pathResolver.resolve(path)));
+        assertNotNull(resource, path);
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private interface ZipWriter {
+        void write(ZipOutputStream zip) throws IOException;
+    }
+
+    private static void writeZip(Path file, Charset charset, ZipWriter writer) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             ZipOutputStream zip = new ZipOutputStream(out, charset)) {
+            writer.write(zip);
+        }
+    }
+
+    private static void addDeflated(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static void addStored(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static boolean containsSignature(byte[] bytes, int signature) {
+        for (int i = bytes.length - 4; i >= 0; i--) {
+            int value = (bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16
+                    | (bytes[i + 3] & 0xFF) << 24;
+            if (value == signature) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
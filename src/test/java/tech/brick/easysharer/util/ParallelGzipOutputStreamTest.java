@@ -0,0 +1,117 @@
+package tech.brick.easysharer.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多成员的输出必须能被 GZIPInputStream 作为一个完整的 gzip 流解压
+ */
+class ParallelGzipOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void writesValidGzipForEmptyInput() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressed, pool, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, 4).close();
+
+        assertTrue(compressed.size() > 0, "没有输入时也应写出一个空成员");
+        assertArrayEquals(new byte[0], gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    void concatenatesMembersReadableByGzipInputStream() throws IOException {
+        // 10.5 个块，且压缩中的块数上限小于块数，写出时会等待
+        byte[] data = new byte[BLOCK_SIZE * 10 + BLOCK_SIZE / 2];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextInt(16) + 'a');
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, pool, BLOCK_SIZE,
+                Deflater.BEST_SPEED, 2)) {
+            // 不按块边界写入
+            for (int off = 0; off < data.length; off += 1000) {
+                gzip.write(data, off, Math.min(1000, data.length - off));
+                gzip.flush();
+            }
+        }
+
+        byte[] output = compressed.toByteArray();
+        assertEquals(11, countMembers(output));
+        assertArrayEquals(data, gunzip(output));
+    }
+
+    @Test
+    void exactBlockMultipleHasNoTrailingEmptyMember() throws IOException {
+        byte[] data = new byte[BLOCK_SIZE * 3];
+        new Random(2).nextBytes(data);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, pool, BLOCK_SIZE,
+                Deflater.DEFAULT_COMPRESSION, 4)) {
+            gzip.write(data);
+        }
+
+        assertEquals(3, countMembers(compressed.toByteArray()));
+        assertArrayEquals(data, gunzip(compressed.toByteArray()));
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 成员头是固定的 10 字节，逐个解压成员以找到下一个成员的起点
+     */
+    private static int countMembers(byte[] compressed) throws IOException {
+        int members = 0;
+        int position = 0;
+        while (position < compressed.length) {
+            assertEquals(0x1f, compressed[position] & 0xFF);
+            assertEquals(0x8b, compressed[position + 1] & 0xFF);
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed, position + 10, compressed.length - position - 10);
+                byte[] sink = new byte[BLOCK_SIZE];
+                while (!inflater.finished()) {
+                    if (inflater.inflate(sink) == 0 && inflater.needsInput()) {
+                        throw new IOException("gzip 成员不完整");
+                    }
+                }
+                position = compressed.length - inflater.getRemaining() + 8;
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            } finally {
+                inflater.end();
+            }
+            members++;
+        }
+        return members;
+    }
+}
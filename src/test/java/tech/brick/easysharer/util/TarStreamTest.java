@@ -0,0 +1,197 @@
+package tech.brick.easysharer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TarOutputStream 写出的归档必须能被 TarInputStream 原样读回，包括需要 PAX 扩展头的条目
+ */
+class TarStreamTest {
+
+    private static final long MTIME = 1_700_000_000_000L;
+
+    @Test
+    void roundTripsFilesAndDirectories() throws IOException {
+        byte[] content = "hello tar".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(buffer)) {
+            tar.putDirectory("docs", MTIME);
+            tar.putFile("docs/a.txt", content.length, MTIME);
+            tar.write(content);
+            tar.putFile("docs/empty.txt", 0, MTIME);
+        }
+        assertEquals(0, buffer.size() % (20 * 512), "归档应补齐到整记录");
+
+        try (TarInputStream in = new TarInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            TarInputStream.Entry directory = in.getNextEntry();
+            assertTrue(directory.isDirectory());
+            assertFalse(directory.isRegularFile());
+            assertEquals("docs", trimSlash(directory.getName()));
+
+            TarInputStream.Entry file = in.getNextEntry();
+            assertEquals("docs/a.txt", file.getName());
+            assertTrue(file.isRegularFile());
+            assertEquals(content.length, file.getSize());
+            assertEquals(MTIME, file.getLastModified());
+            assertArrayEquals(content, in.readAllBytes());
+
+            TarInputStream.Entry empty = in.getNextEntry();
+            assertEquals("docs/empty.txt", empty.getName());
+            assertEquals(0, empty.getSize());
+
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    void roundTripsLongAndNonAsciiNamesThroughPax() throws IOException {
+        String longName = "dir/" + "x".repeat(150) + "/" + "y".repeat(120) + ".bin";
+        String chineseName = "文档/报告 2024.txt";
+        byte[] content = new byte[1000];
+        Arrays.fill(content, (byte) 7);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(buffer)) {
+            tar.putFile(longName, content.length, MTIME);
+            tar.write(content);
+            tar.putFile(chineseName, 3, MTIME);
+            tar.write(new byte[]{1, 2, 3});
+            tar.putDirectory("d".repeat(120), MTIME);
+        }
+
+        try (TarInputStream in = new TarInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            TarInputStream.Entry first = in.getNextEntry();
+            assertEquals(longName, first.getName());
+            assertArrayEquals(content, in.readAllBytes());
+
+            TarInputStream.Entry second = in.getNextEntry();
+            assertEquals(chineseName, second.getName());
+            assertArrayEquals(new byte[]{1, 2, 3}, in.readAllBytes());
+
+            TarInputStream.Entry third = in.getNextEntry();
+            assertTrue(third.isDirectory());
+            assertEquals("d".repeat(120), trimSlash(third.getName()));
+
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    void padsShortContentAndDropsExcess() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(buffer)) {
+            tar.putFile("short.bin", 10, MTIME);
+            tar.write(new byte[]{1, 2, 3});
+            tar.putFile("long.bin", 2, MTIME);
+            tar.write(new byte[]{4, 5, 6, 7});
+        }
+
+        try (TarInputStream in = new TarInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            in.getNextEntry();
+            assertArrayEquals(new byte[]{1, 2, 3, 0, 0, 0, 0, 0, 0, 0}, in.readAllBytes());
+            in.getNextEntry();
+            assertArrayEquals(new byte[]{4, 5}, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void writesSizesAbove8GBThroughPax() throws IOException {
+        long size = 9L * 1024 * 1024 * 1024 + 123;
+        // 只写出头部：内容和结尾都不写，读取端只需要解析出条目
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        TarOutputStream tar = new TarOutputStream(buffer);
+        tar.putFile("huge.bin", size, MTIME);
+        tar.flush();
+
+        byte[] headers = buffer.toByteArray();
+        assertEquals('x', headers[156], "超过 8GB 的条目前应有 PAX 扩展头");
+        assertTrue(new String(headers, 512, 512, StandardCharsets.UTF_8).contains(" size=" + size + "\n"));
+
+        try (TarInputStream in = new TarInputStream(new ByteArrayInputStream(headers))) {
+            TarInputStream.Entry entry = in.getNextEntry();
+            assertEquals("huge.bin", entry.getName());
+            assertEquals(size, entry.getSize());
+        }
+    }
+
+    @Test
+    void roundTripsModificationTimesOutsideUstarRange() throws IOException {
+        long beforeEpoch = -86_400_000L;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(buffer)) {
+            tar.putFile("old.txt", 0, beforeEpoch);
+        }
+
+        try (TarInputStream in = new TarInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            assertEquals(beforeEpoch, in.getNextEntry().getLastModified());
+        }
+    }
+
+    @Test
+    void rejectsMalformedPaxRecords() throws IOException {
+        for (String records : new String[]{"99 path=a\n", "5 path=a\n", "12 path=abc", "11 size=-1\n",
+                "12 size=abc\n", "x path=a\n"}) {
+            byte[] archive = paxArchive(records);
+            assertThrows(TarInputStream.TarFormatException.class, () -> {
+                try (TarInputStream in = new TarInputStream(new ByteArrayInputStream(archive))) {
+                    in.getNextEntry();
+                }
+            }, records);
+        }
+    }
+
+    /**
+     * 构造一个 PAX 扩展头记录为指定内容、后面跟一个空文件的归档
+     */
+    private static byte[] paxArchive(String records) throws IOException {
+        byte[] data = records.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.write(ustarHeader("PaxHeaders/a", 'x', data.length));
+        buffer.write(data);
+        buffer.write(new byte[512 - data.length]);
+        buffer.write(ustarHeader("a", '0', 0));
+        buffer.write(new byte[1024]);
+        return buffer.toByteArray();
+    }
+
+    private static byte[] ustarHeader(String name, char type, long size) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, MTIME / 1000);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        return header;
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        String padded = "0".repeat(length - 1 - octal.length()) + octal;
+        System.arraycopy(padded.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+
+    private static String trimSlash(String name) {
+        return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+    }
+}
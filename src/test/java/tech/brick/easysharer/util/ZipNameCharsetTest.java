@@ -0,0 +1,57 @@
+package tech.brick.easysharer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ZipInputStream 使用该字符集时，GBK 文件名和标记了 UTF-8 的文件名都能正确读出
+ */
+class ZipNameCharsetTest {
+
+    private static final List<String> NAMES = List.of("中文目录/说明.txt", "plain.txt", "很长的文件名".repeat(40) + ".txt");
+
+    @Test
+    void decodesGbkNamesWithoutUtf8Flag() throws IOException {
+        assertEquals(NAMES, readNames(writeZip(Charset.forName("GBK"))));
+    }
+
+    @Test
+    void keepsFlaggedUtf8Names() throws IOException {
+        assertEquals(NAMES, readNames(writeZip(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] writeZip(Charset charset) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(buffer, charset)) {
+            for (String name : NAMES) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(1);
+                zip.closeEntry();
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static List<String> readNames(byte[] archive) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive), ZipNameCharset.INSTANCE)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}